@@ -0,0 +1,530 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.memory;
+
+import static com.yahoo.memory.UnsafeUtil.unsafe;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A MemoryRequest implementation that serves direct, off-heap Memory from pooled, power-of-two
+ * size classes. A single pool can be shared by many direct sketches, unions and threads.
+ *
+ * <p>Native memory is reserved from the OS in slabs, which are carved into equal blocks of one
+ * size class. A request is rounded up to the next power of two and served from a small cache
+ * local to the requesting thread, then from the shared free list of its size class, and only then
+ * from a newly reserved slab. Freed blocks return to the cache of the freeing thread, and overflow
+ * to the shared free list. The cache of a thread holds at most {@link #LOCAL_CACHE_CLASS_BYTES}
+ * per size class, and blocks larger than {@link #MAX_LOCAL_CACHE_BLOCK_BYTES} always go to the
+ * shared free list. Before a request fails because the pool limit is reached, the blocks of its
+ * size class are reclaimed from the caches of all threads. The caches of threads that have died
+ * are drained back to the shared free lists at that time, and whenever a new thread starts to use
+ * the pool. Thus the repeated grow, copy and free cycles of direct sketches via
+ * {@link MemoryUtil#memoryRequestHandler(Memory, long, boolean)} recycle the same blocks instead
+ * of going to the OS each time. Slabs are returned to the OS only by {@link #close()}.
+ * Requests larger than the largest size class are allocated individually and returned to the OS
+ * when freed.</p>
+ *
+ * <p>The returned Memory has exactly the requested capacity and this pool as its MemoryRequest.
+ * It is not cleared. Calling <i>freeMemory()</i> on it returns its block to this pool, as does
+ * passing it to {@link #free(Memory)} or {@link #free(Memory, Memory)}. Memory not allocated by
+ * this pool is ignored by the free methods, since it is owned by someone else. There is no
+ * Cleaner: a block that is dropped without being freed stays reserved until the pool is closed.
+ * </p>
+ *
+ * <p>If a request would exceed the maximum number of bytes this pool may reserve, or the OS
+ * refuses the allocation, the request returns null, as specified by {@link MemoryRequest}, and
+ * the allocation failure is counted.</p>
+ */
+public final class MemoryPool implements MemoryRequest {
+  /**
+   * The log base 2 of the smallest block size in bytes.
+   */
+  public static final int MIN_LG_BLOCK_BYTES = 6;
+
+  /**
+   * The log base 2 of the default largest pooled block size in bytes.
+   */
+  public static final int DEFAULT_MAX_LG_BLOCK_BYTES = 26;
+
+  /**
+   * The log base 2 of the default slab size in bytes.
+   */
+  public static final int DEFAULT_LG_SLAB_BYTES = 20;
+
+  /**
+   * The maximum number of bytes of the blocks of one size class in the cache of one thread.
+   */
+  public static final long LOCAL_CACHE_CLASS_BYTES = 1L << 18;
+
+  /**
+   * The largest block size in bytes that is cached per thread.
+   */
+  public static final long MAX_LOCAL_CACHE_BLOCK_BYTES = LOCAL_CACHE_CLASS_BYTES / 4;
+
+  static final int MAX_CACHE_DEPTH = 16; //blocks per size class per thread
+  private static final int UNPOOLED = -1;
+
+  private final long maxPoolBytes_;
+  private final int maxLgBlockBytes_;
+  private final int lgSlabBytes_;
+  private final FreeList[] freeLists_;
+  private final int[] cacheDepths_; //blocks per size class per thread, zero if not cached
+  private final ThreadLocal<LocalCache> localCache_;
+  private final List<LocalCache> caches_ = new ArrayList<>(); //of all threads, guarded by caches_
+  private final List<Long> slabs_ = new ArrayList<>(); //guarded by slabs_
+  private final Map<Long, Long> unpooled_ = new ConcurrentHashMap<>(); //address to bytes
+
+  private final AtomicLong reservedBytes_ = new AtomicLong();
+  private final AtomicLong bytesOutstanding_ = new AtomicLong();
+  private final AtomicLong highWaterMark_ = new AtomicLong();
+  private final AtomicLong allocationFailures_ = new AtomicLong();
+  private volatile boolean closed_ = false;
+
+  /**
+   * Creates a pool that may reserve an unlimited number of bytes, with the default largest size
+   * class and slab size.
+   */
+  public MemoryPool() {
+    this(Long.MAX_VALUE, DEFAULT_MAX_LG_BLOCK_BYTES, DEFAULT_LG_SLAB_BYTES);
+  }
+
+  /**
+   * Creates a pool that may reserve at most the given number of bytes, with the default largest
+   * size class and slab size.
+   * @param maxPoolBytes the maximum number of bytes this pool may reserve from the OS
+   */
+  public MemoryPool(final long maxPoolBytes) {
+    this(maxPoolBytes, DEFAULT_MAX_LG_BLOCK_BYTES, DEFAULT_LG_SLAB_BYTES);
+  }
+
+  /**
+   * Creates a pool with the given limits.
+   * @param maxPoolBytes the maximum number of bytes this pool may reserve from the OS
+   * @param maxLgBlockBytes the log base 2 of the largest pooled block size in bytes.
+   * Larger requests are allocated individually.
+   * @param lgSlabBytes the log base 2 of the number of bytes reserved from the OS at a time for
+   * size classes smaller than the slab. Larger size classes are reserved one block at a time.
+   */
+  public MemoryPool(final long maxPoolBytes, final int maxLgBlockBytes, final int lgSlabBytes) {
+    if (maxPoolBytes <= 0) {
+      throw new IllegalArgumentException("maxPoolBytes must be > 0: " + maxPoolBytes);
+    }
+    if ((maxLgBlockBytes < MIN_LG_BLOCK_BYTES) || (maxLgBlockBytes > 62)) {
+      throw new IllegalArgumentException("maxLgBlockBytes must be >= " + MIN_LG_BLOCK_BYTES
+          + " and <= 62: " + maxLgBlockBytes);
+    }
+    if ((lgSlabBytes < MIN_LG_BLOCK_BYTES) || (lgSlabBytes > 62)) {
+      throw new IllegalArgumentException("lgSlabBytes must be >= " + MIN_LG_BLOCK_BYTES
+          + " and <= 62: " + lgSlabBytes);
+    }
+    maxPoolBytes_ = maxPoolBytes;
+    maxLgBlockBytes_ = maxLgBlockBytes;
+    lgSlabBytes_ = lgSlabBytes;
+    final int numClasses = maxLgBlockBytes - MIN_LG_BLOCK_BYTES + 1;
+    freeLists_ = new FreeList[numClasses];
+    cacheDepths_ = new int[numClasses];
+    for (int i = 0; i < numClasses; i++) {
+      freeLists_[i] = new FreeList();
+      cacheDepths_[i] = cacheDepth(i + MIN_LG_BLOCK_BYTES);
+    }
+    localCache_ = new ThreadLocal<LocalCache>() {
+      @Override
+      protected LocalCache initialValue() {
+        return registerCache(new LocalCache(cacheDepths_));
+      }
+    };
+  }
+
+  @Override
+  public Memory request(final long capacityBytes) {
+    checkOpen();
+    if (capacityBytes <= 0) {
+      throw new IllegalArgumentException("capacityBytes must be > 0: " + capacityBytes);
+    }
+    final int lgBytes = lgBlockBytes(capacityBytes);
+    if (lgBytes > maxLgBlockBytes_) {
+      return allocateUnpooled(capacityBytes);
+    }
+    final int sizeClass = lgBytes - MIN_LG_BLOCK_BYTES;
+    final long address = acquire(sizeClass);
+    if (address == 0L) {
+      allocationFailures_.incrementAndGet();
+      return null;
+    }
+    addOutstanding(1L << lgBytes);
+    return new PooledMemory(this, address, capacityBytes, sizeClass);
+  }
+
+  @Override
+  public Memory request(final Memory origMem, final long copyToBytes, final long capacityBytes) {
+    final Memory newMem = request(capacityBytes);
+    if (newMem != null) {
+      NativeMemory.copy(origMem, 0, newMem, 0, Math.min(copyToBytes, capacityBytes));
+    }
+    return newMem;
+  }
+
+  @Override
+  public void free(final Memory mem) {
+    if ((mem instanceof PooledMemory) && (((PooledMemory) mem).pool_ == this)) {
+      mem.freeMemory();
+    }
+  }
+
+  @Override
+  public void free(final Memory memToFree, final Memory newMem) {
+    free(memToFree);
+  }
+
+  /**
+   * Returns the number of bytes currently handed out by this pool, as rounded up to the size
+   * classes.
+   * @return the number of bytes currently handed out by this pool
+   */
+  public long getBytesOutstanding() {
+    return bytesOutstanding_.get();
+  }
+
+  /**
+   * Returns the largest number of bytes that have been handed out by this pool at one time.
+   * @return the largest number of bytes that have been handed out by this pool at one time.
+   */
+  public long getHighWaterMark() {
+    return highWaterMark_.get();
+  }
+
+  /**
+   * Returns the number of requests that were refused because the pool limit was reached or the
+   * OS refused the allocation.
+   * @return the number of refused requests
+   */
+  public long getAllocationFailures() {
+    return allocationFailures_.get();
+  }
+
+  /**
+   * Returns the number of bytes currently reserved from the OS by this pool.
+   * @return the number of bytes currently reserved from the OS by this pool.
+   */
+  public long getReservedBytes() {
+    return reservedBytes_.get();
+  }
+
+  /**
+   * Returns the maximum number of bytes this pool may reserve from the OS.
+   * @return the maximum number of bytes this pool may reserve from the OS.
+   */
+  public long getMaxPoolBytes() {
+    return maxPoolBytes_;
+  }
+
+  /**
+   * Returns all reserved native memory to the OS. Any Memory still outstanding from this pool
+   * must not be used afterwards, and further requests will throw IllegalStateException.
+   * Calling close more than once has no effect.
+   */
+  public void close() {
+    synchronized (slabs_) {
+      if (closed_) { return; }
+      closed_ = true;
+      for (final Long slab : slabs_) { unsafe.freeMemory(slab); }
+      slabs_.clear();
+    }
+    for (final Long address : unpooled_.keySet()) { unsafe.freeMemory(address); }
+    unpooled_.clear();
+    for (final FreeList list : freeLists_) {
+      synchronized (list) { list.count = 0; }
+    }
+    synchronized (caches_) {
+      for (final LocalCache cache : caches_) {
+        synchronized (cache) { Arrays.fill(cache.counts, 0); }
+      }
+      caches_.clear();
+    }
+    reservedBytes_.set(0L);
+    bytesOutstanding_.set(0L);
+  }
+
+  @Override
+  public String toString() {
+    return "MemoryPool: reserved: " + getReservedBytes() + ", outstanding: " + getBytesOutstanding()
+        + ", high-water mark: " + getHighWaterMark() + ", allocation failures: "
+        + getAllocationFailures();
+  }
+
+  //restricted
+
+  static int lgBlockBytes(final long capacityBytes) {
+    final int lg = 64 - Long.numberOfLeadingZeros(capacityBytes - 1L);
+    return Math.max(lg, MIN_LG_BLOCK_BYTES);
+  }
+
+  static int cacheDepth(final int lgBlockBytes) {
+    if ((1L << lgBlockBytes) > MAX_LOCAL_CACHE_BLOCK_BYTES) { return 0; }
+    return (int) Math.min(MAX_CACHE_DEPTH, LOCAL_CACHE_CLASS_BYTES >>> lgBlockBytes);
+  }
+
+  void release(final PooledMemory mem) {
+    final long address = mem.blockAddress_;
+    if (closed_) { return; }
+    if (mem.sizeClass_ == UNPOOLED) {
+      final Long bytes = unpooled_.remove(address);
+      if (bytes != null) {
+        unsafe.freeMemory(address);
+        reservedBytes_.addAndGet(-bytes);
+        bytesOutstanding_.addAndGet(-bytes);
+      }
+      return;
+    }
+    final int sizeClass = mem.sizeClass_;
+    bytesOutstanding_.addAndGet(-(1L << (sizeClass + MIN_LG_BLOCK_BYTES)));
+    final int depth = cacheDepths_[sizeClass];
+    if (depth == 0) {
+      freeLists_[sizeClass].push(address);
+      return;
+    }
+    final LocalCache cache = localCache_.get();
+    synchronized (cache) { //only contended while reclaiming
+      final long[] blocks = cache.blocks[sizeClass];
+      if (cache.counts[sizeClass] == depth) { //spill half to the shared free list
+        final int half = depth / 2;
+        freeLists_[sizeClass].push(blocks, half, depth - half);
+        cache.counts[sizeClass] = half;
+      }
+      blocks[cache.counts[sizeClass]++] = address;
+    }
+  }
+
+  private long acquire(final int sizeClass) {
+    final int depth = cacheDepths_[sizeClass];
+    if (depth > 0) {
+      final LocalCache cache = localCache_.get();
+      synchronized (cache) { //only contended while reclaiming
+        if (cache.counts[sizeClass] == 0) { //refill half the cache from the shared free list
+          cache.counts[sizeClass] = freeLists_[sizeClass].pop(cache.blocks[sizeClass], depth / 2);
+        }
+        if (cache.counts[sizeClass] > 0) {
+          return cache.blocks[sizeClass][--cache.counts[sizeClass]];
+        }
+      }
+    }
+    while (true) {
+      final long address = freeLists_[sizeClass].pop();
+      if (address != 0L) { return address; }
+      if (!reserveSlab(sizeClass) && !reclaimCached(sizeClass)) { return 0L; }
+    }
+  }
+
+  private LocalCache registerCache(final LocalCache cache) {
+    synchronized (caches_) {
+      drainDeadCaches();
+      caches_.add(cache);
+    }
+    return cache;
+  }
+
+  //must hold caches_
+  private void drainDeadCaches() {
+    final Iterator<LocalCache> it = caches_.iterator();
+    while (it.hasNext()) {
+      final LocalCache cache = it.next();
+      if (!cache.isOwnerAlive()) {
+        for (int i = 0; i < freeLists_.length; i++) { drain(cache, i); }
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Moves the cached blocks of the given size class of all threads to the shared free list, and
+   * drains the caches of threads that have died.
+   * @return true if any block of the given size class was moved
+   */
+  private boolean reclaimCached(final int sizeClass) {
+    if (cacheDepths_[sizeClass] == 0) { return false; }
+    boolean moved = false;
+    synchronized (caches_) {
+      drainDeadCaches();
+      for (final LocalCache cache : caches_) { moved |= drain(cache, sizeClass); }
+    }
+    return moved;
+  }
+
+  private boolean drain(final LocalCache cache, final int sizeClass) {
+    synchronized (cache) {
+      final int count = cache.counts[sizeClass];
+      if (count == 0) { return false; }
+      freeLists_[sizeClass].push(cache.blocks[sizeClass], 0, count);
+      cache.counts[sizeClass] = 0;
+      return true;
+    }
+  }
+
+  /**
+   * Reserves a new slab for the given size class and pushes its blocks onto the shared free list.
+   * @return false if the pool limit would be exceeded or the OS refused the allocation.
+   */
+  private boolean reserveSlab(final int sizeClass) {
+    final int lgBlockBytes = sizeClass + MIN_LG_BLOCK_BYTES;
+    final long blockBytes = 1L << lgBlockBytes;
+    final long slabBytes = 1L << Math.max(lgSlabBytes_, lgBlockBytes);
+    if (!reserve(slabBytes)) { return false; }
+    final long slab;
+    try {
+      slab = unsafe.allocateMemory(slabBytes);
+    } catch (final OutOfMemoryError e) {
+      reservedBytes_.addAndGet(-slabBytes);
+      return false;
+    }
+    synchronized (slabs_) {
+      if (closed_) {
+        unsafe.freeMemory(slab);
+        throw new IllegalStateException("This MemoryPool has been closed.");
+      }
+      slabs_.add(slab);
+    }
+    final int numBlocks = (int) (slabBytes >>> lgBlockBytes);
+    final long[] blocks = new long[numBlocks];
+    for (int i = 0; i < numBlocks; i++) { blocks[i] = slab + (i * blockBytes); }
+    freeLists_[sizeClass].push(blocks, 0, numBlocks);
+    return true;
+  }
+
+  private Memory allocateUnpooled(final long capacityBytes) {
+    final long bytes = (capacityBytes + 7L) & ~7L;
+    if (!reserve(bytes)) {
+      allocationFailures_.incrementAndGet();
+      return null;
+    }
+    final long address;
+    try {
+      address = unsafe.allocateMemory(bytes);
+    } catch (final OutOfMemoryError e) {
+      reservedBytes_.addAndGet(-bytes);
+      allocationFailures_.incrementAndGet();
+      return null;
+    }
+    unpooled_.put(address, bytes);
+    addOutstanding(bytes);
+    return new PooledMemory(this, address, capacityBytes, UNPOOLED);
+  }
+
+  private boolean reserve(final long bytes) {
+    while (true) {
+      final long cur = reservedBytes_.get();
+      if ((bytes > maxPoolBytes_) || (cur > (maxPoolBytes_ - bytes))) { return false; }
+      if (reservedBytes_.compareAndSet(cur, cur + bytes)) { return true; }
+    }
+  }
+
+  private void addOutstanding(final long bytes) {
+    final long out = bytesOutstanding_.addAndGet(bytes);
+    long hwm;
+    while (out > (hwm = highWaterMark_.get())) {
+      if (highWaterMark_.compareAndSet(hwm, out)) { break; }
+    }
+  }
+
+  private void checkOpen() {
+    if (closed_) {
+      throw new IllegalStateException("This MemoryPool has been closed.");
+    }
+  }
+
+  /**
+   * The shared stack of free block addresses of one size class.
+   */
+  private static final class FreeList {
+    long[] addresses = new long[MAX_CACHE_DEPTH];
+    int count;
+
+    synchronized void push(final long address) {
+      if (count == addresses.length) {
+        final long[] arr = new long[addresses.length * 2];
+        System.arraycopy(addresses, 0, arr, 0, count);
+        addresses = arr;
+      }
+      addresses[count++] = address;
+    }
+
+    synchronized long pop() {
+      return (count == 0) ? 0L : addresses[--count];
+    }
+
+    synchronized void push(final long[] src, final int srcOff, final int len) {
+      if ((count + len) > addresses.length) {
+        final long[] arr = new long[Math.max(addresses.length * 2, count + len)];
+        System.arraycopy(addresses, 0, arr, 0, count);
+        addresses = arr;
+      }
+      System.arraycopy(src, srcOff, addresses, count, len);
+      count += len;
+    }
+
+    synchronized int pop(final long[] dst, final int maxLen) {
+      final int len = Math.min(count, maxLen);
+      count -= len;
+      System.arraycopy(addresses, count, dst, 0, len);
+      return len;
+    }
+  }
+
+  /**
+   * The per thread cache of free block addresses for all size classes. It is locked by its thread
+   * while in use, and by another thread only while reclaiming its blocks.
+   */
+  private static final class LocalCache {
+    final WeakReference<Thread> owner;
+    final long[][] blocks;
+    final int[] counts;
+
+    LocalCache(final int[] depths) {
+      owner = new WeakReference<>(Thread.currentThread());
+      blocks = new long[depths.length][];
+      for (int i = 0; i < depths.length; i++) { blocks[i] = new long[depths[i]]; }
+      counts = new int[depths.length];
+    }
+
+    boolean isOwnerAlive() {
+      final Thread thread = owner.get();
+      return (thread != null) && thread.isAlive();
+    }
+  }
+
+  /**
+   * A block of native memory handed out by a MemoryPool.
+   */
+  static final class PooledMemory extends NativeMemory {
+    final MemoryPool pool_;
+    final long blockAddress_;
+    final int sizeClass_;
+
+    PooledMemory(final MemoryPool pool, final long address, final long capacityBytes,
+        final int sizeClass) {
+      super(address, capacityBytes, 0L, null, null);
+      pool_ = pool;
+      blockAddress_ = address;
+      sizeClass_ = sizeClass;
+      memReq_ = pool;
+    }
+
+    @Override
+    public void freeMemory() {
+      if (capacityBytes_ == 0L) { return; } //already freed
+      super.freeMemory();
+      pool_.release(this);
+    }
+  }
+
+}
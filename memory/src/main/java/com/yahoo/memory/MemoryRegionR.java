@@ -178,7 +178,10 @@ class MemoryRegionR extends MemoryRegion {
 
   @Override
   public Object array() {
-    throw new ReadOnlyMemoryException();
+    if (hasArray()) {
+      throw new ReadOnlyMemoryException();
+    }
+    return null; //off-heap, there is no backing array that could leak write access
   }
 
   // asReadOnlyMemory() //OK
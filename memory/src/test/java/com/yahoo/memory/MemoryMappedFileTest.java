@@ -7,6 +7,7 @@ package com.yahoo.memory;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -195,6 +196,89 @@ public class MemoryMappedFileTest {
     }
   }
 
+  @Test
+  public void testReadOnlyMap() throws Exception {
+    File file = new File(getClass().getClassLoader().getResource("memory_mapped.txt").getFile());
+    long fileLen = file.length();
+    MemoryMappedFile rw = MemoryMappedFile.getInstance(file, 0, fileLen);
+    MappedMemory ro = MemoryMappedFile.getReadOnlyInstance(file, 0, fileLen);
+    assertTrue(ro.isReadOnly());
+    assertFalse(rw.isReadOnly());
+    assertEquals(ro.getCapacity(), fileLen);
+    for (long i = 0; i < fileLen; i += 8) {
+      assertEquals(ro.getByte(i), rw.getByte(i));
+    }
+    ro.load();
+    assertTrue(ro.isLoaded());
+    ro.force(); //no-op
+    assertEquals(file.length(), fileLen);
+    rw.freeMemory();
+    ro.freeMemory();
+    assertEquals(ro.getCapacity(), 0L);
+  }
+
+  @Test
+  public void testReadOnlyMapAtOffset() throws Exception {
+    File file = new File(getClass().getClassLoader().getResource("memory_mapped.txt").getFile());
+    MemoryMappedFile rw = MemoryMappedFile.getInstance(file, 0, file.length());
+    MappedMemory ro = MemoryMappedFile.getReadOnlyInstance(file, 1001, 2000);
+    for (int i = 0; i < 2000; i++) {
+      assertEquals(ro.getByte(i), rw.getByte(1001 + i));
+    }
+    ro.load();
+    rw.freeMemory();
+    ro.freeMemory();
+  }
+
+  @Test
+  public void testReadOnlyPutsThrow() throws Exception {
+    File file = createFile("read_only.txt", "Read only content");
+    long fileLen = file.length();
+    MappedMemory ro = MemoryMappedFile.getReadOnlyInstance(file, 0, fileLen);
+    try {
+      ro.putByte(0, (byte) 1);
+      fail();
+    } catch (ReadOnlyMemoryException e) { /* expected */ }
+    try {
+      ro.putLongArray(0, new long[1], 0, 1);
+      fail();
+    } catch (ReadOnlyMemoryException e) { /* expected */ }
+    try {
+      ro.fill((byte) 0);
+      fail();
+    } catch (ReadOnlyMemoryException e) { /* expected */ }
+    try {
+      ro.compareAndSwapLong(0, 0, 1);
+      fail();
+    } catch (ReadOnlyMemoryException e) { /* expected */ }
+    try {
+      NativeMemory.copy(new NativeMemory(new byte[8]), 0, ro, 0, 8);
+      fail();
+    } catch (ReadOnlyMemoryException e) { /* expected */ }
+    assertTrue(ro.asReadOnlyMemory().isReadOnly());
+    ro.freeMemory();
+    assertEquals(file.length(), fileLen);
+  }
+
+  @Test
+  public void testReadOnlyBeyondFileLength() throws Exception {
+    File file = createFile("read_only_short.txt", "Short");
+    long fileLen = file.length();
+    try {
+      MemoryMappedFile.getReadOnlyInstance(file, 0, fileLen + 1);
+      fail();
+    } catch (IllegalArgumentException e) { /* expected */ }
+    try {
+      MemoryMappedFile.getReadOnlyInstance(file, 1, fileLen);
+      fail();
+    } catch (IllegalArgumentException e) { /* expected */ }
+    try {
+      MemoryMappedFile.getReadOnlyInstance(file, -1, fileLen);
+      fail();
+    } catch (IllegalArgumentException e) { /* expected */ }
+    assertEquals(file.length(), fileLen);
+  }
+
   private static File createFile(String fileName, String text) throws FileNotFoundException {
     File file = new File(fileName);
     file.deleteOnExit();
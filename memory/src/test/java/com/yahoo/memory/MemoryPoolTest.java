@@ -0,0 +1,314 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.memory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+public class MemoryPoolTest {
+
+  @Test
+  public void checkRequestAndReuse() {
+    MemoryPool pool = new MemoryPool();
+    Memory mem1 = pool.request(1000);
+    assertEquals(mem1.getCapacity(), 1000);
+    assertTrue(mem1.isDirect());
+    assertTrue(mem1.getMemoryRequest() == pool);
+    assertEquals(pool.getBytesOutstanding(), 1024);
+    assertEquals(pool.getReservedBytes(), 1 << MemoryPool.DEFAULT_LG_SLAB_BYTES);
+    long add1 = mem1.getCumulativeOffset(0);
+    assertEquals(add1 & 7L, 0L);
+    mem1.putLong(992, 42L);
+    mem1.freeMemory();
+    assertEquals(mem1.getCapacity(), 0);
+    assertEquals(pool.getBytesOutstanding(), 0);
+    mem1.freeMemory(); //no effect
+
+    Memory mem2 = pool.request(600); //same size class
+    assertEquals(mem2.getCumulativeOffset(0), add1); //recycled
+    assertEquals(pool.getHighWaterMark(), 1024);
+    pool.free(mem2);
+    assertEquals(pool.getBytesOutstanding(), 0);
+    assertEquals(pool.getReservedBytes(), 1 << MemoryPool.DEFAULT_LG_SLAB_BYTES);
+    pool.close();
+    pool.close();
+    assertEquals(pool.getReservedBytes(), 0);
+  }
+
+  @Test
+  public void checkSizeClasses() {
+    assertEquals(MemoryPool.lgBlockBytes(1), MemoryPool.MIN_LG_BLOCK_BYTES);
+    assertEquals(MemoryPool.lgBlockBytes(64), 6);
+    assertEquals(MemoryPool.lgBlockBytes(65), 7);
+    assertEquals(MemoryPool.lgBlockBytes(1 << 20), 20);
+    assertEquals(MemoryPool.lgBlockBytes((1 << 20) + 1), 21);
+  }
+
+  @Test
+  public void checkManyBlocksAndHighWaterMark() {
+    MemoryPool pool = new MemoryPool(Long.MAX_VALUE, 20, 12);
+    int n = 1000;
+    Memory[] mems = new Memory[n];
+    for (int i = 0; i < n; i++) {
+      mems[i] = pool.request(256);
+      mems[i].putLong(0, i);
+      mems[i].putLong(248, -i);
+    }
+    for (int i = 0; i < n; i++) {
+      assertEquals(mems[i].getLong(0), i);
+      assertEquals(mems[i].getLong(248), -i);
+    }
+    assertEquals(pool.getBytesOutstanding(), n * 256L);
+    for (int i = 0; i < n; i++) { mems[i].freeMemory(); }
+    assertEquals(pool.getBytesOutstanding(), 0);
+    assertEquals(pool.getHighWaterMark(), n * 256L);
+    long reserved = pool.getReservedBytes();
+    for (int i = 0; i < n; i++) { mems[i] = pool.request(200); }
+    assertEquals(pool.getReservedBytes(), reserved); //all recycled
+    for (int i = 0; i < n; i++) { pool.free(mems[i], null); }
+    pool.close();
+  }
+
+  @Test
+  public void checkUnpooled() {
+    MemoryPool pool = new MemoryPool(Long.MAX_VALUE, 10, 12);
+    Memory mem = pool.request(5000);
+    assertEquals(mem.getCapacity(), 5000);
+    assertEquals(pool.getBytesOutstanding(), 5000);
+    assertEquals(pool.getReservedBytes(), 5000);
+    mem.putLong(4992, 1L);
+    mem.freeMemory();
+    assertEquals(pool.getBytesOutstanding(), 0);
+    assertEquals(pool.getReservedBytes(), 0);
+    assertEquals(pool.getHighWaterMark(), 5000);
+    pool.close();
+  }
+
+  @Test
+  public void checkAllocationFailures() {
+    MemoryPool pool = new MemoryPool(3 << 10, 11, 11);
+    Memory m1 = pool.request(1024);
+    Memory m2 = pool.request(1024);
+    assertNotNull(m1);
+    assertNotNull(m2);
+    assertNull(pool.request(1 << 11)); //needs a new slab
+    assertNull(pool.request(1 << 13)); //unpooled, over the limit
+    assertEquals(pool.getAllocationFailures(), 2);
+    assertTrue(pool.toString().contains("allocation failures: 2"));
+    try {
+      MemoryUtil.memoryRequestHandler(m1, 1 << 13, true);
+      fail();
+    } catch (IllegalArgumentException e) {
+      //expected, refused
+    }
+    pool.close();
+  }
+
+  @Test
+  public void checkCopyRequestAndHandler() {
+    MemoryPool pool = new MemoryPool();
+    Memory mem = pool.request(64);
+    for (int i = 0; i < 8; i++) { mem.putLong(i << 3, i); }
+    Memory mem2 = MemoryUtil.memoryRequestHandler(mem, 1000, true);
+    assertEquals(mem.getCapacity(), 0); //freed back to the pool
+    assertTrue(mem2.getCapacity() >= 1000);
+    for (int i = 0; i < 8; i++) { assertEquals(mem2.getLong(i << 3), i); }
+    Memory mem3 = pool.request(mem2, 16, 128);
+    assertEquals(mem3.getLong(8), 1L);
+    assertEquals(pool.getBytesOutstanding(), 1024 + 128);
+    pool.free(mem2);
+    pool.free(mem3);
+    assertEquals(pool.getBytesOutstanding(), 0);
+    pool.close();
+  }
+
+  @Test
+  public void checkForeignMemoryIgnored() {
+    MemoryPool pool = new MemoryPool();
+    MemoryPool other = new MemoryPool();
+    NativeMemory heap = new NativeMemory(new byte[64]);
+    pool.free(heap);
+    assertEquals(heap.getCapacity(), 64);
+    Memory otherMem = other.request(64);
+    pool.free(otherMem, null);
+    assertEquals(otherMem.getCapacity(), 64);
+    other.close();
+    pool.close();
+  }
+
+  @Test
+  public void checkMultipleThreads() throws Exception {
+    final MemoryPool pool = new MemoryPool();
+    final AtomicReference<Throwable> err = new AtomicReference<>();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int id = t;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Memory[] mems = new Memory[64];
+            for (int iter = 0; iter < 200; iter++) {
+              for (int i = 0; i < mems.length; i++) {
+                mems[i] = pool.request(64 << (i & 7));
+                mems[i].putInt(0, id);
+              }
+              for (int i = 0; i < mems.length; i++) {
+                assertEquals(mems[i].getInt(0), id);
+                mems[i].freeMemory();
+              }
+            }
+          } catch (Throwable e) {
+            err.set(e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) { thread.join(); }
+    if (err.get() != null) { throw new AssertionError(err.get()); }
+    assertEquals(pool.getBytesOutstanding(), 0);
+    assertTrue(pool.getHighWaterMark() > 0);
+    pool.close();
+  }
+
+  @Test
+  public void checkCacheDepths() {
+    assertEquals(MemoryPool.cacheDepth(6), MemoryPool.MAX_CACHE_DEPTH);
+    assertEquals(MemoryPool.cacheDepth(14), MemoryPool.MAX_CACHE_DEPTH);
+    assertEquals(MemoryPool.cacheDepth(15), 8);
+    assertEquals(MemoryPool.cacheDepth(16), 4);
+    assertEquals(MemoryPool.cacheDepth(17), 0); //large blocks are not cached
+    assertEquals(MemoryPool.cacheDepth(26), 0);
+  }
+
+  @Test
+  public void checkLargeBlocksShared() throws Exception {
+    final MemoryPool pool = new MemoryPool(1L << 21, 20, 20); //two 1MB blocks
+    final Memory[] mems = new Memory[2];
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        mems[0] = pool.request(1 << 20);
+        mems[1] = pool.request(1 << 20);
+        mems[0].freeMemory();
+        mems[1].freeMemory();
+      }
+    });
+    thread.start();
+    thread.join();
+    assertNotNull(mems[1]);
+    assertNotNull(pool.request(1 << 20)); //from the shared free list
+    assertNotNull(pool.request(1 << 20));
+    assertNull(pool.request(1 << 20));
+    pool.close();
+  }
+
+  @Test
+  public void checkReclaimFromLiveThreadCache() throws Exception {
+    final MemoryPool pool = new MemoryPool(1L << 12, 12, 12); //four 1KB blocks
+    final CountDownLatch cached = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(1);
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Memory[] mems = new Memory[4];
+        for (int i = 0; i < mems.length; i++) { mems[i] = pool.request(1024); }
+        for (int i = 0; i < mems.length; i++) { mems[i].freeMemory(); } //all in this cache
+        cached.countDown();
+        try {
+          done.await();
+        } catch (InterruptedException e) {
+          //exit
+        }
+      }
+    });
+    thread.start();
+    cached.await();
+    for (int i = 0; i < 4; i++) { assertNotNull(pool.request(1024)); }
+    assertNull(pool.request(1024));
+    assertEquals(pool.getAllocationFailures(), 1);
+    done.countDown();
+    thread.join();
+    pool.close();
+  }
+
+  @Test
+  public void checkReclaimFromDeadThreadCache() throws Exception {
+    final MemoryPool pool = new MemoryPool(1L << 12, 12, 12); //four 1KB blocks
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        Memory[] mems = new Memory[4];
+        for (int i = 0; i < mems.length; i++) { mems[i] = pool.request(1024); }
+        for (int i = 0; i < mems.length; i++) { mems[i].freeMemory(); }
+      }
+    });
+    thread.start();
+    thread.join();
+    for (int i = 0; i < 4; i++) { assertNotNull(pool.request(1024)); }
+    assertEquals(pool.getReservedBytes(), 1L << 12);
+    assertEquals(pool.getAllocationFailures(), 0);
+    pool.close();
+  }
+
+  @Test
+  public void checkBadArgs() {
+    try {
+      new MemoryPool(0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    try {
+      new MemoryPool(1L << 20, 5, 20);
+      fail();
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    try {
+      new MemoryPool(1L << 20, 20, 63);
+      fail();
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    MemoryPool pool = new MemoryPool();
+    try {
+      pool.request(0);
+      fail();
+    } catch (IllegalArgumentException e) {
+      //expected
+    }
+    pool.close();
+    try {
+      pool.request(8);
+      fail();
+    } catch (IllegalStateException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -5,6 +5,7 @@
 
 package com.yahoo.memory;
 
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -291,4 +292,13 @@ public class MemoryRegionRTest {
     assertTrue(ro.isReadOnly());
   }
 
+  @Test
+  public void checkOffHeapArrayIsNull() {
+    NativeMemory mem = new AllocMemory(64);
+    MemoryRegion reg = new MemoryRegion(mem, 8, 32);
+    Memory ro = reg.asReadOnlyMemory();
+    assertNull(ro.array()); //nothing to leak, allows direct wrapping of read-only images
+    mem.freeMemory();
+  }
+
 }
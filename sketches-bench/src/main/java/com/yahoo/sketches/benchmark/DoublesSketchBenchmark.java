@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.AllocMemory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.quantiles.DoublesSketch;
+import com.yahoo.sketches.quantiles.DoublesSketchBuilder;
+
+/**
+ * Quantiles DoublesSketch update and getQuantiles, on the java heap and direct in off-heap memory.
+ *
+ * <pre>
+ * java -jar sketches-bench/target/benchmarks.jar DoublesSketchBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class DoublesSketchBenchmark {
+  private static final int NUM_VALUES = 1 << 16; //power of 2
+  private static final long MAX_DIRECT_N = 1L << 40; //sizes the direct memory, never reached
+
+  @Param({"128"})
+  int k;
+
+  @Param({"1000000"})
+  int n;
+
+  @Param({"heap", "direct"})
+  String memory;
+
+  private final List<NativeMemory> allocated = new ArrayList<>();
+  private DoublesSketch updateSketch;
+  private DoublesSketch querySketch;
+  private double[] values;
+  private double[] fractions;
+  private int index;
+
+  @Setup
+  public void setup() {
+    final Random rand = new Random(1);
+    values = new double[NUM_VALUES];
+    for (int i = 0; i < NUM_VALUES; i++) { values[i] = rand.nextGaussian(); }
+    fractions = new double[] {0.01, 0.05, 0.25, 0.5, 0.75, 0.95, 0.99};
+
+    updateSketch = newSketch();
+    querySketch = newSketch();
+    for (int i = 0; i < n; i++) { querySketch.update(values[i & (NUM_VALUES - 1)]); }
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (final NativeMemory mem : allocated) { mem.freeMemory(); }
+    allocated.clear();
+  }
+
+  @Benchmark
+  public DoublesSketch update() {
+    updateSketch.update(values[index++ & (NUM_VALUES - 1)]);
+    return updateSketch;
+  }
+
+  @Benchmark
+  public double[] getQuantiles() {
+    return querySketch.getQuantiles(fractions);
+  }
+
+  private DoublesSketch newSketch() {
+    final DoublesSketchBuilder bldr = DoublesSketch.builder().setK(k);
+    if (memory.equals("direct")) {
+      final NativeMemory mem =
+          new AllocMemory(DoublesSketch.getUpdatableStorageBytes(k, MAX_DIRECT_N, true));
+      allocated.add(mem);
+      bldr.initMemory(mem);
+    }
+    return bldr.build();
+  }
+
+}
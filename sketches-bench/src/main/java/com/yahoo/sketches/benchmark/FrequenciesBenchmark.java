@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.AllocMemory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.frequencies.LongsSketch;
+
+/**
+ * Frequencies LongsSketch update and merge. The LongsSketch only exists on the java heap, thus the
+ * direct variant of merge reads the other sketch from its serialized image in off-heap memory.
+ *
+ * <pre>
+ * java -jar sketches-bench/target/benchmarks.jar FrequenciesBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class FrequenciesBenchmark {
+  private static final int NUM_ITEMS = 1 << 16; //power of 2
+
+  @Param({"1024"})
+  int maxMapSize;
+
+  @Param({"heap", "direct"})
+  String memory;
+
+  private LongsSketch updateSketch;
+  private LongsSketch mergeTarget;
+  private LongsSketch other;
+  private NativeMemory otherMem;
+  private long[] items;
+  private int index;
+
+  @Setup
+  public void setup() {
+    final Random rand = new Random(1);
+    items = new long[NUM_ITEMS];
+    for (int i = 0; i < NUM_ITEMS; i++) {
+      items[i] = (long) Math.abs(rand.nextGaussian() * 10000); //skewed
+    }
+    updateSketch = new LongsSketch(maxMapSize);
+    mergeTarget = new LongsSketch(maxMapSize);
+    other = new LongsSketch(maxMapSize);
+    for (int i = 0; i < NUM_ITEMS; i++) {
+      mergeTarget.update(items[i]);
+      other.update(items[NUM_ITEMS - 1 - i]);
+    }
+    if (memory.equals("direct")) {
+      final byte[] bytes = other.toByteArray();
+      otherMem = new AllocMemory(bytes.length);
+      otherMem.putByteArray(0, bytes, 0, bytes.length);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (otherMem != null) {
+      otherMem.freeMemory();
+      otherMem = null;
+    }
+  }
+
+  @Benchmark
+  public LongsSketch update() {
+    updateSketch.update(items[index++ & (NUM_ITEMS - 1)]);
+    return updateSketch;
+  }
+
+  @Benchmark
+  public LongsSketch merge() {
+    return mergeTarget.merge((otherMem == null) ? other : LongsSketch.getInstance(otherMem));
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.sketches.hll.HllSketch;
+import com.yahoo.sketches.hll.HllSketchBuilder;
+import com.yahoo.sketches.hll.UniqueCountMap;
+
+/**
+ * HLL sketch update in each of its field representations and UniqueCountMap update.
+ * The HLL sketches of this version only exist on the java heap, thus there is no direct variant.
+ *
+ * <pre>
+ * java -jar sketches-bench/target/benchmarks.jar HllBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class HllBenchmark {
+  private static final int NUM_IDS = 1 << 16; //power of 2
+  private static final int NUM_KEYS = 1 << 10; //power of 2
+
+  @Param({"12"})
+  int logBuckets;
+
+  @Param({"sparse", "dense", "compressed"})
+  String fields;
+
+  private HllSketch sketch;
+  private UniqueCountMap map;
+  private byte[][] keys;
+  private byte[][] ids;
+  private long item;
+  private int index;
+
+  @Setup
+  public void setup() {
+    final HllSketchBuilder bldr = HllSketch.builder().setLogBuckets(logBuckets);
+    if (fields.equals("dense")) {
+      bldr.setDenseMode(true);
+    } else if (fields.equals("compressed")) {
+      bldr.setDenseMode(true).setCompressedDense(true);
+    }
+    sketch = bldr.build();
+
+    final Random rand = new Random(1);
+    keys = new byte[NUM_KEYS][];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      keys[i] = new byte[] {(byte) i, (byte) (i >> 8), 0, 0};
+    }
+    ids = new byte[NUM_IDS][];
+    for (int i = 0; i < NUM_IDS; i++) {
+      ids[i] = new byte[8];
+      rand.nextBytes(ids[i]);
+    }
+    map = new UniqueCountMap(keys[0].length);
+  }
+
+  @Benchmark
+  public HllSketch hllUpdate() {
+    sketch.update(item++);
+    return sketch;
+  }
+
+  @Benchmark
+  public double uniqueCountMapUpdate() {
+    final int i = index++;
+    return map.update(keys[i & (NUM_KEYS - 1)], ids[(i >>> 3) & (NUM_IDS - 1)]);
+  }
+
+}
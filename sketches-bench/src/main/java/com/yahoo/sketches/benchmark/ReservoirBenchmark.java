@@ -0,0 +1,111 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.AllocMemory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.sampling.ReservoirItemsSketch;
+import com.yahoo.sketches.sampling.ReservoirLongsSketch;
+import com.yahoo.sketches.sampling.ReservoirLongsUnion;
+
+/**
+ * Reservoir sampling updates of the longs and items sketches, and the union of reservoirs.
+ * The reservoir sketches only exist on the java heap, thus the direct variant of the union reads
+ * the incoming sketch from its serialized image in off-heap memory.
+ *
+ * <pre>
+ * java -jar sketches-bench/target/benchmarks.jar ReservoirBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ReservoirBenchmark {
+  private static final int NUM_ITEMS = 1 << 16; //power of 2
+
+  @Param({"1024"})
+  int k;
+
+  @Param({"heap", "direct"})
+  String memory;
+
+  private ReservoirLongsSketch longsSketch;
+  private ReservoirItemsSketch<Long> itemsSketch;
+  private ReservoirLongsUnion union;
+  private ReservoirLongsSketch other;
+  private NativeMemory otherMem;
+  private Long[] boxedItems;
+  private long item;
+
+  @Setup
+  public void setup() {
+    longsSketch = ReservoirLongsSketch.getInstance(k);
+    itemsSketch = ReservoirItemsSketch.getInstance(k);
+    boxedItems = new Long[NUM_ITEMS];
+    for (int i = 0; i < NUM_ITEMS; i++) { boxedItems[i] = (long) i; }
+
+    union = ReservoirLongsUnion.getInstance(k);
+    other = ReservoirLongsSketch.getInstance(k);
+    for (int i = 0; i < (16 * k); i++) {
+      union.update(i);
+      other.update(-i);
+    }
+    if (memory.equals("direct")) {
+      final byte[] bytes = other.toByteArray();
+      otherMem = new AllocMemory(bytes.length);
+      otherMem.putByteArray(0, bytes, 0, bytes.length);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (otherMem != null) {
+      otherMem.freeMemory();
+      otherMem = null;
+    }
+  }
+
+  @Benchmark
+  public ReservoirLongsSketch longsUpdate() {
+    longsSketch.update(item++);
+    return longsSketch;
+  }
+
+  @Benchmark
+  public ReservoirItemsSketch<Long> itemsUpdate() {
+    itemsSketch.update(boxedItems[(int) (item++ & (NUM_ITEMS - 1))]);
+    return itemsSketch;
+  }
+
+  @Benchmark
+  public ReservoirLongsUnion unionUpdate() {
+    if (otherMem == null) {
+      union.update(other);
+    } else {
+      union.update(otherMem);
+    }
+    return union;
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.memory.AllocMemory;
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.theta.CompactSketch;
+import com.yahoo.sketches.theta.Intersection;
+import com.yahoo.sketches.theta.SetOperation;
+import com.yahoo.sketches.theta.SetOperationBuilder;
+import com.yahoo.sketches.theta.Sketch;
+import com.yahoo.sketches.theta.Union;
+import com.yahoo.sketches.theta.UpdateReturnState;
+import com.yahoo.sketches.theta.UpdateSketch;
+import com.yahoo.sketches.theta.UpdateSketchBuilder;
+
+/**
+ * Theta sketch hot paths: update, union, intersection and compact, each on the java heap and
+ * direct in off-heap memory.
+ *
+ * <pre>
+ * java -jar sketches-bench/target/benchmarks.jar ThetaBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class ThetaBenchmark {
+
+  @Param({"12", "16"})
+  int lgK;
+
+  @Param({"heap", "direct"})
+  String memory;
+
+  private final List<NativeMemory> allocated = new ArrayList<>();
+  private UpdateSketch updateSketch;
+  private UpdateSketch sketchA;
+  private CompactSketch compactA;
+  private CompactSketch compactB;
+  private Union union;
+  private Intersection intersection;
+  private Memory compactDst;
+  private long key;
+
+  @Setup
+  public void setup() {
+    final int k = 1 << lgK;
+    final boolean direct = memory.equals("direct");
+    updateSketch = newUpdateSketch(k, direct);
+    sketchA = newUpdateSketch(k, direct);
+    final UpdateSketch sketchB = newUpdateSketch(k, direct);
+    final int n = 16 * k;
+    for (int i = 0; i < n; i++) {
+      sketchA.update(i);
+      sketchB.update(i + (n / 2)); //half overlap
+    }
+    final int compactBytes = Sketch.getMaxCompactSketchBytes(2 * k);
+    compactA = sketchA.compact(true, direct ? allocate(compactBytes) : null);
+    compactB = sketchB.compact(true, direct ? allocate(compactBytes) : null);
+    compactDst = direct ? allocate(compactBytes) : null;
+
+    final SetOperationBuilder bldr = SetOperation.builder();
+    if (direct) {
+      union = bldr.initMemory(allocate(SetOperation.getMaxUnionBytes(k))).buildUnion(k);
+      intersection = SetOperation.builder()
+          .initMemory(allocate(SetOperation.getMaxIntersectionBytes(k))).buildIntersection();
+    } else {
+      union = bldr.buildUnion(k);
+      intersection = bldr.buildIntersection();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (final NativeMemory mem : allocated) { mem.freeMemory(); }
+    allocated.clear();
+  }
+
+  @Benchmark
+  public UpdateReturnState update() {
+    return updateSketch.update(key++);
+  }
+
+  @Benchmark
+  public CompactSketch unionOfTwo() {
+    union.reset();
+    union.update(compactA);
+    union.update(compactB);
+    return union.getResult(true, compactDst);
+  }
+
+  @Benchmark
+  public CompactSketch intersectionOfTwo() {
+    intersection.reset();
+    intersection.update(compactA);
+    intersection.update(compactB);
+    return intersection.getResult(true, compactDst);
+  }
+
+  @Benchmark
+  public CompactSketch compactOrdered() {
+    return sketchA.compact(true, compactDst);
+  }
+
+  private UpdateSketch newUpdateSketch(final int k, final boolean direct) {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k);
+    if (direct) {
+      bldr.initMemory(allocate(Sketch.getMaxUpdateSketchBytes(k)));
+    }
+    return bldr.build();
+  }
+
+  private Memory allocate(final int bytes) {
+    final NativeMemory mem = new AllocMemory(bytes);
+    allocated.add(mem);
+    return mem;
+  }
+
+}
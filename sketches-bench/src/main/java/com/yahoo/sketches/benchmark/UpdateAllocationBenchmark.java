@@ -0,0 +1,156 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.yahoo.sketches.hll.HllSketch;
+import com.yahoo.sketches.theta.UpdateReturnState;
+import com.yahoo.sketches.theta.UpdateSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketchBuilder;
+
+/**
+ * Measures the cost and the allocation of a single update of the theta, tuple and HLL sketches for
+ * each of the primitive input types. Run with the GC profiler, the <i>gc.alloc.rate.norm</i>
+ * metric must be zero bytes per operation for every benchmark of this class, apart from the
+ * vanishing amortized cost of the occasional hash table rebuild:
+ *
+ * <pre>
+ * java -jar sketches-bench/target/benchmarks.jar UpdateAllocationBenchmark -prof gc
+ * </pre>
+ *
+ * <p>All sketches are warmed up into estimation mode during setup so that the measurement only
+ * covers the steady state, where no resizing or rebuilding of the hash tables occurs.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+public class UpdateAllocationBenchmark {
+  private static final int NUM_STRINGS = 1 << 16; //power of 2
+
+  @Param({"4096"})
+  int nomEntries;
+
+  private UpdateSketch thetaSketch;
+  private ArrayOfDoublesUpdatableSketch tupleSketch;
+  private HllSketch hllSketch;
+  private double[] tupleValues;
+  private String[] strings;
+  private long key;
+
+  @Setup
+  public void setup() {
+    thetaSketch = UpdateSketch.builder().build(nomEntries);
+    tupleSketch = new ArrayOfDoublesUpdatableSketchBuilder().setNominalEntries(nomEntries).build();
+    hllSketch = HllSketch.builder().setLogBuckets(12).setDenseMode(true).build();
+    tupleValues = new double[] {1.0};
+    strings = new String[NUM_STRINGS];
+    for (int i = 0; i < NUM_STRINGS; i++) {
+      strings[i] = "item-\u00e9-" + Integer.toHexString(i);
+    }
+    final int warmupItems = 64 * nomEntries;
+    for (key = 0; key < warmupItems; key++) {
+      thetaSketch.update(key);
+      tupleSketch.update(key, tupleValues);
+      hllSketch.update(key);
+    }
+  }
+
+  private String nextString() {
+    return strings[(int) (key++ & (NUM_STRINGS - 1))];
+  }
+
+  //Theta
+
+  @Benchmark
+  public UpdateReturnState thetaUpdateLong() {
+    return thetaSketch.update(key++);
+  }
+
+  @Benchmark
+  public UpdateReturnState thetaUpdateDouble() {
+    return thetaSketch.update((double) key++);
+  }
+
+  @Benchmark
+  public UpdateReturnState thetaUpdateString() {
+    return thetaSketch.update(nextString());
+  }
+
+  //Tuple
+
+  @Benchmark
+  public ArrayOfDoublesUpdatableSketch tupleUpdateLong() {
+    tupleSketch.update(key++, tupleValues);
+    return tupleSketch;
+  }
+
+  @Benchmark
+  public ArrayOfDoublesUpdatableSketch tupleUpdateDouble() {
+    tupleSketch.update((double) key++, tupleValues);
+    return tupleSketch;
+  }
+
+  @Benchmark
+  public ArrayOfDoublesUpdatableSketch tupleUpdateString() {
+    tupleSketch.update(nextString(), tupleValues);
+    return tupleSketch;
+  }
+
+  //HLL
+
+  @Benchmark
+  public HllSketch hllUpdateLong() {
+    hllSketch.update(key++);
+    return hllSketch;
+  }
+
+  @Benchmark
+  public HllSketch hllUpdateDouble() {
+    hllSketch.update((double) key++);
+    return hllSketch;
+  }
+
+  @Benchmark
+  public HllSketch hllUpdateString() {
+    hllSketch.update(nextString());
+    return hllSketch;
+  }
+
+  /**
+   * Runs this benchmark with the GC profiler from the IDE.
+   * @param args not used
+   * @throws RunnerException if the benchmark fails
+   */
+  public static void main(final String[] args) throws RunnerException {
+    final Options opt = new OptionsBuilder()
+        .include(UpdateAllocationBenchmark.class.getSimpleName())
+        .addProfiler("gc")
+        .build();
+    new Runner(opt).run();
+  }
+
+}
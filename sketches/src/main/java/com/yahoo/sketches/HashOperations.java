@@ -64,6 +64,29 @@ public final class HashOperations {
     return cnt;
   }
 
+  /**
+   * Counts the cardinality of the hash table of size <i>2<sup>lgArrLongs</sup></i> in the given
+   * Memory, which is read in place.
+   * @param mem the source Memory
+   * @param lgArrLongs <a href="{@docRoot}/resources/dictionary.html#lgArrLongs">See lgArrLongs</a>
+   * @param thetaLong <a href="{@docRoot}/resources/dictionary.html#thetaLong">See Theta Long</a>
+   * @param memOffsetBytes offset in the memory where the hash array starts
+   * @return the cardinality
+   */
+  public static int count(final Memory mem, final int lgArrLongs, final long thetaLong,
+      final int memOffsetBytes) {
+    int cnt = 0;
+    final int len = 1 << lgArrLongs;
+    for (int i = len; i-- > 0;) {
+      final long hash = mem.getLong(memOffsetBytes + (i << 3));
+      if (continueCondition(thetaLong, hash) ) {
+        continue;
+      }
+      cnt++ ;
+    }
+    return cnt;
+  }
+
   // make odd and independent of index assuming lgArrLongs lowest bits of the hash were used for
   //  index
   private static int getStride(final long hash, final int lgArrLongs) {
@@ -274,6 +297,39 @@ public final class HashOperations {
     return ~curProbe;
   }
 
+  /**
+   * This is the Knuth-style Open Addressing, Double Hash insert scheme of
+   * {@link #hashSearchOrInsert(Memory, int, long, int)}, except that an empty slot is claimed with
+   * a compare-and-swap. Thus any number of threads or processes sharing the Memory may insert
+   * concurrently without losing or duplicating hash values. Slots are never cleared concurrently.
+   * Returns index &ge; 0 if found (duplicate); &lt; 0 if inserted, inserted at -(index + 1).
+   *
+   * @param mem The Memory hash table to insert into.
+   * @param lgArrLongs <a href="{@docRoot}/resources/dictionary.html#lgArrLongs">See lgArrLongs</a>.
+   * lgArrLongs &le; log2(hashTable.length).
+   * @param hash A hash value that must not be zero and if not a duplicate will be inserted into the
+   * array into an empty slot.
+   * @param memOffsetBytes offset in the memory where the hash array starts
+   * @return index &ge; 0 if found (duplicate); &lt; 0 if inserted, inserted at -(index + 1).
+   * The caller must guarantee that at least one slot remains empty, otherwise this will not return.
+   */
+  public static int hashSearchOrInsertAtomic(final Memory mem, final int lgArrLongs,
+      final long hash, final int memOffsetBytes) {
+    final int arrayMask = (1 << lgArrLongs) - 1; // current Size -1
+    final int stride = getStride(hash, lgArrLongs);
+    int curProbe = (int) (hash & arrayMask);
+    while (true) {
+      final int curProbeOffsetBytes = (curProbe << 3) + memOffsetBytes;
+      final long curArrayHash = mem.getLong(curProbeOffsetBytes);
+      if (curArrayHash == hash) { return curProbe; } // curArrayHash is a duplicate
+      if (curArrayHash == 0) {
+        if (mem.compareAndSwapLong(curProbeOffsetBytes, 0L, hash)) { return ~curProbe; }
+        continue; // lost the race for this slot, examine the winner
+      }
+      curProbe = (curProbe + stride) & arrayMask;
+    }
+  }
+
   //FAST OFF-HEAP
 
   /**
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hash;
+
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * The hash function that an updatable sketch applies to its input items. The default is
+ * {@link #MURMUR3}, which produces exactly the same hash values as the sketches always have.
+ * An alternate function can be given to the builders of the theta and tuple sketches, for example
+ * {@link #LONG_MIX} if the items are longs that are already well-distributed hashes, or a subclass
+ * that wraps a different fast hash.
+ *
+ * <p>Sketches built with different hash functions must never be combined, because the same item
+ * would be represented by different hash values. To prevent this, each hash function has its own
+ * <i>identity seed</i>, see {@link #getIdentitySeed(long)}. A sketch built with a hash function
+ * uses the identity seed in place of the configured seed, thus the seed hash recorded in the
+ * preamble identifies both the seed and the hash function. Set operations, heapify and wrap
+ * reject a sketch with a different seed hash. Serialized sketches that were built with an alternate
+ * hash function must be heapified or wrapped with the identity seed.</p>
+ *
+ * <p>For {@link #MURMUR3} the identity seed is the seed itself, so existing serialized sketches
+ * remain compatible. Only the long input is abstract; by default the other input types are hashed
+ * with MurmurHash3.</p>
+ */
+public abstract class HashFunction {
+
+  /**
+   * The MurmurHash3 of this library. This is the default hash function of all sketches.
+   */
+  public static final HashFunction MURMUR3 = new MurmurHash3Function();
+
+  /**
+   * A hash function for long items that are already well-distributed hashes, for example
+   * the output of an upstream hash function. A long is only mixed with the seed by the
+   * finalization step of MurmurHash3, which is a bijection and much cheaper than the full hash.
+   * The other input types are hashed with MurmurHash3.
+   */
+  public static final HashFunction LONG_MIX = new LongMixFunction();
+
+  private final String name_;
+
+  /**
+   * Constructs a hash function with the given name, from which the identity seed is derived.
+   * Distinct hash functions must have distinct names.
+   * @param name the name of the hash function
+   */
+  protected HashFunction(final String name) {
+    if ((name == null) || name.isEmpty()) {
+      throw new SketchesArgumentException("The name must not be null or empty.");
+    }
+    name_ = name;
+  }
+
+  /**
+   * Returns the name of this hash function
+   * @return the name of this hash function
+   */
+  public String getName() {
+    return name_;
+  }
+
+  /**
+   * Returns the seed that a sketch built with this hash function and the given seed uses as its
+   * own seed, from which the seed hash in the preamble is computed. Unless overridden, this is
+   * derived from the given seed and the name of this hash function.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>
+   * @return the identity seed of this hash function for the given seed
+   */
+  public long getIdentitySeed(final long seed) {
+    return MurmurHash3.hash64(name_, seed);
+  }
+
+  /**
+   * Returns the 64-bit hash of the given long.
+   * @param datum the given long
+   * @param seed the seed of the sketch
+   * @return the 64-bit hash
+   */
+  public abstract long hash64(long datum, long seed);
+
+  /**
+   * Returns the 64-bit hash of the given double. By default the double is canonicalized as in
+   * {@link MurmurHash3#hash64(double, long)} and hashed as a long.
+   * @param datum the given double
+   * @param seed the seed of the sketch
+   * @return the 64-bit hash
+   */
+  public long hash64(final double datum, final long seed) {
+    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
+    return hash64(Double.doubleToLongBits(d), seed); // canonicalize all NaN forms
+  }
+
+  /**
+   * Returns the 64-bit hash of the UTF-8 encoding of the given CharSequence.
+   * @param datum the given CharSequence, which must be non-null and non-empty
+   * @param seed the seed of the sketch
+   * @return the 64-bit hash
+   */
+  public long hash64(final CharSequence datum, final long seed) {
+    return MurmurHash3.hash64(datum, seed);
+  }
+
+  /**
+   * Returns the 64-bit hash of the given byte array.
+   * @param data the given byte array, which must be non-null and non-empty
+   * @param seed the seed of the sketch
+   * @return the 64-bit hash
+   */
+  public long hash64(final byte[] data, final long seed) {
+    return MurmurHash3.hash(data, seed)[0];
+  }
+
+  /**
+   * Returns the 64-bit hash of the given char array.
+   * @param data the given char array, which must be non-null and non-empty
+   * @param seed the seed of the sketch
+   * @return the 64-bit hash
+   */
+  public long hash64(final char[] data, final long seed) {
+    return MurmurHash3.hash(data, seed)[0];
+  }
+
+  /**
+   * Returns the 64-bit hash of the given int array.
+   * @param data the given int array, which must be non-null and non-empty
+   * @param seed the seed of the sketch
+   * @return the 64-bit hash
+   */
+  public long hash64(final int[] data, final long seed) {
+    return MurmurHash3.hash(data, seed)[0];
+  }
+
+  /**
+   * Returns the 64-bit hash of the given long array.
+   * @param data the given long array, which must be non-null and non-empty
+   * @param seed the seed of the sketch
+   * @return the 64-bit hash
+   */
+  public long hash64(final long[] data, final long seed) {
+    return MurmurHash3.hash(data, seed)[0];
+  }
+
+  @Override
+  public String toString() {
+    return name_;
+  }
+
+  private static final class MurmurHash3Function extends HashFunction {
+
+    MurmurHash3Function() {
+      super("MurmurHash3");
+    }
+
+    @Override
+    public long getIdentitySeed(final long seed) {
+      return seed;
+    }
+
+    @Override
+    public long hash64(final long datum, final long seed) {
+      return MurmurHash3.hash64(datum, seed);
+    }
+
+    @Override
+    public long hash64(final double datum, final long seed) {
+      return MurmurHash3.hash64(datum, seed);
+    }
+  }
+
+  private static final class LongMixFunction extends HashFunction {
+
+    LongMixFunction() {
+      super("LongMix");
+    }
+
+    @Override
+    public long hash64(final long datum, final long seed) {
+      long h = datum ^ seed;
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+    }
+  }
+
+}
@@ -7,6 +7,7 @@ package com.yahoo.sketches.hash;
 
 import java.io.Serializable;
 
+import com.yahoo.memory.Memory;
 
 /**
  * <p>
@@ -40,6 +41,25 @@ import java.io.Serializable;
  * structure. This also makes the code more readable and suitable for future extensions.
  * </p>
  *
+ * <p>For the hot update paths of the sketches there are also specialized methods for a single
+ * long, a double, a CharSequence and a region of a Memory. These do not allocate any objects.
+ * The <i>hash64</i> methods return just the first 64-bit word of the 128-bit hash, and the
+ * <i>hash</i> methods that take a <i>hashOut</i> array write both words into it.
+ * Each of these produces exactly the same bits as the corresponding array method:</p>
+ * <ul>
+ * <li>a long <i>key</i> hashes like <i>new long[] {key}</i>,</li>
+ * <li>a double <i>key</i> hashes like the long of its canonical bits (see
+ * {@link #hash64(double, long)}),</li>
+ * <li>a CharSequence hashes like the byte[] of its UTF-8 encoding, as produced by
+ * <i>String.getBytes(UTF_8)</i>,</li>
+ * <li>a region of a Memory hashes like the byte[] of the same bytes (on little-endian platforms).
+ * </li>
+ * </ul>
+ *
+ * <p>That the single-item updates of the theta, tuple and HLL sketches built on these methods
+ * allocate nothing is checked with JMH by <i>UpdateAllocationBenchmark</i> in the sketches-bench
+ * module, run with the GC profiler.</p>
+ *
  * @author Lee Rhodes
  */
 public final class MurmurHash3 implements Serializable {
@@ -206,6 +226,265 @@ public final class MurmurHash3 implements Serializable {
     return hashState.finalMix128(k1, k2, bytes);
   }
 
+  //--Hash of long, allocation-free-------------------------------------
+  /**
+   * Returns the first 64-bit word of the 128-bit hash of the given long.
+   * This is equivalent to <i>hash(new long[] {key}, seed)[0]</i>, but does not allocate.
+   *
+   * @param key The input long.
+   * @param seed A long valued seed.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash64(final long key, final long seed) {
+    return hash(key, seed, null);
+  }
+
+  /**
+   * Computes the 128-bit hash of the given long into the given array.
+   * This is equivalent to <i>hash(new long[] {key}, seed)</i>, but does not allocate.
+   *
+   * @param key The input long.
+   * @param seed A long valued seed.
+   * @param hashOut The array of size 2 that receives the hash. If null only the first 64-bit word
+   * is computed and returned.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash(final long key, final long seed, final long[] hashOut) {
+    //a single long is only a tail, there are no blocks
+    return finalMix128(seed, seed, key, 0, Long.BYTES, hashOut);
+  }
+
+  //--Hash of double, allocation-free-----------------------------------
+  /**
+   * Returns the first 64-bit word of the 128-bit hash of the given double.
+   * The double is converted to a long using Double.doubleToLongBits(key), which normalizes all NaN
+   * values to a single NaN representation. Plus and minus zero are normalized to plus zero.
+   * This is the same conversion the sketches apply to their double inputs.
+   *
+   * @param key The input double.
+   * @param seed A long valued seed.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash64(final double key, final long seed) {
+    return hash(key, seed, null);
+  }
+
+  /**
+   * Computes the 128-bit hash of the given double into the given array.
+   * The double is canonicalized as in {@link #hash64(double, long)}.
+   *
+   * @param key The input double.
+   * @param seed A long valued seed.
+   * @param hashOut The array of size 2 that receives the hash. If null only the first 64-bit word
+   * is computed and returned.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash(final double key, final long seed, final long[] hashOut) {
+    final double d = (key == 0.0) ? 0.0 : key; // canonicalize -0.0, 0.0
+    return hash(Double.doubleToLongBits(d), seed, hashOut); // canonicalize all NaN forms
+  }
+
+  //--Hash of CharSequence, allocation-free-----------------------------
+  /**
+   * Returns the first 64-bit word of the 128-bit hash of the UTF-8 encoding of the given
+   * CharSequence. The encoding is computed on the fly and never materialized. Malformed surrogates
+   * are encoded as '?', exactly as String.getBytes(UTF_8) does, thus this is equivalent to
+   * <i>hash(key.toString().getBytes(UTF_8), seed)[0]</i>.
+   *
+   * @param key The input CharSequence. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash64(final CharSequence key, final long seed) {
+    return hash(key, seed, null);
+  }
+
+  /**
+   * Computes the 128-bit hash of the UTF-8 encoding of the given CharSequence into the given array.
+   * See {@link #hash64(CharSequence, long)}.
+   *
+   * @param key The input CharSequence. Must be non-null and non-empty.
+   * @param seed A long valued seed.
+   * @param hashOut The array of size 2 that receives the hash. If null only the first 64-bit word
+   * is computed and returned.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash(final CharSequence key, final long seed, final long[] hashOut) {
+    long h1 = seed;
+    long h2 = seed;
+    long k1 = 0;
+    long k2 = 0;
+    int pos = 0; //byte position within the current 16 byte block
+    long bytes = 0;
+    final int chars = key.length();
+
+    for (int i = 0; i < chars; i++) {
+      final char c = key.charAt(i);
+      // Encode the char into up to 4 UTF-8 bytes, packed little-endian into enc
+      final int enc;
+      final int encBytes;
+      if (c < 0x80) {
+        enc = c;
+        encBytes = 1;
+      }
+      else if (c < 0x800) {
+        enc = (0xC0 | (c >> 6)) | ((0x80 | (c & 0x3F)) << 8);
+        encBytes = 2;
+      }
+      else if (Character.isSurrogate(c)) {
+        final char c2;
+        if (Character.isHighSurrogate(c) && ((i + 1) < chars)
+            && Character.isLowSurrogate(c2 = key.charAt(i + 1))) {
+          final int cp = Character.toCodePoint(c, c2);
+          enc = (0xF0 | (cp >> 18))
+              | ((0x80 | ((cp >> 12) & 0x3F)) << 8)
+              | ((0x80 | ((cp >> 6) & 0x3F)) << 16)
+              | ((0x80 | (cp & 0x3F)) << 24);
+          encBytes = 4;
+          i++;
+        }
+        else { //malformed, replaced with '?' as by String.getBytes(UTF_8)
+          enc = '?';
+          encBytes = 1;
+        }
+      }
+      else {
+        enc = (0xE0 | (c >> 12)) | ((0x80 | ((c >> 6) & 0x3F)) << 8) | ((0x80 | (c & 0x3F)) << 16);
+        encBytes = 3;
+      }
+
+      // Feed the encoded bytes into the current block
+      for (int j = 0; j < encBytes; j++) {
+        final long b = (enc >>> (j * 8)) & 0xFFL;
+        if (pos < 8) {
+          k1 |= b << (pos * 8);
+        } else {
+          k2 |= b << ((pos - 8) * 8);
+        }
+        if (++pos == 16) { //block mix, same as HashState.blockMix128
+          h1 ^= HashState.mixK1(k1);
+          h1 = Long.rotateLeft(h1, 27);
+          h1 += h2;
+          h1 = (h1 * 5) + 0x52dce729;
+
+          h2 ^= HashState.mixK2(k2);
+          h2 = Long.rotateLeft(h2, 31);
+          h2 += h1;
+          h2 = (h2 * 5) + 0x38495ab5;
+          k1 = 0;
+          k2 = 0;
+          pos = 0;
+        }
+      }
+      bytes += encBytes;
+    }
+    // The partial block, if any, is the tail
+    return finalMix128(h1, h2, k1, k2, bytes, hashOut);
+  }
+
+  //--Hash of a region of Memory, allocation-free-----------------------
+  /**
+   * Returns the first 64-bit word of the 128-bit hash of the given region of a Memory.
+   * On little-endian platforms this is equivalent to the hash of a byte[] with the same contents.
+   *
+   * @param mem The input Memory.
+   * @param offsetBytes the offset in bytes of the region to hash
+   * @param lengthBytes the length in bytes of the region to hash. Must be positive.
+   * @param seed A long valued seed.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash64(final Memory mem, final long offsetBytes, final long lengthBytes,
+      final long seed) {
+    return hash(mem, offsetBytes, lengthBytes, seed, null);
+  }
+
+  /**
+   * Computes the 128-bit hash of the given region of a Memory into the given array.
+   * See {@link #hash64(Memory, long, long, long)}.
+   *
+   * @param mem The input Memory.
+   * @param offsetBytes the offset in bytes of the region to hash
+   * @param lengthBytes the length in bytes of the region to hash. Must be positive.
+   * @param seed A long valued seed.
+   * @param hashOut The array of size 2 that receives the hash. If null only the first 64-bit word
+   * is computed and returned.
+   * @return the first 64-bit word of the hash.
+   */
+  public static long hash(final Memory mem, final long offsetBytes, final long lengthBytes,
+      final long seed, final long[] hashOut) {
+    long h1 = seed;
+    long h2 = seed;
+
+    // Number of full 128-bit blocks of 16 bytes.
+    // Possible exclusion of a remainder of up to 15 bytes.
+    final long nblocks = lengthBytes >>> 4; //bytes / 16
+
+    // Process the 128-bit blocks (the body) into the hash
+    for (long i = 0; i < nblocks; i++ ) { //16 bytes per block
+      final long off = offsetBytes + (i << 4);
+      final long k1 = mem.getLong(off);
+      final long k2 = mem.getLong(off + 8);
+      //same as HashState.blockMix128
+      h1 ^= HashState.mixK1(k1);
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = (h1 * 5) + 0x52dce729;
+
+      h2 ^= HashState.mixK2(k2);
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = (h2 * 5) + 0x38495ab5;
+    }
+
+    // Get the tail index, remainder length
+    final long tail = offsetBytes + (nblocks << 4);
+    final int rem = (int) (lengthBytes & 0xFL); // remainder bytes: 0,1,...,15
+
+    // Get the tail
+    final long k1;
+    final long k2;
+    if (rem > 8) { //k1 -> whole; k2 -> partial
+      k1 = mem.getLong(tail);
+      k2 = getLong(mem, tail + 8, rem - 8);
+    }
+    else { //k1 -> whole, partial or 0; k2 == 0
+      k1 = (rem == 0) ? 0 : getLong(mem, tail, rem);
+      k2 = 0;
+    }
+    // Mix the tail into the hash and return
+    return finalMix128(h1, h2, k1, k2, lengthBytes, hashOut);
+  }
+
+  /**
+   * Final mix of the tail and the length into the given hash state.
+   * This is the same as HashState.finalMix128, but does not allocate.
+   *
+   * @param h1 the current first word of the hash state
+   * @param h2 the current second word of the hash state
+   * @param k1 the first word of the tail
+   * @param k2 the second word of the tail
+   * @param inputLengthBytes the length of the input in bytes
+   * @param hashOut if not null, receives both words of the hash
+   * @return the first 64-bit word of the hash.
+   */
+  private static long finalMix128(long h1, long h2, final long k1, final long k2,
+      final long inputLengthBytes, final long[] hashOut) {
+    h1 ^= HashState.mixK1(k1);
+    h2 ^= HashState.mixK2(k2);
+    h1 ^= inputLengthBytes;
+    h2 ^= inputLengthBytes;
+    h1 += h2;
+    h2 += h1;
+    h1 = HashState.finalMix64(h1);
+    h2 = HashState.finalMix64(h2);
+    h1 += h2;
+    if (hashOut != null) {
+      hashOut[0] = h1;
+      hashOut[1] = h2 + h1;
+    }
+    return h1;
+  }
+
   //--HashState class---------------------------------------------------
   /**
    * Common processing of the 128-bit hash state independent of input type.
@@ -353,4 +632,23 @@ public final class MurmurHash3 implements Serializable {
     return out;
   }
 
+  /**
+   * Gets a long from the given Memory starting at the given offset and continuing for
+   * remainder (rem) bytes. The bytes are extracted in little-endian order. There is no limit
+   * checking.
+   *
+   * @param mem The given input Memory.
+   * @param offsetBytes Zero-based offset in bytes from the start of the Memory.
+   * @param rem Remainder bytes. An integer in the range [1,8].
+   * @return long
+   */
+  private static long getLong(final Memory mem, final long offsetBytes, final int rem) {
+    long out = 0L;
+    for (int i = rem; i-- > 0;) { //i= 7,6,5,4,3,2,1,0
+      final byte b = mem.getByte(offsetBytes + i);
+      out ^= (b & 0xFFL) << (i * 8); //equivalent to |=
+    }
+    return out;
+  }
+
 }
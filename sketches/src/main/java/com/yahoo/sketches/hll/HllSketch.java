@@ -7,7 +7,6 @@ package com.yahoo.sketches.hll;
 
 import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Top-level class for the HLL family of sketches.
@@ -31,6 +30,9 @@ public class HllSketch {
 
   private Fields fields;
 
+  //reused by the single-item update methods to avoid allocating the 128-bit hash
+  private final long[] hashOut = new long[2];
+
   /**
    * Construct this class with the given Fields
    * @param fields the given Fields
@@ -52,8 +54,8 @@ public class HllSketch {
    * @param datum The given long datum.
    */
   public void update(final long datum) {
-    final long[] data = { datum };
-    updateWithHash(hash(data, DEFAULT_UPDATE_SEED));
+    hash(datum, DEFAULT_UPDATE_SEED, hashOut);
+    updateWithHash(hashOut);
   }
 
   /**
@@ -66,14 +68,14 @@ public class HllSketch {
    * @param datum The given double datum.
    */
   public void update(final double datum) {
-    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
-    final long[] data = { Double.doubleToLongBits(d) };// canonicalize all NaN forms
-    updateWithHash(hash(data, DEFAULT_UPDATE_SEED));
+    hash(datum, DEFAULT_UPDATE_SEED, hashOut); // canonicalizes -0.0, 0.0 and all NaN forms
+    updateWithHash(hashOut);
   }
 
   /**
    * Present this sketch with the given String.
-   * The string is converted to a byte array using UTF8 encoding.
+   * The string is hashed as its UTF8 encoding, which is computed on the fly without allocating
+   * a byte array.
    * If the string is null or empty no update attempt is made and the method returns.
    *
    * @param datum The given String.
@@ -82,8 +84,8 @@ public class HllSketch {
     if (datum == null || datum.isEmpty()) {
       return;
     }
-    final byte[] data = datum.getBytes(UTF_8);
-    updateWithHash(hash(data, DEFAULT_UPDATE_SEED));
+    hash(datum, DEFAULT_UPDATE_SEED, hashOut);
+    updateWithHash(hashOut);
   }
 
   /**
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.store;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.yahoo.memory.MappedMemory;
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryMappedFile;
+import com.yahoo.memory.MemoryRegion;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+
+/**
+ * A read-only, memory-mapped view of a sketch store file written by {@link SketchStoreWriter}.
+ *
+ * <p>The whole file is mapped read-only with
+ * {@link MemoryMappedFile#getReadOnlyInstance(File, long, long)}, thus many processes may share
+ * the same pages of the OS page cache. A lookup returns a read-only Memory region of the stored
+ * image, which can be passed directly to <i>Sketch.wrap</i>, <i>DoublesSketch.wrap</i> or
+ * <i>ArrayOfDoublesSketches.wrapSketch</i>. No image is ever copied onto the java heap.</p>
+ *
+ * <p>Keys are looked up by a binary search of the sorted key index, which the writer keeps in a
+ * sidecar file with the suffix <i>.idx</i> next to the store and which is mapped read-only as well.
+ * Thus opening a store does not depend on the number of records. Only the records that the index
+ * does not cover, e.g., records flushed by a writer that has not been closed yet, are scanned
+ * when the store is opened. A store without a usable index is scanned entirely; opening and
+ * closing a SketchStoreWriter on it writes the index.</p>
+ *
+ * <p>If a key was stored more than once, the last record wins. Records appended after the store
+ * was opened are not visible until the store is opened again. An incomplete trailing record,
+ * e.g., from an interrupted writer, is ignored.</p>
+ *
+ * <p>The file format is native byte order, and every record and image starts 8-byte aligned:</p>
+ *
+ * <pre>
+ * Header, 16 bytes:
+ *  Long || Start Byte Adr:
+ *  Adr:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
+ *  0   ||------------------------------Magic---------------------------------------------|
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |     8              |
+ *  1   ||---------------(unused)-------------|-----------------Version--------------------|
+ *
+ * Each record:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
+ *  0   ||------------Image Bytes-------------|--------------Key Bytes---------------------|
+ *
+ *  1   || UTF-8 key, zero padded to a multiple of 8 bytes, followed by the image,
+ *      || zero padded to a multiple of 8 bytes.
+ * </pre>
+ */
+public final class SketchStore {
+  static final long MAGIC = 0x3145524F54534B53L; //arbitrary
+  static final int VERSION = 1;
+  static final int MAGIC_LONG = 0;
+  static final int VERSION_INT = 8;
+  static final int HEADER_BYTES = 16;
+
+  static final int KEY_BYTES_INT = 0;
+  static final int IMAGE_BYTES_INT = 4;
+  static final int RECORD_HEADER_BYTES = 8;
+
+  private final MappedMemory mmf_;
+  private final MappedMemory index_; //null if the store has no usable index
+  private final Map<String, Long> tail_; //key to record offset of the records not indexed
+  private final int size_;
+  private final long storeBytes_;
+  private boolean closed_ = false;
+
+  private SketchStore(final MappedMemory mmf, final MappedMemory index,
+      final Map<String, Long> tail, final long storeBytes) {
+    mmf_ = mmf;
+    index_ = index;
+    tail_ = tail;
+    storeBytes_ = storeBytes;
+    long size = (index == null) ? 0 : SketchStoreIndex.getNumEntries(index);
+    for (final String key : tail.keySet()) {
+      if (findIndexed(key) < 0) { size++; }
+    }
+    size_ = (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Opens the given sketch store file and its key index read-only.
+   * @param file a file written by {@link SketchStoreWriter}
+   * @return a new SketchStore
+   * @throws Exception if the file cannot be mapped or is not a sketch store
+   */
+  public static SketchStore open(final File file) throws Exception {
+    final long fileBytes = file.length();
+    checkHeaderBytes(fileBytes);
+    final MappedMemory mmf = MemoryMappedFile.getReadOnlyInstance(file, 0, fileBytes);
+    MappedMemory index = null;
+    try {
+      checkHeader(mmf);
+      index = SketchStoreIndex.mapIndex(file, mmf, fileBytes);
+      final long indexedBytes = (index == null) ? HEADER_BYTES
+          : SketchStoreIndex.getStoreBytes(index);
+      final Map<String, Long> tail = new HashMap<>();
+      final long storeBytes = scan(mmf, indexedBytes, fileBytes, new RecordVisitor() {
+        @Override
+        public void visit(final Memory mem, final long offset) {
+          tail.put(SketchStoreIndex.getKey(mem, offset), offset);
+        }
+      });
+      return new SketchStore(mmf, index, tail, storeBytes);
+    } catch (final RuntimeException e) {
+      if (index != null) { index.freeMemory(); }
+      mmf.freeMemory();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a read-only view of the image stored for the given key, or null if the key is not in
+   * this store. The returned Memory is only valid until this store is closed.
+   * @param key the given key
+   * @return a read-only view of the stored image, or null
+   */
+  public Memory get(final String key) {
+    checkOpen();
+    final long recOff = find(key);
+    if (recOff < 0) { return null; }
+    final int keyBytes = mmf_.getInt(recOff + KEY_BYTES_INT);
+    final int imageBytes = mmf_.getInt(recOff + IMAGE_BYTES_INT);
+    final long imageOff = recOff + RECORD_HEADER_BYTES + pad8(keyBytes);
+    return new MemoryRegion(mmf_, imageOff, imageBytes).asReadOnlyMemory();
+  }
+
+  /**
+   * Returns true if the given key is in this store.
+   * @param key the given key
+   * @return true if the given key is in this store.
+   */
+  public boolean contains(final String key) {
+    checkOpen();
+    return find(key) >= 0;
+  }
+
+  /**
+   * Returns the keys in this store. The keys are decoded from the mapped file while iterating,
+   * in the order of the key index, followed by the keys that the index does not cover.
+   * The iteration is only valid until this store is closed.
+   * @return the keys in this store.
+   */
+  public Iterable<String> keys() {
+    checkOpen();
+    return new Iterable<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return new KeyIterator();
+      }
+    };
+  }
+
+  /**
+   * Returns the number of distinct keys in this store.
+   * @return the number of distinct keys in this store.
+   */
+  public int size() {
+    return size_;
+  }
+
+  /**
+   * Returns the number of bytes of the file holding complete records, including the header.
+   * @return the number of bytes of the file holding complete records, including the header.
+   */
+  public long getStoreBytes() {
+    return storeBytes_;
+  }
+
+  /**
+   * Hints the OS to bring the whole mapped file into physical memory.
+   */
+  public void load() {
+    checkOpen();
+    mmf_.load();
+  }
+
+  /**
+   * Unmaps the file. Any Memory previously returned by {@link #get(String)} must not be used
+   * afterwards. Calling close more than once has no effect.
+   */
+  public void close() {
+    if (closed_) { return; }
+    closed_ = true;
+    if (index_ != null) { index_.freeMemory(); }
+    mmf_.freeMemory();
+  }
+
+  //restricted
+
+  /**
+   * Receives each complete record found by {@link SketchStore#scan}
+   */
+  interface RecordVisitor {
+    void visit(Memory mem, long offset);
+  }
+
+  //the records that the index does not cover are later, thus they win
+  private long find(final String key) {
+    final Long tailOff = tail_.isEmpty() ? null : tail_.get(key);
+    if (tailOff != null) { return tailOff; }
+    return findIndexed(key);
+  }
+
+  private long findIndexed(final String key) {
+    if (index_ == null) { return -1L; }
+    return SketchStoreIndex.find(index_, mmf_, key, key.getBytes(UTF_8));
+  }
+
+  private final class KeyIterator implements Iterator<String> {
+    private final long numIndexed_ = (index_ == null) ? 0 : SketchStoreIndex.getNumEntries(index_);
+    private final Iterator<String> tailIt_ = tail_.keySet().iterator();
+    private long i_ = 0;
+    private String next_ = null;
+
+    @Override
+    public boolean hasNext() {
+      if (next_ != null) { return true; }
+      checkOpen();
+      if (i_ < numIndexed_) {
+        next_ = SketchStoreIndex.getKey(mmf_, SketchStoreIndex.getOffset(index_, i_++));
+        return true;
+      }
+      while (tailIt_.hasNext()) {
+        final String key = tailIt_.next();
+        if (findIndexed(key) < 0) { //else it was returned from the index
+          next_ = key;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) { throw new NoSuchElementException(); }
+      final String key = next_;
+      next_ = null;
+      return key;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private void checkOpen() {
+    if (closed_) {
+      throw new SketchesStateException("This SketchStore has been closed.");
+    }
+  }
+
+  static long pad8(final long bytes) {
+    return (bytes + 7L) & ~7L;
+  }
+
+  static long recordBytes(final int keyBytes, final int imageBytes) {
+    return RECORD_HEADER_BYTES + pad8(keyBytes) + pad8(imageBytes);
+  }
+
+  static void checkHeaderBytes(final long fileBytes) {
+    if (fileBytes < HEADER_BYTES) {
+      throw new SketchesArgumentException(
+          "Not a sketch store, file is too small: " + fileBytes + " bytes");
+    }
+  }
+
+  static void checkHeader(final Memory mem) {
+    final long magic = mem.getLong(MAGIC_LONG);
+    if (magic != MAGIC) {
+      throw new SketchesArgumentException("Not a sketch store, or wrong byte order. Magic: "
+          + Long.toHexString(magic));
+    }
+    final int version = mem.getInt(VERSION_INT);
+    if (version != VERSION) {
+      throw new SketchesArgumentException("Unsupported sketch store version: " + version);
+    }
+  }
+
+  /**
+   * Scans the records from the given offset and returns the offset just past the last complete
+   * record. The visitor, if not null, receives the offset of each complete record.
+   * @param mem the store image
+   * @param from the offset of the first record to scan
+   * @param fileBytes the number of bytes of the file
+   * @param visitor the visitor of the records, may be null
+   * @return the offset just past the last complete record
+   */
+  static long scan(final Memory mem, final long from, final long fileBytes,
+      final RecordVisitor visitor) {
+    long offset = from;
+    while ((offset + RECORD_HEADER_BYTES) <= fileBytes) {
+      final int keyBytes = mem.getInt(offset + KEY_BYTES_INT);
+      final int imageBytes = mem.getInt(offset + IMAGE_BYTES_INT);
+      if ((keyBytes < 0) || (imageBytes <= 0)) { break; } //incomplete tail
+      final long recordBytes = recordBytes(keyBytes, imageBytes);
+      if ((offset + recordBytes) > fileBytes) { break; } //incomplete tail
+      if (visitor != null) { visitor.visit(mem, offset); }
+      offset += recordBytes;
+    }
+    return offset;
+  }
+
+}
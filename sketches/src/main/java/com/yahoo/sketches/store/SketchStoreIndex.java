@@ -0,0 +1,402 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.store;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.store.SketchStore.HEADER_BYTES;
+import static com.yahoo.sketches.store.SketchStore.KEY_BYTES_INT;
+import static com.yahoo.sketches.store.SketchStore.RECORD_HEADER_BYTES;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.yahoo.memory.MappedMemory;
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryMappedFile;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.hash.MurmurHash3;
+
+/**
+ * The sorted key index of a sketch store, which is kept in a sidecar file next to the store file
+ * with the suffix {@value #INDEX_SUFFIX}. It maps the hash of each distinct key to the offset of the
+ * latest record of this key. The entries have a fixed size and are sorted by key hash, thus a
+ * lookup is a binary search of the mapped index followed by a comparison of the stored key.
+ *
+ * <p>The index covers the records up to the given number of store bytes. Records appended after
+ * the index was written, e.g., by a writer that was not closed, are not covered and must be found
+ * by a scan of the remaining records.</p>
+ *
+ * <p>The header records the number of store bytes covered and a checksum of the last
+ * {@value #CHECKSUM_BYTES} bytes of them, which end with the latest record. On open both are
+ * checked against the store, thus an index left behind by a store that was truncated or replaced
+ * by a different file is ignored, and the store is scanned instead.</p>
+ *
+ * <p>An instance of this class collects the entries of newly written or scanned records and
+ * writes a new index, merging it with the entries of a previous index.</p>
+ *
+ * <p>The file format is native byte order:</p>
+ *
+ * <pre>
+ * Header, 40 bytes:
+ *  Long || Start Byte Adr:
+ *  Adr:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
+ *  0   ||------------------------------Magic---------------------------------------------|
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |     8              |
+ *  1   ||---------------(unused)-------------|-----------------Version--------------------|
+ *
+ *      ||   23   |   22   |   21   |   20   |   19   |   18   |   17   |    16              |
+ *  2   ||--------------------------Store Bytes covered------------------------------------|
+ *
+ *      ||   31   |   30   |   29   |   28   |   27   |   26   |   25   |    24              |
+ *  3   ||-----------------------------Number of Entries-----------------------------------|
+ *
+ *      ||   39   |   38   |   37   |   36   |   35   |   34   |   33   |    32              |
+ *  4   ||------------------------Checksum of the covered bytes-----------------------------|
+ *
+ * Each entry, sorted by key hash:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
+ *  0   ||-------------------------------Key Hash-----------------------------------------|
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |     8              |
+ *  1   ||-----------------------------Record Offset---------------------------------------|
+ * </pre>
+ */
+final class SketchStoreIndex {
+  static final String INDEX_SUFFIX = ".idx";
+  static final long INDEX_MAGIC = 0x5844494B53544B53L; //arbitrary
+  static final int INDEX_VERSION = 2;
+  static final int INDEX_MAGIC_LONG = 0;
+  static final int INDEX_VERSION_INT = 8;
+  static final int STORE_BYTES_LONG = 16;
+  static final int NUM_ENTRIES_LONG = 24;
+  static final int CHECKSUM_LONG = 32;
+  static final int INDEX_HEADER_BYTES = 40;
+  static final int ENTRY_BYTES = 16;
+  static final int CHECKSUM_BYTES = 4096;
+
+  private static final int INIT_ENTRIES = 1024;
+  private static final int BUFFER_ENTRIES = 4096;
+
+  private long[] hashes_ = new long[INIT_ENTRIES];
+  private long[] offsets_ = new long[INIT_ENTRIES];
+  private int numEntries_ = 0;
+
+  /**
+   * Adds the entry of a record that was written or scanned after the previous index.
+   * The records must be added in the order of their offsets.
+   * @param keyHash the hash of the key
+   * @param offset the offset of the record
+   */
+  void add(final long keyHash, final long offset) {
+    if (numEntries_ == hashes_.length) {
+      final int newLength = Math.max(INIT_ENTRIES, hashes_.length * 2);
+      final long[] hashes = new long[newLength];
+      final long[] offsets = new long[newLength];
+      System.arraycopy(hashes_, 0, hashes, 0, numEntries_);
+      System.arraycopy(offsets_, 0, offsets, 0, numEntries_);
+      hashes_ = hashes;
+      offsets_ = offsets;
+    }
+    hashes_[numEntries_] = keyHash;
+    offsets_[numEntries_] = offset;
+    numEntries_++;
+  }
+
+  /**
+   * @return the number of entries added since the previous index
+   */
+  int getNumEntries() {
+    return numEntries_;
+  }
+
+  /**
+   * Writes a new index file for the given store, which holds the entries of the previous index, if
+   * any, and the added entries. A key that is in both keeps only its latest record. The file is
+   * written to a temporary file first, which then replaces the index file.
+   * @param indexFile the index file
+   * @param store the store image, which is used to compare the keys of equal hashes
+   * @param storeBytes the number of store bytes covered by the new index
+   * @param prevIndex the previous index, which covers a prefix of the store, or null
+   * @throws IOException if the index cannot be written
+   */
+  void write(final File indexFile, final Memory store, final long storeBytes,
+      final Memory prevIndex) throws IOException {
+    sortEntries();
+    final long prevEntries = (prevIndex == null) ? 0 : prevIndex.getLong(NUM_ENTRIES_LONG);
+    final File tmpFile = new File(indexFile.getPath() + ".tmp");
+    final long numEntries;
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+      final byte[] hdrArr = new byte[INDEX_HEADER_BYTES];
+      final NativeMemory hdrMem = new NativeMemory(hdrArr);
+      hdrMem.putLong(INDEX_MAGIC_LONG, INDEX_MAGIC);
+      hdrMem.putInt(INDEX_VERSION_INT, INDEX_VERSION);
+      hdrMem.putLong(STORE_BYTES_LONG, storeBytes);
+      hdrMem.putLong(CHECKSUM_LONG, checksum(store, storeBytes));
+      out.write(hdrArr); //the number of entries is put when it is known
+
+      final EntryWriter writer = new EntryWriter(out);
+      long i = 0; //previous entries
+      int j = 0; //added entries
+      while ((i < prevEntries) || (j < numEntries_)) {
+        final long prevHash = (i < prevEntries) ? getHash(prevIndex, i) : 0L;
+        if ((j == numEntries_) || ((i < prevEntries) && (prevHash < hashes_[j]))) {
+          writer.write(prevHash, getOffset(prevIndex, i++));
+        } else if ((i == prevEntries) || (hashes_[j] < prevHash)) {
+          j = writeAddedRun(writer, store, j);
+        } else { //equal hashes: the previous records come first and may be superseded
+          final int jEnd = runEnd(j);
+          for (; (i < prevEntries) && (getHash(prevIndex, i) == prevHash); i++) {
+            final long offset = getOffset(prevIndex, i);
+            if (!isSuperseded(store, offset, j, jEnd)) { writer.write(prevHash, offset); }
+          }
+          j = writeAddedRun(writer, store, j);
+        }
+      }
+      writer.flush();
+      numEntries = writer.numEntries_;
+    }
+    try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw")) {
+      final byte[] numArr = new byte[8];
+      new NativeMemory(numArr).putLong(0, numEntries);
+      raf.seek(NUM_ENTRIES_LONG);
+      raf.write(numArr);
+    }
+    Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Returns the sidecar index file of the given store file.
+   * @param storeFile the given store file
+   * @return the index file
+   */
+  static File indexFile(final File storeFile) {
+    return new File(storeFile.getPath() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Maps the index file of the given store file, if it exists and fits the given store.
+   * @param storeFile the given store file
+   * @param store the store image
+   * @param fileBytes the number of bytes of the store file
+   * @return the mapped index or null if there is no usable index
+   * @throws Exception if the index file exists but cannot be mapped
+   */
+  static MappedMemory mapIndex(final File storeFile, final Memory store, final long fileBytes)
+      throws Exception {
+    final File indexFile = indexFile(storeFile);
+    final long indexBytes = indexFile.exists() ? indexFile.length() : 0L;
+    if (indexBytes < INDEX_HEADER_BYTES) { return null; }
+    final MappedMemory index = MemoryMappedFile.getReadOnlyInstance(indexFile, 0, indexBytes);
+    if (!isUsable(index, indexBytes, store, fileBytes)) {
+      index.freeMemory();
+      return null;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the offset of the record of the given key, or -1 if the key is not in the index.
+   * @param index the mapped index
+   * @param store the store image
+   * @param key the given key
+   * @param keyArr the UTF-8 encoding of the given key
+   * @return the offset of the record of the given key, or -1
+   */
+  static long find(final Memory index, final Memory store, final String key,
+      final byte[] keyArr) {
+    final long hash = keyHash(key);
+    long lo = 0;
+    long hi = index.getLong(NUM_ENTRIES_LONG);
+    while (lo < hi) { //the first entry with a hash not less than the given hash
+      final long mid = (lo + hi) >>> 1;
+      if (getHash(index, mid) < hash) { lo = mid + 1; } else { hi = mid; }
+    }
+    final long numEntries = index.getLong(NUM_ENTRIES_LONG);
+    for (long i = lo; (i < numEntries) && (getHash(index, i) == hash); i++) {
+      final long offset = getOffset(index, i);
+      if (keyEquals(store, offset, keyArr)) { return offset; }
+    }
+    return -1L;
+  }
+
+  static long getNumEntries(final Memory index) {
+    return index.getLong(NUM_ENTRIES_LONG);
+  }
+
+  static long getStoreBytes(final Memory index) {
+    return index.getLong(STORE_BYTES_LONG);
+  }
+
+  static long getOffset(final Memory index, final long entry) {
+    return index.getLong(INDEX_HEADER_BYTES + (entry * ENTRY_BYTES) + 8);
+  }
+
+  /**
+   * Returns the hash of the UTF-8 encoding of the given key
+   * @param key the given key
+   * @return the hash of the key
+   */
+  static long keyHash(final String key) {
+    return key.isEmpty() ? 0L : MurmurHash3.hash64(key, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Returns the hash of the key of the record at the given offset
+   * @param store the store image
+   * @param offset the offset of the record
+   * @return the hash of the key
+   */
+  static long keyHash(final Memory store, final long offset) {
+    final int keyBytes = store.getInt(offset + KEY_BYTES_INT);
+    return (keyBytes == 0) ? 0L
+        : MurmurHash3.hash64(store, offset + RECORD_HEADER_BYTES, keyBytes, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Returns the key of the record at the given offset
+   * @param store the store image
+   * @param offset the offset of the record
+   * @return the key
+   */
+  static String getKey(final Memory store, final long offset) {
+    final int keyBytes = store.getInt(offset + KEY_BYTES_INT);
+    final byte[] keyArr = new byte[keyBytes];
+    store.getByteArray(offset + RECORD_HEADER_BYTES, keyArr, 0, keyBytes);
+    return new String(keyArr, UTF_8);
+  }
+
+  //restricted
+
+  private static boolean isUsable(final Memory index, final long indexBytes, final Memory store,
+      final long fileBytes) {
+    if ((index.getLong(INDEX_MAGIC_LONG) != INDEX_MAGIC)
+        || (index.getInt(INDEX_VERSION_INT) != INDEX_VERSION)) {
+      return false;
+    }
+    final long storeBytes = getStoreBytes(index);
+    final long numEntries = getNumEntries(index);
+    //a store truncated below the covered bytes or replaced since has other bytes at their end
+    return (storeBytes >= HEADER_BYTES) && (storeBytes <= fileBytes)
+        && (numEntries >= 0) && (indexBytes == (INDEX_HEADER_BYTES + (numEntries * ENTRY_BYTES)))
+        && (index.getLong(CHECKSUM_LONG) == checksum(store, storeBytes));
+  }
+
+  //the hash of the last covered bytes, which end with the latest record
+  private static long checksum(final Memory store, final long storeBytes) {
+    final long bytes = Math.min(storeBytes - HEADER_BYTES, CHECKSUM_BYTES);
+    return (bytes == 0) ? 0L
+        : MurmurHash3.hash64(store, storeBytes - bytes, bytes, DEFAULT_UPDATE_SEED);
+  }
+
+  private static long getHash(final Memory index, final long entry) {
+    return index.getLong(INDEX_HEADER_BYTES + (entry * ENTRY_BYTES));
+  }
+
+  private static boolean keyEquals(final Memory store, final long offset, final byte[] keyArr) {
+    if (store.getInt(offset + KEY_BYTES_INT) != keyArr.length) { return false; }
+    final long keyOff = offset + RECORD_HEADER_BYTES;
+    for (int i = 0; i < keyArr.length; i++) {
+      if (store.getByte(keyOff + i) != keyArr[i]) { return false; }
+    }
+    return true;
+  }
+
+  private static boolean keysEqual(final Memory store, final long offset1, final long offset2) {
+    final int keyBytes = store.getInt(offset1 + KEY_BYTES_INT);
+    if (store.getInt(offset2 + KEY_BYTES_INT) != keyBytes) { return false; }
+    for (int i = 0; i < keyBytes; i++) {
+      if (store.getByte(offset1 + RECORD_HEADER_BYTES + i)
+          != store.getByte(offset2 + RECORD_HEADER_BYTES + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int runEnd(final int start) {
+    int end = start + 1;
+    while ((end < numEntries_) && (hashes_[end] == hashes_[start])) { end++; }
+    return end;
+  }
+
+  //true if one of the added entries from start to end has the key of the given record
+  private boolean isSuperseded(final Memory store, final long offset, final int start,
+      final int end) {
+    for (int j = start; j < end; j++) {
+      if (keysEqual(store, offset, offsets_[j])) { return true; }
+    }
+    return false;
+  }
+
+  //writes the run of added entries with equal hashes, which are sorted by offset, keeping only the
+  //latest record of each key
+  private int writeAddedRun(final EntryWriter writer, final Memory store, final int start)
+      throws IOException {
+    final int end = runEnd(start);
+    for (int j = start; j < end; j++) {
+      if (!isSuperseded(store, offsets_[j], j + 1, end)) { writer.write(hashes_[j], offsets_[j]); }
+    }
+    return end;
+  }
+
+  //sorts by hash, then by offset. The entries were added in the order of their offsets and the
+  //sort is stable, thus equal hashes keep that order.
+  private void sortEntries() {
+    final Integer[] order = new Integer[numEntries_];
+    for (int i = 0; i < numEntries_; i++) { order[i] = i; }
+    final long[] hashes = hashes_;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(final Integer i1, final Integer i2) {
+        return Long.compare(hashes[i1], hashes[i2]);
+      }
+    });
+    final long[] sortedHashes = new long[numEntries_];
+    final long[] sortedOffsets = new long[numEntries_];
+    for (int i = 0; i < numEntries_; i++) {
+      sortedHashes[i] = hashes_[order[i]];
+      sortedOffsets[i] = offsets_[order[i]];
+    }
+    hashes_ = sortedHashes;
+    offsets_ = sortedOffsets;
+  }
+
+  private static final class EntryWriter {
+    private final OutputStream out_;
+    private final byte[] bufArr_ = new byte[BUFFER_ENTRIES * ENTRY_BYTES];
+    private final NativeMemory bufMem_ = new NativeMemory(bufArr_);
+    private int bufEntries_ = 0;
+    long numEntries_ = 0;
+
+    EntryWriter(final OutputStream out) {
+      out_ = out;
+    }
+
+    void write(final long hash, final long offset) throws IOException {
+      bufMem_.putLong(bufEntries_ * ENTRY_BYTES, hash);
+      bufMem_.putLong((bufEntries_ * ENTRY_BYTES) + 8, offset);
+      numEntries_++;
+      if (++bufEntries_ == BUFFER_ENTRIES) { flush(); }
+    }
+
+    void flush() throws IOException {
+      out_.write(bufArr_, 0, bufEntries_ * ENTRY_BYTES);
+      bufEntries_ = 0;
+    }
+  }
+
+}
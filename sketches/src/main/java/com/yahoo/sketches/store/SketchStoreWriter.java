@@ -0,0 +1,246 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.store;
+
+import static com.yahoo.sketches.store.SketchStore.HEADER_BYTES;
+import static com.yahoo.sketches.store.SketchStore.IMAGE_BYTES_INT;
+import static com.yahoo.sketches.store.SketchStore.KEY_BYTES_INT;
+import static com.yahoo.sketches.store.SketchStore.MAGIC;
+import static com.yahoo.sketches.store.SketchStore.MAGIC_LONG;
+import static com.yahoo.sketches.store.SketchStore.RECORD_HEADER_BYTES;
+import static com.yahoo.sketches.store.SketchStore.VERSION;
+import static com.yahoo.sketches.store.SketchStore.VERSION_INT;
+import static com.yahoo.sketches.store.SketchStore.pad8;
+import static com.yahoo.sketches.store.SketchStore.recordBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import com.yahoo.memory.MappedMemory;
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryMappedFile;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+
+/**
+ * Appends serialized sketch images with their keys to a sketch store file, which is read by
+ * {@link SketchStore}. Existing records are never modified; storing a key again appends a new
+ * record that supersedes the earlier one.
+ *
+ * <p>The sorted key index of the store is written to its sidecar file when the writer is closed.
+ * It holds the entries of the previous index and of the records appended by this writer, which
+ * keeps 16 bytes per appended record on the heap until then.</p>
+ *
+ * <p>This class is not thread safe. Only one writer should append to a file at a time, while
+ * any number of readers may open it.</p>
+ */
+public final class SketchStoreWriter implements Closeable {
+  private static final int BUFFER_BYTES = 1 << 16;
+  private static final byte[] ZEROS = new byte[8];
+
+  private final File file_;
+  private final OutputStream out_;
+  private final byte[] recHdrArr_ = new byte[RECORD_HEADER_BYTES];
+  private final NativeMemory recHdrMem_ = new NativeMemory(recHdrArr_);
+  private final SketchStoreIndex index_; //entries of the records not in the previous index
+  private final MappedMemory prevIndex_; //null if there is no usable index
+  private long storeBytes_;
+  private boolean closed_ = false;
+
+  private SketchStoreWriter(final File file, final OutputStream out, final long storeBytes,
+      final SketchStoreIndex index, final MappedMemory prevIndex) {
+    file_ = file;
+    out_ = out;
+    storeBytes_ = storeBytes;
+    index_ = index;
+    prevIndex_ = prevIndex;
+  }
+
+  /**
+   * Opens the given file for appending. If the file does not exist or is empty, a new store is
+   * created. Otherwise the file must be a sketch store, and an incomplete trailing record left by
+   * an interrupted writer is truncated. Only the records that the key index does not cover are
+   * scanned, or all of them if the store has no usable index.
+   * @param file the given file
+   * @return a new SketchStoreWriter positioned at the end of the store
+   * @throws Exception if the file cannot be opened or is not a sketch store
+   */
+  public static SketchStoreWriter open(final File file) throws Exception {
+    final long fileBytes = file.exists() ? file.length() : 0L;
+    if (fileBytes == 0L) {
+      SketchStoreIndex.indexFile(file).delete(); //stale
+      final OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_BYTES);
+      final byte[] hdrArr = new byte[HEADER_BYTES];
+      final NativeMemory hdrMem = new NativeMemory(hdrArr);
+      hdrMem.putLong(MAGIC_LONG, MAGIC);
+      hdrMem.putInt(VERSION_INT, VERSION);
+      out.write(hdrArr);
+      return new SketchStoreWriter(file, out, HEADER_BYTES, new SketchStoreIndex(), null);
+    }
+
+    SketchStore.checkHeaderBytes(fileBytes);
+    final MappedMemory mmf = MemoryMappedFile.getReadOnlyInstance(file, 0, fileBytes);
+    final SketchStoreIndex index = new SketchStoreIndex();
+    MappedMemory prevIndex = null;
+    final long storeBytes;
+    try {
+      SketchStore.checkHeader(mmf);
+      prevIndex = SketchStoreIndex.mapIndex(file, mmf, fileBytes);
+      final long indexedBytes = (prevIndex == null) ? HEADER_BYTES
+          : SketchStoreIndex.getStoreBytes(prevIndex);
+      storeBytes = SketchStore.scan(mmf, indexedBytes, fileBytes, new SketchStore.RecordVisitor() {
+        @Override
+        public void visit(final Memory mem, final long offset) {
+          index.add(SketchStoreIndex.keyHash(mem, offset), offset);
+        }
+      });
+    } catch (final RuntimeException e) {
+      if (prevIndex != null) { prevIndex.freeMemory(); }
+      throw e;
+    } finally {
+      mmf.freeMemory();
+    }
+    if (storeBytes < fileBytes) {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+        raf.setLength(storeBytes);
+      }
+    }
+    final OutputStream out =
+        new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_BYTES);
+    return new SketchStoreWriter(file, out, storeBytes, index, prevIndex);
+  }
+
+  /**
+   * Appends the given serialized sketch image for the given key.
+   * @param key the given key, which is stored as UTF-8
+   * @param image the serialized sketch image, e.g., from <i>toByteArray()</i>
+   * @throws IOException if the image cannot be written
+   */
+  public void put(final String key, final byte[] image) throws IOException {
+    checkImageBytes(image.length);
+    final byte[] keyArr = putRecordHeader(key, image.length);
+    out_.write(image);
+    writePadding(image.length);
+    index_.add(SketchStoreIndex.keyHash(key), storeBytes_);
+    storeBytes_ += recordBytes(keyArr.length, image.length);
+  }
+
+  /**
+   * Appends the sketch image held by the given Memory for the given key. The whole capacity of
+   * the Memory is stored.
+   * @param key the given key, which is stored as UTF-8
+   * @param image the Memory holding the serialized sketch image
+   * @throws IOException if the image cannot be written
+   */
+  public void put(final String key, final Memory image) throws IOException {
+    final long capBytes = image.getCapacity();
+    if (capBytes > Integer.MAX_VALUE) {
+      throw new SketchesArgumentException("Image too large: " + capBytes);
+    }
+    final int imageBytes = (int) capBytes;
+    checkImageBytes(imageBytes);
+    final byte[] keyArr = putRecordHeader(key, imageBytes);
+    final byte[] chunk = new byte[Math.min(imageBytes, BUFFER_BYTES)];
+    for (int off = 0; off < imageBytes; off += chunk.length) {
+      final int len = Math.min(chunk.length, imageBytes - off);
+      image.getByteArray(off, chunk, 0, len);
+      out_.write(chunk, 0, len);
+    }
+    writePadding(imageBytes);
+    index_.add(SketchStoreIndex.keyHash(key), storeBytes_);
+    storeBytes_ += recordBytes(keyArr.length, imageBytes);
+  }
+
+  /**
+   * Returns the number of bytes of the store written so far, including the header.
+   * @return the number of bytes of the store written so far, including the header.
+   */
+  public long getStoreBytes() {
+    return storeBytes_;
+  }
+
+  /**
+   * Writes any buffered records to the file.
+   * @throws IOException if the records cannot be written
+   */
+  public void flush() throws IOException {
+    checkOpen();
+    out_.flush();
+  }
+
+  /**
+   * Flushes and closes the file and writes the key index. Calling close more than once has no
+   * effect.
+   * @throws IOException if the records or the index cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed_) { return; }
+    closed_ = true;
+    try {
+      out_.close();
+      if ((index_.getNumEntries() > 0) || (prevIndex_ == null)) {
+        writeIndex();
+      }
+    } finally {
+      if (prevIndex_ != null) { prevIndex_.freeMemory(); }
+    }
+  }
+
+  //restricted
+
+  private void writeIndex() throws IOException {
+    final MappedMemory mmf;
+    try {
+      mmf = MemoryMappedFile.getReadOnlyInstance(file_, 0, storeBytes_);
+    } catch (final Exception e) {
+      throw (e instanceof IOException) ? (IOException) e : new IOException(e);
+    }
+    try {
+      index_.write(SketchStoreIndex.indexFile(file_), mmf, storeBytes_, prevIndex_);
+    } finally {
+      mmf.freeMemory();
+    }
+  }
+
+  private byte[] putRecordHeader(final String key, final int imageBytes) throws IOException {
+    checkOpen();
+    if (key == null) {
+      throw new SketchesArgumentException("Key must not be null.");
+    }
+    final byte[] keyArr = key.getBytes(UTF_8);
+    recHdrMem_.putInt(KEY_BYTES_INT, keyArr.length);
+    recHdrMem_.putInt(IMAGE_BYTES_INT, imageBytes);
+    out_.write(recHdrArr_);
+    out_.write(keyArr);
+    writePadding(keyArr.length);
+    return keyArr;
+  }
+
+  private void writePadding(final int bytes) throws IOException {
+    out_.write(ZEROS, 0, (int) (pad8(bytes) - bytes));
+  }
+
+  private void checkOpen() {
+    if (closed_) {
+      throw new SketchesStateException("This SketchStoreWriter has been closed.");
+    }
+  }
+
+  private static void checkImageBytes(final int imageBytes) {
+    if (imageBytes <= 0) {
+      throw new SketchesArgumentException("Image must not be empty.");
+    }
+  }
+
+}
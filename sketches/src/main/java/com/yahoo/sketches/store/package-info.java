@@ -0,0 +1,12 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root
+ * for terms.
+ */
+
+/**
+ * <p>This package provides an append-only, memory-mapped file of serialized sketch images indexed
+ * by key. Lookups return read-only Memory views into the mapped file that can be wrapped by any of
+ * the sketch families without copying the image onto the java heap.</p>
+ */
+package com.yahoo.sketches.store;
@@ -20,6 +20,20 @@ import com.yahoo.memory.Memory;
  * <p>Calling the update function a second time essentially clears the internal state and updates
  * with the new pair of sketches.
  *
+ * <p>The operation can also be used statefully, to subtract any number of B sketches from a
+ * single A:
+ * <pre><code>
+ * aNotB.setA(SketchA);
+ * aNotB.notB(SketchB1);
+ * aNotB.notB(SketchB2);
+ * CompactSketch result = aNotB.getResult();
+ * </code></pre>
+ * <i>update(a, b)</i> is the same as <i>setA(a)</i> followed by <i>notB(b)</i>.
+ *
+ * <p>If built with a destination Memory, the state is kept in that Memory and, as long as A and
+ * the B sketches are ordered compact sketches or hash tables, no operation allocates on the
+ * Java heap.
+ *
  * @author Lee Rhodes
  */
 public interface AnotB {
@@ -33,6 +47,23 @@ public interface AnotB {
    */
   void update(Sketch a, Sketch b);
 
+  /**
+   * Sets the given sketch as the A argument of this operation, which clears the internal state.
+   * A null sketch is interpreted as an empty sketch.
+   *
+   * @param a The incoming sketch for the first argument
+   */
+  void setA(Sketch a);
+
+  /**
+   * Removes the hashes of the given sketch from the current state of this operation and applies
+   * the theta of the given sketch. This may be called any number of times after setA(Sketch).
+   * A null sketch is ignored.
+   *
+   * @param b The incoming sketch to subtract
+   */
+  void notB(Sketch b);
+
   /**
    * Gets the result of this operation as a CompactSketch of the chosen form
    * @param dstOrdered
@@ -50,4 +81,33 @@ public interface AnotB {
    * @return the result of this operation as an ordered CompactSketch on the Java heap
    */
   CompactSketch getResult();
+
+  /**
+   * Gets the unique count estimate of the result of this operation without building the result
+   * sketch. This is the same as <i>getResult().getEstimate()</i>, but the retained hashes are
+   * neither copied nor sorted and, unlike
+   * getResult, the state of this operation is not reset.
+   * @return the estimate of the number of unique values of the result of this operation
+   */
+  double getEstimate();
+
+  /**
+   * Gets the approximate lower error bound of the result of this operation given the specified
+   * number of Standard Deviations without building the result sketch.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the lower bound.
+   */
+  double getLowerBound(int numStdDev);
+
+  /**
+   * Gets the approximate upper error bound of the result of this operation given the specified
+   * number of Standard Deviations without building the result sketch.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the upper bound.
+   */
+  double getUpperBound(int numStdDev);
 }
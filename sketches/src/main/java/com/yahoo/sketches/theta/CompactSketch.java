@@ -70,6 +70,24 @@ public abstract class CompactSketch extends Sketch {
     return true;
   }
 
+  /**
+   * Returns the compressed serialized form of this sketch, where the sorted hashes are stored as
+   * bit-packed deltas. This is SerVer 4, which can be read with
+   * {@link Sketch#wrap(Memory)} and {@link Sketch#heapify(Memory)} and can be given directly to
+   * the set operations, which read the hashes without inflating them first.
+   * Readers that only know SerVer 3 reject it.
+   * @return the compressed serialized form of this sketch
+   */
+  public byte[] toCompressedByteArray() {
+    long[] cache = getCache();
+    if (!isOrdered()) {
+      cache = cache.clone(); //may not be a copy
+      Arrays.sort(cache);
+    }
+    return DirectCompressedCompactSketch.compress(
+        cache, isEmpty(), getSeedHash(), getRetainedEntries(false), getThetaLong());
+  }
+
   //restricted methods
 
   @Override
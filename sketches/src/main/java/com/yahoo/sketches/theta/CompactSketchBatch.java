@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.FAMILY_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.FLAGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.SEED_HASH_SHORT;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+
+import java.util.Arrays;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.Util;
+
+/**
+ * A reader of many serialized compact sketches that are stored back to back in a single Memory,
+ * as written by {@link CompactSketch#toByteArray()}.
+ *
+ * <p>The preambles of all the sketches are validated once, in a single pass, when the batch is
+ * wrapped. After that the sketches can be read without any further parsing or validation of the
+ * preamble and without creating a MemoryRegion for each sketch:</p>
+ * <pre><code>
+ * CompactSketchBatch batch = CompactSketchBatch.wrap(mem);
+ * Union union = SetOperation.builder().buildUnion(k);
+ * for (int i = 0; i &lt; batch.size(); i++) {
+ *   union.update(batch.getView(i));
+ * }
+ * </code></pre>
+ *
+ * <p>{@link #getView(int)} reuses one view object per thread, so a view is valid only until the
+ * next call of getView by the same thread. This is sufficient for Union and Intersection, which do
+ * not keep their inputs. Use {@link #getSketch(int)} where several sketches must be held at the
+ * same time, for example as the arguments of AnotB or of the multi-way PairwiseSetOperations.</p>
+ *
+ * <p>The sketches are read in place; the given Memory must not be changed while it is wrapped.</p>
+ */
+public final class CompactSketchBatch {
+  private static final int MIN_OFFSETS = 16;
+  private final Memory mem_;
+  private final long[] offsets_;
+  private final int size_;
+  private final ThreadLocal<FlyweightCompactSketch> view_ = new ThreadLocal<>();
+
+  private CompactSketchBatch(final Memory mem, final long[] offsets, final int size) {
+    mem_ = mem;
+    offsets_ = offsets;
+    size_ = size;
+  }
+
+  /**
+   * Wraps the given Memory, which holds serialized compact sketches back to back, and validates
+   * all of their preambles. This assumes the
+   * <a href="{@docRoot}/resources/dictionary.html#defaultUpdateSeed">Default Update Seed</a>.
+   * @param srcMem the Memory that holds the sketches and nothing else.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return a CompactSketchBatch of the sketches of the given Memory
+   */
+  public static CompactSketchBatch wrap(final Memory srcMem) {
+    return wrap(srcMem, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Wraps the given Memory, which holds serialized compact sketches back to back, and validates
+   * all of their preambles.
+   * @param srcMem the Memory that holds the sketches and nothing else.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return a CompactSketchBatch of the sketches of the given Memory
+   */
+  public static CompactSketchBatch wrap(final Memory srcMem, final long seed) {
+    final short seedHash = Util.computeSeedHash(seed);
+    final long cap = srcMem.getCapacity();
+    long[] offsets = new long[MIN_OFFSETS];
+    int size = 0;
+    long offsetBytes = 0;
+    while (offsetBytes < cap) {
+      if (size == offsets.length) { offsets = Arrays.copyOf(offsets, 2 * size); }
+      offsets[size++] = offsetBytes;
+      offsetBytes += checkPreamble(srcMem, offsetBytes, cap, seedHash);
+    }
+    return new CompactSketchBatch(srcMem, offsets, size);
+  }
+
+  /**
+   * Returns the number of sketches of this batch
+   * @return the number of sketches of this batch
+   */
+  public int size() {
+    return size_;
+  }
+
+  /**
+   * Returns the offset in bytes of the sketch with the given index in the wrapped Memory
+   * @param index the index of the sketch, which must be less than size()
+   * @return the offset in bytes of the sketch with the given index
+   */
+  public long getOffsetBytes(final int index) {
+    checkIndex(index);
+    return offsets_[index];
+  }
+
+  /**
+   * Returns a read-only view of the sketch with the given index. The view object is reused:
+   * it is valid only until the next call of this method by the same thread.
+   * @param index the index of the sketch, which must be less than size()
+   * @return a view of the sketch with the given index
+   */
+  public CompactSketch getView(final int index) {
+    checkIndex(index);
+    FlyweightCompactSketch view = view_.get();
+    if (view == null) {
+      view = new FlyweightCompactSketch(mem_);
+      view_.set(view);
+    }
+    return view.point(offsets_[index]);
+  }
+
+  /**
+   * Returns a new read-only sketch that wraps the sketch with the given index. Unlike the
+   * views of getView(int), it remains valid after later calls.
+   * @param index the index of the sketch, which must be less than size()
+   * @return a new sketch that wraps the sketch with the given index
+   */
+  public CompactSketch getSketch(final int index) {
+    checkIndex(index);
+    return new FlyweightCompactSketch(mem_).point(offsets_[index]);
+  }
+
+  //restricted methods
+
+  private void checkIndex(final int index) {
+    if ((index < 0) || (index >= size_)) {
+      throw new SketchesArgumentException("Index must be >= 0 and < " + size_ + ": " + index);
+    }
+  }
+
+  /**
+   * Checks the preamble of the compact sketch at the given offset.
+   * @return the size in bytes of the sketch
+   */
+  private static long checkPreamble(final Memory mem, final long offsetBytes, final long cap,
+      final short seedHash) {
+    if ((cap - offsetBytes) < 8) {
+      throw new SketchesArgumentException(
+          "Truncated sketch at offset " + offsetBytes + ", bytes remaining: " + (cap - offsetBytes));
+    }
+    final int preLongs = mem.getByte(offsetBytes + PREAMBLE_LONGS_BYTE) & 0X3F;
+    final int serVer = mem.getByte(offsetBytes + SER_VER_BYTE) & 0XFF;
+    final int famID = mem.getByte(offsetBytes + FAMILY_BYTE) & 0XFF;
+    final int flags = mem.getByte(offsetBytes + FLAGS_BYTE);
+    if (serVer != SER_VER) {
+      throw new SketchesArgumentException(
+          "Serialization Version must equal " + SER_VER + " at offset " + offsetBytes + ": " + serVer);
+    }
+    Family.COMPACT.checkFamilyID(famID);
+    if (((flags & COMPACT_FLAG_MASK) == 0) || (preLongs < 1) || (preLongs > 3)) {
+      throw new SketchesArgumentException("Corrupted compact sketch at offset " + offsetBytes
+          + ", PreambleLongs: " + preLongs + ", Flags: " + flags);
+    }
+    if ((cap - offsetBytes) < (preLongs << 3)) {
+      throw new SketchesArgumentException("Truncated preamble at offset " + offsetBytes);
+    }
+    Util.checkSeedHashes(seedHash, mem.getShort(offsetBytes + SEED_HASH_SHORT));
+    final int curCount = (preLongs > 1) ? mem.getInt(offsetBytes + RETAINED_ENTRIES_INT) : 0;
+    if (curCount < 0) {
+      throw new SketchesArgumentException(
+          "Corrupted compact sketch at offset " + offsetBytes + ", curCount: " + curCount);
+    }
+    final long bytes = ((long) preLongs + curCount) << 3;
+    if (bytes > (cap - offsetBytes)) {
+      throw new SketchesArgumentException("Truncated sketch at offset " + offsetBytes
+          + ", Need: " + bytes + ", bytes remaining: " + (cap - offsetBytes));
+    }
+    return bytes;
+  }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.theta.UpdateReturnState.InsertedCountIncremented;
+import static com.yahoo.sketches.theta.UpdateReturnState.RejectedDuplicate;
+import static com.yahoo.sketches.theta.UpdateReturnState.RejectedOverTheta;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.HashOperations;
+import com.yahoo.sketches.ResizeFactor;
+
+/**
+ * The local buffer of the concurrent theta sketch. Each writer thread owns its own instance, which
+ * must not be shared with other threads. Updates are collected in a small local hash table and,
+ * whenever the table holds the configured number of local nominal entries, the hashes are handed
+ * over to the {@link ConcurrentSharedThetaSketch shared sketch} to be merged in the background.
+ *
+ * <p>The buffer owns two tables. While the shared sketch merges one of them, the updates go into
+ * the other, and the tables are swapped on the next flush once that merge has completed. Thus at
+ * most one propagation per buffer is outstanding and the update path does not allocate.</p>
+ *
+ * <p>Hashes that are not less than the most recently published theta of the shared sketch are
+ * rejected immediately and never enter the local table.</p>
+ *
+ * <p>All queries, such as getEstimate(), are answered by the shared sketch and do not include the
+ * entries still held in this buffer. Call {@link #rebuild()} to flush this buffer and wait until
+ * its contents have been merged into the shared sketch.</p>
+ */
+final class ConcurrentHeapThetaBuffer extends HeapUpdateSketch {
+  private final ConcurrentSharedThetaSketch shared_;
+  private final int lgArrLongs_;
+  private final int maxCount_;
+  private final Semaphore permit_; //held while a propagation of this buffer is outstanding
+  private long[] cache_;
+  private long[] spare_; //the table of the outstanding or last propagation
+  private int curCount_;
+
+  private ConcurrentHeapThetaBuffer(final int lgLocalNomLongs,
+      final ConcurrentSharedThetaSketch shared) {
+    super(lgLocalNomLongs, shared.getSeed(), shared.getP(), ResizeFactor.X1);
+    shared_ = shared;
+    hashFunction_ = shared.getHashFunction();
+    lgArrLongs_ = lgNomLongs_ + 1;
+    maxCount_ = 1 << lgNomLongs_;
+    permit_ = new Semaphore(1);
+    cache_ = new long[1 << lgArrLongs_];
+    spare_ = new long[1 << lgArrLongs_];
+    curCount_ = 0;
+  }
+
+  /**
+   * Get a new local buffer instance that feeds the given shared sketch.
+   *
+   * @param lgLocalNomLongs the log-base 2 of the number of entries this buffer collects before
+   * they are propagated to the shared sketch.
+   * @param shared the shared sketch that this buffer feeds.
+   * @return instance of this local buffer
+   */
+  static ConcurrentHeapThetaBuffer initNewInstance(final int lgLocalNomLongs,
+      final ConcurrentSharedThetaSketch shared) {
+    return new ConcurrentHeapThetaBuffer(lgLocalNomLongs, shared);
+  }
+
+  //Sketch
+
+  @Override
+  public double getEstimate() {
+    return shared_.getEstimate();
+  }
+
+  @Override
+  public double getLowerBound(final int numStdDev) {
+    return shared_.getLowerBound(numStdDev);
+  }
+
+  @Override
+  public double getUpperBound(final int numStdDev) {
+    return shared_.getUpperBound(numStdDev);
+  }
+
+  @Override
+  public int getRetainedEntries(final boolean valid) {
+    return shared_.getRetainedEntries(valid);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return shared_.isEmpty();
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    return shared_.toByteArray();
+  }
+
+  @Override
+  public Family getFamily() {
+    return shared_.getFamily();
+  }
+
+  //UpdateSketch
+
+  @Override
+  public CompactSketch compact(final boolean dstOrdered, final Memory dstMem) {
+    return shared_.compact(dstOrdered, dstMem);
+  }
+
+  /**
+   * Propagates the contents of this local buffer to the shared sketch and waits until all of
+   * the propagations of this buffer have been applied.
+   * @return this sketch
+   */
+  @Override
+  public UpdateSketch rebuild() {
+    flushBuffer();
+    shared_.awaitPropagation();
+    return this;
+  }
+
+  /**
+   * Clears only the contents of this local buffer. The shared sketch is not affected.
+   */
+  @Override
+  public void reset() {
+    Arrays.fill(cache_, 0L);
+    curCount_ = 0;
+  }
+
+  //restricted methods
+
+  @Override
+  int getPreambleLongs() {
+    return shared_.getPreambleLongs();
+  }
+
+  @Override
+  Memory getMemory() {
+    return null;
+  }
+
+  @Override
+  long[] getCache() {
+    return shared_.getCache();
+  }
+
+  @Override
+  long getThetaLong() {
+    return shared_.getVolatileThetaLong();
+  }
+
+  @Override
+  boolean isDirty() {
+    return curCount_ > 0;
+  }
+
+  @Override
+  int getLgArrLongs() {
+    return shared_.getLgArrLongs();
+  }
+
+  @Override
+  UpdateReturnState hashUpdate(final long hash) {
+    HashOperations.checkHashCorruption(hash);
+
+    //The over-theta test against the most recently published theta of the shared sketch
+    if (HashOperations.continueCondition(shared_.getVolatileThetaLong(), hash)) {
+      return RejectedOverTheta;
+    }
+
+    //The duplicate test, local to this buffer only
+    if (HashOperations.hashSearchOrInsert(cache_, lgArrLongs_, hash) >= 0) {
+      return RejectedDuplicate;
+    }
+    curCount_++;
+
+    if (curCount_ >= maxCount_) {
+      flushBuffer();
+    }
+    return InsertedCountIncremented;
+  }
+
+  /**
+   * Hands the hashes of this buffer that are still below the shared theta over to the shared
+   * sketch and continues with the spare table. This first waits for the previous propagation of
+   * this buffer to complete, which frees the spare table.
+   */
+  private void flushBuffer() {
+    if (curCount_ == 0) { return; }
+    permit_.acquireUninterruptibly();
+    final long thetaLong = shared_.getVolatileThetaLong();
+    final long[] cache = cache_;
+    int count = 0;
+    for (int i = 0; i < cache.length; i++) {
+      final long hash = cache[i];
+      if ((hash != 0) && (hash < thetaLong)) {
+        cache[count++] = hash; //compact in place, count never exceeds i
+      }
+    }
+    cache_ = spare_;
+    spare_ = cache;
+    Arrays.fill(cache_, 0L);
+    curCount_ = 0;
+    shared_.propagate(cache, count, permit_);
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * A pool of single-threaded executors used to propagate the contents of the local buffers of the
+ * concurrent theta sketches into their shared sketches in the background.
+ *
+ * <p>Each shared sketch is bound to exactly one executor of this pool for its lifetime. Because
+ * each executor has a single thread, all propagations into the same shared sketch are applied
+ * serially and in submission order, while different shared sketches can be fed in parallel.</p>
+ *
+ * <p>The pool is created lazily on first use. Its threads are daemon threads so that they never
+ * prevent the JVM from exiting.</p>
+ */
+final class ConcurrentPropagationService {
+  static final int DEFAULT_NUM_POOL_THREADS = 3;
+
+  private static int numPoolThreads = DEFAULT_NUM_POOL_THREADS;
+  private static volatile ExecutorService[] executors = null;
+  private static final AtomicInteger nextExecutor = new AtomicInteger();
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private ConcurrentPropagationService() {}
+
+  /**
+   * Sets the number of background propagation threads. This has effect only if called before
+   * the first concurrent shared sketch is built.
+   * @param numThreads the number of background propagation threads. Must be at least 1.
+   */
+  static synchronized void setNumPoolThreads(final int numThreads) {
+    if (numThreads < 1) {
+      throw new SketchesArgumentException("Number of pool threads must be >= 1: " + numThreads);
+    }
+    if (executors == null) {
+      numPoolThreads = numThreads;
+    }
+  }
+
+  /**
+   * Returns the number of background propagation threads
+   * @return the number of background propagation threads
+   */
+  static synchronized int getNumPoolThreads() {
+    return numPoolThreads;
+  }
+
+  /**
+   * Returns the next executor of the pool in round-robin order.
+   * @return the next executor of the pool in round-robin order.
+   */
+  static ExecutorService getExecutor() {
+    ExecutorService[] execs = executors;
+    if (execs == null) {
+      execs = initExecutors();
+    }
+    final int idx = (nextExecutor.getAndIncrement() & Integer.MAX_VALUE) % execs.length;
+    return execs[idx];
+  }
+
+  private static synchronized ExecutorService[] initExecutors() {
+    if (executors == null) {
+      final ThreadFactory factory = new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          final Thread t = new Thread(r, "theta-propagation-" + threadCount.getAndIncrement());
+          t.setDaemon(true);
+          return t;
+        }
+      };
+      final ExecutorService[] execs = new ExecutorService[numPoolThreads];
+      for (int i = 0; i < numPoolThreads; i++) {
+        execs[i] = Executors.newSingleThreadExecutor(factory);
+      }
+      executors = execs;
+    }
+    return executors;
+  }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesStateException;
+
+/**
+ * The shared sketch of the concurrent theta sketch. It wraps a QuickSelect gadget, either on-heap
+ * or direct, that is updated only by a single background propagation thread with the hashes that
+ * have been collected by any number of {@link ConcurrentHeapThetaBuffer local buffers}.
+ *
+ * <p>After every propagation the gadget's theta, retained entries and estimate are published
+ * through volatile fields. The local buffers use the published theta to reject hashes that could
+ * never enter the gadget and readers obtain the published estimate without ever blocking the
+ * writers.</p>
+ *
+ * <p>Methods that read the gadget directly, such as compact() or toByteArray(), first wait for the
+ * pending propagations of this sketch to complete.</p>
+ *
+ * <p>Each local buffer has at most one propagation outstanding, so the queue of the propagation
+ * executor holds at most one task per buffer. A buffer that fills up again before its previous
+ * propagation has been applied waits for it, which pushes back on writers that are faster than
+ * the propagation thread.</p>
+ */
+final class ConcurrentSharedThetaSketch extends UpdateSketch {
+  private final UpdateSketch gadget_;
+  private final ExecutorService executor_;
+  private volatile long volatileThetaLong_;
+  private volatile double volatileEstimate_;
+  private volatile int volatileCurCount_;
+  private volatile boolean volatileEmpty_;
+
+  private ConcurrentSharedThetaSketch(final UpdateSketch gadget) {
+    gadget_ = gadget;
+    executor_ = ConcurrentPropagationService.getExecutor();
+    publish();
+  }
+
+  /**
+   * Get a new shared sketch instance on the java heap.
+   *
+   * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLogs">See lgNomLongs</a>.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
+   * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @return instance of this sketch
+   */
+  static ConcurrentSharedThetaSketch initNewHeapInstance(final int lgNomLongs, final long seed,
+      final float p, final ResizeFactor rf) {
+    final UpdateSketch gadget =
+        HeapQuickSelectSketch.initNewHeapInstance(lgNomLongs, seed, p, rf, false);
+    return new ConcurrentSharedThetaSketch(gadget);
+  }
+
+  /**
+   * Get a new shared sketch instance and initialize the given Memory as its backing store.
+   *
+   * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLongs">See lgNomLongs</a>.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
+   * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param dstMem the given Memory object destination. It cannot be null.
+   * It will be cleared prior to use.
+   * @return instance of this sketch
+   */
+  static ConcurrentSharedThetaSketch initNewDirectInstance(final int lgNomLongs, final long seed,
+      final float p, final ResizeFactor rf, final Memory dstMem) {
+    final UpdateSketch gadget =
+        DirectQuickSelectSketch.initNewDirectInstance(lgNomLongs, seed, p, rf, dstMem, false);
+    return new ConcurrentSharedThetaSketch(gadget);
+  }
+
+  //Sketch
+
+  @Override
+  public double getEstimate() {
+    return volatileEstimate_;
+  }
+
+  @Override
+  public int getRetainedEntries(final boolean valid) {
+    return volatileCurCount_;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return volatileEmpty_;
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    awaitPropagation();
+    synchronized (this) {
+      return gadget_.toByteArray();
+    }
+  }
+
+  @Override
+  public Family getFamily() {
+    return gadget_.getFamily();
+  }
+
+  @Override
+  public boolean isDirect() {
+    return gadget_.isDirect();
+  }
+
+  //UpdateSketch
+
+  @Override
+  public CompactSketch compact(final boolean dstOrdered, final Memory dstMem) {
+    awaitPropagation();
+    synchronized (this) {
+      return gadget_.compact(dstOrdered, dstMem);
+    }
+  }
+
+  @Override
+  public UpdateSketch rebuild() {
+    awaitPropagation();
+    synchronized (this) {
+      gadget_.rebuild();
+      publish();
+    }
+    return this;
+  }
+
+  @Override
+  public void reset() {
+    awaitPropagation();
+    synchronized (this) {
+      gadget_.reset();
+      publish();
+    }
+  }
+
+  @Override
+  public ResizeFactor getResizeFactor() {
+    return gadget_.getResizeFactor();
+  }
+
+  //restricted methods
+
+  @Override
+  int getPreambleLongs() {
+    return gadget_.getPreambleLongs();
+  }
+
+  @Override
+  short getSeedHash() {
+    return gadget_.getSeedHash();
+  }
+
+  @Override
+  long getThetaLong() {
+    return volatileThetaLong_;
+  }
+
+  @Override
+  synchronized long[] getCache() {
+    return gadget_.getCache();
+  }
+
+  @Override
+  Memory getMemory() {
+    return gadget_.getMemory();
+  }
+
+  @Override
+  synchronized UpdateReturnState hashUpdate(final long hash) {
+    final UpdateReturnState state = gadget_.hashUpdate(hash);
+    publish();
+    return state;
+  }
+
+  @Override
+  synchronized int getLgArrLongs() {
+    return gadget_.getLgArrLongs();
+  }
+
+  @Override
+  int getLgNomLongs() {
+    return gadget_.getLgNomLongs();
+  }
+
+  @Override
+  int getLgResizeFactor() {
+    return gadget_.getLgResizeFactor();
+  }
+
+  @Override
+  float getP() {
+    return gadget_.getP();
+  }
+
+  @Override
+  long getSeed() {
+    return gadget_.getSeed();
+  }
+
+  @Override
+  boolean isDirty() {
+    return false;
+  }
+
+  /**
+   * Returns the most recently published theta of the gadget. Used by the local buffers as a
+   * pre-filter so that hashes above theta never touch the shared state.
+   * @return the most recently published theta of the gadget.
+   */
+  long getVolatileThetaLong() {
+    return volatileThetaLong_;
+  }
+
+  /**
+   * Schedules the given hashes to be inserted into the gadget by the background propagation
+   * thread. The caller must hold the given permit, which is released once the hashes have been
+   * applied. The given array must not be modified by the caller until then.
+   * @param hashes the hashes to propagate
+   * @param count the number of valid hashes at the beginning of the given array
+   * @param permit the permit of the calling buffer for its one outstanding propagation
+   */
+  void propagate(final long[] hashes, final int count, final Semaphore permit) {
+    executor_.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          synchronized (ConcurrentSharedThetaSketch.this) {
+            for (int i = 0; i < count; i++) {
+              gadget_.hashUpdate(hashes[i]); //backdoor update, hash function is bypassed
+            }
+            publish();
+          }
+        } finally {
+          permit.release();
+        }
+      }
+    });
+  }
+
+  /**
+   * Blocks until all propagations submitted before this call have been applied to the gadget.
+   */
+  void awaitPropagation() {
+    //The executor is single threaded, thus when this marker completes all prior tasks are done.
+    final Future<?> marker = executor_.submit(new Runnable() {
+      @Override
+      public void run() { }
+    });
+    try {
+      marker.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SketchesStateException("Interrupted while waiting for propagation");
+    } catch (final ExecutionException e) {
+      throw new SketchesStateException("Propagation failed: " + e.getCause());
+    }
+  }
+
+  //must be called while holding the lock on this
+  private void publish() {
+    volatileEmpty_ = gadget_.isEmpty();
+    volatileThetaLong_ = gadget_.getThetaLong();
+    volatileCurCount_ = gadget_.getRetainedEntries(true);
+    volatileEstimate_ = gadget_.getEstimate();
+  }
+
+}
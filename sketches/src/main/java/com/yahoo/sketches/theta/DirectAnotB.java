@@ -0,0 +1,306 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.HashOperations.hashInsertOnly;
+import static com.yahoo.sketches.HashOperations.hashSearch;
+import static com.yahoo.sketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.READ_ONLY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER;
+import static com.yahoo.sketches.theta.PreambleUtil.extractCurCount;
+import static com.yahoo.sketches.theta.PreambleUtil.extractFamilyID;
+import static com.yahoo.sketches.theta.PreambleUtil.extractFlags;
+import static com.yahoo.sketches.theta.PreambleUtil.extractPreLongs;
+import static com.yahoo.sketches.theta.PreambleUtil.extractSeedHash;
+import static com.yahoo.sketches.theta.PreambleUtil.extractSerVer;
+import static com.yahoo.sketches.theta.PreambleUtil.extractThetaLong;
+import static com.yahoo.sketches.theta.PreambleUtil.insertCurCount;
+import static com.yahoo.sketches.theta.PreambleUtil.insertFamilyID;
+import static com.yahoo.sketches.theta.PreambleUtil.insertFlags;
+import static com.yahoo.sketches.theta.PreambleUtil.insertP;
+import static com.yahoo.sketches.theta.PreambleUtil.insertPreLongs;
+import static com.yahoo.sketches.theta.PreambleUtil.insertSeedHash;
+import static com.yahoo.sketches.theta.PreambleUtil.insertSerVer;
+import static com.yahoo.sketches.theta.PreambleUtil.insertThetaLong;
+import static java.lang.Math.min;
+
+import java.util.Arrays;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.Util;
+
+/**
+ * A-and-not-B operation for Theta Sketches, with its state in a given Memory that is owned and
+ * managed by the caller.
+ *
+ * <p>The state is the preamble followed by the retained hashes of A, in increasing order, that
+ * have not yet been removed by any B. Because the hashes are kept ordered, subtracting an ordered
+ * compact B, on-heap or off-heap, is a merge and subtracting a hash table B only probes B in
+ * place. Neither allocates. Only an unordered A, which must be sorted once, and an unordered
+ * compact B, which must be converted to a hash table, use temporary space on the Java heap.</p>
+ */
+final class DirectAnotB extends SetOperation implements AnotB {
+  private static final int PRE_BYTES = CONST_PREAMBLE_LONGS << 3;
+  private final short seedHash_;
+  private final Memory mem_;
+  private final Object memObj_;
+  private final long memAdd_;
+  private final int maxEntries_;
+
+  private int curCount_;
+  private long thetaLong_;
+  private boolean empty_;
+
+  private DirectAnotB(final Memory mem, final short seedHash) {
+    mem_ = mem;
+    memObj_ = mem.array(); //may be null
+    memAdd_ = mem.getCumulativeOffset(0L);
+    seedHash_ = seedHash;
+    final long cap = mem.getCapacity();
+    if (cap < PRE_BYTES) {
+      throw new SketchesArgumentException("dstMem not large enough for the preamble: " + cap);
+    }
+    maxEntries_ = (int) min((cap - PRE_BYTES) >>> 3, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Construct a new AnotB direct to the given destination Memory. Called by SetOperation.Builder.
+   *
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Seed</a>
+   * @param dstMem destination Memory.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return a new DirectAnotB
+   */
+  static DirectAnotB initNewDirectInstance(final long seed, final Memory dstMem) {
+    final DirectAnotB impl = new DirectAnotB(dstMem, computeSeedHash(seed));
+    final Object memObj = impl.memObj_;
+    final long memAdd = impl.memAdd_;
+    insertPreLongs(memObj, memAdd, CONST_PREAMBLE_LONGS);
+    insertSerVer(memObj, memAdd, SER_VER);
+    insertFamilyID(memObj, memAdd, Family.A_NOT_B.getID());
+    insertSeedHash(memObj, memAdd, impl.seedHash_);
+    insertP(memObj, memAdd, (float) 1.0);
+    impl.reset();
+    return impl;
+  }
+
+  /**
+   * Wrap an AnotB around the given source Memory containing AnotB data.
+   * @param srcMem The source Memory image.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @return a DirectAnotB that continues with the state in the given Memory
+   */
+  static DirectAnotB wrapInstance(final Memory srcMem, final long seed) {
+    final Object memObj = srcMem.array(); //may be null
+    final long memAdd = srcMem.getCumulativeOffset(0L);
+    final int preLongsMem = extractPreLongs(memObj, memAdd);
+    if (preLongsMem != CONST_PREAMBLE_LONGS) {
+      throw new SketchesArgumentException(
+          "Memory PreambleLongs must equal " + CONST_PREAMBLE_LONGS + ": " + preLongsMem);
+    }
+    if (extractSerVer(memObj, memAdd) != SER_VER) {
+      throw new SketchesArgumentException("Serialization Version must equal " + SER_VER);
+    }
+    Family.A_NOT_B.checkFamilyID(extractFamilyID(memObj, memAdd));
+    final short seedHash = (short) extractSeedHash(memObj, memAdd);
+    Util.checkSeedHashes(seedHash, computeSeedHash(seed));
+
+    final DirectAnotB impl = new DirectAnotB(srcMem, seedHash);
+    impl.curCount_ = extractCurCount(memObj, memAdd);
+    impl.thetaLong_ = extractThetaLong(memObj, memAdd);
+    impl.empty_ = (extractFlags(memObj, memAdd) & EMPTY_FLAG_MASK) > 0;
+    if ((impl.curCount_ < 0) || (impl.curCount_ > impl.maxEntries_)
+        || (impl.empty_ && (impl.curCount_ != 0))) {
+      throw new SketchesArgumentException("Corrupted AnotB image, curCount: " + impl.curCount_);
+    }
+    return impl;
+  }
+
+  @Override
+  public void update(final Sketch a, final Sketch b) {
+    setA(a);
+    notB(b);
+  }
+
+  @Override
+  public void setA(final Sketch a) {
+    if (a == null) {
+      reset();
+      return;
+    }
+    Util.checkSeedHashes(seedHash_, a.getSeedHash());
+    final long thetaLong = a.getThetaLong();
+    final int count = a.getRetainedEntries(true);
+    if (count > maxEntries_) {
+      throw new SketchesArgumentException(
+          "Insufficient dstMem: " + maxEntries_ + " entries, Need: " + count);
+    }
+    if (a.isOrdered()) {
+      final HashIterator it = a.iterator();
+      int i = 0;
+      while (it.next()) {
+        mem_.putLong(PRE_BYTES + (i++ << 3), it.get());
+      }
+      curCount_ = i;
+    } else {
+      final long[] hashes = new long[count];
+      int i = 0;
+      final HashIterator it = a.iterator();
+      while (it.next()) {
+        hashes[i++] = it.get();
+      }
+      Arrays.sort(hashes, 0, i);
+      mem_.putLongArray(PRE_BYTES, hashes, 0, i);
+      curCount_ = i;
+    }
+    thetaLong_ = thetaLong;
+    empty_ = a.isEmpty();
+    storeState();
+  }
+
+  @Override
+  public void notB(final Sketch b) {
+    if (b == null) { return; } //null is interpreted as (Theta = 1.0, count = 0, empty = T)
+    Util.checkSeedHashes(seedHash_, b.getSeedHash());
+    thetaLong_ = min(thetaLong_, b.getThetaLong()); //Theta rule
+    curCount_ = subtract(mem_, PRE_BYTES, curCount_, thetaLong_, b);
+    storeState();
+  }
+
+  @Override
+  public CompactSketch getResult(final boolean dstOrdered, final Memory dstMem) {
+    final CompactSketch result;
+    if (dstOrdered && (dstMem != null)) { //copy Memory to Memory without the Java heap
+      final int preLongs = Sketch.compactPreambleLongs(thetaLong_, empty_);
+      final long outBytes = (preLongs + curCount_) << 3;
+      if (outBytes > dstMem.getCapacity()) {
+        throw new SketchesArgumentException("Insufficient Memory: " + dstMem.getCapacity()
+          + ", Need: " + outBytes);
+      }
+      NativeMemory.copy(mem_, PRE_BYTES, dstMem, preLongs << 3, curCount_ << 3);
+      final int emptyBit = empty_ ? EMPTY_FLAG_MASK : 0;
+      final byte flags =
+          (byte) (emptyBit | READ_ONLY_FLAG_MASK | COMPACT_FLAG_MASK | ORDERED_FLAG_MASK);
+      CompactSketch.loadCompactMemory(null, empty_, seedHash_, curCount_, thetaLong_, dstMem, flags);
+      result = DirectCompactOrderedSketch.wrapInstance(dstMem, empty_, seedHash_, curCount_,
+          thetaLong_);
+    } else {
+      final long[] cache = new long[curCount_];
+      mem_.getLongArray(PRE_BYTES, cache, 0, curCount_);
+      result = CompactSketch.createCompactSketch(cache, empty_, seedHash_, curCount_, thetaLong_,
+          dstOrdered, dstMem);
+    }
+    reset();
+    return result;
+  }
+
+  @Override
+  public CompactSketch getResult() {
+    return getResult(true, null);
+  }
+
+  @Override
+  public double getEstimate() {
+    return Sketch.estimate(thetaLong_, curCount_, empty_);
+  }
+
+  @Override
+  public double getLowerBound(final int numStdDev) {
+    return Sketch.lowerBound(curCount_, thetaLong_, numStdDev, empty_);
+  }
+
+  @Override
+  public double getUpperBound(final int numStdDev) {
+    return Sketch.upperBound(curCount_, thetaLong_, numStdDev, empty_);
+  }
+
+  @Override
+  public Family getFamily() {
+    return Family.A_NOT_B;
+  }
+
+  //restricted
+
+  /**
+   * Removes from the given ordered hashes those that are not less than the given theta or are
+   * retained by the given sketch. The remaining hashes are compacted in place and stay ordered.
+   * @param mem the Memory that holds the ordered hashes
+   * @param offsetBytes the offset of the first hash in bytes
+   * @param count the number of hashes
+   * @param thetaLong the theta of the result
+   * @param b the sketch to subtract, not null
+   * @return the number of remaining hashes
+   */
+  static int subtract(final Memory mem, final int offsetBytes, final int count,
+      final long thetaLong, final Sketch b) {
+    //the hashes are ordered, so those >= theta are at the end
+    int n = count;
+    while ((n > 0) && (mem.getLong(offsetBytes + ((n - 1) << 3)) >= thetaLong)) { n--; }
+    if ((n == 0) || (b.getRetainedEntries(true) == 0)) { return n; }
+
+    int out = 0;
+    if (b.isOrdered()) { //merge with a cursor, which gallops over B
+      final OrderedHashCursor cursor = new OrderedHashCursor((CompactSketch) b);
+      for (int i = 0; i < n; i++) {
+        final long hash = mem.getLong(offsetBytes + (i << 3));
+        if (cursor.seekCeiling(hash) && (cursor.current() == hash)) { continue; }
+        mem.putLong(offsetBytes + (out++ << 3), hash);
+      }
+      return out;
+    }
+    if (b instanceof DirectQuickSelectSketch) { //search the hash table of B in place
+      final Memory bMem = b.getMemory();
+      final int lgArrLongs = ((UpdateSketch) b).getLgArrLongs();
+      final int bOffsetBytes = b.getPreambleLongs() << 3;
+      for (int i = 0; i < n; i++) {
+        final long hash = mem.getLong(offsetBytes + (i << 3));
+        if (hashSearch(bMem, lgArrLongs, hash, bOffsetBytes) > -1) { continue; }
+        mem.putLong(offsetBytes + (out++ << 3), hash);
+      }
+      return out;
+    }
+    final long[] bHashTable;
+    final int lgArrLongs;
+    if (b instanceof UpdateSketch) { //heap hash table, getCache() is not a copy
+      bHashTable = b.getCache();
+      lgArrLongs = ((UpdateSketch) b).getLgArrLongs();
+    } else { //unordered compact B must be converted to a hash table
+      lgArrLongs = computeMinLgArrLongsFromCount(b.getRetainedEntries(true));
+      bHashTable = new long[1 << lgArrLongs];
+      final HashIterator it = b.iterator();
+      while (it.next()) {
+        final long hash = it.get();
+        if (hash < thetaLong) { hashInsertOnly(bHashTable, lgArrLongs, hash); }
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      final long hash = mem.getLong(offsetBytes + (i << 3));
+      if (hashSearch(bHashTable, lgArrLongs, hash) > -1) { continue; }
+      mem.putLong(offsetBytes + (out++ << 3), hash);
+    }
+    return out;
+  }
+
+  private void storeState() {
+    insertCurCount(memObj_, memAdd_, curCount_);
+    insertThetaLong(memObj_, memAdd_, thetaLong_);
+    insertFlags(memObj_, memAdd_, empty_ ? EMPTY_FLAG_MASK : 0);
+  }
+
+  private void reset() {
+    curCount_ = 0;
+    thetaLong_ = Long.MAX_VALUE;
+    empty_ = true;
+    storeState();
+  }
+
+}
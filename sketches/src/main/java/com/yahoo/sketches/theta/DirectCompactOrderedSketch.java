@@ -66,6 +66,27 @@ final class DirectCompactOrderedSketch extends CompactSketch {
     return dcos;
   }
 
+  /**
+   * Wraps the given Memory, into which a SerVer 3 ordered compact sketch with the given,
+   * already validated, components has just been written.
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param empty The correct <a href="{@docRoot}/resources/dictionary.html#empty">Empty</a>.
+   * @param seedHash The correct
+   * <a href="{@docRoot}/resources/dictionary.html#seedHash">Seed Hash</a>.
+   * @param curCount correct value
+   * @param thetaLong The correct
+   * <a href="{@docRoot}/resources/dictionary.html#thetaLong">thetaLong</a>.
+   * @return this sketch
+   */
+  static DirectCompactOrderedSketch wrapInstance(final Memory srcMem, final boolean empty,
+      final short seedHash, final int curCount, final long thetaLong) {
+    final DirectCompactOrderedSketch dcos =
+        new DirectCompactOrderedSketch(empty, seedHash, curCount, thetaLong);
+    dcos.preLongs_ = srcMem.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
+    dcos.mem_ = srcMem;
+    return dcos;
+  }
+
   /**   //TODO convert to factory
    * Converts the given UpdateSketch to this compact ordered form.
    * @param sketch the given UpdateSketch
@@ -119,6 +140,11 @@ final class DirectCompactOrderedSketch extends CompactSketch {
     return DirectCompactSketch.compactMemoryToByteArray(mem_, getRetainedEntries(false));
   }
 
+  @Override
+  public HashIterator iterator() {
+    return new MemoryHashIterator(mem_, preLongs_ << 3, getRetainedEntries(false), getThetaLong());
+  }
+
   //restricted methods
 
   @Override
@@ -112,6 +112,11 @@ final class DirectCompactSketch extends CompactSketch {
     return DirectCompactSketch.compactMemoryToByteArray(mem_, getRetainedEntries(false));
   }
 
+  @Override
+  public HashIterator iterator() {
+    return new MemoryHashIterator(mem_, preLongs_ << 3, getRetainedEntries(false), getThetaLong());
+  }
+
   //restricted methods
 
   @Override
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.checkSeedHashes;
+import static com.yahoo.sketches.theta.PreambleUtil.BLOCK_BASE_LONG;
+import static com.yahoo.sketches.theta.PreambleUtil.BLOCK_BITS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.BLOCK_DATA_OFFSET_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.BLOCK_DIR_BYTES;
+import static com.yahoo.sketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.DATA_LONGS_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.FAMILY_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.FLAGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.LG_BLOCK_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.READ_ONLY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.SEED_HASH_SHORT;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
+import static com.yahoo.sketches.theta.PreambleUtil.THETA_LONG;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.Util;
+
+/**
+ * An off-heap (Direct), compact, ordered, read-only sketch in the compressed SerVer 4 form, where
+ * the deltas between successive hashes are bit-packed in blocks. See {@link PreambleUtil} for the
+ * layout.
+ *
+ * <p>The hashes are never inflated as a whole by the set operations. They are decoded one block at
+ * a time by {@link OrderedHashCursor}, which uses the first hash of every block in the directory
+ * to skip whole blocks without decoding them.</p>
+ */
+final class DirectCompressedCompactSketch extends CompactSketch {
+  static final int LG_BLOCK = 7; //of the writer
+  static final int PRE_BYTES = 24;
+  private final Memory mem_;
+  private final int lgBlock_;
+  private final int numBlocks_;
+  private final int dataOffsetBytes_;
+
+  private DirectCompressedCompactSketch(final Memory mem, final boolean empty,
+      final short seedHash, final int curCount, final long thetaLong, final int lgBlock) {
+    super(empty, seedHash, curCount, thetaLong);
+    mem_ = mem;
+    lgBlock_ = lgBlock;
+    numBlocks_ = numBlocks(curCount, lgBlock);
+    dataOffsetBytes_ = PRE_BYTES + (numBlocks_ * BLOCK_DIR_BYTES);
+  }
+
+  /**
+   * Wraps the given Memory, which must be a SerVer 4 compressed sketch.
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return this sketch
+   */
+  static DirectCompressedCompactSketch wrapInstance(final Memory srcMem, final long seed) {
+    return wrapInstance(srcMem, Util.computeSeedHash(seed));
+  }
+
+  /**
+   * Wraps the given Memory, which must be a SerVer 4 compressed sketch.
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seedHash the expected <a href="{@docRoot}/resources/dictionary.html#seedHash">Seed
+   * Hash</a>
+   * @return this sketch
+   */
+  static DirectCompressedCompactSketch wrapInstance(final Memory srcMem, final short seedHash) {
+    final long cap = srcMem.getCapacity();
+    if (cap < PRE_BYTES) {
+      throw new SketchesArgumentException("Corrupted: compressed image too small: " + cap);
+    }
+    final int serVer = srcMem.getByte(SER_VER_BYTE);
+    final int flags = srcMem.getByte(FLAGS_BYTE);
+    final int lgBlock = srcMem.getByte(LG_BLOCK_BYTE);
+    if ((serVer != SER_VER_COMPRESSED)
+        || (srcMem.getByte(FAMILY_BYTE) != Family.COMPACT.getID())
+        || ((flags & ORDERED_FLAG_MASK) == 0)
+        || (lgBlock < 1) || (lgBlock > 16)) {
+      throw new SketchesArgumentException("Corrupted: not a compressed compact sketch image");
+    }
+    final short memSeedHash = srcMem.getShort(SEED_HASH_SHORT);
+    checkSeedHashes(memSeedHash, seedHash);
+    final int curCount = srcMem.getInt(RETAINED_ENTRIES_INT);
+    final long reqBytes = PRE_BYTES + ((long) numBlocks(curCount, lgBlock) * BLOCK_DIR_BYTES)
+        + ((long) srcMem.getInt(DATA_LONGS_INT) << 3);
+    if ((curCount < 0) || (cap < reqBytes)) {
+      throw new SketchesArgumentException(
+          "Corrupted: compressed image capacity: " + cap + ", Need: " + reqBytes);
+    }
+    final boolean empty = (flags & EMPTY_FLAG_MASK) > 0;
+    return new DirectCompressedCompactSketch(srcMem, empty, memSeedHash, curCount,
+        srcMem.getLong(THETA_LONG), lgBlock);
+  }
+
+  /**
+   * Returns the compressed SerVer 4 image of the given sorted hashes.
+   * @param cache the sorted hashes
+   * @param empty The correct <a href="{@docRoot}/resources/dictionary.html#empty">Empty</a>.
+   * @param seedHash The correct
+   * <a href="{@docRoot}/resources/dictionary.html#seedHash">Seed Hash</a>.
+   * @param curCount the number of hashes
+   * @param thetaLong The correct
+   * <a href="{@docRoot}/resources/dictionary.html#thetaLong">thetaLong</a>.
+   * @return the compressed image
+   */
+  static byte[] compress(final long[] cache, final boolean empty, final short seedHash,
+      final int curCount, final long thetaLong) {
+    final int blockSize = 1 << LG_BLOCK;
+    final int numBlocks = numBlocks(curCount, LG_BLOCK);
+    final int[] bits = new int[numBlocks];
+    int dataLongs = 0;
+    for (int b = 0; b < numBlocks; b++) {
+      final int start = b << LG_BLOCK;
+      final int end = Math.min(curCount, start + blockSize);
+      long maxDelta = 0;
+      for (int i = start + 1; i < end; i++) {
+        maxDelta = Math.max(maxDelta, cache[i] - cache[i - 1]);
+      }
+      bits[b] = 64 - Long.numberOfLeadingZeros(maxDelta);
+      dataLongs += dataLongs(end - start, bits[b]);
+    }
+    final int dataOffsetBytes = PRE_BYTES + (numBlocks * BLOCK_DIR_BYTES);
+    final byte[] out = new byte[dataOffsetBytes + (dataLongs << 3)];
+    final Memory mem = new NativeMemory(out);
+    mem.putByte(PREAMBLE_LONGS_BYTE, (byte) 3);
+    mem.putByte(SER_VER_BYTE, (byte) SER_VER_COMPRESSED);
+    mem.putByte(FAMILY_BYTE, (byte) Family.COMPACT.getID());
+    mem.putByte(LG_BLOCK_BYTE, (byte) LG_BLOCK);
+    mem.putByte(FLAGS_BYTE, (byte) (READ_ONLY_FLAG_MASK | ORDERED_FLAG_MASK //not COMPACT
+        | (empty ? EMPTY_FLAG_MASK : 0)));
+    mem.putShort(SEED_HASH_SHORT, seedHash);
+    mem.putInt(RETAINED_ENTRIES_INT, curCount);
+    mem.putInt(DATA_LONGS_INT, dataLongs);
+    mem.putLong(THETA_LONG, thetaLong);
+
+    int dataOffsetLongs = 0;
+    for (int b = 0; b < numBlocks; b++) {
+      final int start = b << LG_BLOCK;
+      final int end = Math.min(curCount, start + blockSize);
+      final int dirOffset = PRE_BYTES + (b * BLOCK_DIR_BYTES);
+      mem.putLong(dirOffset + BLOCK_BASE_LONG, cache[start]);
+      mem.putInt(dirOffset + BLOCK_DATA_OFFSET_INT, dataOffsetLongs);
+      mem.putByte(dirOffset + BLOCK_BITS_BYTE, (byte) bits[b]);
+      final int w = bits[b];
+      long word = 0;
+      int used = 0; //bits of word
+      int wordOffset = dataOffsetBytes + (dataOffsetLongs << 3);
+      for (int i = start + 1; i < end; i++) {
+        final long delta = cache[i] - cache[i - 1];
+        word |= delta << used;
+        used += w;
+        if (used >= 64) {
+          mem.putLong(wordOffset, word);
+          wordOffset += 8;
+          used -= 64;
+          word = (used == 0) ? 0 : delta >>> (w - used); //the high bits that did not fit
+        }
+      }
+      if (used > 0) { mem.putLong(wordOffset, word); }
+      dataOffsetLongs += dataLongs(end - start, w);
+    }
+    return out;
+  }
+
+  //Sketch interface
+
+  /**
+   * Returns the uncompressed SerVer 3 image of this sketch. See
+   * {@link #toCompressedByteArray()} for the compressed image.
+   */
+  @Override
+  public byte[] toByteArray() {
+    final int curCount = getRetainedEntries(false);
+    final int outBytes = (compactPreambleLongs(getThetaLong(), isEmpty()) + curCount) << 3;
+    final byte[] out = new byte[outBytes];
+    final byte flags = (byte) ((isEmpty() ? EMPTY_FLAG_MASK : 0) | READ_ONLY_FLAG_MASK
+        | COMPACT_FLAG_MASK | ORDERED_FLAG_MASK);
+    loadCompactMemory(getCache(), isEmpty(), getSeedHash(), curCount, getThetaLong(),
+        new NativeMemory(out), flags);
+    return out;
+  }
+
+  @Override
+  public byte[] toCompressedByteArray() {
+    final int bytes = dataOffsetBytes_ + (mem_.getInt(DATA_LONGS_INT) << 3);
+    final byte[] out = new byte[bytes];
+    mem_.getByteArray(0, out, 0, bytes);
+    return out;
+  }
+
+  @Override
+  public HashIterator iterator() {
+    return new BlockHashIterator();
+  }
+
+  //restricted methods
+
+  @Override
+  public boolean isDirect() {
+    return true;
+  }
+
+  @Override
+  public boolean isOrdered() {
+    return true;
+  }
+
+  /**
+   * Decodes all hashes. The set operations use {@link OrderedHashCursor} or {@link #iterator()}
+   * instead.
+   */
+  @Override
+  long[] getCache() {
+    final int curCount = getRetainedEntries(false);
+    final long[] cache = new long[curCount];
+    final long[] words = new long[wordsBufferLength()];
+    final long[] block = new long[blockSize()];
+    for (int b = 0; b < numBlocks_; b++) {
+      final int n = decodeBlock(b, block, words);
+      System.arraycopy(block, 0, cache, b << lgBlock_, n);
+    }
+    return cache;
+  }
+
+  @Override
+  Memory getMemory() {
+    return mem_;
+  }
+
+  int getLgBlock() {
+    return lgBlock_;
+  }
+
+  int blockSize() {
+    return 1 << lgBlock_;
+  }
+
+  int getNumBlocks() {
+    return numBlocks_;
+  }
+
+  /**
+   * Returns the length of the scratch array required by {@link #decodeBlock(int, long[], long[])}
+   * @return the length of the scratch array required by decodeBlock
+   */
+  int wordsBufferLength() {
+    return dataLongs(blockSize(), 63) + 1;
+  }
+
+  /**
+   * Returns the first hash of the given block without decoding it.
+   * @param block the given block
+   * @return the first hash of the given block
+   */
+  long getBlockBase(final int block) {
+    return mem_.getLong(PRE_BYTES + (block * BLOCK_DIR_BYTES) + BLOCK_BASE_LONG);
+  }
+
+  /**
+   * Decodes the hashes of the given block.
+   * @param block the given block
+   * @param hashes receives the hashes of the block, at least blockSize() long
+   * @param words scratch array, at least wordsBufferLength() long
+   * @return the number of hashes of the block
+   */
+  int decodeBlock(final int block, final long[] hashes, final long[] words) {
+    final int start = block << lgBlock_;
+    final int n = Math.min(getRetainedEntries(false) - start, 1 << lgBlock_);
+    final int dirOffset = PRE_BYTES + (block * BLOCK_DIR_BYTES);
+    long hash = mem_.getLong(dirOffset + BLOCK_BASE_LONG);
+    hashes[0] = hash;
+    final int w = mem_.getByte(dirOffset + BLOCK_BITS_BYTE);
+    if (n == 1) { return 1; }
+    final int numWords = dataLongs(n, w);
+    mem_.getLongArray(dataOffsetBytes_ + (mem_.getInt(dirOffset + BLOCK_DATA_OFFSET_INT) << 3),
+        words, 0, numWords);
+    words[numWords] = 0; //the last read may look one word ahead
+    final long mask = (1L << w) - 1L;
+    long bitPos = 0;
+    for (int i = 1; i < n; i++) {
+      final int idx = (int) (bitPos >>> 6);
+      final int shift = (int) (bitPos & 63L);
+      long delta = words[idx] >>> shift;
+      if ((shift + w) > 64) { delta |= words[idx + 1] << (64 - shift); }
+      hash += delta & mask;
+      hashes[i] = hash;
+      bitPos += w;
+    }
+    return n;
+  }
+
+  /**
+   * Decodes one block at a time.
+   */
+  private final class BlockHashIterator implements HashIterator {
+    private final long[] block_ = new long[blockSize()];
+    private final long[] words_ = new long[wordsBufferLength()];
+    private int blockIndex_ = -1;
+    private int n_ = 0; //of the decoded block
+    private int index_ = -1; //within the decoded block
+
+    @Override
+    public boolean next() {
+      if (++index_ < n_) { return true; }
+      if ((blockIndex_ + 1) >= numBlocks_) { return false; }
+      n_ = decodeBlock(++blockIndex_, block_, words_);
+      index_ = 0;
+      return true;
+    }
+
+    @Override
+    public long get() {
+      return block_[index_];
+    }
+  }
+
+  private static int numBlocks(final int curCount, final int lgBlock) {
+    return (curCount + (1 << lgBlock) - 1) >>> lgBlock;
+  }
+
+  //the data longs of a block with the given number of hashes and bits per delta
+  private static int dataLongs(final int n, final int bits) {
+    return (int) ((((long) (n - 1) * bits) + 63) >>> 6);
+  }
+
+}
@@ -55,6 +55,7 @@ import com.yahoo.sketches.HashOperations;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.Util;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * The default Theta Sketch using the QuickSelect algorithm.
@@ -303,6 +304,43 @@ final class DirectQuickSelectSketch extends DirectUpdateSketch {
     insertThetaLong(memObj_, memAdd_, thetaLong);
   }
 
+  @Override
+  public void update(final long[] values, final int off, final int len) {
+    if ((values == null) || (len == 0)) { return; }
+    checkBatchBounds(values.length, off, len);
+    final long seed = getSeed();
+    final HashFunction hashFunction = hashFunction_;
+    final int preBytes = preambleLongs_ << 3;
+    clearEmpty(memObj_, memAdd_);
+    //keep the hot preamble fields in locals, publish curCount only when out of space and at the end
+    long thetaLong = extractThetaLong(memObj_, memAdd_);
+    int lgArrLongs = extractLgArrLongs(memObj_, memAdd_);
+    int curCount = extractCurCount(memObj_, memAdd_);
+    final int end = off + len;
+    for (int i = off; i < end; i++) {
+      final long hash = hashFunction.hash64(values[i], seed) >>> 1; //never negative
+      if (HashOperations.continueCondition(thetaLong, hash)) { continue; }
+      if (HashOperations.fastHashSearchOrInsert(memObj_, memAdd_, lgArrLongs, hash, preBytes) >= 0) {
+        continue;
+      }
+      curCount++;
+      if (curCount > hashTableThreshold_) {
+        insertCurCount(memObj_, memAdd_, curCount);
+        rebuildOrResize(lgArrLongs, thetaLong); //may change mem_, memObj_ and memAdd_
+        thetaLong = extractThetaLong(memObj_, memAdd_);
+        lgArrLongs = extractLgArrLongs(memObj_, memAdd_);
+        curCount = extractCurCount(memObj_, memAdd_);
+      }
+    }
+    insertCurCount(memObj_, memAdd_, curCount);
+  }
+
+  @Override
+  public HashIterator iterator() {
+    return new MemoryHashIterator(mem_, preambleLongs_ << 3,
+        1 << extractLgArrLongs(memObj_, memAdd_), extractThetaLong(memObj_, memAdd_));
+  }
+
   //restricted methods
 
   @Override
@@ -363,48 +401,57 @@ final class DirectQuickSelectSketch extends DirectUpdateSketch {
     insertCurCount(memObj_, memAdd_, curCount); //update curCount
 
     if (curCount > hashTableThreshold_) { //we need to do something, we are out of space
-
-      if (lgArrLongs > lgNomLongs_) { //at full size, rebuild
-        //Assumes no dirty values, changes thetaLong, curCount_
-        assert (lgArrLongs == lgNomLongs_ + 1)
-            : "lgArr: " + lgArrLongs + ", lgNom: " + lgNomLongs_;
-        //rebuild, refresh curCount based on # values in the hashtable.
-        quickSelectAndRebuild(mem_, preambleLongs_, lgNomLongs_);
-      } //end of rebuild, exit
-
-      else { //Not at full size, resize. Should not get here if lgRF = 0 and memCap is too small.
-        final int lgRF = getLgResizeFactor();
-        final int actLgRF = actLgResizeFactor(mem_.getCapacity(), lgArrLongs, preambleLongs_, lgRF);
-        int tgtLgArrLongs = Math.min(lgArrLongs + actLgRF, lgNomLongs_ + 1);
-
-        if (actLgRF > 0) { //Expand in current Memory
-          //lgArrLongs will change; thetaLong, curCount will not
-          resize(mem_, preambleLongs_, lgArrLongs, tgtLgArrLongs);
-          hashTableThreshold_ = setHashTableThreshold(lgNomLongs_, tgtLgArrLongs);
-        } //end of Expand in current memory, exit.
-
-        else {
-          //Request more memory, then resize. lgArrLongs will change; thetaLong, curCount will not
-          final int preBytes = preambleLongs_ << 3;
-          tgtLgArrLongs = Math.min(lgArrLongs + lgRF, lgNomLongs_ + 1);
-          final int tgtArrBytes = 8 << tgtLgArrLongs;
-          final int reqBytes = tgtArrBytes + preBytes;
-
-          final Memory newDstMem = MemoryUtil.memoryRequestHandler(mem_, reqBytes, false);
-
-          moveAndResize(mem_, preambleLongs_, lgArrLongs, newDstMem, tgtLgArrLongs, thetaLong);
-          mem_.getMemoryRequest().free(mem_, newDstMem); //normal free mechanism via MemoryRequest
-
-          mem_ = newDstMem;
-          memObj_ = newDstMem.array(); //may be null
-          memAdd_ = newDstMem.getCumulativeOffset(0L);
-          hashTableThreshold_ = setHashTableThreshold(lgNomLongs_, tgtLgArrLongs);
-        } //end of Request more memory to resize
-      } //end of resize
+      rebuildOrResize(lgArrLongs, thetaLong);
     }
     return InsertedCountIncremented;
   }
 
+  /**
+   * Rebuilds or resizes the hash table when the current count has exceeded the hash table
+   * threshold. The current count must already be published to the preamble.
+   * @param lgArrLongs the current lgArrLongs
+   * @param thetaLong the current thetaLong
+   */
+  private void rebuildOrResize(final int lgArrLongs, final long thetaLong) {
+    if (lgArrLongs > lgNomLongs_) { //at full size, rebuild
+      //Assumes no dirty values, changes thetaLong, curCount_
+      assert (lgArrLongs == lgNomLongs_ + 1)
+          : "lgArr: " + lgArrLongs + ", lgNom: " + lgNomLongs_;
+      //rebuild, refresh curCount based on # values in the hashtable.
+      quickSelectAndRebuild(mem_, preambleLongs_, lgNomLongs_);
+    } //end of rebuild, exit
+
+    else { //Not at full size, resize. Should not get here if lgRF = 0 and memCap is too small.
+      final int lgRF = getLgResizeFactor();
+      final int actLgRF = actLgResizeFactor(mem_.getCapacity(), lgArrLongs, preambleLongs_, lgRF);
+      int tgtLgArrLongs = Math.min(lgArrLongs + actLgRF, lgNomLongs_ + 1);
+
+      if (actLgRF > 0) { //Expand in current Memory
+        //lgArrLongs will change; thetaLong, curCount will not
+        resize(mem_, preambleLongs_, lgArrLongs, tgtLgArrLongs);
+        hashTableThreshold_ = setHashTableThreshold(lgNomLongs_, tgtLgArrLongs);
+      } //end of Expand in current memory, exit.
+
+      else {
+        //Request more memory, then resize. lgArrLongs will change; thetaLong, curCount will not
+        final int preBytes = preambleLongs_ << 3;
+        tgtLgArrLongs = Math.min(lgArrLongs + lgRF, lgNomLongs_ + 1);
+        final int tgtArrBytes = 8 << tgtLgArrLongs;
+        final int reqBytes = tgtArrBytes + preBytes;
+
+        final Memory newDstMem = MemoryUtil.memoryRequestHandler(mem_, reqBytes, false);
+
+        moveAndResize(mem_, preambleLongs_, lgArrLongs, newDstMem, tgtLgArrLongs, thetaLong);
+        mem_.getMemoryRequest().free(mem_, newDstMem); //normal free mechanism via MemoryRequest
+
+        mem_ = newDstMem;
+        memObj_ = newDstMem.array(); //may be null
+        memAdd_ = newDstMem.getCumulativeOffset(0L);
+        hashTableThreshold_ = setHashTableThreshold(lgNomLongs_, tgtLgArrLongs);
+      } //end of Request more memory to resize
+    } //end of resize
+  }
+
   //special set methods
 
   /**
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.FLAGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.SEED_HASH_SHORT;
+import static com.yahoo.sketches.theta.PreambleUtil.THETA_LONG;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryRegion;
+
+/**
+ * A read-only view of a SerVer 3 compact sketch at some offset of a larger Memory. The view can be
+ * pointed at another sketch of the same Memory, so that a single object can be used to read any
+ * number of sketches. The preamble is not validated here, this is done by the creator of the view.
+ */
+final class FlyweightCompactSketch extends CompactSketch {
+  private final Memory mem_;
+  private long offsetBytes_;
+  private int preLongs_;
+  private boolean empty_;
+  private boolean ordered_;
+  private short seedHash_;
+  private int curCount_;
+  private long thetaLong_;
+  private Memory region_; //created only if getMemory() is called
+
+  FlyweightCompactSketch(final Memory mem) {
+    super(true, (short) 0, 0, Long.MAX_VALUE); //the state of this class is used instead
+    mem_ = mem;
+  }
+
+  /**
+   * Points this view at the compact sketch that starts at the given offset.
+   * @param offsetBytes the offset of an already validated compact sketch in bytes
+   * @return this view
+   */
+  FlyweightCompactSketch point(final long offsetBytes) {
+    offsetBytes_ = offsetBytes;
+    preLongs_ = mem_.getByte(offsetBytes + PREAMBLE_LONGS_BYTE) & 0X3F;
+    final int flags = mem_.getByte(offsetBytes + FLAGS_BYTE);
+    empty_ = (flags & EMPTY_FLAG_MASK) > 0;
+    ordered_ = (flags & ORDERED_FLAG_MASK) > 0;
+    seedHash_ = mem_.getShort(offsetBytes + SEED_HASH_SHORT);
+    curCount_ = (preLongs_ > 1) ? mem_.getInt(offsetBytes + RETAINED_ENTRIES_INT) : 0;
+    thetaLong_ = (preLongs_ > 2) ? mem_.getLong(offsetBytes + THETA_LONG) : Long.MAX_VALUE;
+    region_ = null;
+    return this;
+  }
+
+  @Override
+  public int getRetainedEntries(final boolean valid) {
+    return curCount_;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return empty_;
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    final byte[] out = new byte[getStorageBytes()];
+    mem_.getByteArray(offsetBytes_, out, 0, out.length);
+    return out;
+  }
+
+  @Override
+  public HashIterator iterator() {
+    return new MemoryHashIterator(mem_, getDataOffsetBytes(), curCount_, thetaLong_);
+  }
+
+  //restricted methods
+
+  @Override
+  public boolean isDirect() {
+    return true;
+  }
+
+  @Override
+  public boolean isOrdered() {
+    return ordered_;
+  }
+
+  @Override
+  short getSeedHash() {
+    return seedHash_;
+  }
+
+  @Override
+  long getThetaLong() {
+    return thetaLong_;
+  }
+
+  @Override
+  int getPreambleLongs() {
+    return preLongs_;
+  }
+
+  @Override
+  long[] getCache() {
+    final long[] cache = new long[curCount_];
+    mem_.getLongArray(getDataOffsetBytes(), cache, 0, curCount_);
+    return cache;
+  }
+
+  @Override
+  Memory getMemory() {
+    if (region_ == null) {
+      region_ = new MemoryRegion(mem_, offsetBytes_, getStorageBytes());
+    }
+    return region_;
+  }
+
+  /**
+   * Returns the Memory that holds all the sketches
+   * @return the Memory that holds all the sketches
+   */
+  Memory getParentMemory() {
+    return mem_;
+  }
+
+  /**
+   * Returns the offset of the first hash of this sketch in the parent Memory
+   * @return the offset of the first hash of this sketch in the parent Memory
+   */
+  long getDataOffsetBytes() {
+    return offsetBytes_ + (preLongs_ << 3);
+  }
+
+  private int getStorageBytes() {
+    return (preLongs_ + curCount_) << 3;
+  }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+/**
+ * Iterator over the retained hashes of a theta sketch. The hashes are read in place from the heap
+ * cache or the Memory of the sketch, so iterating a direct sketch does not copy its data.
+ * Empty and dirty slots of the hash table forms are skipped.
+ *
+ * <p>If the sketch is ordered the hashes are returned in increasing order, otherwise in no
+ * particular order. The sketch must not be updated while it is being iterated.</p>
+ */
+public interface HashIterator {
+
+  /**
+   * Advancing the iterator and checking existence of the next hash
+   * is combined here for efficiency. This results in an undefined
+   * state of the iterator before the first call of this method.
+   * @return true if the next hash exists
+   */
+  boolean next();
+
+  /**
+   * Gets the current hash. Don't call this before calling next() for the first time
+   * or after getting false from next().
+   * @return the current hash
+   */
+  long get();
+
+}
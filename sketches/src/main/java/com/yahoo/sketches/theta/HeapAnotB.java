@@ -5,16 +5,15 @@
 
 package com.yahoo.sketches.theta;
 
-import static com.yahoo.sketches.HashOperations.hashArrayInsert;
+import static com.yahoo.sketches.HashOperations.hashInsertOnly;
 import static com.yahoo.sketches.HashOperations.hashSearch;
-import static com.yahoo.sketches.theta.CompactSketch.compactCache;
 import static java.lang.Math.min;
 
 import java.util.Arrays;
 
 import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
 import com.yahoo.sketches.Family;
-import com.yahoo.sketches.HashOperations;
 import com.yahoo.sketches.Util;
 
 /**
@@ -28,10 +27,14 @@ final class HeapAnotB extends SetOperation implements AnotB {
   private long thetaLong_;
   private boolean empty_;
   private long[] cache_; // no match set
+  private Memory cacheMem_; //wraps cache_ for notB(), once for the lifetime of the A state
   private int curCount_ = 0;
+  private boolean ordered_ = false; //true if the cache is ordered
 
   private int lgArrLongsHT_; //for Hash Table only. may not need to be member after refactoring
   private long[] bHashTable_; //may not need to be member after refactoring.
+  private Memory bMem_; //if B is a direct hash table, which is searched in place
+  private int bMemOffsetBytes_;
 
   /**
    * Construct a new Union SetOperation on the java heap.  Called by SetOperation.Builder.
@@ -49,12 +52,43 @@ final class HeapAnotB extends SetOperation implements AnotB {
     thetaLong_ = Long.MAX_VALUE;
     empty_ = true;
     cache_ = null;
+    cacheMem_ = null;
     curCount_ = 0;
     lgArrLongsHT_ = 5;
     bHashTable_ = null;
+    bMem_ = null;
+    ordered_ = false;
     compute();
   }
 
+  @Override
+  public void setA(final Sketch a) {
+    reset();
+    if (a == null) { return; }
+    Util.checkSeedHashes(seedHash_, a.getSeedHash());
+    thetaLong_ = a.getThetaLong();
+    empty_ = a.isEmpty();
+    a_ = a;
+    moveAtoCache();
+    a_ = null;
+    if (!a.isOrdered()) { Arrays.sort(cache_, 0, curCount_); }
+    ordered_ = true;
+  }
+
+  @Override
+  public void notB(final Sketch b) {
+    if (b == null) { return; } //null is interpreted as (Theta = 1.0, count = 0, empty = T)
+    Util.checkSeedHashes(seedHash_, b.getSeedHash());
+    thetaLong_ = min(thetaLong_, b.getThetaLong()); //Theta rule
+    if (curCount_ == 0) { return; }
+    if (!ordered_) { //the state left by update(a, b)
+      Arrays.sort(cache_, 0, curCount_);
+      ordered_ = true;
+    }
+    if (cacheMem_ == null) { cacheMem_ = new NativeMemory(cache_); }
+    curCount_ = DirectAnotB.subtract(cacheMem_, 0, curCount_, thetaLong_, b);
+  }
+
   @Override
   public CompactSketch getResult(final boolean dstOrdered, final Memory dstMem) {
     final long[] compactCache = (curCount_ <= 0)
@@ -75,6 +109,21 @@ final class HeapAnotB extends SetOperation implements AnotB {
     return getResult(true, null);
   }
 
+  @Override
+  public double getEstimate() {
+    return Sketch.estimate(thetaLong_, curCount_, empty_);
+  }
+
+  @Override
+  public double getLowerBound(final int numStdDev) {
+    return Sketch.lowerBound(curCount_, thetaLong_, numStdDev, empty_);
+  }
+
+  @Override
+  public double getUpperBound(final int numStdDev) {
+    return Sketch.upperBound(curCount_, thetaLong_, numStdDev, empty_);
+  }
+
   @Override
   public Family getFamily() {
     return Family.A_NOT_B;
@@ -170,9 +219,7 @@ final class HeapAnotB extends SetOperation implements AnotB {
         Util.checkSeedHashes(seedHash_, a_.getSeedHash());
         thetaLong_ = a_.getThetaLong();
         empty_ = a_.isEmpty();
-        //move A to cache
-        curCount_ = a_.getRetainedEntries(true);
-        cache_ = compactCache(a_.getCache(), curCount_, thetaLong_, false);
+        moveAtoCache();
         break; //{ThA, |A|, E(a)}
       }
       case 17:
@@ -182,10 +229,7 @@ final class HeapAnotB extends SetOperation implements AnotB {
         Util.checkSeedHashes(seedHash_, b_.getSeedHash());
         thetaLong_ = min(a_.getThetaLong(), b_.getThetaLong());
         empty_ = a_.isEmpty();
-        //move A < theta to cache
-        final long[] cache = a_.getCache();
-        curCount_ = HashOperations.count(cache, thetaLong_);
-        cache_ = compactCache(cache, curCount_, thetaLong_, false);
+        moveAtoCache(); //only A < theta
         break; //{minT, |A| < minT , E(a)}
       }
       case 18:
@@ -217,9 +261,7 @@ final class HeapAnotB extends SetOperation implements AnotB {
         Util.checkSeedHashes(seedHash_, b_.getSeedHash());
         thetaLong_ = min(a_.getThetaLong(), b_.getThetaLong());
         empty_ = a_.isEmpty();
-        //b is already HT
-        lgArrLongsHT_ = ((UpdateSketch)b_).getLgArrLongs();
-        bHashTable_ = b_.getCache(); //safe as bHashTable is read-only
+        useBasHT(); //b is already HT
         scanAllAsearchB(); //builds cache, curCount from A, HT
         break; //{minT, n, E(a)}
       }
@@ -228,9 +270,7 @@ final class HeapAnotB extends SetOperation implements AnotB {
         Util.checkSeedHashes(seedHash_, b_.getSeedHash());
         thetaLong_ = min(a_.getThetaLong(), b_.getThetaLong());
         empty_ = a_.isEmpty();
-        //b is already HT
-        lgArrLongsHT_ = ((UpdateSketch)b_).getLgArrLongs();
-        bHashTable_ = b_.getCache(); //safe as bHashTable is read-only
+        useBasHT(); //b is already HT
         scanEarlyStopAsearchB();
         break; //{minT, n, E(a)}
       }
@@ -238,40 +278,67 @@ final class HeapAnotB extends SetOperation implements AnotB {
     }
   }
 
+  //Moves the hashes of A < theta to the cache. The iterator does not copy A, even if off-heap.
+  private void moveAtoCache() {
+    cache_ = new long[a_.getRetainedEntries(true)];
+    final HashIterator it = a_.iterator();
+    while (it.next()) {
+      final long hashIn = it.get();
+      if (hashIn >= thetaLong_) { continue; }
+      cache_[curCount_++] = hashIn;
+    }
+  }
+
   private void convertBtoHT() {
     final int curCountB = b_.getRetainedEntries(true);
     lgArrLongsHT_ = computeMinLgArrLongsFromCount(curCountB);
     bHashTable_ = new long[1 << lgArrLongsHT_];
-    hashArrayInsert(b_.getCache(), bHashTable_, lgArrLongsHT_, thetaLong_);
+    final HashIterator it = b_.iterator(); //not a copy, even if off-heap
+    while (it.next()) {
+      final long hashIn = it.get();
+      if (hashIn >= thetaLong_) { continue; }
+      hashInsertOnly(bHashTable_, lgArrLongsHT_, hashIn);
+    }
+  }
+
+  //B is an UpdateSketch. If it is direct, its hash table is searched in place.
+  private void useBasHT() {
+    lgArrLongsHT_ = ((UpdateSketch)b_).getLgArrLongs();
+    if (b_ instanceof DirectQuickSelectSketch) {
+      bMem_ = b_.getMemory();
+      bMemOffsetBytes_ = b_.getPreambleLongs() << 3;
+    } else {
+      bHashTable_ = b_.getCache(); //safe as bHashTable is read-only
+    }
+  }
+
+  private boolean foundInB(final long hash) {
+    return (bMem_ != null)
+        ? hashSearch(bMem_, lgArrLongsHT_, hash, bMemOffsetBytes_) > -1
+        : hashSearch(bHashTable_, lgArrLongsHT_, hash) > -1;
   }
 
-  //Sketch A is either unordered compact or hash table
+  //Sketch A is either unordered compact or hash table. The iterator rejects dirty values.
   private void scanAllAsearchB() {
-    final long[] scanAArr = a_.getCache();
-    final int arrLongsIn = scanAArr.length;
-    cache_ = new long[arrLongsIn];
-    for (int i = 0; i < arrLongsIn; i++ ) {
-      final long hashIn = scanAArr[i];
-      if ((hashIn <= 0L) || (hashIn >= thetaLong_)) { continue; }
-      final int foundIdx = hashSearch(bHashTable_, lgArrLongsHT_, hashIn);
-      if (foundIdx > -1) { continue; }
+    cache_ = new long[a_.getRetainedEntries(true)];
+    final HashIterator it = a_.iterator(); //not a copy, even if off-heap
+    while (it.next()) {
+      final long hashIn = it.get();
+      if ((hashIn >= thetaLong_) || foundInB(hashIn)) { continue; }
       cache_[curCount_++] = hashIn;
     }
   }
 
   //Sketch A is ordered compact, which enables early stop
   private void scanEarlyStopAsearchB() {
-    final long[] scanAArr = a_.getCache();
-    final int arrLongsIn = scanAArr.length;
-    cache_ = new long[arrLongsIn]; //maybe 2x what is needed, but getRetainedEntries can be slow.
-    for (int i = 0; i < arrLongsIn; i++ ) {
-      final long hashIn = scanAArr[i];
-      if (hashIn <= 0L) { continue; }
+    cache_ = new long[a_.getRetainedEntries(true)];
+    final HashIterator it = a_.iterator(); //not a copy, even if off-heap
+    while (it.next()) {
+      final long hashIn = it.get();
       if (hashIn >= thetaLong_) {
         break; //early stop assumes that hashes in input sketch are ordered!
       }
-      final int foundIdx = hashSearch(bHashTable_, lgArrLongsHT_, hashIn);
-      if (foundIdx > -1) { continue; }
+      if (foundInB(hashIn)) { continue; }
       cache_[curCount_++] = hashIn;
     }
   }
@@ -282,9 +349,12 @@ final class HeapAnotB extends SetOperation implements AnotB {
     thetaLong_ = Long.MAX_VALUE;
     empty_ = true;
     cache_ = null;
+    cacheMem_ = null;
     curCount_ = 0;
     lgArrLongsHT_ = 5;
     bHashTable_ = null;
+    bMem_ = null;
+    ordered_ = false;
   }
 
 }
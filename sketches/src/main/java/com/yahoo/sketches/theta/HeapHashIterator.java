@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+/**
+ * HashIterator over a cache on the Java heap, which may be compact or a hash table.
+ */
+final class HeapHashIterator implements HashIterator {
+  private final long[] cache_;
+  private final long thetaLong_;
+  private int index_;
+  private long hash_;
+
+  HeapHashIterator(final long[] cache, final long thetaLong) {
+    cache_ = cache;
+    thetaLong_ = thetaLong;
+    index_ = -1;
+  }
+
+  @Override
+  public boolean next() {
+    while (++index_ < cache_.length) {
+      final long hash = cache_[index_];
+      if ((hash <= 0L) || (hash >= thetaLong_)) { continue; } //empty or dirty
+      hash_ = hash;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public long get() {
+    return hash_;
+  }
+
+}
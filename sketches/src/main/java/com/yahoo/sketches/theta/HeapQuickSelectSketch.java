@@ -41,6 +41,7 @@ import com.yahoo.sketches.HashOperations;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.Util;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * @author Lee Rhodes
@@ -247,6 +248,43 @@ final class HeapQuickSelectSketch extends HeapUpdateSketch {
     thetaLong_ =  (long)(getP() * MAX_THETA_LONG_AS_DOUBLE);
   }
 
+  @Override
+  public void update(final long[] values, final int off, final int len) {
+    if ((values == null) || (len == 0)) { return; }
+    checkBatchBounds(values.length, off, len);
+    final long seed = getSeed();
+    final HashFunction hashFunction = hashFunction_;
+    empty_ = false;
+    //keep the hot state in locals, write back only when out of space and at the end
+    long thetaLong = thetaLong_;
+    int lgArrLongs = lgArrLongs_;
+    int curCount = curCount_;
+    long[] cache = cache_;
+    int threshold = hashTableThreshold_;
+    final int end = off + len;
+    for (int i = off; i < end; i++) {
+      final long hash = hashFunction.hash64(values[i], seed) >>> 1; //never negative
+      if (HashOperations.continueCondition(thetaLong, hash)) { continue; }
+      if (HashOperations.hashSearchOrInsert(cache, lgArrLongs, hash) >= 0) { continue; }
+      curCount++;
+      if (curCount > threshold) { //must rebuild or resize, see hashUpdate
+        curCount_ = curCount;
+        if (lgArrLongs <= lgNomLongs_) {
+          resizeCache();
+        }
+        else {
+          quickSelectAndRebuild();
+        }
+        thetaLong = thetaLong_;
+        lgArrLongs = lgArrLongs_;
+        curCount = curCount_;
+        cache = cache_;
+        threshold = hashTableThreshold_;
+      }
+    }
+    curCount_ = curCount;
+  }
+
   //restricted methods
 
   @Override
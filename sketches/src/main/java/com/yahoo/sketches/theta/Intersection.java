@@ -46,6 +46,35 @@ public interface Intersection {
    */
   CompactSketch getResult();
 
+  /**
+   * Gets the unique count estimate of the result of this operation without building the result
+   * sketch. This is the same as <i>getResult().getEstimate()</i>, but the retained hashes are
+   * neither copied, compacted nor sorted.
+   * The update method must have been called at least once, otherwise an exception will be thrown.
+   * @return the estimate of the number of unique values of the result of this operation
+   */
+  double getEstimate();
+
+  /**
+   * Gets the approximate lower error bound of the result of this operation given the specified
+   * number of Standard Deviations without building the result sketch.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the lower bound.
+   */
+  double getLowerBound(int numStdDev);
+
+  /**
+   * Gets the approximate upper error bound of the result of this operation given the specified
+   * number of Standard Deviations without building the result sketch.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the upper bound.
+   */
+  double getUpperBound(int numStdDev);
+
   /**
    * Returns true if there is an intersection result available
    * @return true if there is an intersection result available
@@ -330,7 +330,7 @@ final class IntersectionImpl extends SetOperation implements Intersection {
         hashTable_ = new long[1 << lgArrLongs_];
       }
 
-      moveDataToTgt(sketchIn.getCache(), curCount_);
+      moveDataToTgt(sketchIn.iterator(), curCount_);
     }
     else { //Case 6: Perform full intersect
       //Sets resulting hashTable, curCount and adjusts lgArrLongs
@@ -341,10 +341,7 @@ final class IntersectionImpl extends SetOperation implements Intersection {
 
   @Override
   public CompactSketch getResult(final boolean dstOrdered, final Memory dstMem) {
-    if (curCount_ < 0) {
-      throw new SketchesStateException(
-          "Calling getResult() with no intervening intersections is not a legal result.");
-    }
+    checkHasResult();
     long[] compactCacheR;
 
     if (curCount_ == 0) {
@@ -373,6 +370,24 @@ final class IntersectionImpl extends SetOperation implements Intersection {
     return getResult(true, null);
   }
 
+  @Override
+  public double getEstimate() {
+    checkHasResult();
+    return Sketch.estimate(thetaLong_, curCount_, empty_);
+  }
+
+  @Override
+  public double getLowerBound(final int numStdDev) {
+    checkHasResult();
+    return Sketch.lowerBound(curCount_, thetaLong_, numStdDev, empty_);
+  }
+
+  @Override
+  public double getUpperBound(final int numStdDev) {
+    checkHasResult();
+    return Sketch.upperBound(curCount_, thetaLong_, numStdDev, empty_);
+  }
+
   @Override
   public boolean hasResult() {
     return (mem_ != null) ? mem_.getInt(RETAINED_ENTRIES_INT) >= 0 : curCount_ >= 0;
@@ -438,8 +453,7 @@ final class IntersectionImpl extends SetOperation implements Intersection {
   private void performIntersect(final Sketch sketchIn) {
     // curCount and input data are nonzero, match against HT
     assert ((curCount_ > 0) && (!empty_));
-    final long[] cacheIn = sketchIn.getCache();
-    final int arrLongsIn = cacheIn.length;
+    final HashIterator it = sketchIn.iterator(); //not a copy, even if off-heap
     final long[] hashTable;
     if (mem_ != null) {
       final int htLen = 1 << lgArrLongs_;
@@ -454,9 +468,8 @@ final class IntersectionImpl extends SetOperation implements Intersection {
     int matchSetCount = 0;
     if (sketchIn.isOrdered()) {
       //ordered compact, which enables early stop
-      for (int i = 0; i < arrLongsIn; i++ ) {
-        final long hashIn = cacheIn[i];
-        //if (hashIn <= 0L) continue;  //<= 0 should not happen
+      while (it.next()) {
+        final long hashIn = it.get();
         if (hashIn >= thetaLong_) {
           break; //early stop assumes that hashes in input sketch are ordered!
         }
@@ -466,10 +479,10 @@ final class IntersectionImpl extends SetOperation implements Intersection {
       }
     }
     else {
-      //either unordered compact or hash table
-      for (int i = 0; i < arrLongsIn; i++ ) {
-        final long hashIn = cacheIn[i];
-        if ((hashIn <= 0L) || (hashIn >= thetaLong_)) { continue; }
+      //either unordered compact or hash table. The iterator rejects dirty values.
+      while (it.next()) {
+        final long hashIn = it.get();
+        if (hashIn >= thetaLong_) { continue; }
         final int foundIdx = HashOperations.hashSearch(hashTable, lgArrLongs_, hashIn);
         if (foundIdx == -1) { continue; }
         matchSet[matchSetCount++] = hashIn;
@@ -486,11 +499,10 @@ final class IntersectionImpl extends SetOperation implements Intersection {
       Arrays.fill(hashTable_, 0, 1 << lgArrLongs_, 0L); //clear for rebuild
     }
     //move matchSet to target
-    moveDataToTgt(matchSet, matchSetCount);
+    moveDataToTgt(new HeapHashIterator(matchSet, thetaLong_), matchSetCount);
   }
 
-  private void moveDataToTgt(final long[] arr, final int count) {
-    final int arrLongsIn = arr.length;
+  private void moveDataToTgt(final HashIterator it, final int count) {
     int tmpCnt = 0;
     if (memValid_) { //Off Heap puts directly into mem
       final int preBytes = CONST_PREAMBLE_LONGS << 3;
@@ -498,15 +510,15 @@ final class IntersectionImpl extends SetOperation implements Intersection {
       final long memAdd = memAdd_;
       final int lgArrLongs = lgArrLongs_;
       final long thetaLong = thetaLong_;
-      for (int i = 0; i < arrLongsIn; i++ ) {
-        final long hashIn = arr[i];
+      while (it.next()) {
+        final long hashIn = it.get();
         if (HashOperations.continueCondition(thetaLong, hashIn)) { continue; }
         HashOperations.fastHashInsertOnly(memObj, memAdd, lgArrLongs, hashIn, preBytes);
         tmpCnt++;
       }
     } else { //On Heap. Assumes HT exists and is large enough
-      for (int i = 0; i < arrLongsIn; i++ ) {
-        final long hashIn = arr[i];
+      while (it.next()) {
+        final long hashIn = it.get();
         if (HashOperations.continueCondition(thetaLong_, hashIn)) { continue; }
         HashOperations.hashInsertOnly(hashTable_, lgArrLongs_, hashIn);
         tmpCnt++;
@@ -534,4 +546,11 @@ final class IntersectionImpl extends SetOperation implements Intersection {
     return maxLgArrLongs;
   }
 
+  private void checkHasResult() {
+    if (curCount_ < 0) {
+      throw new SketchesStateException(
+          "Calling getResult() with no intervening intersections is not a legal result.");
+    }
+  }
+
 }
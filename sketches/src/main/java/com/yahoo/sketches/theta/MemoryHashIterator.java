@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import com.yahoo.memory.Memory;
+
+/**
+ * HashIterator over a cache in Memory, which may be compact or a hash table.
+ */
+final class MemoryHashIterator implements HashIterator {
+  private final Memory mem_;
+  private final long offsetBytes_;
+  private final int arrLongs_;
+  private final long thetaLong_;
+  private int index_;
+  private long hash_;
+
+  /**
+   * @param mem the Memory of the sketch
+   * @param offsetBytes the offset of the cache in bytes
+   * @param arrLongs the length of the cache in longs
+   * @param thetaLong the theta of the sketch
+   */
+  MemoryHashIterator(final Memory mem, final long offsetBytes, final int arrLongs,
+      final long thetaLong) {
+    mem_ = mem;
+    offsetBytes_ = offsetBytes;
+    arrLongs_ = arrLongs;
+    thetaLong_ = thetaLong;
+    index_ = -1;
+  }
+
+  @Override
+  public boolean next() {
+    while (++index_ < arrLongs_) {
+      final long hash = mem_.getLong(offsetBytes_ + (index_ << 3));
+      if ((hash <= 0L) || (hash >= thetaLong_)) { continue; } //empty or dirty
+      hash_ = hash;
+      return true;
+    }
+    return false;
+  }
+
+  @Override
+  public long get() {
+    return hash_;
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * A forward cursor over the sorted hashes of an ordered CompactSketch. The hashes are read in place,
+ * either from the cache of a heap sketch or from the Memory of a direct sketch, and are never
+ * copied. The hashes of a compressed sketch are decoded one block at a time.
+ */
+final class OrderedHashCursor {
+  private final long[] cache_; //null if direct
+  private final Memory mem_;   //null if on-heap or compressed
+  private final long offsetBytes_;
+  private final int count_;
+  private int index_;
+  //compressed only
+  private final DirectCompressedCompactSketch compressed_; //null if not compressed
+  private final long[] block_;
+  private final long[] words_;
+  private int lgBlock_;
+  private int blockIndex_ = -1; //of the decoded block
+
+  /**
+   * Creates a cursor positioned at the first hash of the given sketch.
+   * @param sketch an ordered CompactSketch, either on-heap or direct
+   */
+  OrderedHashCursor(final CompactSketch sketch) {
+    if (!sketch.isOrdered()) {
+      throw new SketchesArgumentException("Sketch must be ordered!");
+    }
+    count_ = sketch.getRetainedEntries(true);
+    if (sketch instanceof DirectCompressedCompactSketch) {
+      compressed_ = (DirectCompressedCompactSketch) sketch;
+      lgBlock_ = compressed_.getLgBlock();
+      block_ = new long[compressed_.blockSize()];
+      words_ = new long[compressed_.wordsBufferLength()];
+      cache_ = null;
+      mem_ = null;
+      offsetBytes_ = 0;
+      index_ = 0;
+      return;
+    }
+    compressed_ = null;
+    block_ = null;
+    words_ = null;
+    if (sketch instanceof FlyweightCompactSketch) { //a view into a larger Memory
+      final FlyweightCompactSketch view = (FlyweightCompactSketch) sketch;
+      cache_ = null;
+      mem_ = view.getParentMemory();
+      offsetBytes_ = view.getDataOffsetBytes();
+    } else if (sketch.isDirect()) {
+      cache_ = null;
+      mem_ = sketch.getMemory();
+      offsetBytes_ = (mem_.getByte(PREAMBLE_LONGS_BYTE) & 0X3F) << 3;
+    } else {
+      cache_ = sketch.getCache(); //not a copy
+      mem_ = null;
+      offsetBytes_ = 0;
+    }
+    index_ = 0;
+  }
+
+  /**
+   * Returns the number of hashes of the sketch
+   * @return the number of hashes of the sketch
+   */
+  int size() {
+    return count_;
+  }
+
+  /**
+   * Returns true if the cursor has not passed the last hash
+   * @return true if the cursor has not passed the last hash
+   */
+  boolean hasCurrent() {
+    return index_ < count_;
+  }
+
+  /**
+   * Returns the hash at the current index. Only valid if {@link #hasCurrent()}.
+   * @return the hash at the current index
+   */
+  long current() {
+    return get(index_);
+  }
+
+  /**
+   * Advances the cursor by one hash.
+   */
+  void next() {
+    index_++;
+  }
+
+  /**
+   * Advances the cursor to the first hash that is greater than or equal to the given target, using
+   * an exponential (galloping) search followed by a binary search. The cursor never moves back.
+   * The cost is logarithmic in the distance moved, which makes long skips cheap.
+   * @param target the given target hash
+   * @return true if such a hash exists, otherwise the cursor is exhausted
+   */
+  boolean seekCeiling(final long target) {
+    if (compressed_ != null) { return seekCeilingCompressed(target); }
+    int lo = index_;
+    if (lo >= count_) { return false; }
+    if (get(lo) >= target) { return true; }
+    int step = 1;
+    int hi = lo + 1;
+    while ((hi < count_) && (get(hi) < target)) {
+      lo = hi;
+      step <<= 1;
+      hi = lo + step;
+    }
+    if (hi > count_) { hi = count_; }
+    //get(lo) < target and either hi == count_ or get(hi) >= target
+    while ((hi - lo) > 1) {
+      final int mid = (lo + hi) >>> 1;
+      if (get(mid) < target) { lo = mid; } else { hi = mid; }
+    }
+    index_ = hi;
+    return hi < count_;
+  }
+
+  /**
+   * Returns the hash at the given index in the range [0, size()).
+   * @param index the given index
+   * @return the hash at the given index
+   */
+  long get(final int index) {
+    if (cache_ != null) { return cache_[index]; }
+    if (compressed_ == null) { return mem_.getLong(offsetBytes_ + (index << 3)); }
+    final int block = index >>> lgBlock_;
+    if (block != blockIndex_) {
+      compressed_.decodeBlock(block, block_, words_);
+      blockIndex_ = block;
+    }
+    return block_[index & ((1 << lgBlock_) - 1)];
+  }
+
+  /**
+   * Like seekCeiling, but first gallops over the first hashes of the blocks in the directory, so
+   * that only the block that holds the result is decoded.
+   */
+  private boolean seekCeilingCompressed(final long target) {
+    if (index_ >= count_) { return false; }
+    if (get(index_) >= target) { return true; }
+    final int lastBlock = (count_ - 1) >>> lgBlock_;
+    int lo = index_ >>> lgBlock_; //the first hash of block lo is < target
+    int step = 1;
+    int hi = lo + 1;
+    while ((hi <= lastBlock) && (compressed_.getBlockBase(hi) < target)) {
+      lo = hi;
+      step <<= 1;
+      hi = lo + step;
+    }
+    if (hi > (lastBlock + 1)) { hi = lastBlock + 1; }
+    while ((hi - lo) > 1) {
+      final int mid = (lo + hi) >>> 1;
+      if (compressed_.getBlockBase(mid) < target) { lo = mid; } else { hi = mid; }
+    }
+    //the result is in block lo or it is the first hash of block lo + 1
+    int first = Math.max(index_, lo << lgBlock_);
+    int last = Math.min(count_, (lo + 1) << lgBlock_); //exclusive
+    get(first); //decodes block lo
+    final int mask = (1 << lgBlock_) - 1;
+    while (first < last) {
+      final int mid = (first + last) >>> 1;
+      if (block_[mid & mask] < target) { first = mid + 1; } else { last = mid; }
+    }
+    index_ = first;
+    return first < count_;
+  }
+
+}
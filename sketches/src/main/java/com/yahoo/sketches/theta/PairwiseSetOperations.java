@@ -5,8 +5,15 @@
 
 package com.yahoo.sketches.theta;
 
+import static com.yahoo.sketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.EMPTY_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.READ_ONLY_FLAG_MASK;
+
 import java.util.Arrays;
+import java.util.Comparator;
 
+import com.yahoo.memory.Memory;
 import com.yahoo.sketches.HashOperations;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.SketchesException;
@@ -18,9 +25,15 @@ import com.yahoo.sketches.Util;
  * high performance and only accept ordered, CompactSketches, which may be either Heap-based or
  * Direct.  The returned results are always in the form of an ordered CompactSketch.
  *
+ * <p>The multi-way variants accept any number of arguments and can write their result directly
+ * into a destination Memory given by the caller, in which case the returned sketch is a view of
+ * that Memory.</p>
+ *
  * @author Lee Rhodes
  */
 public class PairwiseSetOperations {
+  private static final int MAX_PRE_LONGS = 3; //of a compact sketch
+  private static final int MAX_PRE_BYTES = MAX_PRE_LONGS << 3;
 
   /**
    * This implements a stateless, pair-wise intersection operation on ordered,
@@ -340,4 +353,663 @@ public class PairwiseSetOperations {
         Arrays.copyOf(outCache, outLen), bothEmptyRule, seedHash, outLen, thetaLong);
   }
 
+  //Estimate-only operations. The result of the corresponding pair-wise operation is counted while
+  // the inputs are merged in place, but no result sketch is built.
+
+  /**
+   * Returns the estimate of {@link #intersect(CompactSketch, CompactSketch)} without building the
+   * result sketch. If both inputs are null zero is returned.
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @return the estimate of the intersection of the two arguments
+   */
+  public static double getIntersectionEstimate(final CompactSketch skA, final CompactSketch skB) {
+    return countIntersection(skA, skB).getEstimate();
+  }
+
+  /**
+   * Returns the lower bound of {@link #intersect(CompactSketch, CompactSketch)} without building
+   * the result sketch. If both inputs are null zero is returned.
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @return the lower bound of the intersection of the two arguments
+   */
+  public static double getIntersectionLowerBound(final int numStdDev, final CompactSketch skA,
+      final CompactSketch skB) {
+    return countIntersection(skA, skB).getLowerBound(numStdDev);
+  }
+
+  /**
+   * Returns the upper bound of {@link #intersect(CompactSketch, CompactSketch)} without building
+   * the result sketch. If both inputs are null zero is returned.
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @return the upper bound of the intersection of the two arguments
+   */
+  public static double getIntersectionUpperBound(final int numStdDev, final CompactSketch skA,
+      final CompactSketch skB) {
+    return countIntersection(skA, skB).getUpperBound(numStdDev);
+  }
+
+  /**
+   * Returns the estimate of {@link #aNotB(CompactSketch, CompactSketch)} without building the
+   * result sketch. If both inputs are null zero is returned.
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @return the estimate of <i>A</i> AND NOT <i>B</i>
+   */
+  public static double getAnotBEstimate(final CompactSketch skA, final CompactSketch skB) {
+    return countAnotB(skA, skB).getEstimate();
+  }
+
+  /**
+   * Returns the lower bound of {@link #aNotB(CompactSketch, CompactSketch)} without building the
+   * result sketch. If both inputs are null zero is returned.
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @return the lower bound of <i>A</i> AND NOT <i>B</i>
+   */
+  public static double getAnotBLowerBound(final int numStdDev, final CompactSketch skA,
+      final CompactSketch skB) {
+    return countAnotB(skA, skB).getLowerBound(numStdDev);
+  }
+
+  /**
+   * Returns the upper bound of {@link #aNotB(CompactSketch, CompactSketch)} without building the
+   * result sketch. If both inputs are null zero is returned.
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @return the upper bound of <i>A</i> AND NOT <i>B</i>
+   */
+  public static double getAnotBUpperBound(final int numStdDev, final CompactSketch skA,
+      final CompactSketch skB) {
+    return countAnotB(skA, skB).getUpperBound(numStdDev);
+  }
+
+  /**
+   * Returns the estimate of {@link #union(CompactSketch, CompactSketch, int)} without building the
+   * result sketch. If both inputs are null zero is returned.
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @param k The upper bound of the number of entries to be retained by the union
+   * @return the estimate of the union of the two arguments
+   */
+  public static double getUnionEstimate(final CompactSketch skA, final CompactSketch skB,
+      final int k) {
+    return countUnion(skA, skB, k).getEstimate();
+  }
+
+  /**
+   * Returns the lower bound of {@link #union(CompactSketch, CompactSketch, int)} without building
+   * the result sketch. If both inputs are null zero is returned.
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @param k The upper bound of the number of entries to be retained by the union
+   * @return the lower bound of the union of the two arguments
+   */
+  public static double getUnionLowerBound(final int numStdDev, final CompactSketch skA,
+      final CompactSketch skB, final int k) {
+    return countUnion(skA, skB, k).getLowerBound(numStdDev);
+  }
+
+  /**
+   * Returns the upper bound of {@link #union(CompactSketch, CompactSketch, int)} without building
+   * the result sketch. If both inputs are null zero is returned.
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skB The second ordered, CompactSketch argument.
+   * @param k The upper bound of the number of entries to be retained by the union
+   * @return the upper bound of the union of the two arguments
+   */
+  public static double getUnionUpperBound(final int numStdDev, final CompactSketch skA,
+      final CompactSketch skB, final int k) {
+    return countUnion(skA, skB, k).getUpperBound(numStdDev);
+  }
+
+  /**
+   * The retained entries, theta and empty state of a result that was counted but not built.
+   */
+  private static final class ResultCount {
+    static final ResultCount NULL_RESULT = new ResultCount(0, Long.MAX_VALUE, true);
+    final int curCount;
+    final long thetaLong;
+    final boolean empty;
+
+    ResultCount(final int curCount, final long thetaLong, final boolean empty) {
+      this.curCount = curCount;
+      this.thetaLong = thetaLong;
+      this.empty = empty;
+    }
+
+    double getEstimate() {
+      return Sketch.estimate(thetaLong, curCount, empty);
+    }
+
+    double getLowerBound(final int numStdDev) {
+      return Sketch.lowerBound(curCount, thetaLong, numStdDev, empty);
+    }
+
+    double getUpperBound(final int numStdDev) {
+      return Sketch.upperBound(curCount, thetaLong, numStdDev, empty);
+    }
+  }
+
+  private static ResultCount countIntersection(final CompactSketch skA, final CompactSketch skB) {
+    if ((skA == null) && (skB == null)) { return ResultCount.NULL_RESULT; }
+    if (skA == null) { return new ResultCount(0, skB.getThetaLong(), true); }
+    if (skB == null) { return new ResultCount(0, skA.getThetaLong(), true); }
+    Util.checkSeedHashes(skA.getSeedHash(), skB.getSeedHash());
+    final OrderedHashCursor curA = new OrderedHashCursor(skA); //checks ordered
+    final OrderedHashCursor curB = new OrderedHashCursor(skB);
+
+    final long thetaLong = Math.min(skA.getThetaLong(), skB.getThetaLong()); //Theta rule
+    if (skA.isEmpty() || skB.isEmpty()) { //Empty rule is OR
+      return new ResultCount(0, thetaLong, true);
+    }
+    int count = 0;
+    while (curA.hasCurrent() && curB.hasCurrent()) {
+      final long hashA = curA.current();
+      final long hashB = curB.current();
+      if ((hashA >= thetaLong) || (hashB >= thetaLong)) { break; }
+      if (hashA == hashB) {
+        count++;
+        curA.next();
+        curB.next();
+      } else if (hashA < hashB) {
+        curA.seekCeiling(hashB);
+      } else {
+        curB.seekCeiling(hashA);
+      }
+    }
+    return new ResultCount(count, thetaLong, false);
+  }
+
+  private static ResultCount countAnotB(final CompactSketch skA, final CompactSketch skB) {
+    if ((skA == null) && (skB == null)) { return ResultCount.NULL_RESULT; }
+    if (skA == null) {
+      if (!skB.isOrdered()) {
+        throw new SketchesException("skB must be ordered!");
+      }
+      return new ResultCount(0, skB.getThetaLong(), true);
+    }
+    if (skB == null) {
+      if (!skA.isOrdered()) {
+        throw new SketchesException("skA must be ordered!");
+      }
+      return new ResultCount(skA.getRetainedEntries(true), skA.getThetaLong(), skA.isEmpty());
+    }
+    Util.checkSeedHashes(skA.getSeedHash(), skB.getSeedHash());
+    final OrderedHashCursor curA = new OrderedHashCursor(skA); //checks ordered
+    final OrderedHashCursor curB = new OrderedHashCursor(skB);
+
+    final long thetaLong = Math.min(skA.getThetaLong(), skB.getThetaLong()); //Theta rule
+    final boolean emptyA = skA.isEmpty(); //Empty rule is whatever A is
+    if (emptyA) { return new ResultCount(0, thetaLong, true); }
+    int count = 0;
+    for ( ; curA.hasCurrent(); curA.next()) {
+      final long hashA = curA.current();
+      if (hashA >= thetaLong) { break; }
+      if (!curB.seekCeiling(hashA) || (curB.current() != hashA)) { count++; } //else reject
+    }
+    return new ResultCount(count, thetaLong, false);
+  }
+
+  private static ResultCount countUnion(final CompactSketch skA, final CompactSketch skB,
+      final int k) {
+    if ((skA == null) && (skB == null)) { return ResultCount.NULL_RESULT; }
+    if ((skA == null) || (skB == null)) {
+      final CompactSketch sk = (skA == null) ? skB : skA;
+      if (!sk.isOrdered()) {
+        throw new SketchesException(((skA == null) ? "skB" : "skA") + " must be ordered!");
+      }
+      final int curCount = sk.getRetainedEntries(true);
+      if (curCount > k) { //cutback to k
+        return new ResultCount(k, new OrderedHashCursor(sk).get(k), sk.isEmpty());
+      }
+      return new ResultCount(curCount, sk.getThetaLong(), sk.isEmpty());
+    }
+    Util.checkSeedHashes(skA.getSeedHash(), skB.getSeedHash());
+    final OrderedHashCursor curA = new OrderedHashCursor(skA); //checks ordered
+    final OrderedHashCursor curB = new OrderedHashCursor(skB);
+
+    if (skA.isEmpty() && skB.isEmpty()) { //Empty rule is AND
+      final CompactSketch sk = (skA.getThetaLong() < skB.getThetaLong()) ? skA : skB;
+      return new ResultCount(sk.getRetainedEntries(true), sk.getThetaLong(), true);
+    }
+    long thetaLong = Math.min(skA.getThetaLong(), skB.getThetaLong()); //Theta rule
+    int count = 0;
+    while (true) {
+      final long hashA = curA.hasCurrent() ? curA.current() : thetaLong;
+      final long hashB = curB.hasCurrent() ? curB.current() : thetaLong;
+      final long hash = Math.min(hashA, hashB);
+      if (hash >= thetaLong) { break; }
+      if (count >= k) {
+        thetaLong = hash; //the (k+1)th smallest distinct hash
+        break;
+      }
+      count++;
+      if (hashA == hash) { curA.next(); }
+      if (hashB == hash) { curB.next(); }
+    }
+    return new ResultCount(count, thetaLong, false);
+  }
+
+  //Multi-way operations. The hashes of the result are written straight into either the
+  // destination Memory of the caller, behind a reserved 3-long preamble, or the cache array of
+  // the on-heap result. The operations never build a hash table and read direct inputs in place.
+
+  /**
+   * This implements a stateless, multi-way intersection operation on any number of ordered,
+   * CompactSketches that are either Heap-based or Direct. The result is on the Java heap.
+   * See {@link #intersect(CompactSketch[], Memory)}.
+   *
+   * @param sketches the ordered, CompactSketch arguments
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch intersect(final CompactSketch[] sketches) {
+    return intersect(sketches, null);
+  }
+
+  /**
+   * This implements a stateless, multi-way intersection operation on any number of ordered,
+   * CompactSketches that are either Heap-based or Direct. No hash table is built: the smallest
+   * sketch drives a leapfrog over the sorted hashes and the other sketches are advanced with
+   * galloping searches, so that runs of non-matching hashes are skipped in logarithmic time.
+   * The operation terminates at the minimum theta of the inputs.
+   * A null input is interpreted as an empty sketch. If all inputs are null a null is returned.
+   *
+   * @param sketches the ordered, CompactSketch arguments
+   * @param dstMem if not null, the result is written into this Memory, which must have at least
+   * {@link Sketch#getMaxCompactSketchBytes(int)} bytes for the number of entries of the smallest
+   * sketch, and the returned sketch is a view of it. This allows a scratch Memory to be reused
+   * without generating garbage for every result.
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch intersect(final CompactSketch[] sketches, final Memory dstMem) {
+    return intersect(sketches, dstMem, Long.MAX_VALUE);
+  }
+
+  /**
+   * The multi-way intersection with an upper bound on theta, which has been pushed down from an
+   * enclosing set expression. Hashes at or above the bound are never read.
+   * @param sketches the ordered, CompactSketch arguments
+   * @param dstMem the destination Memory or null for an on-heap result
+   * @param thetaCap the upper bound on the theta of the result
+   * @return the result as an ordered CompactSketch.
+   */
+  static CompactSketch intersect(final CompactSketch[] sketches, final Memory dstMem,
+      final long thetaCap) {
+    final int numIn = (sketches == null) ? 0 : sketches.length;
+    short seedHash = 0;
+    int numValid = 0;
+    boolean emptyRule = false; //Empty rule is OR
+    long thetaLong = thetaCap;
+    int minCount = Integer.MAX_VALUE;
+    for (int i = 0; i < numIn; i++) {
+      final CompactSketch sk = sketches[i];
+      if (sk == null) {
+        emptyRule = true;
+        continue;
+      }
+      seedHash = checkInput(sk, seedHash, numValid++);
+      emptyRule |= sk.isEmpty();
+      thetaLong = Math.min(thetaLong, sk.getThetaLong()); //Theta rule
+      minCount = Math.min(minCount, sk.getRetainedEntries(true));
+    }
+    if (numValid == 0) { return null; } //no way to construct the seedHash
+    if (emptyRule) { //even if emptyRule = true, theta can be < 1.0
+      return new ResultWriter(dstMem, 0).result(0, thetaLong, true, seedHash);
+    }
+
+    //the smallest sketch drives the leapfrog
+    final OrderedHashCursor[] cursors = new OrderedHashCursor[numValid];
+    for (int i = 0; i < numIn; i++) {
+      cursors[i] = new OrderedHashCursor(sketches[i]); //no nulls, else the result is empty
+    }
+    Arrays.sort(cursors, new Comparator<OrderedHashCursor>() {
+      @Override
+      public int compare(final OrderedHashCursor c1, final OrderedHashCursor c2) {
+        return Integer.compare(c1.size(), c2.size());
+      }
+    });
+    final ResultWriter out = new ResultWriter(dstMem, minCount);
+    final OrderedHashCursor driver = cursors[0];
+    int outCount = 0;
+
+    leapfrog:
+    while (driver.hasCurrent()) {
+      final long candidate = driver.current();
+      if (candidate >= thetaLong) { break; }
+      for (int j = 1; j < numValid; j++) {
+        if (!cursors[j].seekCeiling(candidate)) { break leapfrog; } //exhausted
+        final long hash = cursors[j].current();
+        if (hash != candidate) { //hash > candidate, skip the driver ahead
+          driver.seekCeiling(hash);
+          continue leapfrog;
+        }
+      }
+      out.put(outCount++, candidate); //in all sketches
+      driver.next();
+    }
+    return out.result(outCount, thetaLong, false, seedHash);
+  }
+
+  /**
+   * This implements a stateless, multi-way <i>A</i> AND NOT (<i>B<sub>1</sub></i> OR ... OR
+   * <i>B<sub>n</sub></i>) operation on ordered, CompactSketches that are either Heap-based or
+   * Direct. The result is on the Java heap.
+   * See {@link #aNotB(CompactSketch, CompactSketch[], Memory)}.
+   *
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skBs The ordered, CompactSketch arguments to be excluded from skA.
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch aNotB(final CompactSketch skA, final CompactSketch[] skBs) {
+    return aNotB(skA, skBs, null);
+  }
+
+  /**
+   * This implements a stateless, multi-way <i>A</i> AND NOT (<i>B<sub>1</sub></i> OR ... OR
+   * <i>B<sub>n</sub></i>) operation on ordered, CompactSketches that are either Heap-based or
+   * Direct. Every hash of skA is looked up in the skBs with galloping searches.
+   * Null skBs are ignored. If skA and all skBs are null a null is returned.
+   * If skA is null an empty sketch is returned.
+   *
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skBs The ordered, CompactSketch arguments to be excluded from skA.
+   * @param dstMem if not null, the result is written into this Memory, which must have at least
+   * {@link Sketch#getMaxCompactSketchBytes(int)} bytes for the number of entries of skA, and the
+   * returned sketch is a view of it.
+   * @return the result as an ordered CompactSketch.
+   */ //see HeapAnotB.compute() for return rule table
+  public static CompactSketch aNotB(final CompactSketch skA, final CompactSketch[] skBs,
+      final Memory dstMem) {
+    return aNotB(skA, skBs, dstMem, Long.MAX_VALUE);
+  }
+
+  /**
+   * The multi-way <i>A</i> AND NOT <i>B</i> with an upper bound on theta, which has been pushed
+   * down from an enclosing set expression. Hashes at or above the bound are never read.
+   * @param skA The first ordered, CompactSketch argument.
+   * @param skBs The ordered, CompactSketch arguments to be excluded from skA.
+   * @param dstMem the destination Memory or null for an on-heap result
+   * @param thetaCap the upper bound on the theta of the result
+   * @return the result as an ordered CompactSketch.
+   */
+  static CompactSketch aNotB(final CompactSketch skA, final CompactSketch[] skBs,
+      final Memory dstMem, final long thetaCap) {
+    final int numB = (skBs == null) ? 0 : skBs.length;
+    short seedHash = 0;
+    int numValid = 0;
+    long thetaLong = thetaCap;
+    if (skA != null) {
+      seedHash = checkInput(skA, seedHash, numValid++);
+      thetaLong = Math.min(thetaLong, skA.getThetaLong());
+    }
+    for (int i = 0; i < numB; i++) {
+      if (skBs[i] == null) { continue; }
+      seedHash = checkInput(skBs[i], seedHash, numValid++);
+      thetaLong = Math.min(thetaLong, skBs[i].getThetaLong()); //Theta rule
+    }
+    if (numValid == 0) { return null; } //no way to construct the seedHash
+    if ((skA == null) || skA.isEmpty()) { //return rule {minT, 0, T}
+      return new ResultWriter(dstMem, 0).result(0, thetaLong, true, seedHash);
+    }
+
+    final OrderedHashCursor cursorA = new OrderedHashCursor(skA);
+    final OrderedHashCursor[] cursorsB = new OrderedHashCursor[numValid - 1];
+    for (int i = 0, j = 0; i < numB; i++) {
+      if (skBs[i] != null) { cursorsB[j++] = new OrderedHashCursor(skBs[i]); }
+    }
+    final ResultWriter out = new ResultWriter(dstMem, cursorA.size());
+    int outCount = 0;
+
+    nextA:
+    for ( ; cursorA.hasCurrent(); cursorA.next()) {
+      final long hashA = cursorA.current();
+      if (hashA >= thetaLong) { break; }
+      for (int j = 0; j < cursorsB.length; j++) {
+        if (cursorsB[j].seekCeiling(hashA) && (cursorsB[j].current() == hashA)) {
+          continue nextA; //reject
+        }
+      }
+      out.put(outCount++, hashA); //keep
+    }
+    return out.result(outCount, thetaLong, false, seedHash);
+  }
+
+  /**
+   * This implements a stateless, multi-way union operation on any number of ordered,
+   * CompactSketches that are either Heap-based or Direct. The result is on the Java heap.
+   * See {@link #union(CompactSketch[], int, Memory)}.
+   *
+   * @param sketches the ordered, CompactSketch arguments
+   * @param k The upper bound of the number of entries to be retained by the sketch
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch union(final CompactSketch[] sketches, final int k) {
+    return union(sketches, k, null);
+  }
+
+  /**
+   * This implements a stateless, multi-way union operation on any number of ordered,
+   * CompactSketches that are either Heap-based or Direct. The sorted hashes of the inputs are
+   * merged in a single pass with a heap of cursors, without a hash table, and the merge stops as
+   * soon as k distinct hashes have been collected. This is much faster than a {@link Union} for
+   * a wide fan-in of ordered sketches.
+   * Null inputs are ignored. If all inputs are null a null is returned.
+   *
+   * @param sketches the ordered, CompactSketch arguments
+   * @param k The upper bound of the number of entries to be retained by the sketch
+   * @param dstMem if not null, the result is written into this Memory, which must have at least
+   * {@link Sketch#getMaxCompactSketchBytes(int)} bytes for the smaller of k and the total number
+   * of entries of the inputs, and the returned sketch is a view of it.
+   * @return the result as an ordered CompactSketch.
+   */
+  public static CompactSketch union(final CompactSketch[] sketches, final int k,
+      final Memory dstMem) {
+    return union(sketches, k, dstMem, Long.MAX_VALUE);
+  }
+
+  /**
+   * The multi-way union with an upper bound on theta, which has been pushed down from an
+   * enclosing set expression. Hashes at or above the bound are never read.
+   * @param sketches the ordered, CompactSketch arguments
+   * @param k The upper bound of the number of entries to be retained by the sketch
+   * @param dstMem the destination Memory or null for an on-heap result
+   * @param thetaCap the upper bound on the theta of the result
+   * @return the result as an ordered CompactSketch.
+   */
+  static CompactSketch union(final CompactSketch[] sketches, final int k, final Memory dstMem,
+      final long thetaCap) {
+    if (k < 1) {
+      throw new SketchesArgumentException("k must be > 0: " + k);
+    }
+    final int numIn = (sketches == null) ? 0 : sketches.length;
+    short seedHash = 0;
+    int numValid = 0;
+    boolean emptyRule = true; //Empty rule is AND
+    long thetaLong = thetaCap;
+    long totalCount = 0;
+    for (int i = 0; i < numIn; i++) {
+      final CompactSketch sk = sketches[i];
+      if (sk == null) { continue; }
+      seedHash = checkInput(sk, seedHash, numValid++);
+      emptyRule &= sk.isEmpty();
+      thetaLong = Math.min(thetaLong, sk.getThetaLong()); //Theta rule
+      totalCount += sk.getRetainedEntries(true);
+    }
+    if (numValid == 0) { return null; } //no way to construct the seedHash
+
+    //min-heap of cursors keyed by their current hash
+    final OrderedHashCursor[] heap = new OrderedHashCursor[numValid];
+    final long[] heapKeys = new long[numValid];
+    int heapSize = 0;
+    for (int i = 0; i < numIn; i++) {
+      if (sketches[i] == null) { continue; }
+      final OrderedHashCursor cursor = new OrderedHashCursor(sketches[i]);
+      if (!cursor.hasCurrent() || (cursor.current() >= thetaLong)) { continue; }
+      heap[heapSize] = cursor;
+      heapKeys[heapSize] = cursor.current();
+      heapSize++;
+    }
+    for (int i = (heapSize >>> 1) - 1; i >= 0; i--) {
+      siftDown(heap, heapKeys, heapSize, i);
+    }
+
+    final ResultWriter out = new ResultWriter(dstMem, (int) Math.min(k, totalCount));
+    int outCount = 0;
+    long prevHash = 0; //hashes are always > 0
+    while (heapSize > 0) {
+      final long hash = heapKeys[0];
+      if (hash >= thetaLong) { break; }
+      if (hash != prevHash) { //else duplicate
+        if (outCount >= k) {
+          thetaLong = hash; //the (k+1)th smallest distinct hash
+          break;
+        }
+        out.put(outCount++, hash);
+        prevHash = hash;
+      }
+      final OrderedHashCursor top = heap[0];
+      top.next();
+      if (top.hasCurrent() && (top.current() < thetaLong)) {
+        heapKeys[0] = top.current();
+      } else { //exhausted, replace with the last
+        heapSize--;
+        heap[0] = heap[heapSize];
+        heapKeys[0] = heapKeys[heapSize];
+        heap[heapSize] = null;
+      }
+      siftDown(heap, heapKeys, heapSize, 0);
+    }
+    return out.result(outCount, thetaLong, emptyRule, seedHash);
+  }
+
+  /**
+   * Returns an ordered result without entries, e.g., when an enclosing set expression can tell
+   * the result without reading any hashes.
+   * @param dstMem the destination Memory or null for an on-heap result
+   * @param thetaLong the theta of the result
+   * @param empty the empty state of the result
+   * @param seedHash the seed hash of the result
+   * @return an ordered result without entries
+   */
+  static CompactSketch noEntriesResult(final Memory dstMem, final long thetaLong,
+      final boolean empty, final short seedHash) {
+    return new ResultWriter(dstMem, 0).result(0, thetaLong, empty, seedHash);
+  }
+
+  private static void siftDown(final OrderedHashCursor[] heap, final long[] heapKeys,
+      final int heapSize, final int start) {
+    int i = start;
+    final OrderedHashCursor cursor = heap[i];
+    final long key = heapKeys[i];
+    while (true) {
+      int child = (i << 1) + 1;
+      if (child >= heapSize) { break; }
+      if (((child + 1) < heapSize) && (heapKeys[child + 1] < heapKeys[child])) { child++; }
+      if (key <= heapKeys[child]) { break; }
+      heap[i] = heap[child];
+      heapKeys[i] = heapKeys[child];
+      i = child;
+    }
+    heap[i] = cursor;
+    heapKeys[i] = key;
+  }
+
+  /**
+   * Checks that the given input is ordered and that its seed hash matches the seed hash of the
+   * previous valid inputs.
+   * @param sk the given non-null input
+   * @param seedHash the seed hash of the previous valid inputs
+   * @param numValid the number of previous valid inputs
+   * @return the seed hash of the inputs
+   */
+  private static short checkInput(final CompactSketch sk, final short seedHash,
+      final int numValid) {
+    if (!sk.isOrdered()) {
+      throw new SketchesArgumentException("All sketches must be ordered!");
+    }
+    return (numValid > 0) ? Util.checkSeedHashes(seedHash, sk.getSeedHash()) : sk.getSeedHash();
+  }
+
+  /**
+   * Receives the ordered hashes of a multi-way result and creates the result sketch from them.
+   * A direct result is written into the destination Memory at offset MAX_PRE_BYTES and its
+   * preamble is loaded when it is complete. An on-heap result is written into the array that
+   * becomes the cache of the result sketch.
+   */
+  private static final class ResultWriter {
+    private final Memory dstMem_;
+    private final long[] cache_;
+
+    /**
+     * @param dstMem the destination Memory or null for an on-heap result
+     * @param maxCount the maximum number of hashes of the result
+     */
+    ResultWriter(final Memory dstMem, final int maxCount) {
+      dstMem_ = dstMem;
+      if (dstMem == null) {
+        cache_ = new long[maxCount];
+        return;
+      }
+      cache_ = null;
+      final int reqBytes = MAX_PRE_BYTES + (maxCount << 3);
+      if (dstMem.getCapacity() < reqBytes) {
+        throw new SketchesArgumentException("Insufficient Memory: " + dstMem.getCapacity()
+          + ", Need: " + reqBytes);
+      }
+    }
+
+    void put(final int index, final long hash) {
+      if (cache_ != null) {
+        cache_[index] = hash;
+      } else {
+        dstMem_.putLong(MAX_PRE_BYTES + (index << 3), hash);
+      }
+    }
+
+    /**
+     * Creates the ordered result sketch from the hashes that have been put.
+     * @param curCount the number of hashes of the result
+     * @param thetaLong the theta of the result
+     * @param empty the empty state of the result
+     * @param seedHash the seed hash of the result
+     * @return the ordered result sketch
+     */
+    CompactSketch result(final int curCount, final long thetaLong, final boolean empty,
+        final short seedHash) {
+      if (cache_ != null) { //trimmed only if fewer hashes than the maximum were put
+        final long[] cache = (curCount == cache_.length) ? cache_ : Arrays.copyOf(cache_, curCount);
+        return new HeapCompactOrderedSketch(cache, empty, seedHash, curCount, thetaLong);
+      }
+      final int preLongs = Sketch.compactPreambleLongs(thetaLong, empty);
+      if (preLongs < MAX_PRE_LONGS) { //shift down to the actual preamble size, only if exact
+        for (int i = 0; i < curCount; i++) {
+          final int offsetBytes = i << 3;
+          dstMem_.putLong((preLongs << 3) + offsetBytes,
+              dstMem_.getLong(MAX_PRE_BYTES + offsetBytes));
+        }
+      }
+      final int emptyBit = empty ? EMPTY_FLAG_MASK : 0;
+      final byte flags =
+          (byte) (emptyBit | READ_ONLY_FLAG_MASK | COMPACT_FLAG_MASK | ORDERED_FLAG_MASK);
+      CompactSketch.loadCompactMemory(null, empty, seedHash, curCount, thetaLong, dstMem_, flags);
+      return DirectCompactOrderedSketch.wrapInstance(dstMem_, empty, seedHash, curCount,
+          thetaLong);
+    }
+  }
+
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * Computes the union of many theta sketches in parallel. The inputs are recursively split into
+ * partitions that are processed by the tasks of a ForkJoinPool. Each partition is updated into its
+ * own on-heap {@link Union} and the partial unions are then combined pairwise.
+ *
+ * <p>Since a partial union is itself a valid theta sketch, the result obeys the same theta rule,
+ * empty rule and seed hash checks as a single Union that is updated with all of the inputs in
+ * sequence, and has the same error bounds.</p>
+ *
+ * <p>The inputs can be given either as Sketch objects or as Memory images of serialized sketches,
+ * e.g., regions of a memory mapped file, exactly as accepted by {@link Union#update(Sketch)} and
+ * {@link Union#update(Memory)}. A null input is ignored. The inputs must not be modified while the
+ * union is computed.</p>
+ */
+public final class ParallelUnion {
+  /**
+   * The minimum number of inputs of a partition, below which a partition is not split any further.
+   */
+  public static final int MIN_PARTITION_SIZE = 64;
+
+  private final int nomEntries_;
+  private final long seed_;
+  private final ForkJoinPool pool_;
+
+  /**
+   * Creates a parallel union with the given nominal entries and the default seed that runs on the
+   * common ForkJoinPool.
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
+   * This will become the ceiling power of 2 if it is not.
+   */
+  public ParallelUnion(final int nomEntries) {
+    this(nomEntries, DEFAULT_UPDATE_SEED, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a parallel union with the given nominal entries and seed that runs on the given pool.
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
+   * This will become the ceiling power of 2 if it is not.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param pool the ForkJoinPool that executes the partitions
+   */
+  public ParallelUnion(final int nomEntries, final long seed, final ForkJoinPool pool) {
+    if (pool == null) {
+      throw new SketchesArgumentException("ForkJoinPool must not be null.");
+    }
+    SetOperation.builder().setNominalEntries(nomEntries); //validates nomEntries
+    nomEntries_ = nomEntries;
+    seed_ = seed;
+    pool_ = pool;
+  }
+
+  /**
+   * Returns the ordered, on-heap union of the given sketches.
+   * @param sketches the given sketches
+   * @return the ordered, on-heap union of the given sketches
+   */
+  public CompactSketch union(final Sketch[] sketches) {
+    return union(sketches, true, null);
+  }
+
+  /**
+   * Returns the union of the given sketches in the chosen form.
+   * @param sketches the given sketches
+   * @param dstOrdered <a href="{@docRoot}/resources/dictionary.html#dstOrdered">See Destination Ordered</a>
+   * @param dstMem <a href="{@docRoot}/resources/dictionary.html#dstMem">See Destination Memory</a>.
+   * @return the union of the given sketches
+   */
+  public CompactSketch union(final Sketch[] sketches, final boolean dstOrdered,
+      final Memory dstMem) {
+    final int numInputs = (sketches == null) ? 0 : sketches.length;
+    final Union union = pool_.invoke(new UnionTask(sketches, null, 0, numInputs,
+        partitionSize(numInputs)));
+    return union.getResult(dstOrdered, dstMem);
+  }
+
+  /**
+   * Returns the ordered, on-heap union of the sketches serialized in the given Memory images.
+   * @param images the Memory images of the given sketches
+   * @return the ordered, on-heap union of the given sketches
+   */
+  public CompactSketch union(final Memory[] images) {
+    return union(images, true, null);
+  }
+
+  /**
+   * Returns the union of the sketches serialized in the given Memory images in the chosen form.
+   * @param images the Memory images of the given sketches
+   * @param dstOrdered <a href="{@docRoot}/resources/dictionary.html#dstOrdered">See Destination Ordered</a>
+   * @param dstMem <a href="{@docRoot}/resources/dictionary.html#dstMem">See Destination Memory</a>.
+   * @return the union of the given sketches
+   */
+  public CompactSketch union(final Memory[] images, final boolean dstOrdered,
+      final Memory dstMem) {
+    final int numInputs = (images == null) ? 0 : images.length;
+    final Union union = pool_.invoke(new UnionTask(null, images, 0, numInputs,
+        partitionSize(numInputs)));
+    return union.getResult(dstOrdered, dstMem);
+  }
+
+  /**
+   * Returns the configured nominal entries
+   * @return the configured nominal entries
+   */
+  public int getNominalEntries() {
+    return nomEntries_;
+  }
+
+  /**
+   * Returns the ForkJoinPool that executes the partitions
+   * @return the ForkJoinPool that executes the partitions
+   */
+  public ForkJoinPool getPool() {
+    return pool_;
+  }
+
+  //restricted
+
+  //about four partitions per worker thread to balance uneven inputs
+  private int partitionSize(final int numInputs) {
+    final int target = numInputs / (pool_.getParallelism() * 4);
+    return Math.max(MIN_PARTITION_SIZE, target);
+  }
+
+  private Union newUnion() {
+    return SetOperation.builder().setNominalEntries(nomEntries_).setSeed(seed_).buildUnion();
+  }
+
+  private final class UnionTask extends RecursiveTask<Union> {
+    private static final long serialVersionUID = 1L;
+    private final Sketch[] sketches_; //either sketches_ or images_ is null
+    private final Memory[] images_;
+    private final int lo_;
+    private final int hi_;
+    private final int partitionSize_;
+
+    UnionTask(final Sketch[] sketches, final Memory[] images, final int lo, final int hi,
+        final int partitionSize) {
+      sketches_ = sketches;
+      images_ = images;
+      lo_ = lo;
+      hi_ = hi;
+      partitionSize_ = partitionSize;
+    }
+
+    @Override
+    protected Union compute() {
+      if ((hi_ - lo_) <= partitionSize_) {
+        final Union union = newUnion();
+        if (sketches_ != null) {
+          for (int i = lo_; i < hi_; i++) { union.update(sketches_[i]); }
+        } else {
+          for (int i = lo_; i < hi_; i++) { union.update(images_[i]); }
+        }
+        return union;
+      }
+      final int mid = (lo_ + hi_) >>> 1;
+      final UnionTask right = new UnionTask(sketches_, images_, mid, hi_, partitionSize_);
+      right.fork();
+      final Union left = new UnionTask(sketches_, images_, lo_, mid, partitionSize_).compute();
+      left.update(right.join().getResult()); //a partial union result is a valid sketch
+      return left;
+    }
+  }
+
+}
@@ -52,6 +52,36 @@ import com.yahoo.sketches.SketchesArgumentException;
  *  3   ||---------------------------Start of Long Array-------------------------------------|
  *  </pre>
  *
+ * <p>The compressed form of an ordered CompactSketch has SerVer 4, always 3 preamble longs and
+ * the ORDERED flag, but not the COMPACT flag, set. Readers that only know SerVer 1, 2 and 3 thus
+ * reject it instead of reading the compressed data as hashes. The retained hashes are split into
+ * blocks of <i>2<sup>lgBlock</sup></i> hashes. Each block has a 16 byte directory entry that holds
+ * its first hash, the offset of its data in longs and the number of bits of its deltas. The
+ * directory is followed by the data longs of all blocks, where the deltas between the successive
+ * hashes of a block are bit-packed, low bits first.</p>
+ *
+ * <pre>
+ * Long || Start Byte Adr:
+ * Adr:
+ *      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
+ *  0   ||    Seed Hash    | Flags  |        | lgBlock| FamID  | SerVer |   Preamble_Longs   |
+ *
+ *      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |     8              |
+ *  1   ||------------Data Longs-------------|----------Retained Entries Count---------------|
+ *
+ *      ||   23   |   22   |   21    |  20   |   19   |   18   |   17   |    16              |
+ *  2   ||------------------------------THETA_LONG-------------------------------------------|
+ *
+ *      ||   31   |   30   |   29   |   28   |   27   |   26   |   25   |    24              |
+ *  3   ||-------------------------First Hash of Block 0-------------------------------------|
+ *
+ *      ||   39   |   38   |   37   |   36   |   35   |   34   |   33   |    32              |
+ *  4   ||           unused         | Bits   |--------Data Offset of Block 0 in Longs--------|
+ *
+ *      ||   47   |   46   |   45   |   44   |   43   |   42   |   41   |    40              |
+ *  5   ||--------------- Next Directory Entries, followed by the Data Longs ----------------|
+ *  </pre>
+ *
  *  @author Lee Rhodes
  */
 final class PreambleUtil {
@@ -86,8 +116,17 @@ final class PreambleUtil {
   static final int LG_RESIZE_RATIO_BYTE_V1    = 5; //used by SerVer 1
   static final int FLAGS_BYTE_V1              = 6; //used by SerVer 1
 
+  //Compressed form, SerVer 4 only
+  static final int LG_BLOCK_BYTE              = 3; //replaces lgNomLongs
+  static final int DATA_LONGS_INT             = 12; //replaces p
+  static final int BLOCK_DIR_BYTES            = 16; //per directory entry
+  static final int BLOCK_BASE_LONG            = 0; //offsets within a directory entry
+  static final int BLOCK_DATA_OFFSET_INT      = 8;
+  static final int BLOCK_BITS_BYTE            = 12;
+
   //Other constants
   static final int SER_VER                    = 3;
+  static final int SER_VER_COMPRESSED         = 4; //ordered compact, delta bit-packed
 
   static final boolean NATIVE_ORDER_IS_BIG_ENDIAN  =
       (ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN);
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.DEFAULT_NOMINAL_ENTRIES;
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.theta.CompactSketch.compactCache;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.HashOperations;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.Util;
+
+/**
+ * A tree of set operations over theta sketches, such as <i>((A &cup; B) &cap; (C &cup; D)) \ E</i>,
+ * that is evaluated as a whole.
+ *
+ * <p>Before any hashes are read the expression is planned:</p>
+ * <ul>
+ * <li>The theta of the result can never be larger than the minimum theta of all of the leaves,
+ * thus this global minimum theta is pushed down to every operation and the hashes at or above it
+ * are never read.</li>
+ * <li>The operands of every intersection are reordered by ascending retained entries, so that the
+ * smallest operand is evaluated first and an intersection stops as soon as an operand has no
+ * entries below theta.</li>
+ * <li>The empty state of the result is derived from the empty states of the leaves.</li>
+ * </ul>
+ *
+ * <p>The operations are then evaluated bottom up with the multi-way operations of
+ * {@link PairwiseSetOperations}, which merge the ordered hashes of their operands with early stop
+ * and never build a hash table. Leaves that are not ordered compact sketches are compacted once.
+ * Leaves given as Memory images are wrapped, not copied.</p>
+ *
+ * <p>A SetExpression is immutable and may be evaluated any number of times. The leaf sketches
+ * must not be modified while an evaluation is in progress.</p>
+ */
+public abstract class SetExpression {
+
+  SetExpression() {}
+
+  /**
+   * Returns a leaf expression of the given sketch.
+   * @param sketch the given sketch, which may be of any form
+   * @return a leaf expression of the given sketch
+   */
+  public static SetExpression sketch(final Sketch sketch) {
+    if (sketch == null) {
+      throw new SketchesArgumentException("Sketch must not be null.");
+    }
+    return new Leaf(sketch);
+  }
+
+  /**
+   * Returns a leaf expression of the sketch image in the given Memory with the default seed.
+   * @param image the Memory image of a sketch, which is wrapped, not copied
+   * @return a leaf expression of the sketch image in the given Memory
+   */
+  public static SetExpression image(final Memory image) {
+    return image(image, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Returns a leaf expression of the sketch image in the given Memory.
+   * @param image the Memory image of a sketch, which is wrapped, not copied
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return a leaf expression of the sketch image in the given Memory
+   */
+  public static SetExpression image(final Memory image, final long seed) {
+    if (image == null) {
+      throw new SketchesArgumentException("Memory must not be null.");
+    }
+    return new Leaf(Sketch.wrap(image, seed));
+  }
+
+  /**
+   * Returns the union of the given expressions.
+   * @param operands the given expressions, at least one
+   * @return the union of the given expressions
+   */
+  public static SetExpression union(final SetExpression... operands) {
+    return new Operation(Operation.UNION, checkOperands(operands));
+  }
+
+  /**
+   * Returns the intersection of the given expressions.
+   * @param operands the given expressions, at least one
+   * @return the intersection of the given expressions
+   */
+  public static SetExpression intersect(final SetExpression... operands) {
+    return new Operation(Operation.INTERSECT, checkOperands(operands));
+  }
+
+  /**
+   * Returns the expression <i>a</i> AND NOT (<i>b<sub>1</sub></i> OR ... OR <i>b<sub>n</sub></i>).
+   * @param a the expression from which the others are excluded
+   * @param b the expressions to be excluded from a
+   * @return the expression a AND NOT (b<sub>1</sub> OR ... OR b<sub>n</sub>)
+   */
+  public static SetExpression aNotB(final SetExpression a, final SetExpression... b) {
+    final SetExpression[] operands = new SetExpression[1 + ((b == null) ? 0 : b.length)];
+    operands[0] = a;
+    if (b != null) { System.arraycopy(b, 0, operands, 1, b.length); }
+    return new Operation(Operation.A_NOT_B, checkOperands(operands));
+  }
+
+  /**
+   * Evaluates this expression with
+   * <a href="{@docRoot}/resources/dictionary.html#defaultNomEntries">Default Nominal Entries</a>
+   * for the unions. The result is on the Java heap.
+   * @return the result as an ordered CompactSketch.
+   */
+  public CompactSketch evaluate() {
+    return evaluate(DEFAULT_NOMINAL_ENTRIES, null);
+  }
+
+  /**
+   * Evaluates this expression.
+   * @param k the upper bound of the number of entries retained by every union of this expression
+   * @param dstMem if not null, the result is written into this Memory, which must be large enough
+   * for the result as described in {@link PairwiseSetOperations}, and the returned sketch is a
+   * view of it.
+   * @return the result as an ordered CompactSketch.
+   */
+  public CompactSketch evaluate(final int k, final Memory dstMem) {
+    final Plan plan = new Plan();
+    plan(plan);
+    return eval(plan, k, dstMem);
+  }
+
+  //restricted
+
+  /**
+   * The global state of an evaluation that is collected from all leaves before any hashes are read.
+   */
+  static final class Plan {
+    long minThetaLong = Long.MAX_VALUE;
+    short seedHash;
+    boolean hasSeedHash = false;
+
+    void addLeaf(final Sketch sketch) {
+      minThetaLong = Math.min(minThetaLong, sketch.getThetaLong());
+      seedHash = hasSeedHash ? Util.checkSeedHashes(seedHash, sketch.getSeedHash())
+          : sketch.getSeedHash();
+      hasSeedHash = true;
+    }
+  }
+
+  /**
+   * Visits the leaves of this expression to collect the global plan state.
+   * @param plan the plan to be updated
+   */
+  abstract void plan(Plan plan);
+
+  /**
+   * Returns the empty state of this expression, which is given by the empty states of the leaves.
+   * @return the empty state of this expression
+   */
+  abstract boolean isEmpty();
+
+  /**
+   * Returns an upper bound of the number of entries of the result of this expression.
+   * Used to order the operands of intersections.
+   * @return an upper bound of the number of entries of the result of this expression
+   */
+  abstract long maxEntries();
+
+  /**
+   * Evaluates this expression.
+   * @param plan the global plan state
+   * @param k the upper bound of the number of entries retained by every union
+   * @param dstMem the destination Memory or null for an on-heap result
+   * @return the result as an ordered CompactSketch.
+   */
+  abstract CompactSketch eval(Plan plan, int k, Memory dstMem);
+
+  private static SetExpression[] checkOperands(final SetExpression[] operands) {
+    if ((operands == null) || (operands.length == 0)) {
+      throw new SketchesArgumentException("At least one operand is required.");
+    }
+    for (int i = 0; i < operands.length; i++) {
+      if (operands[i] == null) {
+        throw new SketchesArgumentException("Operands must not be null.");
+      }
+    }
+    return operands.clone();
+  }
+
+  static final class Leaf extends SetExpression {
+    private final Sketch sketch_;
+
+    Leaf(final Sketch sketch) {
+      sketch_ = sketch;
+    }
+
+    @Override
+    void plan(final Plan plan) {
+      plan.addLeaf(sketch_);
+    }
+
+    @Override
+    boolean isEmpty() {
+      return sketch_.isEmpty();
+    }
+
+    @Override
+    long maxEntries() {
+      return sketch_.getRetainedEntries(true);
+    }
+
+    @Override
+    CompactSketch eval(final Plan plan, final int k, final Memory dstMem) {
+      if ((sketch_ instanceof CompactSketch) && sketch_.isOrdered() && (dstMem == null)) {
+        return (CompactSketch) sketch_; //the operations apply the global theta
+      }
+      //compact and order once, keeping only the hashes below the global theta
+      final long thetaLong = Math.min(sketch_.getThetaLong(), plan.minThetaLong);
+      final long[] cache = sketch_.getCache();
+      final int curCount = HashOperations.count(cache, thetaLong);
+      final CompactSketch csk = new HeapCompactOrderedSketch(
+          compactCache(cache, curCount, thetaLong, true), sketch_.isEmpty(),
+          sketch_.getSeedHash(), curCount, thetaLong);
+      return (dstMem == null) ? csk
+          : PairwiseSetOperations.union(new CompactSketch[] {csk}, Integer.MAX_VALUE, dstMem);
+    }
+
+    @Override
+    public String toString() {
+      return "Sketch(" + sketch_.getRetainedEntries(true) + ")";
+    }
+  }
+
+  static final class Operation extends SetExpression {
+    static final int UNION = 0;
+    static final int INTERSECT = 1;
+    static final int A_NOT_B = 2;
+    private static final String[] NAMES = {"Union", "Intersect", "AnotB"};
+    private static final Comparator<SetExpression> BY_MAX_ENTRIES =
+        new Comparator<SetExpression>() {
+          @Override
+          public int compare(final SetExpression e1, final SetExpression e2) {
+            return Long.compare(e1.maxEntries(), e2.maxEntries());
+          }
+        };
+
+    private final int op_;
+    private final SetExpression[] operands_;
+
+    Operation(final int op, final SetExpression[] operands) {
+      op_ = op;
+      operands_ = operands;
+    }
+
+    @Override
+    void plan(final Plan plan) {
+      for (int i = 0; i < operands_.length; i++) { operands_[i].plan(plan); }
+    }
+
+    @Override
+    boolean isEmpty() {
+      switch (op_) {
+        case UNION: { //Empty rule is AND
+          for (int i = 0; i < operands_.length; i++) {
+            if (!operands_[i].isEmpty()) { return false; }
+          }
+          return true;
+        }
+        case INTERSECT: { //Empty rule is OR
+          for (int i = 0; i < operands_.length; i++) {
+            if (operands_[i].isEmpty()) { return true; }
+          }
+          return false;
+        }
+        default: { //Empty rule is whatever A is
+          return operands_[0].isEmpty();
+        }
+      }
+    }
+
+    @Override
+    long maxEntries() {
+      switch (op_) {
+        case UNION: {
+          long sum = 0;
+          for (int i = 0; i < operands_.length; i++) { sum += operands_[i].maxEntries(); }
+          return sum;
+        }
+        case INTERSECT: {
+          long min = Long.MAX_VALUE;
+          for (int i = 0; i < operands_.length; i++) {
+            min = Math.min(min, operands_[i].maxEntries());
+          }
+          return min;
+        }
+        default: {
+          return operands_[0].maxEntries();
+        }
+      }
+    }
+
+    @Override
+    CompactSketch eval(final Plan plan, final int k, final Memory dstMem) {
+      final long thetaCap = plan.minThetaLong;
+      final int numOps = operands_.length;
+      final CompactSketch[] results = new CompactSketch[numOps];
+      switch (op_) {
+        case UNION: {
+          for (int i = 0; i < numOps; i++) { results[i] = operands_[i].eval(plan, k, null); }
+          return PairwiseSetOperations.union(results, k, dstMem, thetaCap);
+        }
+        case INTERSECT: {
+          if (isEmpty()) {
+            return PairwiseSetOperations.noEntriesResult(dstMem, thetaCap, true, plan.seedHash);
+          }
+          final SetExpression[] ordered = operands_.clone(); //the leaves may have changed
+          Arrays.sort(ordered, BY_MAX_ENTRIES); //smallest first
+          for (int i = 0; i < numOps; i++) {
+            results[i] = ordered[i].eval(plan, k, null);
+            if (results[i].getRetainedEntries(true) == 0) { //nothing left to intersect
+              return PairwiseSetOperations.noEntriesResult(
+                  dstMem, Math.min(thetaCap, results[i].getThetaLong()), false, plan.seedHash);
+            }
+          }
+          return PairwiseSetOperations.intersect(results, dstMem, thetaCap);
+        }
+        default: {
+          results[0] = operands_[0].eval(plan, k, null);
+          if (results[0].getRetainedEntries(true) == 0) { //nothing to exclude from
+            return PairwiseSetOperations.noEntriesResult(
+                dstMem, Math.min(thetaCap, results[0].getThetaLong()), results[0].isEmpty(),
+                plan.seedHash);
+          }
+          for (int i = 1; i < numOps; i++) { results[i] = operands_[i].eval(plan, k, null); }
+          return PairwiseSetOperations.aNotB(
+              results[0], Arrays.copyOfRange(results, 1, numOps), dstMem, thetaCap);
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder(NAMES[op_]).append('(');
+      for (int i = 0; i < operands_.length; i++) {
+        if (i > 0) { sb.append(", "); }
+        sb.append(operands_[i]);
+      }
+      return sb.append(')').toString();
+    }
+  }
+
+}
@@ -18,6 +18,7 @@ import com.yahoo.memory.Memory;
 import com.yahoo.sketches.Family;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.Util;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * The parent API for all Set Operations
@@ -61,11 +62,16 @@ public abstract class SetOperation {
    * @return a Heap-based SetOperation from the given Memory
    */
   public static SetOperation heapify(final Memory srcMem, final long seed) {
+    return heapifyInstance(srcMem, seed, HashFunction.MURMUR3);
+  }
+
+  private static SetOperation heapifyInstance(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
     final byte famID = srcMem.getByte(FAMILY_BYTE);
     final Family family = idToFamily(famID);
     switch (family) {
       case UNION : {
-        return UnionImpl.heapifyInstance(srcMem, seed);
+        return UnionImpl.heapifyInstance(srcMem, seed, hashFunction);
       }
       case INTERSECTION : {
         return IntersectionImpl.heapifyInstance(srcMem, seed);
@@ -77,6 +83,23 @@ public abstract class SetOperation {
     }
   }
 
+  /**
+   * Heapify takes the image of a SetOperation in Memory, which was built with the given
+   * hash function, and instantiates an on-heap SetOperation. A Union continues to hash the items
+   * given to its update methods with the given hash function.
+   * @param srcMem an image of a SetOperation where the image seed hash matches the seed hash of
+   * the identity seed of the given hash function.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * This is the seed given to the builder, not the identity seed.
+   * @param hashFunction the hash function the SetOperation was built with
+   * @return a Heap-based SetOperation from the given Memory
+   */
+  public static SetOperation heapify(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
+    return heapifyInstance(srcMem, hashFunction.getIdentitySeed(seed), hashFunction);
+  }
+
   /**
    * Wrap takes the SetOperation image in Memory and refers to it directly.
    * There is no data copying onto the java heap.
@@ -101,6 +124,11 @@ public abstract class SetOperation {
    * @return a SetOperation backed by the given Memory
    */
   public static SetOperation wrap(final Memory srcMem, final long seed) {
+    return wrapInstance(srcMem, seed, HashFunction.MURMUR3);
+  }
+
+  private static SetOperation wrapInstance(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
     final byte famID = srcMem.getByte(FAMILY_BYTE);
     final Family family = idToFamily(famID);
     final int serVer = srcMem.getByte(SER_VER_BYTE);
@@ -109,16 +137,36 @@ public abstract class SetOperation {
     }
     switch (family) {
       case UNION : {
-        return UnionImpl.wrapInstance(srcMem, seed);
+        return UnionImpl.wrapInstance(srcMem, seed, hashFunction);
       }
       case INTERSECTION : {
         return IntersectionImpl.wrapInstance(srcMem, seed);
       }
+      case A_NOT_B : {
+        return DirectAnotB.wrapInstance(srcMem, seed);
+      }
       default:
         throw new SketchesArgumentException("SetOperation cannot wrap family: " + family.toString());
     }
   }
 
+  /**
+   * Wrap takes the image of a SetOperation in Memory, which was built with the given
+   * hash function, and refers to it directly. A Union continues to hash the items given to its
+   * update methods with the given hash function.
+   * @param srcMem an image of a SetOperation where the image seed hash matches the seed hash of
+   * the identity seed of the given hash function.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * This is the seed given to the builder, not the identity seed.
+   * @param hashFunction the hash function the SetOperation was built with
+   * @return a SetOperation backed by the given Memory
+   */
+  public static SetOperation wrap(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
+    return wrapInstance(srcMem, hashFunction.getIdentitySeed(seed), hashFunction);
+  }
+
   /**
    * Returns the maximum required storage bytes given a nomEntries parameter for Union operations
    * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
@@ -143,6 +191,18 @@ public abstract class SetOperation {
     return bytes;
   }
 
+  /**
+   * Returns the maximum required storage bytes for AnotB operations given the nomEntries parameter
+   * of the A sketches
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
+   * This will become the ceiling power of 2 if it is not.
+   * @return the maximum required storage bytes given a nomEntries parameter
+   */
+  public static int getMaxAnotBBytes(final int nomEntries) {
+    final int nomEnt = ceilingPowerOf2(nomEntries);
+    return (nomEnt << 4) + (Family.A_NOT_B.getMaxPreLongs() << 3);
+  }
+
   /**
    * Gets the Family of this SetOperation
    * @return the Family of this SetOperation
@@ -17,6 +17,7 @@ import com.yahoo.memory.Memory;
 import com.yahoo.sketches.Family;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * For building a new SetOperation.
@@ -29,6 +30,7 @@ public class SetOperationBuilder {
   private ResizeFactor bRF;
   private float bP;
   private Memory bDstMem;
+  private HashFunction bHashFunction;
 
   /**
    * Constructor for building a new SetOperation.  The default configuration is
@@ -38,6 +40,7 @@ public class SetOperationBuilder {
    * <li>{@link ResizeFactor#X8}</li>
    * <li>Input Sampling Probability: 1.0</li>
    * <li>Memory: null</li>
+   * <li>Hash Function: {@link HashFunction#MURMUR3}</li>
    * </ul>
    */
   public SetOperationBuilder() {
@@ -46,6 +49,7 @@ public class SetOperationBuilder {
     bP = (float) 1.0;
     bRF = ResizeFactor.X8;
     bDstMem = null;
+    bHashFunction = HashFunction.MURMUR3;
   }
 
   /**
@@ -93,6 +97,31 @@ public class SetOperationBuilder {
     return bSeed;
   }
 
+  /**
+   * Sets the hash function of the sketches this SetOperation will accept.
+   * The SetOperation uses the {@link HashFunction#getIdentitySeed(long) identity seed} of the
+   * given hash function in place of the configured seed, thus it accepts only sketches that were
+   * built with the same hash function and seed. A Union also applies the given hash function to
+   * the items given to its update methods.
+   * @param hashFunction the hash function, which must not be null
+   * @return this SetOperationBuilder
+   */
+  public SetOperationBuilder setHashFunction(final HashFunction hashFunction) {
+    if (hashFunction == null) {
+      throw new SketchesArgumentException("The hash function must not be null.");
+    }
+    bHashFunction = hashFunction;
+    return this;
+  }
+
+  /**
+   * Returns the hash function
+   * @return the hash function
+   */
+  public HashFunction getHashFunction() {
+    return bHashFunction;
+  }
+
   /**
    * Sets the upfront uniform sampling probability, <i>p</i>. Although this functionality is
    * implemented for Unions only, it rarely makes sense to use it. The proper use of upfront
@@ -160,33 +189,34 @@ public class SetOperationBuilder {
    * @return a SetOperation
    */
   public SetOperation build(final Family family) {
+    final long seed = bHashFunction.getIdentitySeed(bSeed);
     SetOperation setOp = null;
     switch (family) {
       case UNION: {
         if (bDstMem == null) {
-          setOp = UnionImpl.initNewHeapInstance(bLgNomLongs, bSeed, bP, bRF);
+          setOp = UnionImpl.initNewHeapInstance(bLgNomLongs, seed, bP, bRF, bHashFunction);
         }
         else {
-          setOp = UnionImpl.initNewDirectInstance(bLgNomLongs, bSeed, bP, bRF, bDstMem);
+          setOp = UnionImpl.initNewDirectInstance(bLgNomLongs, seed, bP, bRF, bDstMem,
+              bHashFunction);
         }
         break;
       }
       case INTERSECTION: {
         if (bDstMem == null) {
-          setOp = IntersectionImpl.initNewHeapInstance(bSeed);
+          setOp = IntersectionImpl.initNewHeapInstance(seed);
         }
         else {
-          setOp = IntersectionImpl.initNewDirectInstance(bSeed, bDstMem);
+          setOp = IntersectionImpl.initNewDirectInstance(seed, bDstMem);
         }
         break;
       }
       case A_NOT_B: {
         if (bDstMem == null) {
-          setOp = new HeapAnotB(bSeed);
+          setOp = new HeapAnotB(seed);
         }
         else {
-          throw new SketchesArgumentException(
-            "AnotB is a stateless operation and cannot be persisted.");
+          setOp = DirectAnotB.initNewDirectInstance(seed, bDstMem);
         }
         break;
       }
@@ -257,7 +287,8 @@ public class SetOperationBuilder {
       .append("Seed:").append(TAB).append(bSeed).append(LS)
       .append("p:").append(TAB).append(bP).append(LS)
       .append("ResizeFactor:").append(TAB).append(bRF).append(LS)
-      .append("DstMemory:").append(TAB).append(bDstMem != null).append(LS);
+      .append("DstMemory:").append(TAB).append(bDstMem != null).append(LS)
+      .append("HashFunction:").append(TAB).append(bHashFunction).append(LS);
     return sb.toString();
   }
 
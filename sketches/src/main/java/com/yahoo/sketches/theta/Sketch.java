@@ -17,6 +17,7 @@ import static com.yahoo.sketches.theta.PreambleUtil.FLAGS_BYTE;
 import static com.yahoo.sketches.theta.PreambleUtil.MAX_THETA_LONG_AS_DOUBLE;
 import static com.yahoo.sketches.theta.PreambleUtil.ORDERED_FLAG_MASK;
 import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
 import static com.yahoo.sketches.theta.PreambleUtil.extractFamilyID;
 import static com.yahoo.sketches.theta.PreambleUtil.extractFlags;
 import static com.yahoo.sketches.theta.PreambleUtil.extractPreLongs;
@@ -291,6 +292,11 @@ public abstract class Sketch {
     if (serVer == 2) {
       return ForwardCompatibility.heapify2to3(srcMem, seed);
     }
+    if (serVer == SER_VER_COMPRESSED) { //inflate
+      final CompactSketch csk = DirectCompressedCompactSketch.wrapInstance(srcMem, seed);
+      return new HeapCompactOrderedSketch(csk.getCache(), csk.isEmpty(), csk.getSeedHash(),
+          csk.getRetainedEntries(false), csk.getThetaLong());
+    }
     throw new SketchesArgumentException("Unknown Serialization Version: " + serVer);
   }
 
@@ -338,13 +344,16 @@ public abstract class Sketch {
               "Corrupted: " + family + " family image: must have SerVer = 3 and preLongs = 3");
         }
       }
-      case COMPACT: { //serVer 1, 2, or 3, preLongs = 1, 2, or 3
+      case COMPACT: { //serVer 1, 2, 3 or 4, preLongs = 1, 2, or 3
         if (serVer == 1) {
           return ForwardCompatibility.heapify1to3(srcMem, seed);
         }
         else if (serVer == 2) {
           return ForwardCompatibility.heapify2to3(srcMem, seed);
         }
+        else if (serVer == SER_VER_COMPRESSED) {
+          return DirectCompressedCompactSketch.wrapInstance(srcMem, seed);
+        }
         final int flags = extractFlags(memObj, memAdd);
         final boolean compact = (flags & COMPACT_FLAG_MASK) > 0; //used for corruption check
         final boolean ordered = (flags & ORDERED_FLAG_MASK) > 0;
@@ -398,6 +407,19 @@ public abstract class Sketch {
     return (nomEnt << 4) + (Family.QUICKSELECT.getMaxPreLongs() << 3);
   }
 
+  /**
+   * Returns the number of storage bytes required for a concurrent direct UpdateSketch with the
+   * given number of nominal entries (power of 2). This is 8 bytes more than
+   * {@link #getMaxUpdateSketchBytes(int)} for the lock word that follows the hash table.
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
+   * This will become the ceiling power of 2 if it is not.
+   * @return the number of storage bytes required for a concurrent direct UpdateSketch with the
+   * given nomEntries
+   */
+  public static int getMaxConcurrentDirectSketchBytes(final int nomEntries) {
+    return getMaxUpdateSketchBytes(nomEntries) + 8;
+  }
+
   /**
    * Returns the serialization version from the given Memory
    * @param mem the sketch Memory
@@ -425,6 +447,15 @@ public abstract class Sketch {
    */
   public abstract boolean isDirect();
 
+  /**
+   * Returns a HashIterator over the retained hashes of this sketch. Heap and direct sketches are
+   * iterated in place; the hashes are not copied.
+   * @return a HashIterator over the retained hashes of this sketch
+   */
+  public HashIterator iterator() {
+    return new HeapHashIterator(getCache(), getThetaLong());
+  }
+
   //Restricted methods
 
   final int getCurrentDataLongs(final boolean compact) {
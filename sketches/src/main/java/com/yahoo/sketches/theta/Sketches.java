@@ -73,6 +73,25 @@ public final class Sketches {
     return Sketch.wrap(srcMem, seed);
   }
 
+  /**
+   * Ref: {@link UpdateSketch#wrapConcurrentDirect(Memory) UpdateSketch.wrapConcurrentDirect(Memory)}
+   * @param srcMem Ref: {@link UpdateSketch#wrapConcurrentDirect(Memory)} {@code srcMem}
+   * @return {@link UpdateSketch UpdateSketch}
+   */
+  public static UpdateSketch wrapConcurrentDirectSketch(final Memory srcMem) {
+    return UpdateSketch.wrapConcurrentDirect(srcMem);
+  }
+
+  /**
+   * Ref: {@link UpdateSketch#wrapConcurrentDirect(Memory, long)}
+   * @param srcMem Ref: {@link UpdateSketch#wrapConcurrentDirect(Memory, long)} {@code srcMem}
+   * @param seed Ref: {@link UpdateSketch#wrapConcurrentDirect(Memory, long)} {@code seed}
+   * @return {@link UpdateSketch UpdateSketch}
+   */
+  public static UpdateSketch wrapConcurrentDirectSketch(final Memory srcMem, final long seed) {
+    return UpdateSketch.wrapConcurrentDirect(srcMem, seed);
+  }
+
   /**
    * Ref: {@link SetOperationBuilder SetOperationBuilder}
    * @return {@link SetOperationBuilder SetOperationBuilder}
@@ -162,6 +181,15 @@ public final class Sketches {
     return Sketch.getMaxUpdateSketchBytes(nomEntries);
   }
 
+  /**
+   * Ref: {@link Sketch#getMaxConcurrentDirectSketchBytes(int)}
+   * @param nomEntries Ref: {@link Sketch#getMaxConcurrentDirectSketchBytes(int)} {@code nomEntries}
+   * @return Ref: {@link Sketch#getMaxConcurrentDirectSketchBytes(int)}
+   */
+  public static int getMaxConcurrentDirectSketchBytes(final int nomEntries) {
+    return Sketch.getMaxConcurrentDirectSketchBytes(nomEntries);
+  }
+
   /**
    * Ref: {@link Sketch#getSerializationVersion(Memory)}
    * @param srcMem Ref: {@link Sketch#getSerializationVersion(Memory)} {@code srcMem}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.Util.ceilingPowerOf2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryRegion;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * Estimates the number of unique values over sliding time windows, such as the last hour, day or
+ * week evaluated every minute, without re-unioning one sketch per time unit on every query.
+ *
+ * <p>Time is measured in ticks given by the caller, e.g., minutes since the epoch. All updates go
+ * to the sketch of the current tick. When the clock advances, the sketch of the completed tick is
+ * compacted into a pane of level 0, and every group of <i>fanouts[L]</i> aligned panes of level
+ * <i>L</i> that is complete is unioned once into a pane of level <i>L + 1</i>. For example, the
+ * fanouts {60, 24} give minute, hour and day panes.</p>
+ *
+ * <p>A window query covers the given number of ticks up to and including the current tick. It is
+ * decomposed into the largest aligned panes that fit, so that a query touches at most
+ * <i>2 &middot; (fanouts[L] - 1)</i> panes per level plus the current sketch, which is logarithmic
+ * in the length of the window, instead of one sketch per tick. The panes are merged with the
+ * k-way ordered union of {@link PairwiseSetOperations}.</p>
+ *
+ * <p>Every pane is cut back to <i>k</i> entries, where <i>k</i> is the nominal entries, thus a
+ * window result has the same error bounds as the union of the per-tick sketches with a
+ * {@link Union} of the same <i>k</i>. Panes that are older than the longest window are evicted.
+ * The sketch of the current tick and all panes may be stored in a Memory given by the caller, see
+ * {@link #getMaxBytes(int, int[], int)}, in which case nothing of size <i>k</i> is kept on the
+ * Java heap.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ */
+public final class SlidingWindowSketch {
+  private final int k_;
+  private final int maxWindowTicks_;
+  private final long[] spans_;     //ticks per pane by level
+  private final int[] capacities_; //panes per level
+  private final CompactSketch[][] panes_;
+  private final long[][] paneStarts_; //the start tick of the pane in each slot
+  private final long[] evictFrom_;    //the index of the oldest pane per level not yet evicted
+  private final Memory mem_;          //null if on-heap
+  private final long[] levelOffsets_; //of the panes of each level in mem_
+  private final UpdateSketch current_;
+  private long currentTick_;
+
+  /**
+   * Creates a new on-heap sliding window sketch with the default seed.
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
+   * This will become the ceiling power of 2 if it is not.
+   * @param fanouts the number of panes of each level that are unioned into one pane of the next
+   * level, each at least 2. It may be empty, in which case only panes of one tick are kept.
+   * @param maxWindowTicks the length of the longest window in ticks. It must not be less than the
+   * number of ticks of a pane of the highest level.
+   */
+  public SlidingWindowSketch(final int nomEntries, final int[] fanouts, final int maxWindowTicks) {
+    this(nomEntries, fanouts, maxWindowTicks, DEFAULT_UPDATE_SEED, null);
+  }
+
+  /**
+   * Creates a new sliding window sketch.
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
+   * This will become the ceiling power of 2 if it is not.
+   * @param fanouts the number of panes of each level that are unioned into one pane of the next
+   * level, each at least 2. It may be empty, in which case only panes of one tick are kept.
+   * @param maxWindowTicks the length of the longest window in ticks. It must not be less than the
+   * number of ticks of a pane of the highest level.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @param dstMem if not null, the sketch of the current tick and all panes are stored in this
+   * Memory, which must have at least {@link #getMaxBytes(int, int[], int)} bytes. Its previous
+   * content is ignored.
+   */
+  public SlidingWindowSketch(final int nomEntries, final int[] fanouts, final int maxWindowTicks,
+      final long seed, final Memory dstMem) {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(nomEntries)
+        .setSeed(seed); //validates nomEntries
+    k_ = ceilingPowerOf2(nomEntries);
+    spans_ = computeSpans(fanouts, maxWindowTicks);
+    maxWindowTicks_ = maxWindowTicks;
+    final int numLevels = spans_.length;
+    capacities_ = new int[numLevels];
+    panes_ = new CompactSketch[numLevels][];
+    paneStarts_ = new long[numLevels][];
+    evictFrom_ = new long[numLevels];
+    for (int lvl = 0; lvl < numLevels; lvl++) {
+      capacities_[lvl] = capacity(maxWindowTicks, spans_[lvl]);
+      panes_[lvl] = new CompactSketch[capacities_[lvl]];
+      paneStarts_[lvl] = new long[capacities_[lvl]];
+      Arrays.fill(paneStarts_[lvl], -1L);
+    }
+    mem_ = dstMem;
+    if (dstMem == null) {
+      levelOffsets_ = null;
+      current_ = bldr.build();
+    } else {
+      final long reqBytes = getMaxBytes(nomEntries, fanouts, maxWindowTicks);
+      if (dstMem.getCapacity() < reqBytes) {
+        throw new SketchesArgumentException(
+            "Insufficient Memory: " + dstMem.getCapacity() + ", Need: " + reqBytes);
+      }
+      final int updateBytes = Sketch.getMaxUpdateSketchBytes(k_);
+      levelOffsets_ = new long[numLevels];
+      long offset = updateBytes;
+      for (int lvl = 0; lvl < numLevels; lvl++) {
+        levelOffsets_[lvl] = offset;
+        offset += (long) capacities_[lvl] * Sketch.getMaxCompactSketchBytes(k_);
+      }
+      current_ = bldr.initMemory(new MemoryRegion(dstMem, 0, updateBytes)).build();
+    }
+    currentTick_ = 0;
+  }
+
+  /**
+   * Returns the number of bytes of the Memory required by a sliding window sketch with the given
+   * configuration.
+   * @param nomEntries <a href="{@docRoot}/resources/dictionary.html#nomEntries">Nominal Entres</a>
+   * @param fanouts the number of panes of each level that are unioned into one pane of the next
+   * level
+   * @param maxWindowTicks the length of the longest window in ticks
+   * @return the number of bytes of the Memory required by a sliding window sketch
+   */
+  public static long getMaxBytes(final int nomEntries, final int[] fanouts,
+      final int maxWindowTicks) {
+    final int k = ceilingPowerOf2(nomEntries);
+    final long[] spans = computeSpans(fanouts, maxWindowTicks);
+    long panes = 0;
+    for (int lvl = 0; lvl < spans.length; lvl++) { panes += capacity(maxWindowTicks, spans[lvl]); }
+    return Sketch.getMaxUpdateSketchBytes(k) + (panes * Sketch.getMaxCompactSketchBytes(k));
+  }
+
+  /**
+   * Advances the clock to the given tick. The sketch of the previous tick becomes a pane and the
+   * panes that are older than the longest window are evicted.
+   * @param tick the given tick, which must not be less than the current tick
+   */
+  public void advance(final long tick) {
+    if (tick < currentTick_) {
+      throw new SketchesArgumentException(
+          "Tick must not be less than the current tick: " + tick + " < " + currentTick_);
+    }
+    if (tick == currentTick_) { return; }
+    if (!current_.isEmpty()) {
+      storePane(0, currentTick_, new CompactSketch[] {current_.compact(true, null)});
+      current_.reset();
+    }
+    //union the groups of panes that are complete at the new tick, lowest level first
+    for (int lvl = 1; lvl < spans_.length; lvl++) {
+      final long span = spans_[lvl];
+      final long groupStart = (currentTick_ / span) * span;
+      if ((groupStart + span) > tick) { break; } //so are all higher levels
+      final long childSpan = spans_[lvl - 1];
+      final List<CompactSketch> children = new ArrayList<>();
+      for (long t = groupStart; t < (groupStart + span); t += childSpan) {
+        final CompactSketch child = getPane(lvl - 1, t);
+        if (child != null) { children.add(child); }
+      }
+      if (!children.isEmpty()) {
+        storePane(lvl, groupStart, children.toArray(new CompactSketch[children.size()]));
+      }
+    }
+    currentTick_ = tick;
+    evict();
+  }
+
+  /**
+   * Advances the clock to the given tick, if required, and updates the sketch of the current tick
+   * with the given long.
+   * @param tick the given tick, which must not be less than the current tick
+   * @param datum The given long datum.
+   */
+  public void update(final long tick, final long datum) {
+    advance(tick);
+    current_.update(datum);
+  }
+
+  /**
+   * Advances the clock to the given tick, if required, and updates the sketch of the current tick
+   * with the given String.
+   * @param tick the given tick, which must not be less than the current tick
+   * @param datum The given String.
+   */
+  public void update(final long tick, final String datum) {
+    advance(tick);
+    current_.update(datum);
+  }
+
+  /**
+   * Returns the sketch of the current tick, which can be updated with any of the UpdateSketch
+   * methods. It remains valid when the clock advances, but is then reset.
+   * @return the sketch of the current tick
+   */
+  public UpdateSketch getCurrentSketch() {
+    return current_;
+  }
+
+  /**
+   * Returns the union of the given number of most recent ticks, including the current tick.
+   * @param windowTicks the length of the window in ticks, from 1 to the longest window
+   * @return the union of the window as an ordered CompactSketch on the Java heap
+   */
+  public CompactSketch getResult(final int windowTicks) {
+    final List<CompactSketch> inputs = windowPanes(windowTicks);
+    inputs.add(current_.compact(true, null));
+    return PairwiseSetOperations.union(inputs.toArray(new CompactSketch[inputs.size()]), k_);
+  }
+
+  /**
+   * Returns the estimate of the number of unique values of the given number of most recent ticks,
+   * including the current tick.
+   * @param windowTicks the length of the window in ticks, from 1 to the longest window
+   * @return the estimate of the number of unique values of the window
+   */
+  public double getEstimate(final int windowTicks) {
+    return getResult(windowTicks).getEstimate();
+  }
+
+  /**
+   * Returns the current tick
+   * @return the current tick
+   */
+  public long getCurrentTick() {
+    return currentTick_;
+  }
+
+  /**
+   * Returns the length of the longest window in ticks
+   * @return the length of the longest window in ticks
+   */
+  public int getMaxWindowTicks() {
+    return maxWindowTicks_;
+  }
+
+  //restricted
+
+  /**
+   * Returns the panes that cover the completed ticks of the given window, the largest first.
+   * @param windowTicks the length of the window in ticks
+   * @return the panes that cover the completed ticks of the given window
+   */
+  List<CompactSketch> windowPanes(final int windowTicks) {
+    if ((windowTicks < 1) || (windowTicks > maxWindowTicks_)) {
+      throw new SketchesArgumentException(
+          "Window must be from 1 to " + maxWindowTicks_ + " ticks: " + windowTicks);
+    }
+    final List<CompactSketch> list = new ArrayList<>();
+    long t = Math.max(0, (currentTick_ - windowTicks) + 1);
+    while (t < currentTick_) {
+      int lvl = spans_.length - 1;
+      while ((lvl > 0) && (((t % spans_[lvl]) != 0) || ((t + spans_[lvl]) > currentTick_))) {
+        lvl--;
+      }
+      final CompactSketch pane = getPane(lvl, t);
+      if (pane != null) { list.add(pane); }
+      t += spans_[lvl];
+    }
+    return list;
+  }
+
+  private CompactSketch getPane(final int lvl, final long start) {
+    final int slot = (int) ((start / spans_[lvl]) % capacities_[lvl]);
+    return (paneStarts_[lvl][slot] == start) ? panes_[lvl][slot] : null;
+  }
+
+  /**
+   * Stores the union of the given sketches, cut back to k, as the pane of the given level that
+   * starts at the given tick.
+   */
+  private void storePane(final int lvl, final long start, final CompactSketch[] sketches) {
+    final int slot = (int) ((start / spans_[lvl]) % capacities_[lvl]);
+    Memory slotMem = null;
+    if (mem_ != null) {
+      final int slotBytes = Sketch.getMaxCompactSketchBytes(k_);
+      slotMem = new MemoryRegion(mem_, levelOffsets_[lvl] + ((long) slot * slotBytes), slotBytes);
+    }
+    panes_[lvl][slot] = PairwiseSetOperations.union(sketches, k_, slotMem);
+    paneStarts_[lvl][slot] = start;
+  }
+
+  /**
+   * Evicts the panes that end before the earliest tick of the longest window.
+   */
+  private void evict() {
+    final long earliest = (currentTick_ - maxWindowTicks_) + 1;
+    if (earliest <= 0) { return; }
+    for (int lvl = 0; lvl < spans_.length; lvl++) {
+      final long span = spans_[lvl];
+      final long endPane = earliest / span; //the panes below this index have expired
+      final long fromPane = Math.max(evictFrom_[lvl], endPane - capacities_[lvl]);
+      for (long p = fromPane; p < endPane; p++) {
+        final int slot = (int) (p % capacities_[lvl]);
+        if (paneStarts_[lvl][slot] == (p * span)) {
+          panes_[lvl][slot] = null;
+          paneStarts_[lvl][slot] = -1L;
+        }
+      }
+      evictFrom_[lvl] = Math.max(evictFrom_[lvl], endPane);
+    }
+  }
+
+  private static long[] computeSpans(final int[] fanouts, final int maxWindowTicks) {
+    if (fanouts == null) {
+      throw new SketchesArgumentException("Fanouts must not be null.");
+    }
+    final long[] spans = new long[fanouts.length + 1];
+    spans[0] = 1;
+    for (int i = 0; i < fanouts.length; i++) {
+      if (fanouts[i] < 2) {
+        throw new SketchesArgumentException("Fanouts must be at least 2: " + fanouts[i]);
+      }
+      spans[i + 1] = spans[i] * fanouts[i];
+      if (spans[i + 1] > maxWindowTicks) {
+        throw new SketchesArgumentException("The panes of the highest level must not be longer "
+            + "than the longest window: " + spans[i + 1] + " > " + maxWindowTicks);
+      }
+    }
+    if (maxWindowTicks < 1) {
+      throw new SketchesArgumentException("MaxWindowTicks must be at least 1: " + maxWindowTicks);
+    }
+    return spans;
+  }
+
+  //the number of panes that can overlap the longest window
+  private static int capacity(final int maxWindowTicks, final long span) {
+    return (int) (((maxWindowTicks + span) - 1) / span) + 1;
+  }
+
+}
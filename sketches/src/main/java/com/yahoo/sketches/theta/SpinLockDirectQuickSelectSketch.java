@@ -0,0 +1,386 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.Util.REBUILD_THRESHOLD;
+import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
+import static com.yahoo.sketches.theta.PreambleUtil.clearEmpty;
+import static com.yahoo.sketches.theta.PreambleUtil.extractCurCount;
+import static com.yahoo.sketches.theta.PreambleUtil.extractThetaLong;
+import static com.yahoo.sketches.theta.PreambleUtil.getMemBytes;
+import static com.yahoo.sketches.theta.Rebuilder.quickSelectAndRebuild;
+import static com.yahoo.sketches.theta.UpdateReturnState.InsertedCountIncremented;
+import static com.yahoo.sketches.theta.UpdateReturnState.RejectedDuplicate;
+import static com.yahoo.sketches.theta.UpdateReturnState.RejectedOverTheta;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.HashOperations;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * A QuickSelect sketch in a given Memory that can be updated concurrently by any number of threads,
+ * and, if the Memory is a shared mapping such as a MemoryMappedFile, by any number of processes
+ * that wrap the same Memory. Access is coordinated by a spin reader/writer lock kept in the Memory,
+ * thus this sketch is not lock-free.
+ *
+ * <p>The lock word is stored in the 8 bytes just after the hash table: the high bit marks a
+ * writer and the low bits count the inserters in flight. Thus the Memory must be 8 bytes larger
+ * than for a {@link DirectQuickSelectSketch}, see
+ * {@link Sketch#getMaxConcurrentDirectSketchBytes(int)}. Inserters share the lock: each one
+ * increments the count with a compare-and-swap, inserts its hash with a compare-and-swap of an
+ * empty slot and decrements the count again. Every update that passes the theta test therefore
+ * performs two atomic operations on the same lock word, and all inserters contend on its cache
+ * line. Hashes that are rejected over theta, which is the common case once the sketch is in
+ * estimation mode, do not touch the lock word. The hash table is always allocated at its full
+ * size, since a shared Memory cannot be reallocated, and is never resized.</p>
+ *
+ * <p>When the count exceeds the rebuild threshold a single inserter becomes the writer, spins
+ * until the inserters in flight have left and rebuilds the hash table, which lowers theta. New
+ * inserters spin while the writer holds the lock. The compact(), toByteArray(), rebuild(),
+ * reset() and getCache() methods also take the lock exclusively.</p>
+ *
+ * <p>Failure mode: the lock word has no owner and no timeout. A thread or process that dies while
+ * holding it, either as an inserter or as the writer, leaves it held forever, and every other
+ * thread and process that updates the sketch will then spin indefinitely. The sketch can only be
+ * recovered by re-initializing the Memory with
+ * {@link UpdateSketchBuilder#buildConcurrentDirect()}, which discards its content.</p>
+ */
+final class SpinLockDirectQuickSelectSketch extends UpdateSketch {
+  private static final long WRITER_MASK = 1L << 63;
+  private static final long INSERTERS_MASK = ~WRITER_MASK;
+
+  private final DirectQuickSelectSketch gadget_;
+  private final Memory mem_;
+  private final Object memObj_;
+  private final long memAdd_;
+  private final int preBytes_;
+  private final int lgArrLongs_;
+  private final int arrLongs_;
+  private final int hashTableThreshold_;
+  private final long lockOffset_;
+
+  private SpinLockDirectQuickSelectSketch(final DirectQuickSelectSketch gadget) {
+    gadget_ = gadget;
+    mem_ = gadget.getMemory();
+    memObj_ = mem_.array(); //may be null
+    memAdd_ = mem_.getCumulativeOffset(0L);
+    preBytes_ = gadget.getPreambleLongs() << 3;
+    lgArrLongs_ = gadget.getLgArrLongs();
+    arrLongs_ = 1 << lgArrLongs_;
+    hashTableThreshold_ = (int) Math.floor(REBUILD_THRESHOLD * arrLongs_);
+    lockOffset_ = preBytes_ + (arrLongs_ << 3);
+  }
+
+  /**
+   * Get a new concurrent sketch instance and initialize the given Memory as its backing store.
+   *
+   * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLongs">See lgNomLongs</a>.
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
+   * @param dstMem the given Memory object destination. It cannot be null and must be at least
+   * {@link #getMemBytesWithLock(int)} bytes. It will be cleared prior to use.
+   * @return instance of this sketch
+   */
+  static SpinLockDirectQuickSelectSketch initNewDirectInstance(final int lgNomLongs,
+      final long seed, final float p, final Memory dstMem) {
+    checkCapacity(dstMem, lgNomLongs);
+    final DirectQuickSelectSketch gadget = DirectQuickSelectSketch.initNewDirectInstance(
+        lgNomLongs, seed, p, ResizeFactor.X1, dstMem, false); //full size hash table
+    final SpinLockDirectQuickSelectSketch sketch = new SpinLockDirectQuickSelectSketch(gadget);
+    dstMem.putLong(sketch.lockOffset_, 0L);
+    return sketch;
+  }
+
+  /**
+   * Wrap a concurrent sketch around the given source Memory, which must have been initialized by
+   * {@link #initNewDirectInstance(int, long, float, Memory)}, possibly by another process.
+   * @param srcMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>
+   * @return instance of this sketch
+   */
+  static SpinLockDirectQuickSelectSketch wrapInstance(final Memory srcMem, final long seed) {
+    final DirectQuickSelectSketch gadget = DirectQuickSelectSketch.wrapInstance(srcMem, seed);
+    if (gadget.getFamily() != Family.QUICKSELECT) {
+      throw new SketchesArgumentException(
+          "A concurrent direct sketch must be of the QuickSelect family: " + gadget.getFamily());
+    }
+    final int lgNomLongs = gadget.getLgNomLongs();
+    if (gadget.getLgArrLongs() != (lgNomLongs + 1)) {
+      throw new SketchesArgumentException(
+          "A concurrent direct sketch must have a full size hash table: lgArrLongs: "
+              + gadget.getLgArrLongs() + ", lgNomLongs: " + lgNomLongs);
+    }
+    checkCapacity(srcMem, lgNomLongs);
+    return new SpinLockDirectQuickSelectSketch(gadget);
+  }
+
+  /**
+   * Returns the number of bytes required for a concurrent sketch with the given lgNomLongs,
+   * which includes the trailing lock word.
+   * @param lgNomLongs <a href="{@docRoot}/resources/dictionary.html#lgNomLongs">See lgNomLongs</a>.
+   * @return the number of bytes required for a concurrent sketch with the given lgNomLongs
+   */
+  static int getMemBytesWithLock(final int lgNomLongs) {
+    return getMemBytes(lgNomLongs + 1, Family.QUICKSELECT.getMinPreLongs()) + 8;
+  }
+
+  //Sketch
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>While updates are in flight the count may transiently include hashes that are still
+   * being inserted.</p>
+   */
+  @Override
+  public int getRetainedEntries(final boolean valid) {
+    return extractCurCount(memObj_, memAdd_);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return PreambleUtil.isEmpty(memObj_, memAdd_);
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    acquireExclusive();
+    try {
+      return gadget_.toByteArray();
+    } finally {
+      releaseExclusive();
+    }
+  }
+
+  @Override
+  public Family getFamily() {
+    return Family.QUICKSELECT;
+  }
+
+  @Override
+  public boolean isDirect() {
+    return true;
+  }
+
+  //UpdateSketch
+
+  @Override
+  public CompactSketch compact(final boolean dstOrdered, final Memory dstMem) {
+    acquireExclusive();
+    try {
+      return gadget_.compact(dstOrdered, dstMem);
+    } finally {
+      releaseExclusive();
+    }
+  }
+
+  @Override
+  public UpdateSketch rebuild() {
+    acquireExclusive();
+    try {
+      gadget_.rebuild();
+    } finally {
+      releaseExclusive();
+    }
+    return this;
+  }
+
+  @Override
+  public void reset() {
+    acquireExclusive();
+    try {
+      gadget_.reset();
+    } finally {
+      releaseExclusive();
+    }
+  }
+
+  @Override
+  public ResizeFactor getResizeFactor() {
+    return ResizeFactor.X1;
+  }
+
+  //restricted methods
+
+  @Override
+  int getPreambleLongs() {
+    return preBytes_ >>> 3;
+  }
+
+  @Override
+  short getSeedHash() {
+    return gadget_.getSeedHash();
+  }
+
+  @Override
+  long getThetaLong() {
+    return extractThetaLong(memObj_, memAdd_);
+  }
+
+  @Override
+  long[] getCache() {
+    acquireExclusive();
+    try {
+      return gadget_.getCache();
+    } finally {
+      releaseExclusive();
+    }
+  }
+
+  @Override
+  Memory getMemory() {
+    return mem_;
+  }
+
+  @Override
+  UpdateReturnState hashUpdate(final long hash) {
+    HashOperations.checkHashCorruption(hash);
+    //Theta only decreases outside of reset(), so a hash rejected here without the lock would also
+    //be rejected under it. This keeps the common case in estimation mode off the lock word.
+    if (!PreambleUtil.isEmpty(memObj_, memAdd_)
+        && HashOperations.continueCondition(extractThetaLong(memObj_, memAdd_), hash)) {
+      return RejectedOverTheta;
+    }
+    while (true) {
+      final int curCount;
+      acquireShared();
+      try {
+        if (PreambleUtil.isEmpty(memObj_, memAdd_)) {
+          clearEmpty(memObj_, memAdd_); //only reset() sets it again, which is exclusive
+        }
+        final long thetaLong = extractThetaLong(memObj_, memAdd_);
+        if (HashOperations.continueCondition(thetaLong, hash)) {
+          return RejectedOverTheta;
+        }
+        //cheap duplicate test before reserving a slot
+        if (HashOperations.hashSearch(mem_, lgArrLongs_, hash, preBytes_) >= 0) {
+          return RejectedDuplicate;
+        }
+        //reserve a slot. The reservations guarantee that the probe always finds an empty slot.
+        final int reserved = mem_.addAndGetInt(RETAINED_ENTRIES_INT, 1);
+        if (reserved >= arrLongs_) {
+          mem_.addAndGetInt(RETAINED_ENTRIES_INT, -1);
+          curCount = -1; //table is full, the rebuild is lagging
+        } else {
+          if (HashOperations.hashSearchOrInsertAtomic(mem_, lgArrLongs_, hash, preBytes_) >= 0) {
+            mem_.addAndGetInt(RETAINED_ENTRIES_INT, -1);
+            return RejectedDuplicate; //inserted concurrently by another thread
+          }
+          curCount = reserved;
+        }
+      } finally {
+        releaseShared();
+      }
+
+      if (curCount < 0) {
+        acquireExclusive();
+        rebuildIfRequired();
+        continue; //retry the insert
+      }
+      if ((curCount > hashTableThreshold_) && tryAcquireExclusive()) {
+        rebuildIfRequired();
+      }
+      return InsertedCountIncremented;
+    }
+  }
+
+  @Override
+  int getLgArrLongs() {
+    return lgArrLongs_;
+  }
+
+  @Override
+  int getLgNomLongs() {
+    return gadget_.getLgNomLongs();
+  }
+
+  @Override
+  int getLgResizeFactor() {
+    return 0;
+  }
+
+  @Override
+  float getP() {
+    return gadget_.getP();
+  }
+
+  @Override
+  long getSeed() {
+    return gadget_.getSeed();
+  }
+
+  @Override
+  boolean isDirty() {
+    return false;
+  }
+
+  //lock word
+
+  //must be called while holding the exclusive lock, which it releases
+  private void rebuildIfRequired() {
+    try {
+      if (extractCurCount(memObj_, memAdd_) > hashTableThreshold_) {
+        quickSelectAndRebuild(mem_, preBytes_ >>> 3, gadget_.getLgNomLongs());
+      }
+    } finally {
+      releaseExclusive();
+    }
+  }
+
+  private void acquireShared() {
+    while (true) {
+      final long word = mem_.getLong(lockOffset_);
+      if (word >= 0) { //no writer
+        if (mem_.compareAndSwapLong(lockOffset_, word, word + 1)) { return; }
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+
+  private void releaseShared() {
+    mem_.addAndGetLong(lockOffset_, -1L);
+  }
+
+  /**
+   * Attempts to become the single writer. Fails immediately if another writer exists, otherwise
+   * waits until the inserters in flight have completed.
+   * @return true if this thread is now the writer
+   */
+  private boolean tryAcquireExclusive() {
+    while (true) {
+      final long word = mem_.getLong(lockOffset_);
+      if (word < 0) { return false; }
+      if (mem_.compareAndSwapLong(lockOffset_, word, word | WRITER_MASK)) { break; }
+    }
+    while ((mem_.getLong(lockOffset_) & INSERTERS_MASK) != 0) {
+      Thread.yield();
+    }
+    return true;
+  }
+
+  private void acquireExclusive() {
+    while (!tryAcquireExclusive()) {
+      Thread.yield();
+    }
+  }
+
+  private void releaseExclusive() {
+    mem_.getAndSetLong(lockOffset_, 0L);
+  }
+
+  private static void checkCapacity(final Memory mem, final int lgNomLongs) {
+    final int reqBytes = getMemBytesWithLock(lgNomLongs);
+    if (mem.getCapacity() < reqBytes) {
+      throw new SketchesArgumentException(
+          "Memory capacity is too small for a concurrent direct sketch: "
+              + mem.getCapacity() + " < " + reqBytes);
+    }
+  }
+
+}
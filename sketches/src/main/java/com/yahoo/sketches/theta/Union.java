@@ -102,6 +102,21 @@ public interface Union {
    */
   public void update(long[] data);
 
+  /**
+   * Present this union with a batch of independent long items, given as the region
+   * <i>[off, off + len)</i> of the given array. Each item is treated exactly as if it were
+   * presented with {@link #update(long)}, but within a single call.
+   * If the array is null or <i>len</i> is zero no update attempt is made and the method returns.
+   *
+   * <p>Note: this is not the same as {@link #update(long[])}, which treats the whole array as a
+   * single composite item.</p>
+   *
+   * @param values the array containing the items
+   * @param off the offset of the first item in the array
+   * @param len the number of items
+   */
+  void update(long[] values, int off, int len);
+
   /**
    * Gets the result of this operation as a CompactSketch of the chosen form.
    * This does not disturb the underlying data structure of the union.
@@ -125,6 +140,34 @@ public interface Union {
    */
   CompactSketch getResult();
 
+  /**
+   * Gets the unique count estimate of the result of this operation without building the result
+   * sketch. This is the same as <i>getResult().getEstimate()</i>, but the retained hashes are
+   * neither copied, compacted nor sorted. It is OK to continue updating the union afterwards.
+   * @return the estimate of the number of unique values of the result of this operation
+   */
+  double getEstimate();
+
+  /**
+   * Gets the approximate lower error bound of the result of this operation given the specified
+   * number of Standard Deviations without building the result sketch.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the lower bound.
+   */
+  double getLowerBound(int numStdDev);
+
+  /**
+   * Gets the approximate upper error bound of the result of this operation given the specified
+   * number of Standard Deviations without building the result sketch.
+   *
+   * @param numStdDev
+   * <a href="{@docRoot}/resources/dictionary.html#numStdDev">See Number of Standard Deviations</a>
+   * @return the upper bound.
+   */
+  double getUpperBound(int numStdDev);
+
   /**
    * Returns a byte array image of this Union object
    * @return a byte array image of this Union object
@@ -17,6 +17,7 @@ import static com.yahoo.sketches.theta.PreambleUtil.PREAMBLE_LONGS_BYTE;
 import static com.yahoo.sketches.theta.PreambleUtil.RETAINED_ENTRIES_INT;
 import static com.yahoo.sketches.theta.PreambleUtil.SEED_HASH_SHORT;
 import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
 import static com.yahoo.sketches.theta.PreambleUtil.THETA_LONG;
 import static com.yahoo.sketches.theta.PreambleUtil.UNION_THETA_LONG;
 import static java.lang.Math.min;
@@ -28,6 +29,7 @@ import com.yahoo.sketches.HashOperations;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
 import com.yahoo.sketches.Util;
+import com.yahoo.sketches.hash.HashFunction;
 
 
 /**
@@ -41,8 +43,9 @@ final class UnionImpl extends SetOperation implements Union {
   private final short seedHash_; //eliminates having to compute the seedHash on every update.
   private long unionThetaLong_; //when on-heap, this is the only copy
 
-  private UnionImpl(final UpdateSketch gadget, final long seed) {
+  private UnionImpl(final UpdateSketch gadget, final long seed, final HashFunction hashFunction) {
     gadget_ = gadget;
+    gadget_.hashFunction_ = hashFunction; //the gadget is private, so this is its only function
     seedHash_ = computeSeedHash(seed);
   }
 
@@ -54,13 +57,14 @@ final class UnionImpl extends SetOperation implements Union {
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
    * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
+   * @param hashFunction the hash function that the update methods apply to their items
    * @return instance of this sketch
    */
   static UnionImpl initNewHeapInstance(final int lgNomLongs, final long seed, final float p,
-      final ResizeFactor rf) {
+      final ResizeFactor rf, final HashFunction hashFunction) {
     final UpdateSketch gadget = HeapQuickSelectSketch.initNewHeapInstance(
         lgNomLongs, seed, p, rf, true); //create with UNION family
-    final UnionImpl unionImpl = new UnionImpl(gadget, seed);
+    final UnionImpl unionImpl = new UnionImpl(gadget, seed, hashFunction);
     unionImpl.unionThetaLong_ = gadget.getThetaLong();
     return unionImpl;
   }
@@ -74,13 +78,14 @@ final class UnionImpl extends SetOperation implements Union {
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
    * @param rf <a href="{@docRoot}/resources/dictionary.html#resizeFactor">See Resize Factor</a>
    * @param dstMem the given Memory object destination. It will be cleared prior to use.
+   * @param hashFunction the hash function that the update methods apply to their items
    * @return this class
    */
   static UnionImpl initNewDirectInstance(final int lgNomLongs, final long seed, final float p,
-          final ResizeFactor rf, final Memory dstMem) {
+          final ResizeFactor rf, final Memory dstMem, final HashFunction hashFunction) {
     final UpdateSketch gadget = DirectQuickSelectSketch.initNewDirectInstance(
         lgNomLongs, seed, p, rf, dstMem, true); //create with UNION family
-    final UnionImpl unionImpl = new UnionImpl(gadget, seed);
+    final UnionImpl unionImpl = new UnionImpl(gadget, seed, hashFunction);
     unionImpl.unionThetaLong_ = gadget.getThetaLong();
     dstMem.putLong(UNION_THETA_LONG, gadget.getThetaLong());
     return unionImpl;
@@ -92,12 +97,14 @@ final class UnionImpl extends SetOperation implements Union {
    * @param srcMem The source Memory object.
    * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hashFunction the hash function that the update methods apply to their items
    * @return this class
    */
-  static UnionImpl heapifyInstance(final Memory srcMem, final long seed) {
+  static UnionImpl heapifyInstance(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
     Family.UNION.checkFamilyID(srcMem.getByte(FAMILY_BYTE));
     final UpdateSketch gadget = HeapQuickSelectSketch.heapifyInstance(srcMem, seed);
-    final UnionImpl unionImpl = new UnionImpl(gadget, seed);
+    final UnionImpl unionImpl = new UnionImpl(gadget, seed, hashFunction);
     unionImpl.unionThetaLong_ = srcMem.getLong(UNION_THETA_LONG);
     return unionImpl;
   }
@@ -108,12 +115,14 @@ final class UnionImpl extends SetOperation implements Union {
    * @param srcMem The source Memory object.
    * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param hashFunction the hash function that the update methods apply to their items
    * @return this class
    */
-  static UnionImpl wrapInstance(final Memory srcMem, final long seed) {
+  static UnionImpl wrapInstance(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
     Family.UNION.checkFamilyID(srcMem.getByte(FAMILY_BYTE));
     final UpdateSketch gadget = DirectQuickSelectSketch.wrapInstance(srcMem, seed);
-    final UnionImpl unionImpl = new UnionImpl(gadget, seed);
+    final UnionImpl unionImpl = new UnionImpl(gadget, seed, hashFunction);
     unionImpl.unionThetaLong_ = srcMem.getLong(UNION_THETA_LONG);
     return unionImpl;
   }
@@ -151,6 +160,59 @@ final class UnionImpl extends SetOperation implements Union {
     return getResult(true, null);
   }
 
+  @Override
+  public double getEstimate() {
+    final long thetaLong = resultThetaLong();
+    return Sketch.estimate(thetaLong, resultCount(thetaLong), gadget_.isEmpty());
+  }
+
+  @Override
+  public double getLowerBound(final int numStdDev) {
+    final long thetaLong = resultThetaLong();
+    return Sketch.lowerBound(resultCount(thetaLong), thetaLong, numStdDev, gadget_.isEmpty());
+  }
+
+  @Override
+  public double getUpperBound(final int numStdDev) {
+    final long thetaLong = resultThetaLong();
+    return Sketch.upperBound(resultCount(thetaLong), thetaLong, numStdDev, gadget_.isEmpty());
+  }
+
+  /**
+   * Returns the theta of the result as computed by getResult(), but without compacting the gadget.
+   * The gadget cache is only copied if the result must be pulled back to k.
+   * @return the theta of the result
+   */
+  private long resultThetaLong() {
+    final long curGadgetThetaLong = gadget_.getThetaLong();
+    final long unionThetaLong = (gadget_.isDirect())
+        ? gadget_.getMemory().getLong(UNION_THETA_LONG) : unionThetaLong_;
+    final long minThetaLong = min(curGadgetThetaLong, unionThetaLong);
+    final int k = 1 << gadget_.getLgNomLongs();
+    final int curCount = resultCount(minThetaLong);
+    if (curCount <= k) { return minThetaLong; } //the k+1th hash is not below minThetaLong
+    //Pull back to k
+    final int gadgetCurCount = gadget_.getRetainedEntries(true);
+    final long[] gadgetCacheCopy =
+        (gadget_.isDirect()) ? gadget_.getCache() : gadget_.getCache().clone();
+    return min(minThetaLong, selectExcludingZeros(gadgetCacheCopy, gadgetCurCount, k + 1));
+  }
+
+  /**
+   * Returns the number of gadget entries below the given theta, reading the gadget in place.
+   * @param thetaLong the given theta, which must not be greater than the theta of the gadget
+   * @return the number of gadget entries below the given theta
+   */
+  private int resultCount(final long thetaLong) {
+    if (thetaLong == gadget_.getThetaLong()) { return gadget_.getRetainedEntries(true); }
+    if (gadget_.isDirect()) {
+      final Memory mem = gadget_.getMemory();
+      final int preBytes = (mem.getByte(PREAMBLE_LONGS_BYTE) & 0X3F) << 3;
+      return HashOperations.count(mem, mem.getByte(LG_ARR_LONGS_BYTE), thetaLong, preBytes);
+    }
+    return HashOperations.count(gadget_.getCache(), thetaLong);
+  }
+
   @Override
   public void reset() {
     gadget_.reset();
@@ -179,40 +241,24 @@ final class UnionImpl extends SetOperation implements Union {
       return;
     }
     Util.checkSeedHashes(seedHash_, sketchIn.getSeedHash());
+    checkCurCount(sketchIn);
 
     final long thetaLongIn = sketchIn.getThetaLong();
     unionThetaLong_ = min(unionThetaLong_, thetaLongIn); //Theta rule with incoming
-    final int curCountIn = sketchIn.getRetainedEntries(true);
+    final HashIterator it = sketchIn.iterator(); //not a copy, even if off-heap
 
     if (sketchIn.isOrdered()) { //Only true if Compact. Use early stop
-
-      if (sketchIn.isDirect()) { //ordered, direct thus compact
-        final Memory skMem = sketchIn.getMemory();
-        final int preambleLongs = skMem.getByte(PREAMBLE_LONGS_BYTE) & 0X3F;
-        for (int i = 0; i < curCountIn; i++ ) {
-          final int offsetBytes = (preambleLongs + i) << 3;
-          final long hashIn = skMem.getLong(offsetBytes);
-          if (hashIn >= unionThetaLong_) { break; } // "early stop"
-          gadget_.hashUpdate(hashIn); //backdoor update, hash function is bypassed
-        }
-      }
-      else { //sketchIn is on the Java Heap, ordered, thus compact
-        final long[] cacheIn = sketchIn.getCache(); //not a copy!
-        for (int i = 0; i < curCountIn; i++ ) {
-          final long hashIn = cacheIn[i];
-          if (hashIn >= unionThetaLong_) { break; } // "early stop"
-          gadget_.hashUpdate(hashIn); //backdoor update, hash function is bypassed
-        }
+      while (it.next()) {
+        final long hashIn = it.get();
+        if (hashIn >= unionThetaLong_) { break; } // "early stop"
+        gadget_.hashUpdate(hashIn); //backdoor update, hash function is bypassed
       }
     } //End ordered, compact
-    else { //either not-ordered compact or Hash Table form. A HT may have dirty values.
-      final long[] cacheIn = sketchIn.getCache(); //if off-heap this will be a copy
-      final int arrLongs = cacheIn.length;
-      for (int i = 0, c = 0; (i < arrLongs) && (c < curCountIn); i++ ) {
-        final long hashIn = cacheIn[i];
-        if ((hashIn <= 0L) || (hashIn >= unionThetaLong_)) { continue; } //rejects dirty values
+    else { //either not-ordered compact or Hash Table form. The iterator rejects dirty values.
+      while (it.next()) {
+        final long hashIn = it.get();
+        if (hashIn >= unionThetaLong_) { continue; }
         gadget_.hashUpdate(hashIn); //backdoor update, hash function is bypassed
-        c++; //insures against invalid state inside the incoming sketch
       }
     }
     unionThetaLong_ = min(unionThetaLong_, gadget_.getThetaLong()); //Theta rule with gadget
@@ -221,6 +267,29 @@ final class UnionImpl extends SetOperation implements Union {
     }
   }
 
+  /**
+   * Checks the retained entries count of the given sketch against the number of cache slots its
+   * iterator reads, so that a corrupt count of a wrapped image fails before any hash is read.
+   * @param sketchIn the given sketch
+   */
+  private static void checkCurCount(final Sketch sketchIn) {
+    if (sketchIn instanceof DirectCompressedCompactSketch) { return; } //checks its own blocks
+    final long slots;
+    if (sketchIn instanceof UpdateSketch) {
+      slots = 1L << ((UpdateSketch) sketchIn).getLgArrLongs();
+    } else if (sketchIn.getMemory() == null) {
+      slots = sketchIn.getCache().length; //not a copy
+    } else {
+      final Memory mem = sketchIn.getMemory();
+      slots = (mem.getCapacity() - (sketchIn.getPreambleLongs() << 3)) >>> 3;
+    }
+    final int curCount = sketchIn.getRetainedEntries(true);
+    if ((curCount < 0) || (curCount > slots)) {
+      throw new SketchesArgumentException(
+          "Retained entries exceed the cache of the input sketch: " + curCount + " > " + slots);
+    }
+  }
+
   @Override
   public void update(final Memory skMem) {
     //UNION Empty Rule: AND the empty states
@@ -252,6 +321,9 @@ final class UnionImpl extends SetOperation implements Union {
       if (cap <= 8) { return; } //empty and Theta = 1.0
       processVer3(skMem);
     }
+    else if (serVer == SER_VER_COMPRESSED) { //compressed, compact and ordered
+      update(DirectCompressedCompactSketch.wrapInstance(skMem, seedHash_));
+    }
     else {
       throw new SketchesArgumentException("SerVer is unknown: " + serVer);
     }
@@ -292,6 +364,11 @@ final class UnionImpl extends SetOperation implements Union {
     gadget_.update(data);
   }
 
+  @Override
+  public void update(final long[] values, final int off, final int len) {
+    gadget_.update(values, off, len);
+  }
+
   //no seedhash, assumes given seed is correct. No p, no empty flag, no concept of direct
   // can only be compact, ordered, size > 24
   private void processVer1(final Memory skMem) {
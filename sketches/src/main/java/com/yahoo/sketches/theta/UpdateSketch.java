@@ -5,12 +5,13 @@
 
 package com.yahoo.sketches.theta;
 
-import static com.yahoo.sketches.hash.MurmurHash3.hash;
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
 import static com.yahoo.sketches.theta.UpdateReturnState.RejectedNullOrEmpty;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * The parent class for the  Update Sketch families, such as QuickSelect and Alpha.
@@ -20,6 +21,7 @@ import com.yahoo.sketches.ResizeFactor;
  * @author Lee Rhodes
  */
 public abstract class UpdateSketch extends Sketch {
+  HashFunction hashFunction_ = HashFunction.MURMUR3;
 
   UpdateSketch() {}
 
@@ -49,6 +51,75 @@ public abstract class UpdateSketch extends Sketch {
     return new UpdateSketchBuilder();
   }
 
+  /**
+   * Wrap a concurrent direct UpdateSketch around the given Memory, which must have been
+   * initialized by {@link UpdateSketchBuilder#buildConcurrentDirect()}, possibly by another
+   * process sharing the same memory mapped file. The default seed is used.
+   * @param srcMem the Memory holding the concurrent direct sketch.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @return a concurrent direct UpdateSketch that can be updated by any number of threads.
+   * See {@link UpdateSketchBuilder#buildConcurrentDirect()} for its locking and failure mode.
+   */
+  public static UpdateSketch wrapConcurrentDirect(final Memory srcMem) {
+    return wrapConcurrentDirect(srcMem, DEFAULT_UPDATE_SEED);
+  }
+
+  /**
+   * Wrap a concurrent direct UpdateSketch around the given Memory, which must have been
+   * initialized by {@link UpdateSketchBuilder#buildConcurrentDirect()}, possibly by another
+   * process sharing the same memory mapped file.
+   * @param srcMem the Memory holding the concurrent direct sketch.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * @return a concurrent direct UpdateSketch that can be updated by any number of threads.
+   * See {@link UpdateSketchBuilder#buildConcurrentDirect()} for its locking and failure mode.
+   */
+  public static UpdateSketch wrapConcurrentDirect(final Memory srcMem, final long seed) {
+    return SpinLockDirectQuickSelectSketch.wrapInstance(srcMem, seed);
+  }
+
+  /**
+   * Heapify takes the image of an UpdateSketch in Memory, which was built with the given
+   * hash function, and instantiates an on-heap UpdateSketch that continues to hash its input
+   * items with the given hash function.
+   * @param srcMem an image of an UpdateSketch where the image seed hash matches the seed hash of
+   * the identity seed of the given hash function.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * This is the seed given to the builder, not the identity seed.
+   * @param hashFunction the hash function the sketch was built with
+   * @return a Heap-based UpdateSketch from the given Memory
+   */
+  public static UpdateSketch heapify(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
+    return setHashFunction(Sketch.heapify(srcMem, hashFunction.getIdentitySeed(seed)), hashFunction);
+  }
+
+  /**
+   * Wrap takes the image of an UpdateSketch in Memory, which was built with the given
+   * hash function, and refers to it directly. The resulting UpdateSketch continues to hash its
+   * input items with the given hash function.
+   * @param srcMem an image of an UpdateSketch where the image seed hash matches the seed hash of
+   * the identity seed of the given hash function.
+   * <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See Update Hash Seed</a>.
+   * This is the seed given to the builder, not the identity seed.
+   * @param hashFunction the hash function the sketch was built with
+   * @return an UpdateSketch backed by the given Memory
+   */
+  public static UpdateSketch wrap(final Memory srcMem, final long seed,
+      final HashFunction hashFunction) {
+    return setHashFunction(Sketch.wrap(srcMem, hashFunction.getIdentitySeed(seed)), hashFunction);
+  }
+
+  /**
+   * Returns the hash function that this sketch applies to its input items.
+   * @return the hash function of this sketch
+   */
+  public HashFunction getHashFunction() {
+    return hashFunction_;
+  }
+
   /**
    * Resets this sketch back to a virgin empty state.
    */
@@ -127,8 +198,7 @@ public abstract class UpdateSketch extends Sketch {
    * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
    */
   public UpdateReturnState update(final long datum) {
-    final long[] data = { datum };
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hashFunction_.hash64(datum, getSeed()) >>> 1);
   }
 
   /**
@@ -143,14 +213,14 @@ public abstract class UpdateSketch extends Sketch {
    * <a href="{@docRoot}/resources/dictionary.html#updateReturnState">See Update Return State</a>
    */
   public UpdateReturnState update(final double datum) {
-    final double d = (datum == 0.0) ? 0.0 : datum; // canonicalize -0.0, 0.0
-    final long[] data = { Double.doubleToLongBits(d) };// canonicalize all NaN forms
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    //the hash function canonicalizes -0.0, 0.0 and all NaN forms
+    return hashUpdate(hashFunction_.hash64(datum, getSeed()) >>> 1);
   }
 
   /**
    * Present this sketch with the given String.
-   * The string is converted to a byte array using UTF8 encoding.
+   * The string is hashed as its UTF8 encoding, which is computed on the fly without allocating
+   * a byte array.
    * If the string is null or empty no update attempt is made and the method returns.
    *
    * <p>Note: this will not produce the same output hash values as the {@link #update(char[])}
@@ -165,8 +235,7 @@ public abstract class UpdateSketch extends Sketch {
     if (datum == null || datum.isEmpty()) {
       return RejectedNullOrEmpty;
     }
-    final byte[] data = datum.getBytes(UTF_8);
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hashFunction_.hash64(datum, getSeed()) >>> 1);
   }
 
   /**
@@ -181,7 +250,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hashFunction_.hash64(data, getSeed()) >>> 1);
   }
 
   /**
@@ -199,7 +268,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hashFunction_.hash64(data, getSeed()) >>> 1);
   }
 
   /**
@@ -214,7 +283,7 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hashFunction_.hash64(data, getSeed()) >>> 1);
   }
 
   /**
@@ -229,11 +298,45 @@ public abstract class UpdateSketch extends Sketch {
     if ((data == null) || (data.length == 0)) {
       return RejectedNullOrEmpty;
     }
-    return hashUpdate(hash(data, getSeed())[0] >>> 1);
+    return hashUpdate(hashFunction_.hash64(data, getSeed()) >>> 1);
+  }
+
+  /**
+   * Present this sketch with a batch of independent long items, given as the region
+   * <i>[off, off + len)</i> of the given array. Each item is hashed and inserted exactly as if it
+   * were presented with {@link #update(long)}, but within a single call.
+   * If the array is null or <i>len</i> is zero no update attempt is made and the method returns.
+   *
+   * <p>Note: this is not the same as {@link #update(long[])}, which treats the whole array as a
+   * single composite item.</p>
+   *
+   * @param values the array containing the items
+   * @param off the offset of the first item in the array
+   * @param len the number of items
+   */
+  public void update(final long[] values, final int off, final int len) {
+    if ((values == null) || (len == 0)) { return; }
+    checkBatchBounds(values.length, off, len);
+    final long seed = getSeed();
+    final HashFunction hashFunction = hashFunction_;
+    final int end = off + len;
+    for (int i = off; i < end; i++) {
+      hashUpdate(hashFunction.hash64(values[i], seed) >>> 1);
+    }
   }
 
   //restricted methods
 
+  private static UpdateSketch setHashFunction(final Sketch sketch, final HashFunction hashFunction) {
+    if (!(sketch instanceof UpdateSketch)) {
+      throw new SketchesArgumentException("The given image is not an UpdateSketch: "
+          + sketch.getClass().getSimpleName());
+    }
+    final UpdateSketch usk = (UpdateSketch) sketch;
+    usk.hashFunction_ = hashFunction;
+    return usk;
+  }
+
   /**
    * All potential updates converge here.
    * <p>Don't ever call this unless you really know what you are doing!</p>
@@ -282,4 +385,17 @@ public abstract class UpdateSketch extends Sketch {
    */
   abstract boolean isDirty();
 
+  /**
+   * Checks that the region <i>[off, off + len)</i> is within an array of the given length.
+   * @param arrLength the length of the array
+   * @param off the offset of the region
+   * @param len the length of the region
+   */
+  static final void checkBatchBounds(final int arrLength, final int off, final int len) {
+    if ((off < 0) || (len < 0) || (off > (arrLength - len))) {
+      throw new SketchesArgumentException("Batch region out of bounds: off: " + off + ", len: "
+          + len + ", array length: " + arrLength);
+    }
+  }
+
 }
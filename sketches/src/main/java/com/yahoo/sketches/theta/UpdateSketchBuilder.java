@@ -17,6 +17,7 @@ import com.yahoo.memory.Memory;
 import com.yahoo.sketches.Family;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * For building a new UpdateSketch.
@@ -30,6 +31,8 @@ public class UpdateSketchBuilder {
   private Family bFam;
   private float bP;
   private Memory bDstMem;
+  private int bLocalLgNomLongs;
+  private HashFunction bHashFunction;
 
   /**
    * Constructor for building a new UpdateSketch. The default configuration is
@@ -44,6 +47,8 @@ public class UpdateSketchBuilder {
    * <li>{@link com.yahoo.sketches.Family#QUICKSELECT}</li>
    * <li>Input Sampling Probability: 1.0</li>
    * <li>Memory: null</li>
+   * <li>Local Nominal Entries (concurrent sketches only): 16</li>
+   * <li>Hash Function: {@link HashFunction#MURMUR3}</li>
    * </ul>
    */
   public UpdateSketchBuilder() {
@@ -53,6 +58,8 @@ public class UpdateSketchBuilder {
     bRF = ResizeFactor.X8;
     bFam = Family.QUICKSELECT;
     bDstMem = null;
+    bLocalLgNomLongs = MIN_LG_NOM_LONGS;
+    bHashFunction = HashFunction.MURMUR3;
   }
 
   /**
@@ -98,6 +105,32 @@ public class UpdateSketchBuilder {
     return bSeed;
   }
 
+  /**
+   * Sets the hash function that the sketch applies to its input items.
+   * The sketch uses the {@link HashFunction#getIdentitySeed(long) identity seed} of the given
+   * hash function in place of the configured seed. Thus it can only be combined with other sketches
+   * and set operations that use the same hash function and seed, and its serialized image must be
+   * heapified or wrapped with {@link UpdateSketch#heapify(Memory, long, HashFunction)} or
+   * {@link UpdateSketch#wrap(Memory, long, HashFunction)}.
+   * @param hashFunction the hash function, which must not be null
+   * @return this UpdateSketchBuilder
+   */
+  public UpdateSketchBuilder setHashFunction(final HashFunction hashFunction) {
+    if (hashFunction == null) {
+      throw new SketchesArgumentException("The hash function must not be null.");
+    }
+    bHashFunction = hashFunction;
+    return this;
+  }
+
+  /**
+   * Returns the hash function
+   * @return the hash function
+   */
+  public HashFunction getHashFunction() {
+    return bHashFunction;
+  }
+
   /**
    * Sets the upfront uniform sampling probability, <i>p</i>
    * @param p <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability, <i>p</i></a>
@@ -176,16 +209,64 @@ public class UpdateSketchBuilder {
     return bDstMem;
   }
 
+  /**
+   * Sets the number of entries that each local buffer of a concurrent sketch collects before they
+   * are propagated to the shared sketch. The minimum value is 16.
+   * Larger values reduce the propagation overhead at the cost of a larger delay before updates
+   * become visible in the estimate of the shared sketch.
+   * @param nomEntries the number of local nominal entries.
+   * This will become the ceiling power of 2 if it is not.
+   * @return this UpdateSketchBuilder
+   */
+  public UpdateSketchBuilder setLocalNominalEntries(final int nomEntries) {
+    final int lgNomLongs = Integer.numberOfTrailingZeros(ceilingPowerOf2(nomEntries));
+    if ((lgNomLongs > MAX_LG_NOM_LONGS) || (lgNomLongs < MIN_LG_NOM_LONGS)) {
+      throw new SketchesArgumentException("Local Nominal Entries must be >= 16 and <= 67108864: "
+        + nomEntries);
+    }
+    bLocalLgNomLongs = lgNomLongs;
+    return this;
+  }
+
+  /**
+   * Returns Log-base 2 Local Nominal Entries
+   * @return Log-base 2 Local Nominal Entries
+   */
+  public int getLocalLgNominalEntries() {
+    return bLocalLgNomLongs;
+  }
+
+  /**
+   * Sets the number of background threads used to propagate the local buffers of all concurrent
+   * sketches into their shared sketches. This has effect only if called before the first shared
+   * sketch is built and applies to the whole JVM.
+   * @param numPoolThreads the number of background propagation threads. Must be at least 1.
+   * @return this UpdateSketchBuilder
+   */
+  public UpdateSketchBuilder setNumPoolThreads(final int numPoolThreads) {
+    ConcurrentPropagationService.setNumPoolThreads(numPoolThreads);
+    return this;
+  }
+
+  /**
+   * Returns the number of background propagation threads
+   * @return the number of background propagation threads
+   */
+  public int getNumPoolThreads() {
+    return ConcurrentPropagationService.getNumPoolThreads();
+  }
+
   /**
    * Returns an UpdateSketch with the current configuration of this Builder.
    * @return an UpdateSketch
    */
   public UpdateSketch build() {
+    final long seed = bHashFunction.getIdentitySeed(bSeed);
     UpdateSketch sketch = null;
     switch (bFam) {
       case ALPHA: {
         if (bDstMem == null) {
-          sketch = HeapAlphaSketch.newHeapInstance(bLgNomLongs, bSeed, bP, bRF);
+          sketch = HeapAlphaSketch.newHeapInstance(bLgNomLongs, seed, bP, bRF);
         }
         else {
           throw new SketchesArgumentException("AlphaSketch cannot be made Direct to Memory.");
@@ -194,10 +275,10 @@ public class UpdateSketchBuilder {
       }
       case QUICKSELECT: {
         if (bDstMem == null) {
-          sketch = HeapQuickSelectSketch.initNewHeapInstance(bLgNomLongs, bSeed, bP, bRF, false);
+          sketch = HeapQuickSelectSketch.initNewHeapInstance(bLgNomLongs, seed, bP, bRF, false);
         }
         else {
-          sketch = DirectQuickSelectSketch.initNewDirectInstance(bLgNomLongs, bSeed, bP, bRF, bDstMem, false);
+          sketch = DirectQuickSelectSketch.initNewDirectInstance(bLgNomLongs, seed, bP, bRF, bDstMem, false);
         }
         break;
       }
@@ -206,6 +287,7 @@ public class UpdateSketchBuilder {
           "Given Family cannot be built as a Theta Sketch: " + bFam.toString());
       }
     }
+    sketch.hashFunction_ = bHashFunction;
     return sketch;
   }
 
@@ -221,6 +303,77 @@ public class UpdateSketchBuilder {
     return build();
   }
 
+  /**
+   * Returns the shared sketch of a concurrent UpdateSketch with the current configuration of this
+   * Builder. The shared sketch is not updated directly; instead, each writer thread obtains its own
+   * local buffer with {@link #buildLocal(UpdateSketch)}. Queries such as getEstimate() on the
+   * shared sketch can be made from any thread and never block the writers.
+   *
+   * <p>Only the {@link com.yahoo.sketches.Family#QUICKSELECT} family is supported. If a destination
+   * Memory has been given the shared sketch will be direct.</p>
+   * @return the shared sketch of a concurrent UpdateSketch
+   */
+  public UpdateSketch buildShared() {
+    if (bFam != Family.QUICKSELECT) {
+      throw new SketchesArgumentException(
+        "Only QuickSelect sketches can be built as a concurrent shared sketch: " + bFam.toString());
+    }
+    final long seed = bHashFunction.getIdentitySeed(bSeed);
+    final UpdateSketch sketch = (bDstMem == null)
+        ? ConcurrentSharedThetaSketch.initNewHeapInstance(bLgNomLongs, seed, bP, bRF)
+        : ConcurrentSharedThetaSketch.initNewDirectInstance(bLgNomLongs, seed, bP, bRF, bDstMem);
+    sketch.hashFunction_ = bHashFunction;
+    return sketch;
+  }
+
+  /**
+   * Returns a direct UpdateSketch in the given destination Memory that can be updated concurrently
+   * by any number of threads. If the destination Memory is a memory mapped file, other processes
+   * may wrap the same sketch with {@link UpdateSketch#wrapConcurrentDirect(Memory)} and update it
+   * concurrently as well.
+   *
+   * <p>Updates are coordinated by a spin reader/writer lock stored in the Memory after the hash
+   * table. A thread or process that dies while holding it leaves the sketch locked, and all other
+   * updaters then spin forever; such a sketch can only be recovered by building it again in the
+   * same Memory, which discards its content.</p>
+   *
+   * <p>Only the {@link com.yahoo.sketches.Family#QUICKSELECT} family is supported. The hash table
+   * is allocated at full size and never resized, thus the ResizeFactor is ignored and the
+   * destination Memory must have at least
+   * {@link Sketch#getMaxConcurrentDirectSketchBytes(int)} bytes.</p>
+   * @return a concurrent direct UpdateSketch
+   */
+  public UpdateSketch buildConcurrentDirect() {
+    if (bFam != Family.QUICKSELECT) {
+      throw new SketchesArgumentException(
+        "Only QuickSelect sketches can be built as a concurrent direct sketch: " + bFam.toString());
+    }
+    if (bDstMem == null) {
+      throw new SketchesArgumentException(
+        "A concurrent direct sketch requires a destination Memory, see initMemory(Memory).");
+    }
+    final UpdateSketch sketch = SpinLockDirectQuickSelectSketch.initNewDirectInstance(bLgNomLongs,
+        bHashFunction.getIdentitySeed(bSeed), bP, bDstMem);
+    sketch.hashFunction_ = bHashFunction;
+    return sketch;
+  }
+
+  /**
+   * Returns a local buffer of a concurrent UpdateSketch that feeds the given shared sketch.
+   * The local buffer is not thread-safe and must be updated by a single thread only.
+   * Its size is given by {@link #setLocalNominalEntries(int)}.
+   * @param shared a shared sketch obtained from {@link #buildShared()}.
+   * @return a local buffer of a concurrent UpdateSketch
+   */
+  public UpdateSketch buildLocal(final UpdateSketch shared) {
+    if (!(shared instanceof ConcurrentSharedThetaSketch)) {
+      throw new SketchesArgumentException(
+        "The given sketch must be a concurrent shared sketch obtained from buildShared().");
+    }
+    return ConcurrentHeapThetaBuffer.initNewInstance(bLocalLgNomLongs,
+        (ConcurrentSharedThetaSketch) shared);
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder();
@@ -231,7 +384,10 @@ public class UpdateSketchBuilder {
       .append("p:").append(TAB).append(bP).append(LS)
       .append("ResizeFactor:").append(TAB).append(bRF).append(LS)
       .append("Family:").append(TAB).append(bFam).append(LS)
-      .append("DstMemory:").append(TAB).append(bDstMem != null).append(LS);
+      .append("DstMemory:").append(TAB).append(bDstMem != null).append(LS)
+      .append("HashFunction:").append(TAB).append(bHashFunction).append(LS)
+      .append("LgLocalK:").append(TAB).append(bLocalLgNomLongs).append(LS)
+      .append("NumPoolThreads:").append(TAB).append(getNumPoolThreads()).append(LS);
     return sb.toString();
   }
 
@@ -45,23 +45,26 @@ public final class AnotB<S extends Summary> {
       getNoMatchSetFromSketch(a);
     } else {
       final long[] hashTable;
-      if (b instanceof CompactSketch) {
-        hashTable = convertToHashTable(b);
-      } else {
+      if (b instanceof QuickSelectSketch) {
         hashTable = b.keys_;
+      } else {
+        hashTable = convertToHashTable(b);
       }
       final int lgHashTableSize = Integer.numberOfTrailingZeros(hashTable.length);
       final int noMatchSize = a.getRetainedEntries();
       keys_ = new long[noMatchSize];
-      summaries_ = (S[]) Array.newInstance(a.summaries_.getClass().getComponentType(), noMatchSize);
-      for (int i = 0; i < a.keys_.length; i++) {
-        if (a.keys_[i] != 0) {
-          final int index = HashOperations.hashSearch(hashTable, lgHashTableSize, a.keys_[i]);
-          if (index == -1) {
-            keys_[count_] = a.keys_[i];
-            summaries_[count_] = a.summaries_[i];
-            count_++;
+      summaries_ = null; // allocated with the type of the first summary
+      final SketchIterator<S> it = a.iterator();
+      while (it.next()) {
+        final int index = HashOperations.hashSearch(hashTable, lgHashTableSize, it.getKey());
+        if (index == -1) {
+          final S summary = it.getSummary();
+          if (summaries_ == null) {
+            summaries_ = (S[]) Array.newInstance(summary.getClass(), noMatchSize);
           }
+          keys_[count_] = it.getKey();
+          summaries_[count_] = summary;
+          count_++;
         }
       }
     }
@@ -88,8 +91,13 @@ public final class AnotB<S extends Summary> {
       1 << MIN_LG_NOM_LONGS
     );
     final long[] hashTable = new long[size];
-    HashOperations.hashArrayInsert(
-        sketch.keys_, hashTable, Integer.numberOfTrailingZeros(size), theta_);
+    final int lgHashTableSize = Integer.numberOfTrailingZeros(size);
+    final SketchIterator<S> it = sketch.iterator();
+    while (it.next()) {
+      if (it.getKey() < theta_) {
+        HashOperations.hashInsertOnly(hashTable, lgHashTableSize, it.getKey());
+      }
+    }
     return hashTable;
   }
 
@@ -105,10 +113,18 @@ public final class AnotB<S extends Summary> {
     if (sketch instanceof CompactSketch) {
       keys_ = sketch.keys_.clone();
       summaries_ = sketch.summaries_.clone();
-    } else { // assuming only two types: CompactSketch and QuickSelectSketch
+    } else if (sketch instanceof QuickSelectSketch) {
       final CompactSketch<S> compact = ((QuickSelectSketch<S>)sketch).compact();
       keys_ = compact.keys_;
       summaries_ = compact.summaries_;
+    } else { // DirectUpdatableSketch, whose iterator returns detached summaries
+      keys_ = new long[sketch.getRetainedEntries()];
+      summaries_ = sketch.getSummaries();
+      int i = 0;
+      final SketchIterator<S> it = sketch.iterator();
+      while (it.next()) {
+        keys_[i++] = it.getKey();
+      }
     }
     count_ = sketch.getRetainedEntries();
   }
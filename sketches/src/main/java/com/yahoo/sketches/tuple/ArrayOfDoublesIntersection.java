@@ -21,20 +21,42 @@ public abstract class ArrayOfDoublesIntersection {
   final int numValues_;
   final long seed_;
   final short seedHash_;
+  final DoubleSummary.Mode mode_;
+  private final ArrayOfDoublesCombiner modeCombiner_;
   ArrayOfDoublesQuickSelectSketch sketch_;
   boolean isEmpty_;
   long theta_;
   boolean isFirstCall_;
 
-  ArrayOfDoublesIntersection(final int numValues, final long seed) {
+  ArrayOfDoublesIntersection(final int numValues, final long seed, final DoubleSummary.Mode mode) {
     numValues_ = numValues;
     seed_ = seed;
     seedHash_ = Util.computeSeedHash(seed);
+    mode_ = mode;
+    modeCombiner_ = new ArrayOfDoublesCombiner() {
+      @Override
+      public double[] combine(final double[] a, final double[] b) {
+        final double[] result = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+          result[i] = ArrayOfDoublesQuickSelectSketch.combine(mode, a[i], b[i]);
+        }
+        return result;
+      }
+    };
     isEmpty_ = false;
     theta_ = Long.MAX_VALUE;
     isFirstCall_ = true;
   }
 
+  /**
+   * Updates the internal set by intersecting it with the given sketch. The values of the keys
+   * that are present in both are combined according to the mode of this intersection.
+   * @param sketchIn Input sketch to intersect with the internal set.
+   */
+  public void update(final ArrayOfDoublesSketch sketchIn) {
+    update(sketchIn, modeCombiner_);
+  }
+
   /**
    * Updates the internal set by intersecting it with the given sketch.
    * @param sketchIn Input sketch to intersect with the internal set.
@@ -114,6 +136,14 @@ public abstract class ArrayOfDoublesIntersection {
     return getResult(null);
   }
 
+  /**
+   * Returns the mode that combines the values of a key in {@link #update(ArrayOfDoublesSketch)}
+   * @return the mode of this intersection
+   */
+  public DoubleSummary.Mode getMode() {
+    return mode_;
+  }
+
   /**
    * Resets the internal set to the initial state, which represents the Universal Set
    */
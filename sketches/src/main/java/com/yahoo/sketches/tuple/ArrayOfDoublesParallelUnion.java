@@ -0,0 +1,393 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.Util.ceilingPowerOf2;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.QuickSelect;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * Computes the union of many tuple sketches of type ArrayOfDoubles in parallel on the tasks of a
+ * ForkJoinPool in two phases.
+ *
+ * <p>First the inputs are recursively split into partitions, each of which is updated into its own
+ * on-heap {@link ArrayOfDoublesUnion}. Then the hash space below the smallest theta of the partial
+ * results is split into ranges of equal width. Since the keys are uniformly distributed hashes,
+ * the ranges receive about the same number of keys. The keys of each partial result are sorted
+ * once, so each range finds its keys in every partial result by binary search. Each range merges
+ * them, combining the values of the same key according to the mode, and the ranges are
+ * concatenated in order into one compact sketch.</p>
+ *
+ * <p>The result has the same theta, the same keys and the same empty flag as a single
+ * ArrayOfDoublesUnion that is updated with all of the inputs in sequence. The values of a key are
+ * combined in a different order, so in the Sum mode they can differ by the rounding of
+ * the additions.</p>
+ *
+ * <p>The inputs can be given either as ArrayOfDoublesSketch objects or as Memory images of
+ * serialized sketches, e.g., regions of a memory mapped file. A null input is ignored. The inputs
+ * must not be modified while the union is computed.</p>
+ */
+public final class ArrayOfDoublesParallelUnion {
+  /**
+   * The minimum number of inputs of a partition, below which a partition is not split any further.
+   */
+  public static final int MIN_PARTITION_SIZE = 64;
+
+  private final int nomEntries_;
+  private final int numValues_;
+  private final long seed_;
+  private final DoubleSummary.Mode mode_;
+  private final ForkJoinPool pool_;
+
+  /**
+   * Creates a parallel union with the given nominal entries and number of values, the default seed
+   * and the Sum mode that runs on the common ForkJoinPool.
+   * @param nomEntries Nominal number of entries. Forced to the nearest power of 2 greater than
+   * given value.
+   * @param numValues Number of double values to keep for each key
+   */
+  public ArrayOfDoublesParallelUnion(final int nomEntries, final int numValues) {
+    this(nomEntries, numValues, DEFAULT_UPDATE_SEED, DoubleSummary.Mode.Sum,
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Creates a parallel union with the given parameters that runs on the given pool.
+   * @param nomEntries Nominal number of entries. Forced to the nearest power of 2 greater than
+   * given value.
+   * @param numValues Number of double values to keep for each key
+   * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param mode the mode that combines the values of a key that is present in more than one sketch
+   * @param pool the ForkJoinPool that executes the partitions and ranges
+   */
+  public ArrayOfDoublesParallelUnion(final int nomEntries, final int numValues, final long seed,
+      final DoubleSummary.Mode mode, final ForkJoinPool pool) {
+    if (mode == null) {
+      throw new SketchesArgumentException("The mode must not be null.");
+    }
+    if (pool == null) {
+      throw new SketchesArgumentException("ForkJoinPool must not be null.");
+    }
+    nomEntries_ = ceilingPowerOf2(nomEntries);
+    numValues_ = numValues;
+    seed_ = seed;
+    mode_ = mode;
+    pool_ = pool;
+  }
+
+  /**
+   * Returns the on-heap union of the given sketches.
+   * @param sketches the given sketches
+   * @return the on-heap union of the given sketches
+   */
+  public ArrayOfDoublesCompactSketch union(final ArrayOfDoublesSketch[] sketches) {
+    return union(sketches, null);
+  }
+
+  /**
+   * Returns the union of the given sketches.
+   * @param sketches the given sketches
+   * @param dstMem memory for the result (can be null)
+   * @return the union of the given sketches (off-heap if memory is provided)
+   */
+  public ArrayOfDoublesCompactSketch union(final ArrayOfDoublesSketch[] sketches,
+      final Memory dstMem) {
+    final int numInputs = (sketches == null) ? 0 : sketches.length;
+    return union(sketches, null, numInputs, dstMem);
+  }
+
+  /**
+   * Returns the on-heap union of the sketches serialized in the given Memory images.
+   * @param images the Memory images of the given sketches
+   * @return the on-heap union of the given sketches
+   */
+  public ArrayOfDoublesCompactSketch union(final Memory[] images) {
+    return union(images, null);
+  }
+
+  /**
+   * Returns the union of the sketches serialized in the given Memory images.
+   * @param images the Memory images of the given sketches
+   * @param dstMem memory for the result (can be null)
+   * @return the union of the given sketches (off-heap if memory is provided)
+   */
+  public ArrayOfDoublesCompactSketch union(final Memory[] images, final Memory dstMem) {
+    final int numInputs = (images == null) ? 0 : images.length;
+    return union(null, images, numInputs, dstMem);
+  }
+
+  /**
+   * Returns the configured nominal entries
+   * @return the configured nominal entries
+   */
+  public int getNominalEntries() {
+    return nomEntries_;
+  }
+
+  /**
+   * Returns the configured number of values
+   * @return the configured number of values
+   */
+  public int getNumValues() {
+    return numValues_;
+  }
+
+  /**
+   * Returns the mode that combines the values of a key that is present in more than one sketch
+   * @return the mode of this union
+   */
+  public DoubleSummary.Mode getMode() {
+    return mode_;
+  }
+
+  /**
+   * Returns the ForkJoinPool that executes the partitions and ranges
+   * @return the ForkJoinPool that executes the partitions and ranges
+   */
+  public ForkJoinPool getPool() {
+    return pool_;
+  }
+
+  //restricted
+
+  private ArrayOfDoublesCompactSketch union(final ArrayOfDoublesSketch[] sketches,
+      final Memory[] images, final int numInputs, final Memory dstMem) {
+    final int partitionSize = partitionSize(numInputs);
+    final int numPartitions = (numInputs + partitionSize - 1) / partitionSize;
+    if (numPartitions <= 1) { //nothing to merge in parallel
+      final ArrayOfDoublesUnion union = newUnion();
+      updateUnion(union, sketches, images, 0, numInputs);
+      return union.getResult(dstMem);
+    }
+    final SortedPartial[] partials = new SortedPartial[numPartitions];
+    pool_.invoke(new PartitionTask(sketches, images, numInputs, partitionSize, partials,
+        0, numPartitions));
+
+    long theta = Long.MAX_VALUE;
+    boolean isEmpty = true;
+    for (int i = 0; i < numPartitions; i++) {
+      theta = Math.min(theta, partials[i].theta_);
+      isEmpty &= partials[i].isEmpty_;
+    }
+    final int numRanges = pool_.getParallelism() * 4;
+    final ArrayOfDoublesQuickSelectSketch[] ranges = new ArrayOfDoublesQuickSelectSketch[numRanges];
+    pool_.invoke(new RangeTask(partials, theta, ranges, 0, numRanges));
+    return concatenate(ranges, theta, isEmpty, dstMem);
+  }
+
+  /*
+   * The ranges are ordered and each of them retains all of its keys below its own theta, so the
+   * (k+1)-th smallest key of the union is either inside of the range, in which the running count
+   * exceeds k, or it is the theta of the first range that had to discard keys.
+   */
+  private ArrayOfDoublesCompactSketch concatenate(final ArrayOfDoublesQuickSelectSketch[] ranges,
+      final long theta, final boolean isEmpty, final Memory dstMem) {
+    long cut = theta;
+    int count = 0;
+    for (int r = 0; r < ranges.length; r++) {
+      final int rangeCount = ranges[r].getRetainedEntries();
+      if ((count + rangeCount) > nomEntries_) {
+        final long[] keys = new long[rangeCount];
+        final ArrayOfDoublesSketchIterator it = ranges[r].iterator();
+        int i = 0;
+        while (it.next()) { keys[i++] = it.getKey(); }
+        cut = Math.min(cut, QuickSelect.select(keys, 0, rangeCount - 1, nomEntries_ - count));
+        break;
+      }
+      if (ranges[r].getThetaLong() < Long.MAX_VALUE) {
+        cut = Math.min(cut, ranges[r].getThetaLong());
+        break;
+      }
+      count += rangeCount;
+    }
+
+    int numEntries = 0;
+    for (int r = 0; r < ranges.length; r++) {
+      final ArrayOfDoublesSketchIterator it = ranges[r].iterator();
+      while (it.next()) {
+        if (it.getKey() < cut) { numEntries++; }
+      }
+    }
+    final long[] keys = new long[numEntries];
+    final double[] values = new double[numEntries * numValues_];
+    int i = 0;
+    for (int r = 0; r < ranges.length; r++) {
+      final ArrayOfDoublesSketchIterator it = ranges[r].iterator();
+      while (it.next()) {
+        if (it.getKey() < cut) {
+          keys[i] = it.getKey();
+          System.arraycopy(it.getValues(), 0, values, i * numValues_, numValues_);
+          i++;
+        }
+      }
+    }
+    final short seedHash = Util.computeSeedHash(seed_);
+    if (dstMem == null) {
+      return new HeapArrayOfDoublesCompactSketch(keys, values, cut, isEmpty, numValues_, seedHash);
+    }
+    return new DirectArrayOfDoublesCompactSketch(keys, values, cut, isEmpty, numValues_, seedHash,
+        dstMem);
+  }
+
+  //about four partitions per worker thread to balance uneven inputs
+  private int partitionSize(final int numInputs) {
+    final int target = numInputs / (pool_.getParallelism() * 4);
+    return Math.max(MIN_PARTITION_SIZE, target);
+  }
+
+  private ArrayOfDoublesUnion newUnion() {
+    return new ArrayOfDoublesSetOperationBuilder().setNominalEntries(nomEntries_)
+        .setNumberOfValues(numValues_).setSeed(seed_).setMode(mode_).buildUnion();
+  }
+
+  private void updateUnion(final ArrayOfDoublesUnion union, final ArrayOfDoublesSketch[] sketches,
+      final Memory[] images, final int lo, final int hi) {
+    if (sketches != null) {
+      for (int i = lo; i < hi; i++) { union.update(sketches[i]); }
+    } else {
+      for (int i = lo; i < hi; i++) {
+        if (images[i] != null) { union.update(ArrayOfDoublesSketches.wrapSketch(images[i], seed_)); }
+      }
+    }
+  }
+
+  //lower bound of the given key in the given sorted keys
+  private static int lowerBound(final long[] keys, final long key) {
+    final int index = Arrays.binarySearch(keys, key);
+    return (index >= 0) ? index : ~index;
+  }
+
+  /*
+   * The result of a partition with its keys in ascending order and its values in columns in the
+   * same order, so that the keys of a range are found by binary search and copied by index.
+   */
+  private static final class SortedPartial {
+    final long theta_;
+    final boolean isEmpty_;
+    final long[] keys_;
+    final double[][] valueColumns_;
+
+    SortedPartial(final ArrayOfDoublesUnion union, final int numValues) {
+      final HeapArrayOfDoublesCompactSketch result =
+          (HeapArrayOfDoublesCompactSketch) union.getResult();
+      theta_ = result.getThetaLong();
+      isEmpty_ = result.isEmpty();
+      final int count = result.getRetainedEntries();
+      keys_ = new long[count];
+      valueColumns_ = new double[numValues][count];
+      if (count == 0) { return; }
+      final long[] keys = result.getKeysArray();
+      final double[] values = result.getValuesArray();
+      System.arraycopy(keys, 0, keys_, 0, count);
+      Arrays.sort(keys_);
+      for (int i = 0; i < count; i++) {
+        final int row = Arrays.binarySearch(keys_, keys[i]); //the keys are unique
+        for (int j = 0; j < numValues; j++) {
+          valueColumns_[j][row] = values[(i * numValues) + j];
+        }
+      }
+    }
+  }
+
+  private final class PartitionTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final ArrayOfDoublesSketch[] sketches_; //either sketches_ or images_ is null
+    private final Memory[] images_;
+    private final int numInputs_;
+    private final int partitionSize_;
+    private final SortedPartial[] partials_;
+    private final int lo_;
+    private final int hi_;
+
+    PartitionTask(final ArrayOfDoublesSketch[] sketches, final Memory[] images,
+        final int numInputs, final int partitionSize, final SortedPartial[] partials,
+        final int lo, final int hi) {
+      sketches_ = sketches;
+      images_ = images;
+      numInputs_ = numInputs;
+      partitionSize_ = partitionSize;
+      partials_ = partials;
+      lo_ = lo;
+      hi_ = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if ((hi_ - lo_) == 1) {
+        final ArrayOfDoublesUnion union = newUnion();
+        updateUnion(union, sketches_, images_, lo_ * partitionSize_,
+            Math.min(numInputs_, (lo_ + 1) * partitionSize_));
+        partials_[lo_] = new SortedPartial(union, numValues_);
+        return;
+      }
+      final int mid = (lo_ + hi_) >>> 1;
+      final PartitionTask right = new PartitionTask(sketches_, images_, numInputs_, partitionSize_,
+          partials_, mid, hi_);
+      right.fork();
+      new PartitionTask(sketches_, images_, numInputs_, partitionSize_, partials_, lo_, mid)
+          .compute();
+      right.join();
+    }
+  }
+
+  private final class RangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final SortedPartial[] partials_;
+    private final long theta_;
+    private final ArrayOfDoublesQuickSelectSketch[] ranges_;
+    private final int lo_;
+    private final int hi_;
+
+    RangeTask(final SortedPartial[] partials, final long theta,
+        final ArrayOfDoublesQuickSelectSketch[] ranges, final int lo, final int hi) {
+      partials_ = partials;
+      theta_ = theta;
+      ranges_ = ranges;
+      lo_ = lo;
+      hi_ = hi;
+    }
+
+    @Override
+    protected void compute() {
+      if ((hi_ - lo_) == 1) {
+        ranges_[lo_] = mergeRange(lo_);
+        return;
+      }
+      final int mid = (lo_ + hi_) >>> 1;
+      final RangeTask right = new RangeTask(partials_, theta_, ranges_, mid, hi_);
+      right.fork();
+      new RangeTask(partials_, theta_, ranges_, lo_, mid).compute();
+      right.join();
+    }
+
+    //keys at or above the smallest theta can never be in the result, so they are not covered
+    private ArrayOfDoublesQuickSelectSketch mergeRange(final int range) {
+      final long width = theta_ / ranges_.length;
+      final long rangeLo = range * width;
+      final long rangeHi = (range == (ranges_.length - 1)) ? theta_ : (range + 1) * width;
+      final ArrayOfDoublesQuickSelectSketch sketch =
+          new HeapArrayOfDoublesQuickSelectSketch(nomEntries_, 3, 1f, numValues_, seed_);
+      sketch.setMode(mode_);
+      for (int i = 0; i < partials_.length; i++) {
+        final long[] keys = partials_[i].keys_;
+        final int hi = lowerBound(keys, rangeHi);
+        for (int row = lowerBound(keys, rangeLo); row < hi; row++) {
+          sketch.merge(keys[row], partials_[i].valueColumns_, row);
+        }
+      }
+      sketch.trim();
+      return sketch;
+    }
+  }
+
+}
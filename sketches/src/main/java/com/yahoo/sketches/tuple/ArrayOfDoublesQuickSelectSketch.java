@@ -19,6 +19,9 @@ import com.yahoo.sketches.SketchesArgumentException;
 abstract class ArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesUpdatableSketch {
 
   static final byte serialVersionUID = 1;
+  // the serial version of a sketch with the mode Min or Max, which is recorded in the flags.
+  // Readers that do not know the modes reject it instead of reading it as Sum.
+  static final byte SERIAL_VERSION_WITH_MODE = 2;
 
   // Layout of next 16 bytes:
   // Long || Start Byte Adr:
@@ -49,6 +52,14 @@ abstract class ArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesUpdatableSk
 
   abstract void updateValues(int index, double[] values);
 
+  abstract void setValue(int index, double value);
+
+  abstract void setValues(int index, double[][] valueColumns, int row);
+
+  abstract void updateValues(int index, double[][] valueColumns, int row);
+
+  abstract void updateValue(int index, double value);
+
   abstract void setNotEmpty();
 
   abstract boolean isInSamplingMode();
@@ -110,6 +121,21 @@ abstract class ArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesUpdatableSk
     }
   }
 
+  // the same as above with the values given in a row of value columns
+  void merge(final long key, final double[][] valueColumns, final int row) {
+    setNotEmpty();
+    if (key < theta_) {
+      final int index = findOrInsertKey(key);
+      if (index < 0) {
+        incrementCount();
+        setValues(~index, valueColumns, row);
+      } else {
+        updateValues(index, valueColumns, row);
+      }
+      rebuildIfNeeded();
+    }
+  }
+
   void rebuildIfNeeded() {
     if (getRetainedEntries() < rebuildThreshold_) { return; }
     if (getCurrentCapacity() > getNominalEntries()) {
@@ -156,6 +182,125 @@ abstract class ArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesUpdatableSk
     rebuildIfNeeded();
   }
 
+  @Override
+  void insertOrIgnore(final long key, final double value) {
+    if (getNumValues() != 1) {
+      throw new SketchesArgumentException("a single value requires a sketch with one value per key, "
+        + "but this sketch has " + getNumValues());
+    }
+    setNotEmpty();
+    if (key == 0 || key >= theta_) { return; }
+    final int index = findOrInsertKey(key);
+    if (index < 0) {
+      incrementCount();
+      setValue(~index, value);
+    } else {
+      updateValue(index, value);
+    }
+    rebuildIfNeeded();
+  }
+
+  @Override
+  void insertOrIgnore(final long key, final double[][] valueColumns, final int row) {
+    setNotEmpty();
+    if (key == 0 || key >= theta_) { return; }
+    final int index = findOrInsertKey(key);
+    if (index < 0) {
+      incrementCount();
+      setValues(~index, valueColumns, row);
+    } else {
+      updateValues(index, valueColumns, row);
+    }
+    rebuildIfNeeded();
+  }
+
+  /**
+   * Sets the mode that combines the values of a key that is presented more than once.
+   * @param mode the mode
+   */
+  void setMode(final DoubleSummary.Mode mode) {
+    mode_ = mode;
+  }
+
+  /**
+   * Combines the current value of a key with a new value according to the mode.
+   * @param current the current value
+   * @param value the new value
+   * @return the combined value
+   */
+  final double combine(final double current, final double value) {
+    return combine(mode_, current, value);
+  }
+
+  /**
+   * Combines the current value of a key with a new value according to the given mode.
+   * @param mode the given mode
+   * @param current the current value
+   * @param value the new value
+   * @return the combined value
+   */
+  static double combine(final DoubleSummary.Mode mode, final double current, final double value) {
+    switch (mode) {
+      case Min:
+        return (value < current) ? value : current;
+      case Max:
+        return (value > current) ? value : current;
+      default:
+        return current + value;
+    }
+  }
+
+  /**
+   * Returns the flags that record the given mode
+   * @param mode the given mode
+   * @return the flags that record the given mode
+   */
+  static int modeToFlags(final DoubleSummary.Mode mode) {
+    switch (mode) {
+      case Min:
+        return 1 << Flags.IS_MODE_MIN.ordinal();
+      case Max:
+        return 1 << Flags.IS_MODE_MAX.ordinal();
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Returns the serial version of a sketch with the given mode
+   * @param mode the given mode
+   * @return the serial version of a sketch with the given mode
+   */
+  static byte modeToSerialVersion(final DoubleSummary.Mode mode) {
+    return (mode == DoubleSummary.Mode.Sum) ? serialVersionUID : SERIAL_VERSION_WITH_MODE;
+  }
+
+  /**
+   * Checks the serial version and returns the mode that is recorded in the given flags
+   * @param version the serial version of the sketch
+   * @param flags the flags of the sketch
+   * @return the mode that is recorded in the given flags
+   */
+  static DoubleSummary.Mode checkVersionAndGetMode(final byte version, final int flags) {
+    final boolean isMin = (flags & (1 << Flags.IS_MODE_MIN.ordinal())) != 0;
+    final boolean isMax = (flags & (1 << Flags.IS_MODE_MAX.ordinal())) != 0;
+    if (version == serialVersionUID) {
+      if (isMin || isMax) {
+        throw new SketchesArgumentException(
+            "Mode flags require serial version " + SERIAL_VERSION_WITH_MODE + ": " + flags);
+      }
+      return DoubleSummary.Mode.Sum;
+    }
+    if (version == SERIAL_VERSION_WITH_MODE) {
+      if (isMin == isMax) {
+        throw new SketchesArgumentException("Invalid mode flags: " + flags);
+      }
+      return isMin ? DoubleSummary.Mode.Min : DoubleSummary.Mode.Max;
+    }
+    throw new SketchesArgumentException("Serial version mismatch. Expected: " + serialVersionUID
+        + " or " + SERIAL_VERSION_WITH_MODE + ", actual: " + version);
+  }
+
   void updateTheta() {
     final long[] keys = new long[getRetainedEntries()];
     int i = 0;
@@ -8,6 +8,8 @@ package com.yahoo.sketches.tuple;
 import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
 
 import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * Builds set operations object for tuple sketches of type ArrayOfDoubles.
@@ -18,6 +20,8 @@ public class ArrayOfDoublesSetOperationBuilder {
   private int numValues_;
   private long seed_;
   private Memory dstMem_;
+  private HashFunction hashFunction_;
+  private DoubleSummary.Mode mode_;
 
   private static final int DEFAULT_NOMINAL_ENTRIES = 4096;
   private static final int DEFAULT_NUMBER_OF_VALUES = 1;
@@ -29,6 +33,8 @@ public class ArrayOfDoublesSetOperationBuilder {
     nomEntries_ = DEFAULT_NOMINAL_ENTRIES;
     numValues_ = DEFAULT_NUMBER_OF_VALUES;
     seed_ = DEFAULT_UPDATE_SEED;
+    hashFunction_ = HashFunction.MURMUR3;
+    mode_ = DoubleSummary.Mode.Sum;
   }
 
   /**
@@ -52,6 +58,22 @@ public class ArrayOfDoublesSetOperationBuilder {
     return this;
   }
 
+  /**
+   * This is to set the mode that the union and the intersection use to combine the values of a
+   * key that is present in more than one input sketch. Default mode is Sum. The intersection also
+   * accepts an ArrayOfDoublesCombiner in place of the mode.
+   * For exact sums of long values see {@link LongSummary}.
+   * @param mode the mode: Sum, Min or Max
+   * @return this builder
+   */
+  public ArrayOfDoublesSetOperationBuilder setMode(final DoubleSummary.Mode mode) {
+    if (mode == null) {
+      throw new SketchesArgumentException("The mode must not be null.");
+    }
+    mode_ = mode;
+    return this;
+  }
+
   /**
    * Sets the long seed value that is required by the hashing function.
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
@@ -62,6 +84,22 @@ public class ArrayOfDoublesSetOperationBuilder {
     return this;
   }
 
+  /**
+   * Sets the hash function of the sketches the set operations will accept. The set operations use
+   * the {@link HashFunction#getIdentitySeed(long) identity seed} of the given hash function in place
+   * of the configured seed, thus they accept only sketches that were built with the same hash
+   * function and seed.
+   * @param hashFunction the hash function, which must not be null
+   * @return this builder
+   */
+  public ArrayOfDoublesSetOperationBuilder setHashFunction(final HashFunction hashFunction) {
+    if (hashFunction == null) {
+      throw new SketchesArgumentException("The hash function must not be null.");
+    }
+    hashFunction_ = hashFunction;
+    return this;
+  }
+
   /**
    * This is to set destination memory to be used by the sketch
    * @param dstMem instance of Memory
@@ -79,9 +117,10 @@ public class ArrayOfDoublesSetOperationBuilder {
    */
   public ArrayOfDoublesUnion buildUnion() {
     if (dstMem_ == null) {
-      return new HeapArrayOfDoublesUnion(nomEntries_, numValues_, seed_);
+      return new HeapArrayOfDoublesUnion(nomEntries_, numValues_, getIdentitySeed(), mode_);
     }
-    return new DirectArrayOfDoublesUnion(nomEntries_, numValues_, seed_, dstMem_);
+    return new DirectArrayOfDoublesUnion(nomEntries_, numValues_, getIdentitySeed(), mode_,
+        dstMem_);
   }
 
   /**
@@ -93,9 +132,9 @@ public class ArrayOfDoublesSetOperationBuilder {
    */
   public ArrayOfDoublesIntersection buildIntersection() {
     if (dstMem_ == null) {
-      return new HeapArrayOfDoublesIntersection(numValues_, seed_);
+      return new HeapArrayOfDoublesIntersection(numValues_, getIdentitySeed(), mode_);
     }
-    return new DirectArrayOfDoublesIntersection(numValues_, seed_, dstMem_);
+    return new DirectArrayOfDoublesIntersection(numValues_, getIdentitySeed(), mode_, dstMem_);
   }
 
   /**
@@ -105,7 +144,11 @@ public class ArrayOfDoublesSetOperationBuilder {
    * @return an instance of ArrayOfDoublesAnotB
    */
   public ArrayOfDoublesAnotB buildAnotB() {
-    return new HeapArrayOfDoublesAnotB(numValues_, seed_);
+    return new HeapArrayOfDoublesAnotB(numValues_, getIdentitySeed());
+  }
+
+  private long getIdentitySeed() {
+    return hashFunction_.getIdentitySeed(seed_);
   }
 
 }
@@ -19,7 +19,9 @@ public abstract class ArrayOfDoublesSketch {
   // So a sketch can be non-empty, and have no entries.
   // For example, as a result of a sampling, when some data was presented to the sketch, but no
   //  entries were retained.
-  static enum Flags { IS_BIG_ENDIAN, IS_IN_SAMPLING_MODE, IS_EMPTY, HAS_ENTRIES }
+  // The mode flags are used by QuickSelect sketches only. If neither is set the mode is Sum.
+  static enum Flags { IS_BIG_ENDIAN, IS_IN_SAMPLING_MODE, IS_EMPTY, HAS_ENTRIES, IS_MODE_MIN,
+    IS_MODE_MAX }
 
   static final int SIZE_OF_KEY_BYTES = 8;
   static final int SIZE_OF_VALUE_BYTES = 8;
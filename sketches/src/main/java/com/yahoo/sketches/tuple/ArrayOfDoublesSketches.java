@@ -8,6 +8,8 @@ package com.yahoo.sketches.tuple;
 import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
 
 import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * Convenient static methods to instantiate tuple sketches of type ArrayOfDoubles.
@@ -60,6 +62,40 @@ public final class ArrayOfDoublesSketches {
     return new DirectArrayOfDoublesCompactSketch(mem, seed);
   }
 
+  /**
+   * Heapify the given Memory as an ArrayOfDoublesUpdatableSketch that was built with the given
+   * hash function. The resulting sketch continues to hash its keys with the given hash function.
+   * @param mem the given Memory
+   * @param seed the seed given to the builder, not the identity seed
+   * @param hashFunction the hash function the sketch was built with
+   * @return an ArrayOfDoublesUpdatableSketch
+   */
+  public static ArrayOfDoublesUpdatableSketch heapifyUpdatableSketch(final Memory mem,
+      final long seed, final HashFunction hashFunction) {
+    checkUpdatableSketch(mem);
+    final ArrayOfDoublesUpdatableSketch sketch =
+        new HeapArrayOfDoublesQuickSelectSketch(mem, hashFunction.getIdentitySeed(seed));
+    sketch.hashFunction_ = hashFunction;
+    return sketch;
+  }
+
+  /**
+   * Wrap the given Memory as an ArrayOfDoublesUpdatableSketch that was built with the given
+   * hash function. The resulting sketch continues to hash its keys with the given hash function.
+   * @param mem the given Memory
+   * @param seed the seed given to the builder, not the identity seed
+   * @param hashFunction the hash function the sketch was built with
+   * @return an ArrayOfDoublesUpdatableSketch
+   */
+  public static ArrayOfDoublesUpdatableSketch wrapUpdatableSketch(final Memory mem,
+      final long seed, final HashFunction hashFunction) {
+    checkUpdatableSketch(mem);
+    final ArrayOfDoublesUpdatableSketch sketch =
+        new DirectArrayOfDoublesQuickSelectSketch(mem, hashFunction.getIdentitySeed(seed));
+    sketch.hashFunction_ = hashFunction;
+    return sketch;
+  }
+
   /**
    * Heapify the given Memory as an ArrayOfDoublesUnion
    * @param mem the given Memory
@@ -98,4 +134,12 @@ public final class ArrayOfDoublesSketches {
     return new DirectArrayOfDoublesUnion(mem, seed);
   }
 
+  private static void checkUpdatableSketch(final Memory mem) {
+    final SerializerDeserializer.SketchType sketchType = SerializerDeserializer.getSketchType(mem);
+    if (sketchType != SerializerDeserializer.SketchType.ArrayOfDoublesQuickSelectSketch) {
+      throw new SketchesArgumentException("The given image is not an updatable sketch: "
+          + sketchType);
+    }
+  }
+
 }
@@ -15,6 +15,7 @@ public abstract class ArrayOfDoublesUnion {
   final int numValues_;
   final long seed_;
   final short seedHash_;
+  final DoubleSummary.Mode mode_;
   ArrayOfDoublesQuickSelectSketch sketch_;
   long theta_;
 
@@ -23,6 +24,7 @@ public abstract class ArrayOfDoublesUnion {
     numValues_ = sketch.getNumValues();
     seed_ = sketch.getSeed();
     seedHash_ = Util.computeSeedHash(seed_);
+    mode_ = sketch.getMode();
     sketch_ = sketch;
     theta_ = sketch.getThetaLong();
   }
@@ -60,6 +62,14 @@ public abstract class ArrayOfDoublesUnion {
     return getResult(null);
   }
 
+  /**
+   * Returns the mode that combines the values of a key that is present in more than one sketch
+   * @return the mode of this union
+   */
+  public DoubleSummary.Mode getMode() {
+    return mode_;
+  }
+
   /**
    * Resets the union to an empty state
    */
@@ -6,7 +6,8 @@
 package com.yahoo.sketches.tuple;
 
 import com.yahoo.memory.Memory;
-import com.yahoo.sketches.hash.MurmurHash3;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * The top level for updatable tuple sketches of type ArrayOfDoubles.
@@ -14,6 +15,8 @@ import com.yahoo.sketches.hash.MurmurHash3;
 public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch {
 
   final long seed_;
+  HashFunction hashFunction_ = HashFunction.MURMUR3;
+  DoubleSummary.Mode mode_ = DoubleSummary.Mode.Sum;
 
   ArrayOfDoublesUpdatableSketch(final int numValues, final long seed) {
     super(numValues);
@@ -22,71 +25,186 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
 
   /**
    * Updates this sketch with a long key and double values.
-   * The values will be stored or added to the ones associated with the key
+   * The values will be stored or combined with the ones associated with the key according to
+   * the mode of the sketch
    *
    * @param key The given long key
    * @param values The given values
    */
   public void update(final long key, final double[] values) {
-    update(new long[] {key}, values);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, values);
   }
 
   /**
    * Updates this sketch with a double key and double values.
-   * The values will be stored or added to the ones associated with the key
+   * The values will be stored or combined with the ones associated with the key according to
+   * the mode of the sketch
    *
    * @param key The given double key
    * @param values The given values
    */
   public void update(final double key, final double[] values) {
-    update(Util.doubleToLongArray(key), values);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, values);
   }
 
   /**
    * Updates this sketch with a String key and double values.
-   * The values will be stored or added to the ones associated with the key
+   * The values will be stored or combined with the ones associated with the key according to
+   * the mode of the sketch
    *
    * @param key The given String key
    * @param values The given values
    */
   public void update(final String key, final double[] values) {
-    update(Util.stringToByteArray(key), values);
+    if (key == null || key.isEmpty()) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, values);
   }
 
   /**
    * Updates this sketch with a byte[] key and double values.
-   * The values will be stored or added to the ones associated with the key
+   * The values will be stored or combined with the ones associated with the key according to
+   * the mode of the sketch
    *
    * @param key The given byte[] key
    * @param values The given values
    */
   public void update(final byte[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, values);
   }
 
   /**
    * Updates this sketch with a int[] key and double values.
-   * The values will be stored or added to the ones associated with the key
+   * The values will be stored or combined with the ones associated with the key according to
+   * the mode of the sketch
    *
    * @param key The given int[] key
    * @param values The given values
    */
   public void update(final int[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, values);
   }
 
   /**
    * Updates this sketch with a long[] key and double values.
-   * The values will be stored or added to the ones associated with the key
+   * The values will be stored or combined with the ones associated with the key according to
+   * the mode of the sketch
    *
    * @param key The given long[] key
    * @param values The given values
    */
   public void update(final long[] key, final double[] values) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, seed_)[0] >>> 1, values);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, values);
+  }
+
+  /**
+   * Updates this sketch with a long key and a single double value.
+   * This requires a sketch with one value per key and does not allocate an array of values.
+   * The value will be stored or combined with the one associated with the key according to the
+   * mode of the sketch.
+   *
+   * @param key The given long key
+   * @param value The given value
+   */
+  public void update(final long key, final double value) {
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a double key and a single double value.
+   * This requires a sketch with one value per key and does not allocate an array of values.
+   * The value will be stored or combined with the one associated with the key according to the
+   * mode of the sketch.
+   *
+   * @param key The given double key
+   * @param value The given value
+   */
+  public void update(final double key, final double value) {
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a String key and a single double value.
+   * This requires a sketch with one value per key and does not allocate an array of values.
+   * The value will be stored or combined with the one associated with the key according to the
+   * mode of the sketch.
+   *
+   * @param key The given String key
+   * @param value The given value
+   */
+  public void update(final String key, final double value) {
+    if (key == null || key.isEmpty()) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a byte[] key and a single double value.
+   * This requires a sketch with one value per key and does not allocate an array of values.
+   * The value will be stored or combined with the one associated with the key according to the
+   * mode of the sketch.
+   *
+   * @param key The given byte[] key
+   * @param value The given value
+   */
+  public void update(final byte[] key, final double value) {
+    if (key == null || key.length == 0) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a int[] key and a single double value.
+   * This requires a sketch with one value per key and does not allocate an array of values.
+   * The value will be stored or combined with the one associated with the key according to the
+   * mode of the sketch.
+   *
+   * @param key The given int[] key
+   * @param value The given value
+   */
+  public void update(final int[] key, final double value) {
+    if (key == null || key.length == 0) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a long[] key and a single double value.
+   * This requires a sketch with one value per key and does not allocate an array of values.
+   * The value will be stored or combined with the one associated with the key according to the
+   * mode of the sketch.
+   *
+   * @param key The given long[] key
+   * @param value The given value
+   */
+  public void update(final long[] key, final double value) {
+    if (key == null || key.length == 0) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a batch of rows given as columns: the long keys in the region
+   * <i>[offset, offset + length)</i> of the key column, and the values of each row at the same
+   * index of the value columns, one column for each value of the sketch. Each row is hashed and
+   * inserted exactly as if it were presented with {@link #update(long, double[])}, but no array
+   * of values is allocated per row.
+   * If the key column is null or <i>length</i> is zero no update attempt is made.
+   *
+   * @param keys the key column
+   * @param valueColumns the value columns, as many as the number of values of this sketch,
+   * each of which must contain the region
+   * @param offset the index of the first row
+   * @param length the number of rows
+   */
+  public void update(final long[] keys, final double[][] valueColumns, final int offset,
+      final int length) {
+    if (keys == null || length == 0) { return; }
+    checkColumns(keys, valueColumns, offset, length);
+    final HashFunction hashFunction = hashFunction_;
+    final long seed = seed_;
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      insertOrIgnore(hashFunction.hash64(keys[i], seed) >>> 1, valueColumns, i);
+    }
   }
 
   /**
@@ -120,6 +238,23 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
     return new DirectArrayOfDoublesCompactSketch(this, dstMem);
   }
 
+  /**
+   * Returns the hash function that this sketch applies to its keys
+   * @return the hash function of this sketch
+   */
+  public HashFunction getHashFunction() {
+    return hashFunction_;
+  }
+
+  /**
+   * Returns the mode that combines the values of a key that is presented more than once.
+   * The default is Sum.
+   * @return the mode of this sketch
+   */
+  public DoubleSummary.Mode getMode() {
+    return mode_;
+  }
+
   long getSeed() {
     return seed_;
   }
@@ -136,4 +271,37 @@ public abstract class ArrayOfDoublesUpdatableSketch extends ArrayOfDoublesSketch
    */
   abstract void insertOrIgnore(long key, double[] values);
 
+  /**
+   * Insert if key is less than theta and not a duplicate, otherwise ignore.
+   * @param key the hash value of the input value
+   * @param value the single value to update the summary
+   */
+  abstract void insertOrIgnore(long key, double value);
+
+  /**
+   * Insert if key is less than theta and not a duplicate, otherwise ignore.
+   * @param key the hash value of the input value
+   * @param valueColumns the value columns
+   * @param row the index of the values to update the summary in the value columns
+   */
+  abstract void insertOrIgnore(long key, double[][] valueColumns, int row);
+
+  private void checkColumns(final long[] keys, final double[][] valueColumns, final int offset,
+      final int length) {
+    if ((offset < 0) || (length < 0) || (offset > (keys.length - length))) {
+      throw new SketchesArgumentException("Batch region out of bounds: offset: " + offset
+          + ", length: " + length + ", key column length: " + keys.length);
+    }
+    if ((valueColumns == null) || (valueColumns.length != numValues_)) {
+      throw new SketchesArgumentException("The number of value columns must be " + numValues_
+          + ", but is " + (valueColumns == null ? 0 : valueColumns.length));
+    }
+    for (int j = 0; j < numValues_; j++) {
+      if ((valueColumns[j] == null) || (valueColumns[j].length < (offset + length))) {
+        throw new SketchesArgumentException("Value column " + j + " must have at least "
+            + (offset + length) + " elements");
+      }
+    }
+  }
+
 }
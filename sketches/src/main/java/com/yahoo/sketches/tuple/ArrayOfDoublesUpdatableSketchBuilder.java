@@ -11,6 +11,7 @@ import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
 import com.yahoo.memory.Memory;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * For building a new ArrayOfDoublesUpdatableSketch
@@ -23,6 +24,8 @@ public class ArrayOfDoublesUpdatableSketchBuilder {
   private float samplingProbability_;
   private long seed_;
   private Memory dstMem_;
+  private HashFunction hashFunction_;
+  private DoubleSummary.Mode mode_;
 
   private static final int DEFAULT_NUMBER_OF_VALUES = 1;
   private static final float DEFAULT_SAMPLING_PROBABILITY = 1;
@@ -37,6 +40,8 @@ public class ArrayOfDoublesUpdatableSketchBuilder {
     numValues_ = DEFAULT_NUMBER_OF_VALUES;
     samplingProbability_ = DEFAULT_SAMPLING_PROBABILITY;
     seed_ = DEFAULT_UPDATE_SEED;
+    hashFunction_ = HashFunction.MURMUR3;
+    mode_ = DoubleSummary.Mode.Sum;
   }
 
   /**
@@ -87,6 +92,23 @@ public class ArrayOfDoublesUpdatableSketchBuilder {
     return this;
   }
 
+  /**
+   * This is to set the mode that combines the values of a key that is presented more than once.
+   * Default mode is Sum. A sketch with the mode Min or Max is serialized with a newer serial
+   * version, which older readers reject.
+   * The values are doubles, which represent integers exactly only up to 2<sup>53</sup>.
+   * Exact long values are kept by an {@link UpdatableSketch} with a {@link LongSummaryFactory}.
+   * @param mode the mode: Sum, Min or Max
+   * @return this builder
+   */
+  public ArrayOfDoublesUpdatableSketchBuilder setMode(final DoubleSummary.Mode mode) {
+    if (mode == null) {
+      throw new SketchesArgumentException("The mode must not be null.");
+    }
+    mode_ = mode;
+    return this;
+  }
+
   /**
    * Sets the long seed value that is required by the hashing function.
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
@@ -97,6 +119,24 @@ public class ArrayOfDoublesUpdatableSketchBuilder {
     return this;
   }
 
+  /**
+   * Sets the hash function that the sketch applies to its keys.
+   * The sketch uses the {@link HashFunction#getIdentitySeed(long) identity seed} of the given
+   * hash function in place of the configured seed. Thus it can only be combined with sketches and
+   * set operations that use the same hash function and seed, and its serialized image must be
+   * heapified or wrapped with the identity seed, see
+   * {@link ArrayOfDoublesSketches#heapifyUpdatableSketch(Memory, long, HashFunction)}.
+   * @param hashFunction the hash function, which must not be null
+   * @return this builder
+   */
+  public ArrayOfDoublesUpdatableSketchBuilder setHashFunction(final HashFunction hashFunction) {
+    if (hashFunction == null) {
+      throw new SketchesArgumentException("The hash function must not be null.");
+    }
+    hashFunction_ = hashFunction;
+    return this;
+  }
+
   /**
    * This is to set destination memory to be used by the sketch
    * @param dstMem instance of Memory
@@ -112,12 +152,15 @@ public class ArrayOfDoublesUpdatableSketchBuilder {
    * @return an ArrayOfDoublesUpdatableSketch
    */
   public ArrayOfDoublesUpdatableSketch build() {
-    if (dstMem_ == null) {
-      return new HeapArrayOfDoublesQuickSelectSketch(nomEntries_, resizeFactor_.lg(), 
-          samplingProbability_, numValues_, seed_);
-    }
-    return new DirectArrayOfDoublesQuickSelectSketch(nomEntries_, resizeFactor_.lg(), 
-        samplingProbability_, numValues_, seed_, dstMem_);
+    final long seed = hashFunction_.getIdentitySeed(seed_);
+    final ArrayOfDoublesQuickSelectSketch sketch = (dstMem_ == null)
+        ? new HeapArrayOfDoublesQuickSelectSketch(nomEntries_, resizeFactor_.lg(),
+            samplingProbability_, numValues_, seed)
+        : new DirectArrayOfDoublesQuickSelectSketch(nomEntries_, resizeFactor_.lg(),
+            samplingProbability_, numValues_, seed, dstMem_);
+    sketch.hashFunction_ = hashFunction_;
+    sketch.setMode(mode_);
+    return sketch;
   }
 
 }
@@ -72,10 +72,16 @@ public class CompactSketch<S extends Summary> extends Sketch<S> {
       final int classNameLength = mem.getByte(offset++);
       final int count = mem.getInt(offset);
       offset += Integer.BYTES;
-      final byte[] classNameBuffer = new byte[classNameLength];
-      mem.getByteArray(offset, classNameBuffer, 0, classNameLength);
-      offset += classNameLength;
-      final String className = new String(classNameBuffer, UTF_8);
+      final SummaryTypeRegistry.Deserializer<S> deserializer;
+      if (classNameLength == SerializerDeserializer.REGISTERED_TYPE) {
+        deserializer = SerializerDeserializer.getDeserializer(mem.getByte(offset++));
+      } else {
+        final byte[] classNameBuffer = new byte[classNameLength];
+        mem.getByteArray(offset, classNameBuffer, 0, classNameLength);
+        offset += classNameLength;
+        deserializer =
+            SerializerDeserializer.getDeserializer(new String(classNameBuffer, UTF_8));
+      }
       keys_ = new long[count];
       for (int i = 0; i < count; i++) {
         keys_[i] = mem.getLong(offset);
@@ -83,7 +89,7 @@ public class CompactSketch<S extends Summary> extends Sketch<S> {
       }
       for (int i = 0; i < count; i++) {
         final DeserializeResult<S> result =
-            SerializerDeserializer.deserializeFromMemory(mem, offset, className);
+            SerializerDeserializer.deserializeFromMemory(mem, offset, deserializer);
         final S summary = result.getObject();
         offset += result.getSize();
         if (summaries_ == null) {
@@ -143,13 +149,16 @@ public class CompactSketch<S extends Summary> extends Sketch<S> {
     if (isThetaIncluded) {
       sizeBytes += Long.BYTES; // theta
     }
+    // a registered summary type is written as its type ID in place of the class name
     String summaryClassName = null;
+    int summaryTypeId = 0;
     if (count > 0) {
-      summaryClassName = summaries_[0].getClass().getName();
+      summaryTypeId = SummaryTypeRegistry.getTypeId(summaries_[0].getClass());
+      if (summaryTypeId == 0) { summaryClassName = summaries_[0].getClass().getName(); }
       sizeBytes +=
           Byte.BYTES // summary class name length
         + Integer.BYTES // count
-        + summaryClassName.length()
+        + (summaryTypeId > 0 ? Byte.BYTES : summaryClassName.length())
         + Long.BYTES * count + summariesBytesLength;
     }
     final byte[] bytes = new byte[sizeBytes];
@@ -171,11 +180,18 @@ public class CompactSketch<S extends Summary> extends Sketch<S> {
       offset += Long.BYTES;
     }
     if (count > 0) {
-      mem.putByte(offset++, (byte) summaryClassName.length());
-      mem.putInt(offset, getRetainedEntries());
-      offset += Integer.BYTES;
-      mem.putByteArray(offset, summaryClassName.getBytes(UTF_8), 0, summaryClassName.length());
-      offset += summaryClassName.length();
+      if (summaryTypeId > 0) {
+        mem.putByte(offset++, SerializerDeserializer.REGISTERED_TYPE);
+        mem.putInt(offset, getRetainedEntries());
+        offset += Integer.BYTES;
+        mem.putByte(offset++, (byte) summaryTypeId);
+      } else {
+        mem.putByte(offset++, (byte) summaryClassName.length());
+        mem.putInt(offset, getRetainedEntries());
+        offset += Integer.BYTES;
+        mem.putByteArray(offset, summaryClassName.getBytes(UTF_8), 0, summaryClassName.length());
+        offset += summaryClassName.length();
+      }
       for (int i = 0; i < count; i++) {
         mem.putLong(offset, keys_[i]);
         offset += Long.BYTES;
@@ -21,10 +21,12 @@ final class DirectArrayOfDoublesIntersection extends ArrayOfDoublesIntersection
    * Creates an instance of a DirectArrayOfDoublesIntersection with a custom update seed
    * @param numValues number of double values associated with each key
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param mode the mode that combines the values of a key
    * @param dstMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
    */
-  DirectArrayOfDoublesIntersection(final int numValues, final long seed, final Memory dstMem) {
-    super(numValues, seed);
+  DirectArrayOfDoublesIntersection(final int numValues, final long seed,
+      final DoubleSummary.Mode mode, final Memory dstMem) {
+    super(numValues, seed, mode);
     mem_ = dstMem;
   }
 
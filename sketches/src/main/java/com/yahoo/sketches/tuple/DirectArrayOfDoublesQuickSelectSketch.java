@@ -99,11 +99,7 @@ final class DirectArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesQuickSel
         mem.getByte(PREAMBLE_LONGS_BYTE));
     SerializerDeserializer.validateType(mem_.getByte(SKETCH_TYPE_BYTE),
         SerializerDeserializer.SketchType.ArrayOfDoublesQuickSelectSketch);
-    final byte version = mem_.getByte(SERIAL_VERSION_BYTE);
-    if (version != serialVersionUID) {
-      throw new SketchesArgumentException("Serial version mismatch. Expected: " + serialVersionUID
-          + ", actual: " + version);
-    }
+    mode_ = checkVersionAndGetMode(mem_.getByte(SERIAL_VERSION_BYTE), mem_.getByte(FLAGS_BYTE));
     final boolean isBigEndian =
         mem.isAllBitsSet(FLAGS_BYTE, (byte) (1 << Flags.IS_BIG_ENDIAN.ordinal()));
     if (isBigEndian ^ ByteOrder.nativeOrder().equals(ByteOrder.BIG_ENDIAN)) {
@@ -202,11 +198,49 @@ final class DirectArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesQuickSel
   protected void updateValues(final int index, final double[] values) {
     long offset = valuesOffset_ + SIZE_OF_VALUE_BYTES * numValues_ * index;
     for (int i = 0; i < numValues_; i++) {
-      mem_.putDouble(offset, mem_.getDouble(offset) + values[i]);
+      mem_.putDouble(offset, combine(mem_.getDouble(offset), values[i]));
+      offset += SIZE_OF_VALUE_BYTES;
+    }
+  }
+
+  @Override
+  protected void setValues(final int index, final double[][] valueColumns, final int row) {
+    long offset = valuesOffset_ + SIZE_OF_VALUE_BYTES * numValues_ * index;
+    for (int i = 0; i < numValues_; i++) {
+      mem_.putDouble(offset, valueColumns[i][row]);
+      offset += SIZE_OF_VALUE_BYTES;
+    }
+  }
+
+  @Override
+  protected void updateValues(final int index, final double[][] valueColumns, final int row) {
+    long offset = valuesOffset_ + SIZE_OF_VALUE_BYTES * numValues_ * index;
+    for (int i = 0; i < numValues_; i++) {
+      mem_.putDouble(offset, combine(mem_.getDouble(offset), valueColumns[i][row]));
       offset += SIZE_OF_VALUE_BYTES;
     }
   }
 
+  @Override
+  protected void setValue(final int index, final double value) {
+    mem_.putDouble(valuesOffset_ + SIZE_OF_VALUE_BYTES * index, value);
+  }
+
+  @Override
+  protected void updateValue(final int index, final double value) {
+    final long offset = valuesOffset_ + SIZE_OF_VALUE_BYTES * index;
+    mem_.putDouble(offset, combine(mem_.getDouble(offset), value));
+  }
+
+  @Override
+  void setMode(final DoubleSummary.Mode mode) {
+    super.setMode(mode);
+    mem_.clearBits(FLAGS_BYTE,
+        (byte) ((1 << Flags.IS_MODE_MIN.ordinal()) | (1 << Flags.IS_MODE_MAX.ordinal())));
+    mem_.setBits(FLAGS_BYTE, (byte) modeToFlags(mode));
+    mem_.putByte(SERIAL_VERSION_BYTE, modeToSerialVersion(mode));
+  }
+
   @Override
   protected void setNotEmpty() {
     if (isEmpty_) {
@@ -23,11 +23,12 @@ final class DirectArrayOfDoublesUnion extends ArrayOfDoublesUnion {
    * given value.
    * @param numValues Number of double values to keep for each key.
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param mode the mode that combines the values of a key
    * @param dstMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
    */
-  DirectArrayOfDoublesUnion(final int nomEntries, final int numValues, final long seed, 
-      final Memory dstMem) {
-    super(new DirectArrayOfDoublesQuickSelectSketch(nomEntries, 3, 1f, numValues, seed, dstMem));
+  DirectArrayOfDoublesUnion(final int nomEntries, final int numValues, final long seed,
+      final DoubleSummary.Mode mode, final Memory dstMem) {
+    super(newSketch(nomEntries, numValues, seed, mode, dstMem));
     mem_ = dstMem;
   }
 
@@ -43,8 +44,16 @@ final class DirectArrayOfDoublesUnion extends ArrayOfDoublesUnion {
 
   @Override
   public void reset() {
-    sketch_ = new DirectArrayOfDoublesQuickSelectSketch(nomEntries_, 3, 1f, numValues_, seed_, mem_);
+    sketch_ = newSketch(nomEntries_, numValues_, seed_, mode_, mem_);
     theta_ = sketch_.getThetaLong();
   }
 
+  private static ArrayOfDoublesQuickSelectSketch newSketch(final int nomEntries,
+      final int numValues, final long seed, final DoubleSummary.Mode mode, final Memory dstMem) {
+    final ArrayOfDoublesQuickSelectSketch sketch =
+        new DirectArrayOfDoublesQuickSelectSketch(nomEntries, 3, 1f, numValues, seed, dstMem);
+    sketch.setMode(mode);
+    return sketch;
+  }
+
 }
@@ -0,0 +1,518 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.Util.MIN_LG_ARR_LONGS;
+import static com.yahoo.sketches.Util.REBUILD_THRESHOLD;
+import static com.yahoo.sketches.Util.RESIZE_THRESHOLD;
+import static com.yahoo.sketches.Util.ceilingPowerOf2;
+import static com.yahoo.sketches.Util.startingSubMultiple;
+import static com.yahoo.sketches.tuple.Util.computeSeedHash;
+
+import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.HashOperations;
+import com.yahoo.sketches.QuickSelect;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
+
+/**
+ * Direct QuickSelect generic tuple sketch, which can be updated with the same types of keys
+ * as the UpdatableSketch.
+ * <p>This implementation uses data in a given Memory that is owned and managed by the caller.
+ * The keys are kept in a hash table in the Memory and the summaries in records of a fixed size
+ * next to it, which are read and written in place using a FixedSizeSummaryFactory.
+ * This Memory can be off-heap, which if managed properly will greatly reduce the need for
+ * the JVM to perform garbage collection, or a memory-mapped file, which can be wrapped again
+ * later without deserialization.</p>
+ *
+ * <p>The layout of the Memory is not the same as the serialized form given by toByteArray(),
+ * which is the serialized form of the UpdatableSketch and can be heapified as such.</p>
+ * @param <U> Type of the value, which is passed to update method of a Summary
+ * @param <S> Type of the UpdatableSummary&lt;U&gt;
+ */
+public final class DirectUpdatableSketch<U, S extends UpdatableSummary<U>> extends Sketch<S> {
+  private static final byte serialVersionUID = 1;
+
+  private enum Flags { IS_BIG_ENDIAN, IS_IN_SAMPLING_MODE, IS_EMPTY }
+
+  // Layout of first 32 bytes:
+  // Long || Start Byte Adr:
+  // Adr:
+  //      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
+  //  0   ||  lgRF  |  lgArr | lgNom  |  Flags | SkType | FamID  | SerVer |  Preamble_Longs    |
+  //      ||   15   |   14   |   13   |   12   |   11   |   10   |    9   |     8              |
+  //  1   ||-------------------------Theta Long------------------------------------------------|
+  //      ||   23   |   22   |   21   |   20   |   19   |   18   |   17   |    16              |
+  //  2   ||-----------P (float)---------------|----------Retained Entries---------------------|
+  //      ||   31   |   30   |   29   |   28   |   27   |   26   |   25   |    24              |
+  //  3   ||-----------------|----Seed Hash----|----------Summary Size Bytes-------------------|
+  // followed by the hash table of keys and the array of summary records, which have the same
+  // length, the current capacity
+
+  static final int PREAMBLE_LONGS_BYTE = 0; // not used, always 1
+  static final int SERIAL_VERSION_BYTE = 1;
+  static final int FAMILY_ID_BYTE = 2;
+  static final int SKETCH_TYPE_BYTE = 3;
+  static final int FLAGS_BYTE = 4;
+  static final int LG_NOM_ENTRIES_BYTE = 5;
+  static final int LG_CUR_CAPACITY_BYTE = 6;
+  static final int LG_RESIZE_FACTOR_BYTE = 7;
+  static final int THETA_LONG = 8;
+  static final int RETAINED_ENTRIES_INT = 16;
+  static final int SAMPLING_P_FLOAT = 20;
+  static final int SUMMARY_SIZE_INT = 24;
+  static final int SEED_HASH_SHORT = 28;
+  // 2 bytes of padding for alignment
+  static final int ENTRIES_START = 32;
+
+  private static final int SIZE_OF_KEY_BYTES = 8;
+
+  // these values exist only on heap, never serialized
+  private final Memory mem_;
+  private final FixedSizeSummaryFactory<U, S> summaryFactory_;
+  private final HashFunction hashFunction_;
+  private final long seed_;
+  // these can be derived from the mem_ contents, but are kept here for performance
+  private final int summarySizeBytes_;
+  private final int nomEntries_;
+  private int lgCurrentCapacity_;
+  private int summariesOffset_;
+  private int rebuildThreshold_;
+
+  /**
+   * Construct a new sketch using the given Memory as its backing store.
+   * @param nomEntries Nominal number of entries. Forced to the nearest power of 2 greater than
+   * given value.
+   * @param lgResizeFactor log2(resizeFactor) - value from 0 to 3:
+   * <pre>
+   * 0 - no resizing (max size allocated),
+   * 1 - double internal hash table each time it reaches a threshold
+   * 2 - grow four times
+   * 3 - grow eight times (default)
+   * </pre>
+   * @param samplingProbability
+   * <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability</a>
+   * @param summaryFactory An instance of a FixedSizeSummaryFactory.
+   * @param hashFunction the hash function for the keys. The keys are hashed with the
+   * {@link HashFunction#getIdentitySeed(long) identity seed} of the hash function for the
+   * <a href="{@docRoot}/resources/dictionary.html#defaultUpdateSeed">Default Update Seed</a>.
+   * @param dstMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   */
+  DirectUpdatableSketch(final int nomEntries, final int lgResizeFactor,
+      final float samplingProbability, final FixedSizeSummaryFactory<U, S> summaryFactory,
+      final HashFunction hashFunction, final Memory dstMem) {
+    hashFunction_ = hashFunction;
+    seed_ = hashFunction.getIdentitySeed(DEFAULT_UPDATE_SEED);
+    mem_ = dstMem;
+    summaryFactory_ = summaryFactory;
+    summarySizeBytes_ = getSummarySizeBytes(summaryFactory);
+    nomEntries_ = ceilingPowerOf2(nomEntries);
+    final int startingCapacity = 1 << startingSubMultiple(
+      // target table size is twice the number of nominal entries
+      Integer.numberOfTrailingZeros(nomEntries_ * 2),
+      ResizeFactor.getRF(lgResizeFactor),
+      MIN_LG_ARR_LONGS
+    );
+    checkIfEnoughMemory(dstMem, startingCapacity, summarySizeBytes_);
+    mem_.putByte(PREAMBLE_LONGS_BYTE, PREAMBLE_LONGS);
+    mem_.putByte(SERIAL_VERSION_BYTE, serialVersionUID);
+    mem_.putByte(FAMILY_ID_BYTE, (byte) Family.TUPLE.getID());
+    mem_.putByte(SKETCH_TYPE_BYTE,
+        (byte) SerializerDeserializer.SketchType.DirectQuickSelectSketch.ordinal());
+    final boolean isBigEndian = ByteOrder.nativeOrder().equals(ByteOrder.BIG_ENDIAN);
+    mem_.putByte(FLAGS_BYTE, (byte) (
+      (isBigEndian ? 1 << Flags.IS_BIG_ENDIAN.ordinal() : 0)
+      | (samplingProbability < 1f ? 1 << Flags.IS_IN_SAMPLING_MODE.ordinal() : 0)
+      | (1 << Flags.IS_EMPTY.ordinal())
+    ));
+    mem_.putByte(LG_NOM_ENTRIES_BYTE, (byte) Integer.numberOfTrailingZeros(nomEntries_));
+    mem_.putByte(LG_CUR_CAPACITY_BYTE, (byte) Integer.numberOfTrailingZeros(startingCapacity));
+    mem_.putByte(LG_RESIZE_FACTOR_BYTE, (byte) lgResizeFactor);
+    theta_ = (long) (Long.MAX_VALUE * (double) samplingProbability);
+    mem_.putLong(THETA_LONG, theta_);
+    mem_.putInt(RETAINED_ENTRIES_INT, 0);
+    mem_.putFloat(SAMPLING_P_FLOAT, samplingProbability);
+    mem_.putInt(SUMMARY_SIZE_INT, summarySizeBytes_);
+    mem_.putShort(SEED_HASH_SHORT, computeSeedHash(seed_));
+    mem_.clear(ENTRIES_START, SIZE_OF_KEY_BYTES * startingCapacity); // clear keys only
+    setCurrentCapacity(startingCapacity);
+  }
+
+  /**
+   * Wraps the given Memory.
+   * @param mem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>
+   * @param summaryFactory An instance of a FixedSizeSummaryFactory, which must be compatible with
+   * the one the sketch was built with.
+   * @param hashFunction the hash function the sketch was built with, which is checked against the
+   * seed hash in the Memory
+   */
+  DirectUpdatableSketch(final Memory mem, final FixedSizeSummaryFactory<U, S> summaryFactory,
+      final HashFunction hashFunction) {
+    SerializerDeserializer.validateFamily(mem.getByte(FAMILY_ID_BYTE),
+        mem.getByte(PREAMBLE_LONGS_BYTE));
+    SerializerDeserializer.validateType(mem.getByte(SKETCH_TYPE_BYTE),
+        SerializerDeserializer.SketchType.DirectQuickSelectSketch);
+    final byte version = mem.getByte(SERIAL_VERSION_BYTE);
+    if (version != serialVersionUID) {
+      throw new SketchesArgumentException("Serial version mismatch. Expected: " + serialVersionUID
+          + ", actual: " + version);
+    }
+    final boolean isBigEndian =
+        mem.isAllBitsSet(FLAGS_BYTE, (byte) (1 << Flags.IS_BIG_ENDIAN.ordinal()));
+    if (isBigEndian ^ ByteOrder.nativeOrder().equals(ByteOrder.BIG_ENDIAN)) {
+      throw new SketchesArgumentException("Byte order mismatch");
+    }
+    summarySizeBytes_ = getSummarySizeBytes(summaryFactory);
+    final int summarySizeBytes = mem.getInt(SUMMARY_SIZE_INT);
+    if (summarySizeBytes != summarySizeBytes_) {
+      throw new SketchesArgumentException("Summary size mismatch. Expected: " + summarySizeBytes_
+          + ", actual: " + summarySizeBytes);
+    }
+    final long seed = hashFunction.getIdentitySeed(DEFAULT_UPDATE_SEED);
+    Util.checkSeedHashes(mem.getShort(SEED_HASH_SHORT), computeSeedHash(seed));
+    hashFunction_ = hashFunction;
+    seed_ = seed;
+    mem_ = mem;
+    summaryFactory_ = summaryFactory;
+    nomEntries_ = 1 << mem.getByte(LG_NOM_ENTRIES_BYTE);
+    final int currentCapacity = 1 << mem.getByte(LG_CUR_CAPACITY_BYTE);
+    checkIfEnoughMemory(mem, currentCapacity, summarySizeBytes_);
+    theta_ = mem.getLong(THETA_LONG);
+    isEmpty_ = mem.isAllBitsSet(FLAGS_BYTE, (byte) (1 << Flags.IS_EMPTY.ordinal()));
+    setCurrentCapacity(currentCapacity);
+  }
+
+  /**
+   * Updates this sketch with a long key and U value.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The given long key
+   * @param value The given U value
+   */
+  public void update(final long key, final U value) {
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a double key and U value.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The given double key
+   * @param value The given U value
+   */
+  public void update(final double key, final U value) {
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a String key and U value.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The given String key
+   * @param value The given U value
+   */
+  public void update(final String key, final U value) {
+    if (key == null || key.isEmpty()) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a byte[] key and U value.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The given byte[] key
+   * @param value The given U value
+   */
+  public void update(final byte[] key, final U value) {
+    if (key == null || key.length == 0) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a int[] key and U value.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The given int[] key
+   * @param value The given U value
+   */
+  public void update(final int[] key, final U value) {
+    if (key == null || key.length == 0) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Updates this sketch with a long[] key and U value.
+   * The value is passed to update() method of the Summary object associated with the key
+   *
+   * @param key The given long[] key
+   * @param value The given U value
+   */
+  public void update(final long[] key, final U value) {
+    if (key == null || key.length == 0) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Returns the hash function that this sketch applies to its keys
+   * @return the hash function of this sketch
+   */
+  public HashFunction getHashFunction() {
+    return hashFunction_;
+  }
+
+  @Override
+  public int getRetainedEntries() {
+    return mem_.getInt(RETAINED_ENTRIES_INT);
+  }
+
+  /**
+   * @return an array of Summary objects from the sketch, which are read from their records
+   */
+  @Override
+  public S[] getSummaries() {
+    @SuppressWarnings("unchecked")
+    final S[] summaries =
+        (S[]) Array.newInstance(summaryFactory_.newSummary().getClass(), getRetainedEntries());
+    int i = 0;
+    final int currentCapacity = getCurrentCapacity();
+    for (int j = 0; j < currentCapacity; j++) {
+      if (getKey(j) != 0) {
+        summaries[i++] = readSummary(j);
+      }
+    }
+    return summaries;
+  }
+
+  /**
+   * Rebuilds reducing the actual number of entries to the nominal number of entries if needed
+   */
+  public void trim() {
+    if (getRetainedEntries() > nomEntries_) {
+      updateTheta();
+      rebuild(getCurrentCapacity());
+    }
+  }
+
+  /**
+   * Converts the current state of the sketch into a compact sketch on heap
+   * @return compact sketch
+   */
+  public CompactSketch<S> compact() {
+    final int count = getRetainedEntries();
+    final long[] keys = new long[count];
+    @SuppressWarnings("unchecked")
+    final S[] summaries = (S[]) Array.newInstance(summaryFactory_.newSummary().getClass(), count);
+    int i = 0;
+    final int currentCapacity = getCurrentCapacity();
+    for (int j = 0; j < currentCapacity; j++) {
+      final long key = getKey(j);
+      if (key != 0) {
+        keys[i] = key;
+        summaries[i] = readSummary(j);
+        i++;
+      }
+    }
+    return new CompactSketch<S>(keys, summaries, theta_, isEmpty_);
+  }
+
+  /**
+   * This is to serialize the sketch to a byte array in the serialized form of the UpdatableSketch,
+   * which can be heapified using {@link Sketches#heapifyUpdatableSketch(Memory, HashFunction)}
+   * with the hash function of this sketch.
+   * @return serialized representation of the sketch
+   */
+  @Override
+  public byte[] toByteArray() {
+    final QuickSelectSketch<S> sketch = new QuickSelectSketch<S>(nomEntries_,
+        mem_.getByte(LG_RESIZE_FACTOR_BYTE), mem_.getFloat(SAMPLING_P_FLOAT), summaryFactory_,
+        getCurrentCapacity());
+    final SketchIterator<S> it = iterator();
+    while (it.next()) {
+      sketch.insert(it.getKey(), it.getSummary());
+    }
+    sketch.setThetaLong(theta_);
+    sketch.setSeedHash(computeSeedHash(seed_));
+    if (!isEmpty_) { sketch.setNotEmpty(); }
+    return sketch.toByteArray();
+  }
+
+  /**
+   * Returns a SketchIterator. The summaries that it returns are read from their records,
+   * so changing them has no effect on this sketch.
+   * @return a SketchIterator
+   */
+  @Override
+  public SketchIterator<S> iterator() {
+    return new DirectSketchIterator(getCurrentCapacity());
+  }
+
+  /**
+   * @param nomEntries Nominal number of entries. Forced to the nearest power of 2 greater than
+   * given value.
+   * @param summarySizeBytes the size of the summary records, see
+   * {@link FixedSizeSummaryFactory#getSummarySizeBytes()}
+   * @return maximum required storage bytes given nomEntries and summarySizeBytes
+   */
+  public static long getMaxBytes(final int nomEntries, final int summarySizeBytes) {
+    return ENTRIES_START
+        + (long) (SIZE_OF_KEY_BYTES + summarySizeBytes) * ceilingPowerOf2(nomEntries) * 2;
+  }
+
+  // non-public methods below
+
+  private void insertOrIgnore(final long key, final U value) {
+    setNotEmpty();
+    if (key == 0 || key >= theta_) { return; }
+    final int index = HashOperations.hashSearchOrInsert(mem_, lgCurrentCapacity_, key, ENTRIES_START);
+    final boolean isNew = index < 0;
+    if (isNew) {
+      mem_.putInt(RETAINED_ENTRIES_INT, getRetainedEntries() + 1);
+    }
+    summaryFactory_.updateSummary(value, isNew, mem_, getSummaryOffset(isNew ? ~index : index));
+    rebuildIfNeeded();
+  }
+
+  private void setNotEmpty() {
+    if (isEmpty_) {
+      isEmpty_ = false;
+      mem_.clearBits(FLAGS_BYTE, (byte) (1 << Flags.IS_EMPTY.ordinal()));
+    }
+  }
+
+  private void setThetaLong(final long theta) {
+    theta_ = theta;
+    mem_.putLong(THETA_LONG, theta_);
+  }
+
+  private int getCurrentCapacity() {
+    return 1 << lgCurrentCapacity_;
+  }
+
+  private long getKey(final int index) {
+    return mem_.getLong(ENTRIES_START + SIZE_OF_KEY_BYTES * index);
+  }
+
+  private long getSummaryOffset(final int index) {
+    return summariesOffset_ + (long) summarySizeBytes_ * index;
+  }
+
+  private S readSummary(final int index) {
+    return summaryFactory_.readSummary(mem_, getSummaryOffset(index));
+  }
+
+  private void rebuildIfNeeded() {
+    if (getRetainedEntries() < rebuildThreshold_) { return; }
+    if (getCurrentCapacity() > nomEntries_) {
+      updateTheta();
+      rebuild(getCurrentCapacity());
+    } else {
+      rebuild(getCurrentCapacity() * (1 << mem_.getByte(LG_RESIZE_FACTOR_BYTE)));
+    }
+  }
+
+  private void updateTheta() {
+    final int count = getRetainedEntries();
+    final long[] keys = new long[count];
+    int i = 0;
+    final int currentCapacity = getCurrentCapacity();
+    for (int j = 0; j < currentCapacity; j++) {
+      final long key = getKey(j);
+      if (key != 0) { keys[i++] = key; }
+    }
+    setThetaLong(QuickSelect.select(keys, 0, count - 1, nomEntries_));
+  }
+
+  // rebuild in the same memory, moving the summary records as they are
+  private void rebuild(final int newCapacity) {
+    checkIfEnoughMemory(mem_, newCapacity, summarySizeBytes_);
+    final int currentCapacity = getCurrentCapacity();
+    final long[] keys = new long[currentCapacity];
+    final byte[] records = new byte[summarySizeBytes_ * currentCapacity];
+    mem_.getLongArray(ENTRIES_START, keys, 0, currentCapacity);
+    mem_.getByteArray(summariesOffset_, records, 0, records.length);
+    mem_.clear(ENTRIES_START, SIZE_OF_KEY_BYTES * newCapacity); // clear keys only
+    mem_.putByte(LG_CUR_CAPACITY_BYTE, (byte) Integer.numberOfTrailingZeros(newCapacity));
+    setCurrentCapacity(newCapacity);
+    int count = 0;
+    for (int i = 0; i < currentCapacity; i++) {
+      if (keys[i] != 0 && keys[i] < theta_) {
+        final int index = HashOperations.hashInsertOnly(mem_, lgCurrentCapacity_, keys[i],
+            ENTRIES_START);
+        mem_.putByteArray(getSummaryOffset(index), records, summarySizeBytes_ * i,
+            summarySizeBytes_);
+        count++;
+      }
+    }
+    mem_.putInt(RETAINED_ENTRIES_INT, count);
+  }
+
+  private void setCurrentCapacity(final int currentCapacity) {
+    lgCurrentCapacity_ = Integer.numberOfTrailingZeros(currentCapacity);
+    summariesOffset_ = ENTRIES_START + SIZE_OF_KEY_BYTES * currentCapacity;
+    if (currentCapacity > nomEntries_) {
+      rebuildThreshold_ = (int) (currentCapacity * REBUILD_THRESHOLD);
+    } else {
+      rebuildThreshold_ = (int) (currentCapacity * RESIZE_THRESHOLD);
+    }
+  }
+
+  private static int getSummarySizeBytes(final FixedSizeSummaryFactory<?, ?> summaryFactory) {
+    final int summarySizeBytes = summaryFactory.getSummarySizeBytes();
+    if (summarySizeBytes <= 0) {
+      throw new SketchesArgumentException("Summary size must be greater than zero: "
+          + summarySizeBytes);
+    }
+    return summarySizeBytes;
+  }
+
+  private static void checkIfEnoughMemory(final Memory mem, final int numEntries,
+      final int summarySizeBytes) {
+    final long sizeNeeded =
+        ENTRIES_START + (long) (SIZE_OF_KEY_BYTES + summarySizeBytes) * numEntries;
+    if (sizeNeeded > mem.getCapacity()) {
+      throw new SketchesArgumentException("Not enough memory: need "
+          + sizeNeeded + " bytes, got " + mem.getCapacity() + " bytes");
+    }
+  }
+
+  private final class DirectSketchIterator extends SketchIterator<S> {
+    private final int numEntries_;
+    private int i_;
+
+    DirectSketchIterator(final int numEntries) {
+      super(null, null);
+      numEntries_ = numEntries;
+      i_ = -1;
+    }
+
+    @Override
+    public boolean next() {
+      i_++;
+      while (i_ < numEntries_) {
+        if (DirectUpdatableSketch.this.getKey(i_) != 0) { return true; }
+        i_++;
+      }
+      return false;
+    }
+
+    @Override
+    public long getKey() {
+      return DirectUpdatableSketch.this.getKey(i_);
+    }
+
+    @Override
+    public S getSummary() {
+      return readSummary(i_);
+    }
+  }
+
+}
@@ -11,17 +11,19 @@ import com.yahoo.sketches.tuple.DoubleSummary.Mode;
 
 /**
  * Factory for DoubleSummary. It supports three modes of operation of DoubleSummary:
- * Sum, Min and Max.
+ * Sum, Min and Max. As a FixedSizeSummaryFactory it stores only the value of a DoubleSummary
+ * in a record of 8 bytes, since the mode is common to all summaries.
  */
-public final class DoubleSummaryFactory implements SummaryFactory<DoubleSummary> {
+public final class DoubleSummaryFactory implements FixedSizeSummaryFactory<Double, DoubleSummary> {
 
   private final DoubleSummary.Mode summaryMode_;
+  private final double initialValue_;
 
   /**
    * Creates an instance of DoubleSummaryFactory with default mode
    */
   public DoubleSummaryFactory() {
-    summaryMode_ = DoubleSummary.Mode.Sum;
+    this(DoubleSummary.Mode.Sum);
   }
 
   /**
@@ -30,6 +32,7 @@ public final class DoubleSummaryFactory implements SummaryFactory<DoubleSummary>
    */
   public DoubleSummaryFactory(final DoubleSummary.Mode summaryMode) {
     summaryMode_ = summaryMode;
+    initialValue_ = new DoubleSummary(summaryMode).getValue();
   }
 
   @Override
@@ -42,6 +45,29 @@ public final class DoubleSummaryFactory implements SummaryFactory<DoubleSummary>
     return new DoubleSummarySetOperations(summaryMode_);
   }
 
+  @Override
+  public int getSummarySizeBytes() {
+    return Double.BYTES;
+  }
+
+  @Override
+  public DoubleSummary readSummary(final Memory mem, final long offsetBytes) {
+    return new DoubleSummary(mem.getDouble(offsetBytes), summaryMode_);
+  }
+
+  @Override
+  public void writeSummary(final DoubleSummary summary, final Memory mem, final long offsetBytes) {
+    mem.putDouble(offsetBytes, summary.getValue());
+  }
+
+  @Override
+  public void updateSummary(final Double value, final boolean isNew, final Memory mem,
+      final long offsetBytes) {
+    final double current = isNew ? initialValue_ : mem.getDouble(offsetBytes);
+    mem.putDouble(offsetBytes,
+        ArrayOfDoublesQuickSelectSketch.combine(summaryMode_, current, value.doubleValue()));
+  }
+
   private static final int SERIALIZED_SIZE_BYTES = 1;
   private static final int MODE_BYTE = 0;
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import com.yahoo.memory.Memory;
+
+/**
+ * Interface for a SummaryFactory, whose summaries can be stored as records of a fixed size.
+ * This is required by the DirectUpdatableSketch, which keeps the summaries in place in a Memory
+ * and updates them there.
+ * The record does not need to be self-describing: any parameters of the summaries, which are
+ * common to all of them, such as the mode of a DoubleSummary, belong to the factory.
+ * @param <U> type of the value, which updates a Summary
+ * @param <S> type of Summary
+ */
+public interface FixedSizeSummaryFactory<U, S extends UpdatableSummary<U>> extends SummaryFactory<S> {
+
+  /**
+   * @return the size in bytes of the record of every summary, which must be greater than zero
+   */
+  public int getSummarySizeBytes();
+
+  /**
+   * This is to create an instance of a Summary given its record
+   * @param mem Memory object, which holds the record
+   * @param offsetBytes the offset of the record in the Memory
+   * @return a new Summary object
+   */
+  public S readSummary(Memory mem, long offsetBytes);
+
+  /**
+   * This is to write the record of a given Summary. Exactly getSummarySizeBytes() bytes
+   * must be written.
+   * @param summary the given Summary
+   * @param mem Memory object, which holds the record
+   * @param offsetBytes the offset of the record in the Memory
+   */
+  public void writeSummary(S summary, Memory mem, long offsetBytes);
+
+  /**
+   * This is to update a record in place with a given value, with the same result as reading the
+   * Summary, calling its update() method and writing it back, but without creating any objects.
+   * @param value the given value
+   * @param isNew true if the record belongs to a key that was just inserted. Such a record holds
+   * arbitrary bytes and must be updated as a new Summary would be.
+   * @param mem Memory object, which holds the record
+   * @param offsetBytes the offset of the record in the Memory
+   */
+  public void updateSummary(U value, boolean isNew, Memory mem, long offsetBytes);
+
+}
@@ -164,4 +164,14 @@ final class HeapArrayOfDoublesCompactSketch extends ArrayOfDoublesCompactSketch
     return seedHash_;
   }
 
+  // the keys as they are, not copied (null if there are no entries)
+  long[] getKeysArray() {
+    return keys_;
+  }
+
+  // the values of all keys in one array as they are, not copied (null if there are no entries)
+  double[] getValuesArray() {
+    return values_;
+  }
+
 }
@@ -15,9 +15,11 @@ final class HeapArrayOfDoublesIntersection extends ArrayOfDoublesIntersection {
    * Creates an instance of a HeapArrayOfDoublesIntersection with a custom update seed
    * @param numValues number of double values associated with each key
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param mode the mode that combines the values of a key
    */
-  HeapArrayOfDoublesIntersection(final int numValues, final long seed) {
-    super(numValues, seed);
+  HeapArrayOfDoublesIntersection(final int numValues, final long seed,
+      final DoubleSummary.Mode mode) {
+    super(numValues, seed, mode);
   }
 
   @Override
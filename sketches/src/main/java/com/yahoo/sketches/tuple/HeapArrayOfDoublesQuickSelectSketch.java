@@ -78,12 +78,8 @@ final class HeapArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesQuickSelec
         mem.getByte(PREAMBLE_LONGS_BYTE));
     SerializerDeserializer.validateType(mem.getByte(SKETCH_TYPE_BYTE),
         SerializerDeserializer.SketchType.ArrayOfDoublesQuickSelectSketch);
-    final byte version = mem.getByte(SERIAL_VERSION_BYTE);
-    if (version != serialVersionUID) {
-      throw new SketchesArgumentException("Serial version mismatch. Expected: "
-        + serialVersionUID + ", actual: " + version);
-    }
     final byte flags = mem.getByte(FLAGS_BYTE);
+    mode_ = checkVersionAndGetMode(mem.getByte(SERIAL_VERSION_BYTE), flags);
     final boolean isBigEndian = (flags & (1 << Flags.IS_BIG_ENDIAN.ordinal())) > 0;
     if (isBigEndian ^ ByteOrder.nativeOrder().equals(ByteOrder.BIG_ENDIAN)) {
       throw new SketchesArgumentException("Byte order mismatch");
@@ -140,7 +136,7 @@ final class HeapArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesQuickSelec
     final byte[] byteArray = new byte[sizeBytes];
     final Memory mem = new NativeMemory(byteArray); // wrap the byte array to use the putX methods
     mem.putByte(PREAMBLE_LONGS_BYTE, (byte) 1);
-    mem.putByte(SERIAL_VERSION_BYTE, serialVersionUID);
+    mem.putByte(SERIAL_VERSION_BYTE, modeToSerialVersion(mode_));
     mem.putByte(FAMILY_ID_BYTE, (byte) Family.TUPLE.getID());
     mem.putByte(SKETCH_TYPE_BYTE,
         (byte)SerializerDeserializer.SketchType.ArrayOfDoublesQuickSelectSketch.ordinal());
@@ -150,6 +146,7 @@ final class HeapArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesQuickSelec
       | (isInSamplingMode() ? 1 << Flags.IS_IN_SAMPLING_MODE.ordinal() : 0)
       | (isEmpty_ ? 1 << Flags.IS_EMPTY.ordinal() : 0)
       | (count_ > 0 ? 1 << Flags.HAS_ENTRIES.ordinal() : 0)
+      | modeToFlags(mode_)
     ));
     mem.putByte(NUM_VALUES_BYTE, (byte) numValues_);
     mem.putShort(SEED_HASH_SHORT, Util.computeSeedHash(seed_));
@@ -186,18 +183,44 @@ final class HeapArrayOfDoublesQuickSelectSketch extends ArrayOfDoublesQuickSelec
     }
   }
 
+  @Override
+  protected void setValues(final int index, final double[][] valueColumns, final int row) {
+    final int offset = index * numValues_;
+    for (int i = 0; i < numValues_; i++) {
+      values_[offset + i] = valueColumns[i][row];
+    }
+  }
+
+  @Override
+  protected void updateValues(final int index, final double[][] valueColumns, final int row) {
+    final int offset = index * numValues_;
+    for (int i = 0; i < numValues_; i++) {
+      values_[offset + i] = combine(values_[offset + i], valueColumns[i][row]);
+    }
+  }
+
   @Override
   protected void updateValues(final int index, final double[] values) {
     if (numValues_ == 1) {
-      values_[index] += values[0];
+      values_[index] = combine(values_[index], values[0]);
     } else {
       final int offset = index * numValues_;
       for (int i = 0; i < numValues_; i++) {
-        values_[offset + i] += values[i];
+        values_[offset + i] = combine(values_[offset + i], values[i]);
       }
     }
   }
 
+  @Override
+  protected void setValue(final int index, final double value) {
+    values_[index] = value;
+  }
+
+  @Override
+  protected void updateValue(final int index, final double value) {
+    values_[index] = combine(values_[index], value);
+  }
+
   @Override
   protected void setNotEmpty() {
     isEmpty_ = false;
@@ -19,9 +19,11 @@ final class HeapArrayOfDoublesUnion extends ArrayOfDoublesUnion {
    * given value.
    * @param numValues Number of double values to keep for each key.
    * @param seed <a href="{@docRoot}/resources/dictionary.html#seed">See seed</a>
+   * @param mode the mode that combines the values of a key
    */
-  HeapArrayOfDoublesUnion(final int nomEntries, final int numValues, final long seed) {
-    super(new HeapArrayOfDoublesQuickSelectSketch(nomEntries, 3, 1f, numValues, seed));
+  HeapArrayOfDoublesUnion(final int nomEntries, final int numValues, final long seed,
+      final DoubleSummary.Mode mode) {
+    super(newSketch(nomEntries, numValues, seed, mode));
   }
 
   /**
@@ -35,8 +37,16 @@ final class HeapArrayOfDoublesUnion extends ArrayOfDoublesUnion {
 
   @Override
   public void reset() {
-    sketch_ = new HeapArrayOfDoublesQuickSelectSketch(nomEntries_, 3, 1f, numValues_, seed_);
+    sketch_ = newSketch(nomEntries_, numValues_, seed_, mode_);
     theta_ = sketch_.getThetaLong();
   }
 
+  private static ArrayOfDoublesQuickSelectSketch newSketch(final int nomEntries,
+      final int numValues, final long seed, final DoubleSummary.Mode mode) {
+    final ArrayOfDoublesQuickSelectSketch sketch =
+        new HeapArrayOfDoublesQuickSelectSketch(nomEntries, 3, 1f, numValues, seed);
+    sketch.setMode(mode);
+    return sketch;
+  }
+
 }
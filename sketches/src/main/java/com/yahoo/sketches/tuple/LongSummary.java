@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.tuple.DoubleSummary.Mode;
+
+/**
+ * Summary for generic tuple sketches of type Long.
+ * This summary keeps a long value, which is exact over the whole range of long, unlike a
+ * DoubleSummary. On update a predefined operation is performed depending on the mode.
+ * Three modes are supported: Sum, Min and Max. The default mode is Sum. Sums that exceed the
+ * range of long wrap around as in Java long arithmetic.
+ */
+public final class LongSummary implements UpdatableSummary<Long> {
+
+  private long value_;
+  private final Mode mode_;
+
+  /**
+   * Creates an instance of LongSummary with zero starting value and default mode (Sum)
+   */
+  public LongSummary() {
+    this(0, Mode.Sum);
+  }
+
+  /**
+   * Creates an instance of LongSummary with the starting value of a given mode: zero for Sum,
+   * Long.MAX_VALUE for Min and Long.MIN_VALUE for Max
+   * @param mode update mode
+   */
+  public LongSummary(final Mode mode) {
+    this(initialValue(mode), mode);
+  }
+
+  /**
+   * Creates an instance of LongSummary with a given starting value and mode
+   * @param value starting value
+   * @param mode update mode
+   */
+  public LongSummary(final long value, final Mode mode) {
+    value_ = value;
+    mode_ = mode;
+  }
+
+  @Override
+  public void update(final Long value) {
+    value_ = combine(mode_, value_, value.longValue());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <S extends Summary> S copy() {
+    return (S) new LongSummary(value_, mode_);
+  }
+
+  /**
+   * @return current value of the LongSummary
+   */
+  public long getValue() {
+    return value_;
+  }
+
+  /**
+   * Returns the starting value of a summary with the given mode
+   * @param mode the given mode
+   * @return the starting value of a summary with the given mode
+   */
+  static long initialValue(final Mode mode) {
+    switch (mode) {
+      case Min:
+        return Long.MAX_VALUE;
+      case Max:
+        return Long.MIN_VALUE;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Combines the current value with a new value according to the given mode
+   * @param mode the given mode
+   * @param current the current value
+   * @param value the new value
+   * @return the combined value
+   */
+  static long combine(final Mode mode, final long current, final long value) {
+    switch (mode) {
+      case Min:
+        return Math.min(current, value);
+      case Max:
+        return Math.max(current, value);
+      default:
+        return current + value;
+    }
+  }
+
+  private static final int SERIALIZED_SIZE_BYTES = 9;
+  private static final int VALUE_LONG = 0;
+  private static final int MODE_BYTE = 8;
+
+  @Override
+  public byte[] toByteArray() {
+    final byte[] bytes = new byte[SERIALIZED_SIZE_BYTES];
+    final Memory mem = new NativeMemory(bytes);
+    mem.putLong(VALUE_LONG, value_);
+    mem.putByte(MODE_BYTE, (byte) mode_.ordinal());
+    return bytes;
+  }
+
+  /**
+   * Creates an instance of the LongSummary given a serialized representation
+   * @param mem Memory object with serialized LongSummary
+   * @return DeserializedResult object, which contains a LongSummary object and number of bytes
+   * read from the Memory
+   */
+  public static DeserializeResult<LongSummary> fromMemory(final Memory mem) {
+    return new DeserializeResult<LongSummary>(new LongSummary(mem.getLong(VALUE_LONG),
+        Mode.values()[mem.getByte(MODE_BYTE)]), SERIALIZED_SIZE_BYTES);
+  }
+
+}
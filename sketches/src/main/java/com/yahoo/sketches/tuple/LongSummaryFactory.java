@@ -0,0 +1,96 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.tuple.DoubleSummary.Mode;
+
+/**
+ * Factory for LongSummary. It supports three modes of operation of LongSummary:
+ * Sum, Min and Max. As a FixedSizeSummaryFactory it stores only the value of a LongSummary
+ * in a record of 8 bytes, since the mode is common to all summaries. Thus a DirectUpdatableSketch
+ * with this factory keeps its keys and long values in flat arrays in its Memory.
+ */
+public final class LongSummaryFactory implements FixedSizeSummaryFactory<Long, LongSummary> {
+
+  private final Mode summaryMode_;
+
+  /**
+   * Creates an instance of LongSummaryFactory with default mode
+   */
+  public LongSummaryFactory() {
+    summaryMode_ = Mode.Sum;
+  }
+
+  /**
+   * Creates an instance of LongSummaryFactory with a given mode
+   * @param summaryMode summary mode
+   */
+  public LongSummaryFactory(final Mode summaryMode) {
+    summaryMode_ = summaryMode;
+  }
+
+  @Override
+  public LongSummary newSummary() {
+    return new LongSummary(summaryMode_);
+  }
+
+  @Override
+  public LongSummarySetOperations getSummarySetOperations() {
+    return new LongSummarySetOperations(summaryMode_);
+  }
+
+  @Override
+  public int getSummarySizeBytes() {
+    return Long.BYTES;
+  }
+
+  @Override
+  public LongSummary readSummary(final Memory mem, final long offsetBytes) {
+    return new LongSummary(mem.getLong(offsetBytes), summaryMode_);
+  }
+
+  @Override
+  public void writeSummary(final LongSummary summary, final Memory mem, final long offsetBytes) {
+    mem.putLong(offsetBytes, summary.getValue());
+  }
+
+  @Override
+  public void updateSummary(final Long value, final boolean isNew, final Memory mem,
+      final long offsetBytes) {
+    final long current = isNew ? LongSummary.initialValue(summaryMode_) : mem.getLong(offsetBytes);
+    mem.putLong(offsetBytes, LongSummary.combine(summaryMode_, current, value.longValue()));
+  }
+
+  private static final int SERIALIZED_SIZE_BYTES = 1;
+  private static final int MODE_BYTE = 0;
+
+  @Override
+  public byte[] toByteArray() {
+    final byte[] bytes = new byte[SERIALIZED_SIZE_BYTES];
+    final Memory mem = new NativeMemory(bytes);
+    mem.putByte(MODE_BYTE, (byte) summaryMode_.ordinal());
+    return bytes;
+  }
+
+  /**
+   * Creates an instance of the LongSummaryFactory given a serialized representation
+   * @param mem Memory object with serialized LongSummaryFactory
+   * @return DeserializedResult object, which contains a LongSummaryFactory object and number of
+   * bytes read from the Memory
+   */
+  public static DeserializeResult<LongSummaryFactory> fromMemory(final Memory mem) {
+    return new DeserializeResult<LongSummaryFactory>(
+        new LongSummaryFactory(Mode.values()[mem.getByte(MODE_BYTE)]), SERIALIZED_SIZE_BYTES);
+  }
+
+  @Override
+  public DeserializeResult<LongSummary> summaryFromMemory(final Memory mem) {
+    return LongSummary.fromMemory(mem);
+  }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import com.yahoo.sketches.tuple.DoubleSummary.Mode;
+
+/**
+ * Methods for producing unions and intersections of two generic tuple sketches of type Long,
+ * where the Summary is of type LongSummary.
+ */
+public final class LongSummarySetOperations implements SummarySetOperations<LongSummary> {
+
+  private final Mode summaryMode_;
+
+  /**
+   * Creates an instance given a LongSummary update mode.
+   * @param summaryMode LongSummary update mode.
+   */
+  public LongSummarySetOperations(final Mode summaryMode) {
+    summaryMode_ = summaryMode;
+  }
+
+  @Override
+  public LongSummary union(final LongSummary a, final LongSummary b) {
+    final LongSummary result = new LongSummary(summaryMode_);
+    if (a != null) { result.update(a.getValue()); }
+    if (b != null) { result.update(b.getValue()); }
+    return result;
+  }
+
+  @Override
+  public LongSummary intersection(final LongSummary a, final LongSummary b) {
+    return union(a, b);
+  }
+}
@@ -10,6 +10,7 @@ import static com.yahoo.sketches.Util.REBUILD_THRESHOLD;
 import static com.yahoo.sketches.Util.RESIZE_THRESHOLD;
 import static com.yahoo.sketches.Util.ceilingPowerOf2;
 import static com.yahoo.sketches.Util.startingSubMultiple;
+import static com.yahoo.sketches.tuple.Util.DEFAULT_SEED_HASH;
 
 import java.lang.reflect.Array;
 import java.nio.ByteOrder;
@@ -30,6 +31,8 @@ import com.yahoo.sketches.SketchesArgumentException;
  */
 class QuickSelectSketch<S extends Summary> extends Sketch<S> {
   private static final byte serialVersionUID = 1;
+  // the same layout followed by the seed hash, written only if it is not DEFAULT_SEED_HASH
+  private static final byte SERIAL_VERSION_WITH_SEED_HASH = 2;
 
   private enum Flags { IS_BIG_ENDIAN, IS_IN_SAMPLING_MODE, IS_EMPTY, HAS_ENTRIES,
     IS_THETA_INCLUDED }
@@ -42,6 +45,7 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
   private final SummaryFactory<S> summaryFactory_;
   private final float samplingProbability_;
   private int rebuildThreshold_;
+  private short seedHash_ = DEFAULT_SEED_HASH;
 
   /**
    * This is to create an instance of a QuickSelectSketch with default resize factor.
@@ -127,9 +131,9 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
     final byte version = mem.getByte(offset++);
     final byte familyId = mem.getByte(offset++);
     SerializerDeserializer.validateFamily(familyId, preambleLongs);
-    if (version != serialVersionUID) {
-      throw new SketchesArgumentException(
-          "Serial version mismatch. Expected: " + serialVersionUID + ", actual: " + version);
+    if ((version != serialVersionUID) && (version != SERIAL_VERSION_WITH_SEED_HASH)) {
+      throw new SketchesArgumentException("Serial version mismatch. Expected: " + serialVersionUID
+          + " or " + SERIAL_VERSION_WITH_SEED_HASH + ", actual: " + version);
     }
     SerializerDeserializer.validateType(mem.getByte(offset++),
         SerializerDeserializer.SketchType.QuickSelectSketch);
@@ -141,6 +145,10 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
     nomEntries_ = 1 << mem.getByte(offset++);
     lgCurrentCapacity_ = mem.getByte(offset++);
     lgResizeFactor_ = mem.getByte(offset++);
+    if (version == SERIAL_VERSION_WITH_SEED_HASH) {
+      seedHash_ = mem.getShort(offset);
+      offset += Short.BYTES;
+    }
 
     final boolean isInSamplingMode = (flags & (1 << Flags.IS_IN_SAMPLING_MODE.ordinal())) > 0;
     samplingProbability_ = isInSamplingMode ? mem.getFloat(offset) : 1f;
@@ -236,6 +244,7 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
   // Adr:
   //      ||    7   |    6   |    5   |    4   |    3   |    2   |    1   |     0              |
   //  0   ||   RF   |  lgArr | lgNom  |  Flags | SkType | FamID  | SerVer |  Preamble_Longs    |
+  // followed by the 2-byte seed hash if SerVer is SERIAL_VERSION_WITH_SEED_HASH
   @SuppressWarnings("null")
   @Override
   public byte[] toByteArray() {
@@ -262,6 +271,10 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
       + Byte.BYTES // log2(nomEntries)
       + Byte.BYTES // log2(currentCapacity)
       + Byte.BYTES; // log2(resizeFactor)
+    final boolean hasSeedHash = seedHash_ != DEFAULT_SEED_HASH;
+    if (hasSeedHash) {
+      sizeBytes += Short.BYTES; // seedHash
+    }
     if (isInSamplingMode()) {
       sizeBytes += Float.BYTES; // samplingProbability
     }
@@ -278,7 +291,7 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
     final Memory mem = new NativeMemory(bytes);
     int offset = 0;
     mem.putByte(offset++, PREAMBLE_LONGS);
-    mem.putByte(offset++, serialVersionUID);
+    mem.putByte(offset++, hasSeedHash ? SERIAL_VERSION_WITH_SEED_HASH : serialVersionUID);
     mem.putByte(offset++, (byte) Family.TUPLE.getID());
     mem.putByte(offset++, (byte) SerializerDeserializer.SketchType.QuickSelectSketch.ordinal());
     final boolean isBigEndian = ByteOrder.nativeOrder().equals(ByteOrder.BIG_ENDIAN);
@@ -292,6 +305,10 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
     mem.putByte(offset++, (byte) Integer.numberOfTrailingZeros(nomEntries_));
     mem.putByte(offset++, (byte) lgCurrentCapacity_);
     mem.putByte(offset++, (byte) lgResizeFactor_);
+    if (hasSeedHash) {
+      mem.putShort(offset, seedHash_);
+      offset += Short.BYTES;
+    }
     if (samplingProbability_ < 1f) {
       mem.putFloat(offset, samplingProbability_);
       offset += Float.BYTES;
@@ -351,6 +368,19 @@ class QuickSelectSketch<S extends Summary> extends Sketch<S> {
     this.isEmpty_ = false;
   }
 
+  short getSeedHash() {
+    return seedHash_;
+  }
+
+  /**
+   * Sets the seed hash that identifies the seed and the hash function of the keys of this sketch.
+   * It is serialized only if it is not the seed hash of the default seed and hash function.
+   * @param seedHash the seed hash
+   */
+  void setSeedHash(final short seedHash) {
+    seedHash_ = seedHash;
+  }
+
   SummaryFactory<S> getSummaryFactory() {
     return summaryFactory_;
   }
@@ -9,8 +9,8 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.yahoo.memory.Memory;
 import com.yahoo.memory.MemoryRegion;
@@ -20,11 +20,16 @@ import com.yahoo.sketches.SketchesArgumentException;
 
 final class SerializerDeserializer {
   static enum SketchType { QuickSelectSketch, CompactSketch, ArrayOfDoublesQuickSelectSketch,
-    ArrayOfDoublesCompactSketch }
+    ArrayOfDoublesCompactSketch, DirectQuickSelectSketch }
 
   static final int TYPE_BYTE_OFFSET = 3;
 
-  private static final Map<String, Method> deserializeMethodCache = new HashMap<String, Method>();
+  // marks the serialized form of an object of a registered type, instead of a class name length
+  static final byte REGISTERED_TYPE = 0;
+  static final int REGISTERED_TYPE_HEADER_BYTES = 2;
+
+  private static final ConcurrentMap<String, SummaryTypeRegistry.Deserializer<?>> deserializerCache =
+      new ConcurrentHashMap<String, SummaryTypeRegistry.Deserializer<?>>();
 
   static void validateFamily(final byte familyId, final byte preambleLongs) {
     final Family family = Family.idToFamily(familyId);
@@ -52,27 +57,40 @@ final class SerializerDeserializer {
     return getSketchType(sketchTypeByte);
   }
 
+  // Serialized form of an object:
+  // registered type:   | 0 | type ID (byte) | object bytes |
+  // unregistered type: | class name length (byte) | class name (UTF-8) | object bytes |
   static byte[] toByteArray(final Object object) {
-    try {
-      final String className = object.getClass().getName();
-      final byte[] objectBytes =
-          ((byte[]) object.getClass().getMethod("toByteArray", (Class<?>[])null).invoke(object));
-      final byte[] bytes = new byte[1 + className.length() + objectBytes.length];
-      final Memory mem = new NativeMemory(bytes);
-      int offset = 0;
-      mem.putByte(offset++, (byte)className.length());
-      mem.putByteArray(offset, className.getBytes(UTF_8), 0, className.length());
-      offset += className.length();
-      mem.putByteArray(offset, objectBytes, 0, objectBytes.length);
+    final byte[] objectBytes = objectToByteArray(object);
+    final int typeId = SummaryTypeRegistry.getTypeId(object.getClass());
+    if (typeId > 0) {
+      final byte[] bytes = new byte[REGISTERED_TYPE_HEADER_BYTES + objectBytes.length];
+      bytes[0] = REGISTERED_TYPE;
+      bytes[1] = (byte) typeId;
+      System.arraycopy(objectBytes, 0, bytes, REGISTERED_TYPE_HEADER_BYTES, objectBytes.length);
       return bytes;
-    } catch (final NoSuchMethodException | SecurityException | IllegalAccessException
-        | SketchesArgumentException | InvocationTargetException e) {
-      throw new SketchesArgumentException("Failed to serialize given object: " + e);
     }
+    final String className = object.getClass().getName();
+    final byte[] bytes = new byte[1 + className.length() + objectBytes.length];
+    final Memory mem = new NativeMemory(bytes);
+    int offset = 0;
+    mem.putByte(offset++, (byte)className.length());
+    mem.putByteArray(offset, className.getBytes(UTF_8), 0, className.length());
+    offset += className.length();
+    mem.putByteArray(offset, objectBytes, 0, objectBytes.length);
+    return bytes;
   }
 
   static <T> DeserializeResult<T> deserializeFromMemory(final Memory mem, final int offset) {
     final int classNameLength = mem.getByte(offset);
+    if (classNameLength == REGISTERED_TYPE) {
+      final SummaryTypeRegistry.Deserializer<T> deserializer =
+          getDeserializer(mem.getByte(offset + 1));
+      final DeserializeResult<T> result =
+          deserializeFromMemory(mem, offset + REGISTERED_TYPE_HEADER_BYTES, deserializer);
+      return new DeserializeResult<T>(result.getObject(),
+          result.getSize() + REGISTERED_TYPE_HEADER_BYTES);
+    }
     final byte[] classNameBuffer = new byte[classNameLength];
     mem.getByteArray(offset + 1, classNameBuffer, 0, classNameLength);
     final String className = new String(classNameBuffer, UTF_8);
@@ -81,20 +99,85 @@ final class SerializerDeserializer {
     return new DeserializeResult<T>(result.getObject(), result.getSize() + classNameLength + 1);
   }
 
-  @SuppressWarnings("unchecked")
   static <T> DeserializeResult<T>
       deserializeFromMemory(final Memory mem, final int offset, final String className) {
+    final SummaryTypeRegistry.Deserializer<T> deserializer = getDeserializer(className);
+    return deserializeFromMemory(mem, offset, deserializer);
+  }
+
+  static <T> DeserializeResult<T> deserializeFromMemory(final Memory mem, final int offset,
+      final SummaryTypeRegistry.Deserializer<T> deserializer) {
+    return deserializer.fromMemory(new MemoryRegion(mem, offset, mem.getCapacity() - offset));
+  }
+
+  @SuppressWarnings("unchecked")
+  static <T> SummaryTypeRegistry.Deserializer<T> getDeserializer(final int typeId) {
+    return (SummaryTypeRegistry.Deserializer<T>) SummaryTypeRegistry.getDeserializer(typeId);
+  }
+
+  /**
+   * Returns the Deserializer of the given class name. This is the Deserializer of the registered
+   * type if the class is registered, otherwise one that invokes the static fromMemory method
+   * of the class by reflection.
+   * @param <T> the type of the class
+   * @param className the name of the class
+   * @return the Deserializer of the given class name
+   */
+  @SuppressWarnings("unchecked")
+  static <T> SummaryTypeRegistry.Deserializer<T> getDeserializer(final String className) {
+    SummaryTypeRegistry.Deserializer<?> deserializer = deserializerCache.get(className);
+    if (deserializer == null) {
+      final Class<?> type;
+      try {
+        type = Class.forName(className);
+      } catch (final ClassNotFoundException | LinkageError e) {
+        throw new SketchesArgumentException("Failed to deserialize class " + className + " " + e);
+      }
+      final int typeId = SummaryTypeRegistry.getTypeId(type);
+      deserializer = typeId > 0
+          ? SummaryTypeRegistry.getDeserializer(typeId) : new ReflectiveDeserializer<T>(type);
+      deserializerCache.putIfAbsent(className, deserializer);
+    }
+    return (SummaryTypeRegistry.Deserializer<T>) deserializer;
+  }
+
+  private static byte[] objectToByteArray(final Object object) {
+    if (object instanceof SummaryFactory) {
+      return ((SummaryFactory<?>) object).toByteArray();
+    }
+    if (object instanceof Summary) {
+      return ((Summary) object).toByteArray();
+    }
     try {
-      Method method = deserializeMethodCache.get(className);
-      if (method == null) {
-          method = Class.forName(className).getMethod("fromMemory", Memory.class);
-          deserializeMethodCache.put(className, method);
+      return (byte[]) object.getClass().getMethod("toByteArray", (Class<?>[])null).invoke(object);
+    } catch (final NoSuchMethodException | SecurityException | IllegalAccessException
+        | SketchesArgumentException | InvocationTargetException | ClassCastException e) {
+      throw new SketchesArgumentException("Failed to serialize given object: " + e);
+    }
+  }
+
+  private static final class ReflectiveDeserializer<T> implements SummaryTypeRegistry.Deserializer<T> {
+    private final String className_;
+    private final Method method_;
+
+    ReflectiveDeserializer(final Class<?> type) {
+      className_ = type.getName();
+      try {
+        method_ = type.getMethod("fromMemory", Memory.class);
+      } catch (final NoSuchMethodException | SecurityException e) {
+        throw new SketchesArgumentException("Failed to deserialize class " + className_ + " " + e);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public DeserializeResult<T> fromMemory(final Memory mem) {
+      try {
+        return (DeserializeResult<T>) method_.invoke(null, mem);
+      } catch (final IllegalAccessException | SketchesArgumentException
+          | InvocationTargetException e) {
+        throw new SketchesArgumentException("Failed to deserialize class " + className_ + " " + e);
       }
-      return (DeserializeResult<T>)
-          method.invoke(null, new MemoryRegion(mem, offset, mem.getCapacity() - offset));
-    } catch (final IllegalAccessException | SketchesArgumentException | InvocationTargetException
-        | NoSuchMethodException | SecurityException | ClassNotFoundException e) {
-      throw new SketchesArgumentException("Failed to deserialize class " + className + " " + e);
     }
   }
 
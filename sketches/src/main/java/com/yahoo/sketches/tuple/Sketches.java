@@ -6,6 +6,7 @@
 package com.yahoo.sketches.tuple;
 
 import com.yahoo.memory.Memory;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * Convenient static methods to instantiate generic tuple sketches.
@@ -35,7 +36,8 @@ public final class Sketches {
   }
 
   /**
-   * Instantiate UpdatableSketch from a given Memory
+   * Instantiate UpdatableSketch from a given Memory. The sketch must have been built with the
+   * default hash function, which is checked against the seed hash of the serialized form.
    * @param <U> Type of update value
    * @param <S> Type of Summary
    * @param mem Memory object representing a Sketch
@@ -46,4 +48,50 @@ public final class Sketches {
     return new UpdatableSketch<U, S>(mem);
   }
 
+  /**
+   * Instantiate UpdatableSketch, which was built with the given hash function, from a given Memory.
+   * The resulting sketch continues to hash its keys with the given hash function, which is checked
+   * against the seed hash of the serialized form.
+   * @param <U> Type of update value
+   * @param <S> Type of Summary
+   * @param mem Memory object representing a Sketch
+   * @param hashFunction the hash function the sketch was built with
+   * @return Sketch created from its Memory representation
+   */
+  public static <U, S extends UpdatableSummary<U>> UpdatableSketch<U, S>
+      heapifyUpdatableSketch(final Memory mem, final HashFunction hashFunction) {
+    return new UpdatableSketch<U, S>(mem, hashFunction);
+  }
+
+  /**
+   * Wrap the given Memory as a DirectUpdatableSketch. The sketch must have been built with the
+   * default hash function, which is checked against the seed hash in the Memory.
+   * @param <U> Type of update value
+   * @param <S> Type of Summary
+   * @param mem Memory object representing a DirectUpdatableSketch
+   * @param summaryFactory the FixedSizeSummaryFactory of the summaries
+   * @return DirectUpdatableSketch that keeps its data in the given Memory
+   */
+  public static <U, S extends UpdatableSummary<U>> DirectUpdatableSketch<U, S>
+      wrapUpdatableSketch(final Memory mem, final FixedSizeSummaryFactory<U, S> summaryFactory) {
+    return new DirectUpdatableSketch<U, S>(mem, summaryFactory, HashFunction.MURMUR3);
+  }
+
+  /**
+   * Wrap the given Memory as a DirectUpdatableSketch, which was built with the given hash function.
+   * The resulting sketch continues to hash its keys with the given hash function, which is checked
+   * against the seed hash in the Memory.
+   * @param <U> Type of update value
+   * @param <S> Type of Summary
+   * @param mem Memory object representing a DirectUpdatableSketch
+   * @param summaryFactory the FixedSizeSummaryFactory of the summaries
+   * @param hashFunction the hash function the sketch was built with
+   * @return DirectUpdatableSketch that keeps its data in the given Memory
+   */
+  public static <U, S extends UpdatableSummary<U>> DirectUpdatableSketch<U, S>
+      wrapUpdatableSketch(final Memory mem, final FixedSizeSummaryFactory<U, S> summaryFactory,
+          final HashFunction hashFunction) {
+    return new DirectUpdatableSketch<U, S>(mem, summaryFactory, hashFunction);
+  }
+
 }
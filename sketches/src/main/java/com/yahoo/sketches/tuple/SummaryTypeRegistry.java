@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+/**
+ * Registry of the types of Summary and SummaryFactory, which are serialized with a numeric type ID
+ * in place of their class name. A registered type is deserialized by a direct call of its
+ * Deserializer instead of looking up and invoking its static fromMemory method by reflection.
+ *
+ * <p>The types of this library are registered with IDs below {@link #MIN_USER_TYPE_ID}.
+ * A user-defined type can be registered with an ID from {@link #MIN_USER_TYPE_ID} to
+ * {@link #MAX_TYPE_ID}, which must be the same in every process that reads the serialized sketches.
+ * It must be registered before sketches with summaries of this type are serialized or deserialized.
+ * Types that are not registered are serialized with their class name as before, and serialized
+ * sketches with class names continue to be readable.</p>
+ */
+public final class SummaryTypeRegistry {
+
+  /**
+   * Deserializer of a registered type
+   * @param <T> the registered type
+   */
+  public interface Deserializer<T> {
+
+    /**
+     * This is to create an instance given a serialized representation
+     * @param mem Memory object with the serialized representation at offset zero
+     * @return DeserializeResult object, which contains the object and number of bytes read
+     * from the Memory
+     */
+    public DeserializeResult<T> fromMemory(Memory mem);
+
+  }
+
+  /**
+   * The smallest type ID of a user-defined type
+   */
+  public static final int MIN_USER_TYPE_ID = 64;
+
+  /**
+   * The largest type ID
+   */
+  public static final int MAX_TYPE_ID = 127;
+
+  private static final ConcurrentMap<Class<?>, Integer> typeIds_ =
+      new ConcurrentHashMap<Class<?>, Integer>();
+  private static final AtomicReferenceArray<Deserializer<?>> deserializers_ =
+      new AtomicReferenceArray<Deserializer<?>>(MAX_TYPE_ID + 1);
+
+  static {
+    registerType(1, DoubleSummary.class, new Deserializer<DoubleSummary>() {
+      @Override
+      public DeserializeResult<DoubleSummary> fromMemory(final Memory mem) {
+        return DoubleSummary.fromMemory(mem);
+      }
+    });
+    registerType(2, DoubleSummaryFactory.class, new Deserializer<DoubleSummaryFactory>() {
+      @Override
+      public DeserializeResult<DoubleSummaryFactory> fromMemory(final Memory mem) {
+        return DoubleSummaryFactory.fromMemory(mem);
+      }
+    });
+    registerType(3, LongSummary.class, new Deserializer<LongSummary>() {
+      @Override
+      public DeserializeResult<LongSummary> fromMemory(final Memory mem) {
+        return LongSummary.fromMemory(mem);
+      }
+    });
+    registerType(4, LongSummaryFactory.class, new Deserializer<LongSummaryFactory>() {
+      @Override
+      public DeserializeResult<LongSummaryFactory> fromMemory(final Memory mem) {
+        return LongSummaryFactory.fromMemory(mem);
+      }
+    });
+  }
+
+  private SummaryTypeRegistry() {}
+
+  /**
+   * Registers a user-defined type of Summary or SummaryFactory. Registering the same type with the
+   * same ID again has no effect.
+   * @param <T> the type to register
+   * @param typeId the type ID from MIN_USER_TYPE_ID to MAX_TYPE_ID
+   * @param type the class of the type, which must be the class of the serialized objects
+   * @param deserializer the Deserializer of the type
+   */
+  public static <T> void register(final int typeId, final Class<T> type,
+      final Deserializer<T> deserializer) {
+    if ((typeId < MIN_USER_TYPE_ID) || (typeId > MAX_TYPE_ID)) {
+      throw new SketchesArgumentException("Type ID must be from " + MIN_USER_TYPE_ID + " to "
+          + MAX_TYPE_ID + ": " + typeId);
+    }
+    if ((type == null) || (deserializer == null)) {
+      throw new SketchesArgumentException("Type and deserializer must not be null.");
+    }
+    registerType(typeId, type, deserializer);
+  }
+
+  /**
+   * Returns the type ID of the given class
+   * @param type the given class
+   * @return the type ID or zero if the class is not registered
+   */
+  public static int getTypeId(final Class<?> type) {
+    final Integer typeId = typeIds_.get(type);
+    return (typeId == null) ? 0 : typeId;
+  }
+
+  /**
+   * Returns the Deserializer of the given type ID
+   * @param typeId the given type ID
+   * @return the Deserializer of the given type ID
+   */
+  static Deserializer<?> getDeserializer(final int typeId) {
+    final Deserializer<?> deserializer =
+        ((typeId > 0) && (typeId <= MAX_TYPE_ID)) ? deserializers_.get(typeId) : null;
+    if (deserializer == null) {
+      throw new SketchesArgumentException("Unregistered type ID " + typeId);
+    }
+    return deserializer;
+  }
+
+  private static synchronized void registerType(final int typeId, final Class<?> type,
+      final Deserializer<?> deserializer) {
+    final Integer currentId = typeIds_.get(type);
+    final Deserializer<?> current = deserializers_.get(typeId);
+    if ((currentId != null) && (currentId == typeId)) { return; }
+    if ((currentId != null) || (current != null)) {
+      throw new SketchesArgumentException("Type ID " + typeId + " or " + type.getName()
+          + " is already registered");
+    }
+    deserializers_.set(typeId, deserializer);
+    typeIds_.put(type, typeId);
+  }
+
+}
@@ -6,9 +6,10 @@
 package com.yahoo.sketches.tuple;
 
 import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static com.yahoo.sketches.tuple.Util.computeSeedHash;
 
 import com.yahoo.memory.Memory;
-import com.yahoo.sketches.hash.MurmurHash3;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * An extension of QuickSelectSketch, which can be updated with many types of keys.
@@ -25,6 +26,8 @@ import com.yahoo.sketches.hash.MurmurHash3;
  * @param <S> Type of the UpdatableSummary&lt;U&gt;
  */
 public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSelectSketch<S> {
+  private final HashFunction hashFunction_;
+  private final long seed_;
 
   /**
    * This is to create an instance of an UpdatableQuickSelectSketch.
@@ -40,10 +43,16 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param samplingProbability
    * <a href="{@docRoot}/resources/dictionary.html#p">See Sampling Probability</a>
    * @param summaryFactory An instance of a SummaryFactory.
+   * @param hashFunction the hash function for the keys. The keys are hashed with the
+   * {@link HashFunction#getIdentitySeed(long) identity seed} of the hash function for the
+   * <a href="{@docRoot}/resources/dictionary.html#defaultUpdateSeed">Default Update Seed</a>.
    */
   UpdatableSketch(final int nomEntries, final int lgResizeFactor, final float samplingProbability,
-      final SummaryFactory<S> summaryFactory) {
+      final SummaryFactory<S> summaryFactory, final HashFunction hashFunction) {
     super(nomEntries, lgResizeFactor, samplingProbability, summaryFactory);
+    hashFunction_ = hashFunction;
+    seed_ = hashFunction.getIdentitySeed(DEFAULT_UPDATE_SEED);
+    setSeedHash(computeSeedHash(seed_));
   }
 
   /**
@@ -51,7 +60,20 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param mem Memory object with serialized UpdatableQukckSelectSketch
    */
   UpdatableSketch(final Memory mem) {
+    this(mem, HashFunction.MURMUR3);
+  }
+
+  /**
+   * This is to create an instance of a sketch given a serialized form, which was built with the
+   * given hash function. The seed hash of the serialized form must match the hash function.
+   * @param mem Memory object with serialized UpdatableQukckSelectSketch
+   * @param hashFunction the hash function the sketch was built with
+   */
+  UpdatableSketch(final Memory mem, final HashFunction hashFunction) {
     super(mem);
+    hashFunction_ = hashFunction;
+    seed_ = hashFunction.getIdentitySeed(DEFAULT_UPDATE_SEED);
+    Util.checkSeedHashes(getSeedHash(), computeSeedHash(seed_));
   }
 
   /**
@@ -62,7 +84,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final long key, final U value) {
-  update(new long[] {key}, value);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
   }
 
   /**
@@ -73,7 +95,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final double key, final U value) {
-    update(Util.doubleToLongArray(key), value);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
   }
 
   /**
@@ -84,7 +106,8 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    * @param value The given U value
    */
   public void update(final String key, final U value) {
-    update(Util.stringToByteArray(key), value);
+    if (key == null || key.isEmpty()) { return; }
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
   }
 
   /**
@@ -96,7 +119,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final byte[] key, final U value) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
   }
 
   /**
@@ -108,7 +131,7 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final int[] key, final U value) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
   }
 
   /**
@@ -120,7 +143,15 @@ public class UpdatableSketch<U, S extends UpdatableSummary<U>> extends QuickSele
    */
   public void update(final long[] key, final U value) {
     if (key == null || key.length == 0) { return; }
-    insertOrIgnore(MurmurHash3.hash(key, DEFAULT_UPDATE_SEED)[0] >>> 1, value);
+    insertOrIgnore(hashFunction_.hash64(key, seed_) >>> 1, value);
+  }
+
+  /**
+   * Returns the hash function that this sketch applies to its keys
+   * @return the hash function of this sketch
+   */
+  public HashFunction getHashFunction() {
+    return hashFunction_;
   }
 
   private void insertOrIgnore(final long key, final U value) {
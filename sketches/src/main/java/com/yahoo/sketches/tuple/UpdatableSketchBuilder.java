@@ -7,8 +7,10 @@ package com.yahoo.sketches.tuple;
 
 import static com.yahoo.sketches.Util.DEFAULT_NOMINAL_ENTRIES;
 
+import com.yahoo.memory.Memory;
 import com.yahoo.sketches.ResizeFactor;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
 
 /**
  * For building a new generic tuple UpdatableSketch
@@ -21,6 +23,7 @@ public class UpdatableSketchBuilder<U, S extends UpdatableSummary<U>> {
   private ResizeFactor resizeFactor_;
   private float samplingProbability_;
   private final SummaryFactory<S> summaryFactory_;
+  private HashFunction hashFunction_;
 
   private static final float DEFAULT_SAMPLING_PROBABILITY = 1;
   private static final ResizeFactor DEFAULT_RESIZE_FACTOR = ResizeFactor.X8;
@@ -34,6 +37,7 @@ public class UpdatableSketchBuilder<U, S extends UpdatableSummary<U>> {
     resizeFactor_ = DEFAULT_RESIZE_FACTOR;
     samplingProbability_ = DEFAULT_SAMPLING_PROBABILITY;
     summaryFactory_ = summaryFactory;
+    hashFunction_ = HashFunction.MURMUR3;
   }
 
   /**
@@ -73,13 +77,52 @@ public class UpdatableSketchBuilder<U, S extends UpdatableSummary<U>> {
     return this;
   }
 
+  /**
+   * Sets the hash function that the sketch applies to its keys.
+   * Sketches built with different hash functions must not be combined. The serialized form of a
+   * sketch built with a hash function other than {@link HashFunction#MURMUR3} records its seed
+   * hash, and it must be heapified with
+   * {@link Sketches#heapifyUpdatableSketch(com.yahoo.memory.Memory, HashFunction)}, which checks
+   * it. Older readers reject such a serialized form.
+   * @param hashFunction the hash function, which must not be null
+   * @return this UpdatableSketchBuilder
+   */
+  public UpdatableSketchBuilder<U, S> setHashFunction(final HashFunction hashFunction) {
+    if (hashFunction == null) {
+      throw new SketchesArgumentException("The hash function must not be null.");
+    }
+    hashFunction_ = hashFunction;
+    return this;
+  }
+
   /**
    * Returns an UpdatableSketch with the current configuration of this Builder.
    * @return an UpdatableSketch
    */
   public UpdatableSketch<U, S> build() {
-    return new UpdatableSketch<U, S>(nomEntries_, resizeFactor_.lg(), samplingProbability_, 
-        summaryFactory_);
+    return new UpdatableSketch<U, S>(nomEntries_, resizeFactor_.lg(), samplingProbability_,
+        summaryFactory_, hashFunction_);
+  }
+
+  /**
+   * Returns a DirectUpdatableSketch with the current configuration of this Builder, which keeps
+   * its data in the given Memory. This requires the SummaryFactory to be a
+   * FixedSizeSummaryFactory.
+   * @param dstMem <a href="{@docRoot}/resources/dictionary.html#mem">See Memory</a>.
+   * The maximum size required is given by {@link DirectUpdatableSketch#getMaxBytes(int, int)}.
+   * @return a DirectUpdatableSketch
+   */
+  public DirectUpdatableSketch<U, S> buildDirect(final Memory dstMem) {
+    if (!(summaryFactory_ instanceof FixedSizeSummaryFactory)) {
+      throw new SketchesArgumentException(
+          "A direct sketch requires a FixedSizeSummaryFactory, got " + summaryFactory_.getClass());
+    }
+    // the factory was given for summaries of type S, so it is a fixed size factory of S
+    @SuppressWarnings("unchecked")
+    final FixedSizeSummaryFactory<U, S> summaryFactory =
+        (FixedSizeSummaryFactory<U, S>) summaryFactory_;
+    return new DirectUpdatableSketch<U, S>(nomEntries_, resizeFactor_.lg(), samplingProbability_,
+        summaryFactory, hashFunction_, dstMem);
   }
 
 }
@@ -5,23 +5,19 @@
 
 package com.yahoo.sketches.tuple;
 
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.yahoo.sketches.SketchesArgumentException;
 
 final class Util {
 
-  static final long[] doubleToLongArray(final double value) {
-    final double d = (value == 0.0) ? 0.0 : value; // canonicalize -0.0, 0.0
-    final long[] array = { Double.doubleToLongBits(d) }; // canonicalize all NaN forms
-    return array;
-  }
-
-  static final byte[] stringToByteArray(final String value) {
-    if (value == null || value.isEmpty()) { return null; }
-    return value.getBytes(UTF_8);
-  }
+  /**
+   * The seed hash of the <a href="{@docRoot}/resources/dictionary.html#defaultUpdateSeed">Default
+   * Update Seed</a>, which is the seed hash of generic tuple sketches that hash their keys with
+   * {@link com.yahoo.sketches.hash.HashFunction#MURMUR3}.
+   */
+  static final short DEFAULT_SEED_HASH = computeSeedHash(DEFAULT_UPDATE_SEED);
 
   /**
    * Computes and checks the 16-bit seed hash from the given long seed.
@@ -10,6 +10,7 @@ import static com.yahoo.sketches.HashOperations.continueCondition;
 import static com.yahoo.sketches.HashOperations.hashArrayInsert;
 import static com.yahoo.sketches.HashOperations.hashInsertOnly;
 import static com.yahoo.sketches.HashOperations.hashSearch;
+import static com.yahoo.sketches.HashOperations.hashSearchOrInsertAtomic;
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -103,6 +104,20 @@ public class HashOperationsTest {
     assertEquals(table[2], 1L);
   }
 
+  @Test
+  public void testHashSearchOrInsertAtomic() {
+    long[] table = new long[32];
+    table[1] = 1;
+    Memory mem = new NativeMemory(table);
+    int index = hashSearchOrInsertAtomic(mem, 5, 1, 0);
+    assertEquals(index, 1); //found
+    index = hashSearchOrInsertAtomic(mem, 5, 33, 0); //same start slot, must stride
+    assertTrue(index < 0);
+    assertEquals(table[~index], 33L);
+    assertEquals(hashSearchOrInsertAtomic(mem, 5, 33, 0), ~index);
+    assertEquals(hashSearch(mem, 5, 33, 0), ~index);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.hash;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.theta.CompactSketch;
+import com.yahoo.sketches.theta.HashIterator;
+import com.yahoo.sketches.theta.SetOperation;
+import com.yahoo.sketches.theta.Sketch;
+import com.yahoo.sketches.theta.Union;
+import com.yahoo.sketches.theta.UpdateSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesSetOperationBuilder;
+import com.yahoo.sketches.tuple.ArrayOfDoublesSketches;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUnion;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketchBuilder;
+import com.yahoo.sketches.tuple.DirectUpdatableSketch;
+import com.yahoo.sketches.tuple.DoubleSummary;
+import com.yahoo.sketches.tuple.DoubleSummaryFactory;
+import com.yahoo.sketches.tuple.Sketches;
+import com.yahoo.sketches.tuple.UpdatableSketch;
+import com.yahoo.sketches.tuple.UpdatableSketchBuilder;
+
+public class HashFunctionTest {
+
+  @Test
+  public void checkMurmur3IsUnchanged() {
+    final HashFunction fn = HashFunction.MURMUR3;
+    final long seed = DEFAULT_UPDATE_SEED;
+    assertEquals(fn.getIdentitySeed(seed), seed);
+    assertEquals(fn.hash64(123L, seed), MurmurHash3.hash64(123L, seed));
+    assertEquals(fn.hash64(-0.0, seed), MurmurHash3.hash64(0.0, seed));
+    assertEquals(fn.hash64("abc", seed), MurmurHash3.hash64("abc", seed));
+    assertEquals(fn.hash64(new byte[] {1, 2, 3}, seed), MurmurHash3.hash(new byte[] {1, 2, 3}, seed)[0]);
+    assertEquals(fn.hash64(new char[] {'a'}, seed), MurmurHash3.hash(new char[] {'a'}, seed)[0]);
+    assertEquals(fn.hash64(new int[] {1, 2}, seed), MurmurHash3.hash(new int[] {1, 2}, seed)[0]);
+    assertEquals(fn.hash64(new long[] {1, 2}, seed), MurmurHash3.hash(new long[] {1, 2}, seed)[0]);
+
+    final UpdateSketch plain = UpdateSketch.builder().build(512);
+    final UpdateSketch murmur = UpdateSketch.builder().setHashFunction(fn).build(512);
+    for (int i = 0; i < 10000; i++) {
+      plain.update(i);
+      murmur.update(i);
+    }
+    assertEquals(murmur.toByteArray(), plain.toByteArray());
+    assertEquals(Sketch.heapify(new NativeMemory(murmur.toByteArray())).getEstimate(), plain.getEstimate());
+  }
+
+  @Test
+  public void checkLongMix() {
+    final HashFunction fn = HashFunction.LONG_MIX;
+    final long seed = fn.getIdentitySeed(DEFAULT_UPDATE_SEED);
+    assertNotEquals(seed, DEFAULT_UPDATE_SEED);
+    assertEquals(fn.getName(), "LongMix");
+    assertEquals(fn.hash64(0.0, seed), fn.hash64(-0.0, seed));
+    assertEquals(fn.hash64(Double.NaN, seed), fn.hash64(Double.longBitsToDouble(0x7ff8000000000001L), seed));
+    final Set<Long> hashes = new HashSet<>();
+    for (long i = 0; i < 10000; i++) {
+      hashes.add(fn.hash64(i, seed));
+    }
+    assertEquals(hashes.size(), 10000);
+  }
+
+  @Test
+  public void checkThetaWithLongMix() {
+    final int k = 4096;
+    final HashFunction fn = HashFunction.LONG_MIX;
+    final UpdateSketch sk1 = UpdateSketch.builder().setHashFunction(fn).build(k);
+    final UpdateSketch sk2 = UpdateSketch.builder().setHashFunction(fn).build(k);
+    final long[] values = new long[20000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = MurmurHash3.hash64(i, 0L); //pre-hashed items
+      sk1.update(values[i]);
+    }
+    sk2.update(values, 0, values.length);
+    assertEquals(sk1.getHashFunction(), fn);
+    assertEquals(sk2.compact(true, null).toByteArray(), sk1.compact(true, null).toByteArray());
+    assertEquals(sk1.getEstimate(), 20000, 20000 * 0.05);
+
+    final Union union = SetOperation.builder().setHashFunction(fn).buildUnion(k);
+    union.update(sk1);
+    final double estimate = union.getResult().getEstimate();
+    union.update(values[0]); //already present
+    assertEquals(union.getResult().getEstimate(), estimate);
+
+    //heapify and wrap continue with the same hash function
+    final byte[] bytes = sk1.toByteArray();
+    final UpdateSketch heapified = UpdateSketch.heapify(new NativeMemory(bytes), DEFAULT_UPDATE_SEED, fn);
+    final UpdateSketch wrapped = UpdateSketch.wrap(new NativeMemory(bytes.clone()), DEFAULT_UPDATE_SEED, fn);
+    assertEquals(heapified.getHashFunction(), fn);
+    assertEquals(wrapped.getHashFunction(), fn);
+    for (int i = 0; i < 1000; i++) {
+      heapified.update(values[i]);
+      wrapped.update(values[i]);
+    }
+    assertEquals(heapified.getEstimate(), sk1.getEstimate());
+    assertEquals(wrapped.getEstimate(), sk1.getEstimate());
+
+    final Memory unionMem = new NativeMemory(new byte[SetOperation.getMaxUnionBytes(k)]);
+    final Union direct = SetOperation.builder().setHashFunction(fn).initMemory(unionMem).buildUnion(k);
+    direct.update(values[0]);
+    final Union rewrapped = (Union) SetOperation.wrap(unionMem, DEFAULT_UPDATE_SEED, fn);
+    rewrapped.update(values[0]);
+    assertEquals(rewrapped.getResult().getEstimate(), 1.0);
+  }
+
+  @Test
+  public void checkConcurrentWithLongMix() {
+    final HashFunction fn = HashFunction.LONG_MIX;
+    final UpdateSketch expected = UpdateSketch.builder().setHashFunction(fn).build(4096);
+    final UpdateSketch shared = UpdateSketch.builder().setHashFunction(fn).buildShared();
+    final UpdateSketch local = UpdateSketch.builder().setHashFunction(fn).buildLocal(shared);
+    assertEquals(local.getHashFunction(), fn);
+    for (int i = 0; i < 100; i++) {
+      expected.update(i);
+      local.update(i);
+    }
+    local.rebuild(); //flushes the local buffer
+    final Union union = SetOperation.builder().setHashFunction(fn).buildUnion();
+    union.update(expected);
+    union.update(shared.compact(true, null));
+    assertEquals(union.getResult().getEstimate(), 100.0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkUnionRejectsOtherHashFunction() {
+    final UpdateSketch sk = UpdateSketch.builder().setHashFunction(HashFunction.LONG_MIX).build();
+    sk.update(1L);
+    SetOperation.builder().buildUnion().update(sk);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkHeapifyRejectsOtherHashFunction() {
+    final UpdateSketch sk = UpdateSketch.builder().setHashFunction(HashFunction.LONG_MIX).build();
+    sk.update(1L);
+    Sketch.heapify(new NativeMemory(sk.toByteArray()));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkCompactRejectsOtherHashFunction() {
+    final UpdateSketch sk = UpdateSketch.builder().setHashFunction(HashFunction.LONG_MIX).build();
+    sk.update(1L);
+    final CompactSketch csk = sk.compact(true, null);
+    SetOperation.builder().buildIntersection().update(csk);
+  }
+
+  @Test
+  public void checkCustomHashFunction() {
+    final HashFunction fn = new HashFunction("Identity") {
+      @Override
+      public long hash64(final long datum, final long seed) {
+        return datum;
+      }
+    };
+    assertNotEquals(fn.getIdentitySeed(DEFAULT_UPDATE_SEED),
+        HashFunction.LONG_MIX.getIdentitySeed(DEFAULT_UPDATE_SEED));
+    final UpdateSketch sk = UpdateSketch.builder().setHashFunction(fn).build();
+    sk.update(42L << 1);
+    final HashIterator it = sk.iterator();
+    assertTrue(it.next());
+    assertEquals(it.get(), 42L);
+    assertFalse(it.next());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullName() {
+    new HashFunction(null) {
+      @Override
+      public long hash64(final long datum, final long seed) {
+        return datum;
+      }
+    };
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNullHashFunction() {
+    UpdateSketch.builder().setHashFunction(null);
+  }
+
+  @Test
+  public void checkArrayOfDoublesWithLongMix() {
+    final HashFunction fn = HashFunction.LONG_MIX;
+    final ArrayOfDoublesUpdatableSketch sk1 =
+        new ArrayOfDoublesUpdatableSketchBuilder().setHashFunction(fn).build();
+    final ArrayOfDoublesUpdatableSketch sk2 = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    for (int i = 0; i < 100; i++) {
+      sk1.update(i, new double[] {1.0});
+      sk2.update(i, new double[] {1.0});
+    }
+    assertEquals(sk1.getHashFunction(), fn);
+    assertEquals(sk1.getEstimate(), 100.0);
+
+    final ArrayOfDoublesUnion union =
+        new ArrayOfDoublesSetOperationBuilder().setHashFunction(fn).buildUnion();
+    union.update(sk1);
+    assertEquals(union.getResult().getEstimate(), 100.0);
+    try {
+      union.update(sk2);
+      throw new AssertionError();
+    } catch (final SketchesArgumentException e) {
+      //expected
+    }
+
+    final Memory mem = new NativeMemory(sk1.toByteArray());
+    final ArrayOfDoublesUpdatableSketch heapified =
+        ArrayOfDoublesSketches.heapifyUpdatableSketch(mem, DEFAULT_UPDATE_SEED, fn);
+    final ArrayOfDoublesUpdatableSketch wrapped =
+        ArrayOfDoublesSketches.wrapUpdatableSketch(mem, DEFAULT_UPDATE_SEED, fn);
+    for (int i = 0; i < 100; i++) {
+      heapified.update(i, new double[] {1.0});
+      wrapped.update(i, new double[] {1.0});
+    }
+    assertEquals(heapified.getEstimate(), 100.0);
+    assertEquals(wrapped.getEstimate(), 100.0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkArrayOfDoublesHeapifyRejectsOtherHashFunction() {
+    final ArrayOfDoublesUpdatableSketch sk =
+        new ArrayOfDoublesUpdatableSketchBuilder().setHashFunction(HashFunction.LONG_MIX).build();
+    sk.update(1L, new double[] {1.0});
+    ArrayOfDoublesSketches.heapifySketch(new NativeMemory(sk.toByteArray()));
+  }
+
+  @Test
+  public void checkGenericTupleWithLongMix() {
+    final HashFunction fn = HashFunction.LONG_MIX;
+    final UpdatableSketch<Double, DoubleSummary> sk =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory())
+        .setHashFunction(fn).build();
+    for (int i = 0; i < 100; i++) {
+      sk.update(i, 1.0);
+    }
+    assertEquals(sk.getHashFunction(), fn);
+    assertEquals(sk.getEstimate(), 100.0);
+    final UpdatableSketch<Double, DoubleSummary> heapified =
+        Sketches.heapifyUpdatableSketch(new NativeMemory(sk.toByteArray()), fn);
+    for (int i = 0; i < 100; i++) {
+      heapified.update(i, 1.0);
+    }
+    assertEquals(heapified.getEstimate(), 100.0);
+  }
+
+  @Test
+  public void checkGenericTupleSeedHash() {
+    final UpdatableSketch<Double, DoubleSummary> plain =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory()).build();
+    plain.update(1, 1.0);
+    final byte[] plainBytes = plain.toByteArray();
+    assertEquals(plainBytes[1], 1); //unchanged serial version without a seed hash
+    Sketches.heapifyUpdatableSketch(new NativeMemory(plainBytes), HashFunction.MURMUR3);
+    try {
+      Sketches.heapifyUpdatableSketch(new NativeMemory(plainBytes), HashFunction.LONG_MIX);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+
+    final UpdatableSketch<Double, DoubleSummary> mixed =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory())
+        .setHashFunction(HashFunction.LONG_MIX).build();
+    mixed.update(1, 1.0);
+    final Memory mixedMem = new NativeMemory(mixed.toByteArray());
+    assertEquals(mixedMem.getByte(1), 2); //serial version with a seed hash
+    assertEquals(Sketches.heapifySketch(mixedMem).getEstimate(), 1.0);
+    try {
+      Sketches.heapifyUpdatableSketch(mixedMem);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void checkDirectGenericTupleSeedHash() {
+    final UpdatableSketchBuilder<Double, DoubleSummary> builder =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory())
+        .setHashFunction(HashFunction.LONG_MIX);
+    final Memory mem = new NativeMemory(new byte[(int) DirectUpdatableSketch.getMaxBytes(4096, 8)]);
+    final DirectUpdatableSketch<Double, DoubleSummary> sk = builder.buildDirect(mem);
+    sk.update(1, 1.0);
+    final DirectUpdatableSketch<Double, DoubleSummary> wrapped =
+        Sketches.wrapUpdatableSketch(mem, new DoubleSummaryFactory(), HashFunction.LONG_MIX);
+    wrapped.update(1, 1.0);
+    assertEquals(wrapped.getEstimate(), 1.0);
+    Sketches.heapifyUpdatableSketch(new NativeMemory(sk.toByteArray()), HashFunction.LONG_MIX);
+    try {
+      Sketches.wrapUpdatableSketch(mem, new DoubleSummaryFactory());
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
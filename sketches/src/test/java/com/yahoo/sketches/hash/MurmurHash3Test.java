@@ -5,11 +5,16 @@
 package com.yahoo.sketches.hash;
 
 import static com.yahoo.sketches.hash.MurmurHash3.hash;
+import static com.yahoo.sketches.hash.MurmurHash3.hash64;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import java.util.Random;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.yahoo.memory.NativeMemory;
+
 /**
  * Tests the MurmurHash3 against specific, known hash results given known
  * inputs obtained from the public domain C++ version 150.
@@ -251,6 +256,73 @@ public class MurmurHash3Test {
     return out;
   }
 
+  @Test
+  public void checkLongEqualsLongArr() {
+    final Random rand = new Random(1);
+    final long[] hashOut = new long[2];
+    for (int i = 0; i < 1000; i++) {
+      final long key = rand.nextLong();
+      final long seed = rand.nextLong();
+      final long[] expected = hash(new long[] {key}, seed);
+      Assert.assertEquals(hash64(key, seed), expected[0]);
+      Assert.assertEquals(hash(key, seed, hashOut), expected[0]);
+      Assert.assertEquals(hashOut[1], expected[1]);
+    }
+  }
+
+  @Test
+  public void checkDoubleCanonicalization() {
+    final long seed = 9001L;
+    Assert.assertEquals(hash64(-0.0, seed), hash64(0.0, seed));
+    Assert.assertEquals(hash64(0.0, seed), hash64(0L, seed));
+    Assert.assertEquals(hash64(Double.longBitsToDouble(0x7ff8000000000001L), seed),
+        hash64(Double.NaN, seed));
+    final double d = 1.5;
+    Assert.assertEquals(hash64(d, seed), hash(new long[] {Double.doubleToLongBits(d)}, seed)[0]);
+    final long[] hashOut = new long[2];
+    hash(d, seed, hashOut);
+    Assert.assertEquals(hashOut[1], hash(new long[] {Double.doubleToLongBits(d)}, seed)[1]);
+  }
+
+  @Test
+  public void checkCharSequenceEqualsUtf8Bytes() {
+    final Random rand = new Random(2);
+    final long[] hashOut = new long[2];
+    final char[] pool = {'a', 'Z', '~', '\u00e9', '\u07ff', '\u0800', '\u20ac', '\uffff',
+        '\ud83d', '\ude00', '\udbff', '\udc00'}; //includes paired and unpaired surrogates
+    for (int len = 1; len < 70; len++) {
+      for (int trial = 0; trial < 20; trial++) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < len; i++) { sb.append(pool[rand.nextInt(pool.length)]); }
+        final long[] expected = hash(sb.toString().getBytes(UTF_8), 0L);
+        Assert.assertEquals(hash64(sb, 0L), expected[0]);
+        Assert.assertEquals(hash(sb.toString(), 0L, hashOut), expected[0]);
+        Assert.assertEquals(hashOut[1], expected[1]);
+      }
+    }
+    final String keyStr = "The quick brown fox jumps over the lazy dog";
+    Assert.assertEquals(hash64(keyStr, 0L), 0xe34bbc7bbc071b6cL);
+  }
+
+  @Test
+  public void checkMemoryRegionEqualsByteArr() {
+    final Random rand = new Random(3);
+    final byte[] bytes = new byte[100];
+    rand.nextBytes(bytes);
+    final NativeMemory mem = new NativeMemory(bytes);
+    final long[] hashOut = new long[2];
+    for (int off = 0; off < 7; off++) {
+      for (int len = 1; len <= 80; len++) {
+        final byte[] region = new byte[len];
+        System.arraycopy(bytes, off, region, 0, len);
+        final long[] expected = hash(region, 123L);
+        Assert.assertEquals(hash64(mem, off, len, 123L), expected[0]);
+        Assert.assertEquals(hash(mem, off, len, 123L, hashOut), expected[0]);
+        Assert.assertEquals(hashOut[1], expected[1]);
+      }
+    }
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
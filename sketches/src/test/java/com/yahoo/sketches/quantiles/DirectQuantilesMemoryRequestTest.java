@@ -12,6 +12,7 @@ import org.testng.annotations.Test;
 
 import com.yahoo.memory.AllocMemory;
 import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryPool;
 import com.yahoo.memory.MemoryRequest;
 import com.yahoo.memory.NativeMemory;
 
@@ -112,6 +113,21 @@ public class DirectQuantilesMemoryRequestTest {
   }
 
 
+  @Test
+  public void checkMemoryPool() {
+    int k = 128;
+    int u = 40 * k;
+    MemoryPool pool = new MemoryPool();
+    Memory mem1 = pool.request((2 * k + 4) << 3); //just room for BB
+    DoublesSketch usk1 = DoublesSketch.builder().initMemory(mem1).build(k);
+    for (int i = 1; i <= u; i++) { usk1.update(i); }
+    assertEquals(usk1.getN(), u);
+    assertEquals(usk1.getMaxValue(), u, 0.0);
+    assertEquals(pool.getAllocationFailures(), 0);
+    assertTrue(pool.getHighWaterMark() > pool.getBytesOutstanding()); //grown while copying
+    pool.close();
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -0,0 +1,388 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.store;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.memory.ReadOnlyMemoryException;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.SketchesStateException;
+import com.yahoo.sketches.quantiles.DoublesSketch;
+import com.yahoo.sketches.theta.CompactSketch;
+import com.yahoo.sketches.theta.SetOperation;
+import com.yahoo.sketches.theta.Sketch;
+import com.yahoo.sketches.theta.Union;
+import com.yahoo.sketches.theta.UpdateSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesSketches;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketch;
+import com.yahoo.sketches.tuple.ArrayOfDoublesUpdatableSketchBuilder;
+
+public class SketchStoreTest {
+
+  @Test
+  public void checkWrapThetaSketches() throws Exception {
+    File file = newFile();
+    int numKeys = 100;
+    double[] estimates = new double[numKeys];
+    Union expected = SetOperation.builder().buildUnion(1024);
+    long storeBytes;
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      for (int i = 0; i < numKeys; i++) {
+        UpdateSketch usk = UpdateSketch.builder().setNominalEntries(1024).build();
+        for (int j = 0; j < (i * 50); j++) { usk.update(i + j); }
+        CompactSketch csk = usk.compact(true, null);
+        estimates[i] = csk.getEstimate();
+        expected.update(csk);
+        if ((i & 1) == 0) {
+          writer.put("key" + i, csk.toByteArray());
+        } else {
+          writer.put("key" + i, new NativeMemory(csk.toByteArray()));
+        }
+      }
+      storeBytes = writer.getStoreBytes();
+    }
+    assertEquals(file.length(), storeBytes);
+
+    SketchStore store = SketchStore.open(file);
+    assertEquals(store.size(), numKeys);
+    assertEquals(store.getStoreBytes(), file.length());
+    store.load();
+    Union union = SetOperation.builder().buildUnion(1024);
+    for (int i = 0; i < numKeys; i++) {
+      Memory mem = store.get("key" + i);
+      assertTrue(mem.isReadOnly());
+      assertEquals(mem.getCumulativeOffset(0) & 7L, 0L); //8-byte aligned
+      Sketch sk = Sketch.wrap(mem);
+      assertTrue(sk.isDirect());
+      assertEquals(sk.getEstimate(), estimates[i]);
+      union.update(mem);
+    }
+    assertEquals(union.getResult().getEstimate(), expected.getResult().getEstimate());
+    assertNull(store.get("missing"));
+    assertFalse(store.contains("missing"));
+    assertTrue(store.contains("key0"));
+    Set<String> keys = new HashSet<>();
+    for (String key : store.keys()) { keys.add(key); }
+    assertEquals(keys.size(), numKeys);
+    assertTrue(keys.contains("key99"));
+    store.close();
+    store.close();
+  }
+
+  @Test
+  public void checkWrapOtherFamilies() throws Exception {
+    File file = newFile();
+    DoublesSketch qs = DoublesSketch.builder().build();
+    for (int i = 0; i < 10000; i++) { qs.update(i); }
+    ArrayOfDoublesUpdatableSketch tuple = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    for (int i = 0; i < 10000; i++) { tuple.update(i, new double[] {1.0}); }
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("quantiles", qs.toByteArray(true, false)); //updatable form for wrap
+      writer.put("\u00e9t\u00e9", tuple.compact().toByteArray()); //non-ASCII key
+    }
+
+    SketchStore store = SketchStore.open(file);
+    DoublesSketch qs2 = DoublesSketch.wrap(store.get("quantiles"));
+    assertEquals(qs2.getN(), qs.getN());
+    assertEquals(qs2.getQuantile(0.5), qs.getQuantile(0.5));
+    ArrayOfDoublesSketch tuple2 = ArrayOfDoublesSketches.wrapSketch(store.get("\u00e9t\u00e9"));
+    assertEquals(tuple2.getEstimate(), tuple.getEstimate());
+    store.close();
+  }
+
+  @Test
+  public void checkAppendAndSupersede() throws Exception {
+    File file = newFile();
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("a", sketchBytes(10));
+      writer.put("b", sketchBytes(20));
+    }
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("a", sketchBytes(30));
+      writer.put("c", sketchBytes(40));
+    }
+    SketchStore store = SketchStore.open(file);
+    assertEquals(store.size(), 3);
+    assertEquals(Sketch.wrap(store.get("a")).getEstimate(), 30.0);
+    assertEquals(Sketch.wrap(store.get("b")).getEstimate(), 20.0);
+    assertEquals(Sketch.wrap(store.get("c")).getEstimate(), 40.0);
+    store.close();
+  }
+
+  @Test
+  public void checkIncompleteTail() throws Exception {
+    File file = newFile();
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("a", sketchBytes(10));
+      writer.put("b", sketchBytes(20));
+    }
+    long fullBytes = file.length();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(fullBytes - 8); //cut into the last image
+    }
+    SketchStore store = SketchStore.open(file);
+    assertEquals(store.size(), 1);
+    assertTrue(store.contains("a"));
+    long goodBytes = store.getStoreBytes();
+    store.close();
+
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      assertEquals(writer.getStoreBytes(), goodBytes);
+      writer.put("b", sketchBytes(20));
+    }
+    assertEquals(file.length(), fullBytes);
+    store = SketchStore.open(file);
+    assertEquals(store.size(), 2);
+    assertEquals(Sketch.wrap(store.get("b")).getEstimate(), 20.0);
+    store.close();
+  }
+
+  @Test
+  public void checkIndex() throws Exception {
+    File file = newFile();
+    int numKeys = 5000;
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      for (int i = 0; i < numKeys; i++) { writer.put("key" + i, sketchBytes(1)); }
+      writer.put("key7", sketchBytes(7)); //superseded in the same session
+      writer.put("", sketchBytes(2));
+    }
+    File indexFile = SketchStoreIndex.indexFile(file);
+    assertTrue(indexFile.exists());
+    assertEquals(indexFile.length(), SketchStoreIndex.INDEX_HEADER_BYTES
+        + ((numKeys + 1L) * SketchStoreIndex.ENTRY_BYTES));
+
+    SketchStore store = SketchStore.open(file);
+    assertEquals(store.size(), numKeys + 1);
+    for (int i = 0; i < numKeys; i++) {
+      assertEquals(Sketch.wrap(store.get("key" + i)).getEstimate(), (i == 7) ? 7.0 : 1.0);
+    }
+    assertEquals(Sketch.wrap(store.get("")).getEstimate(), 2.0);
+    assertNull(store.get("key" + numKeys));
+    int count = 0;
+    for (@SuppressWarnings("unused") String key : store.keys()) { count++; }
+    assertEquals(count, numKeys + 1);
+    store.close();
+  }
+
+  @Test
+  public void checkUnindexedRecords() throws Exception {
+    File file = newFile();
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("a", sketchBytes(10));
+      writer.put("b", sketchBytes(20));
+    }
+    SketchStoreWriter writer = SketchStoreWriter.open(file);
+    writer.put("b", sketchBytes(30));
+    writer.put("c", sketchBytes(40));
+    writer.flush(); //the index is not written until close
+
+    SketchStore store = SketchStore.open(file);
+    assertEquals(store.size(), 3);
+    assertEquals(store.getStoreBytes(), file.length());
+    assertEquals(Sketch.wrap(store.get("a")).getEstimate(), 10.0);
+    assertEquals(Sketch.wrap(store.get("b")).getEstimate(), 30.0);
+    assertEquals(Sketch.wrap(store.get("c")).getEstimate(), 40.0);
+    Set<String> keys = new HashSet<>();
+    for (String key : store.keys()) { assertTrue(keys.add(key)); }
+    assertEquals(keys.size(), 3);
+    store.close();
+
+    writer.close();
+    store = SketchStore.open(file);
+    assertEquals(store.size(), 3);
+    assertEquals(Sketch.wrap(store.get("b")).getEstimate(), 30.0);
+    store.close();
+    File indexFile = SketchStoreIndex.indexFile(file);
+    assertEquals(indexFile.length(), SketchStoreIndex.INDEX_HEADER_BYTES
+        + (3L * SketchStoreIndex.ENTRY_BYTES));
+  }
+
+  @Test
+  public void checkMissingOrBadIndex() throws Exception {
+    File file = newFile();
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("a", sketchBytes(10));
+      writer.put("b", sketchBytes(20));
+    }
+    File indexFile = SketchStoreIndex.indexFile(file);
+    assertTrue(indexFile.delete());
+    SketchStore store = SketchStore.open(file); //scans all records
+    assertEquals(store.size(), 2);
+    assertEquals(Sketch.wrap(store.get("b")).getEstimate(), 20.0);
+    store.close();
+
+    SketchStoreWriter.open(file).close(); //rebuilds the index
+    assertTrue(indexFile.exists());
+    try (RandomAccessFile raf = new RandomAccessFile(indexFile, "rw")) {
+      raf.write(new byte[8]); //bad magic
+    }
+    store = SketchStore.open(file);
+    assertEquals(store.size(), 2);
+    assertEquals(Sketch.wrap(store.get("a")).getEstimate(), 10.0);
+    store.close();
+  }
+
+  @Test
+  public void checkIndexOfReplacedStore() throws Exception {
+    File file = newFile();
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("a", sketchBytes(10));
+      writer.put("b", sketchBytes(20));
+    }
+    File other = newFile();
+    try (SketchStoreWriter writer = SketchStoreWriter.open(other)) {
+      writer.put("c", sketchBytes(10));
+      writer.put("d", sketchBytes(20));
+    }
+    assertEquals(other.length(), file.length());
+    //same length, other records: the index of the replaced store must be ignored
+    Files.copy(other.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    SketchStore store = SketchStore.open(file);
+    assertEquals(store.size(), 2);
+    assertNull(store.get("a"));
+    assertEquals(Sketch.wrap(store.get("d")).getEstimate(), 20.0);
+    store.close();
+  }
+
+  @Test
+  public void checkReadOnlyView() throws Exception {
+    File file = newFile();
+    try (SketchStoreWriter writer = SketchStoreWriter.open(file)) {
+      writer.put("a", sketchBytes(10));
+    }
+    SketchStore store = SketchStore.open(file);
+    Memory mem = store.get("a");
+    try {
+      mem.putLong(0, 0L);
+      fail();
+    } catch (ReadOnlyMemoryException e) {
+      //expected
+    }
+    store.close();
+    try {
+      store.get("a");
+      fail();
+    } catch (SketchesStateException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void checkBadFiles() throws Exception {
+    File file = newFile();
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[8]);
+    }
+    try {
+      SketchStore.open(file);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(new byte[32]);
+    }
+    try {
+      SketchStore.open(file);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      SketchStoreWriter.open(file);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    byte[] hdr = new byte[SketchStore.HEADER_BYTES];
+    NativeMemory hdrMem = new NativeMemory(hdr);
+    hdrMem.putLong(SketchStore.MAGIC_LONG, SketchStore.MAGIC);
+    hdrMem.putInt(SketchStore.VERSION_INT, SketchStore.VERSION + 1);
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write(hdr);
+    }
+    try {
+      SketchStore.open(file);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void checkBadPuts() throws Exception {
+    File file = newFile();
+    SketchStoreWriter writer = SketchStoreWriter.open(file);
+    try {
+      writer.put("a", new byte[0]);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      writer.put(null, new byte[8]);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    writer.close();
+    writer.close();
+    try {
+      writer.put("a", new byte[8]);
+      fail();
+    } catch (SketchesStateException e) {
+      //expected
+    }
+    SketchStore store = SketchStore.open(file);
+    assertEquals(store.size(), 0);
+    assertEquals(store.getStoreBytes(), SketchStore.HEADER_BYTES);
+    store.close();
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+  private static byte[] sketchBytes(int n) {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < n; i++) { usk.update(i); }
+    return usk.compact(true, null).toByteArray();
+  }
+
+  private static File newFile() throws Exception {
+    File file = File.createTempFile("sketchStore", ".bin");
+    file.deleteOnExit();
+    file.delete();
+    SketchStoreIndex.indexFile(file).deleteOnExit();
+    return file;
+  }
+
+}
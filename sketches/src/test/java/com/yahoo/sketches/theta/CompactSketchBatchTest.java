@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class CompactSketchBatchTest {
+  private static final int K = 256;
+
+  @Test
+  public void checkViewsMatchSketches() {
+    final CompactSketch[] sketches = buildSketches(100);
+    final CompactSketchBatch batch = CompactSketchBatch.wrap(concatenate(sketches));
+    assertEquals(batch.size(), sketches.length);
+    long offsetBytes = 0;
+    for (int i = 0; i < sketches.length; i++) {
+      assertEquals(batch.getOffsetBytes(i), offsetBytes);
+      offsetBytes += sketches[i].toByteArray().length;
+      checkSame(batch.getView(i), sketches[i]);
+      checkSame(batch.getSketch(i), sketches[i]);
+    }
+  }
+
+  private static void checkSame(final CompactSketch view, final CompactSketch sk) {
+    assertTrue(view.isDirect());
+    assertEquals(view.isEmpty(), sk.isEmpty());
+    assertEquals(view.isOrdered(), sk.isOrdered());
+    assertEquals(view.getThetaLong(), sk.getThetaLong());
+    assertEquals(view.getRetainedEntries(true), sk.getRetainedEntries(true));
+    assertEquals(view.getEstimate(), sk.getEstimate());
+    assertEquals(view.getCache(), sk.getCache());
+    assertEquals(view.toByteArray(), sk.toByteArray());
+    assertEquals(Sketch.wrap(view.getMemory()).getEstimate(), sk.getEstimate());
+    final HashIterator it = view.iterator();
+    int count = 0;
+    while (it.next()) { assertEquals(it.get(), sk.getCache()[count++]); }
+    assertEquals(count, sk.getRetainedEntries(true));
+  }
+
+  @Test
+  public void checkSetOperations() {
+    final CompactSketch[] sketches = buildSketches(50);
+    final CompactSketchBatch batch = CompactSketchBatch.wrap(concatenate(sketches));
+
+    final Union union1 = SetOperation.builder().buildUnion(K);
+    final Union union2 = SetOperation.builder().buildUnion(K);
+    final Intersection inter1 = SetOperation.builder().buildIntersection();
+    final Intersection inter2 = SetOperation.builder().buildIntersection();
+    for (int i = 0; i < sketches.length; i++) {
+      union1.update(sketches[i]);
+      union2.update(batch.getView(i));
+      if (!sketches[i].isEmpty()) {
+        inter1.update(sketches[i]);
+        inter2.update(batch.getView(i));
+      }
+    }
+    assertEquals(union2.getResult().getCache(), union1.getResult().getCache());
+    assertEquals(inter2.getResult().getCache(), inter1.getResult().getCache());
+
+    //only the ordered sketches, held at the same time
+    final List<CompactSketch> ordered = new ArrayList<>();
+    final List<CompactSketch> views = new ArrayList<>();
+    for (int i = 0; i < sketches.length; i++) {
+      if (sketches[i].isOrdered()) {
+        ordered.add(sketches[i]);
+        views.add(batch.getSketch(i));
+      }
+    }
+    final CompactSketch[] arr = new CompactSketch[0];
+    assertEquals(PairwiseSetOperations.union(views.toArray(arr), K).getCache(),
+        PairwiseSetOperations.union(ordered.toArray(arr), K).getCache());
+  }
+
+  @Test
+  public void checkOneViewPerThread() throws Exception {
+    final CompactSketchBatch batch = CompactSketchBatch.wrap(concatenate(buildSketches(4)));
+    final CompactSketch view = batch.getView(0);
+    assertSame(batch.getView(1), view);
+    assertNotSame(batch.getSketch(1), view);
+    final AtomicReference<CompactSketch> other = new AtomicReference<>();
+    final Thread thread = new Thread() {
+      @Override
+      public void run() {
+        other.set(batch.getView(2));
+      }
+    };
+    thread.start();
+    thread.join();
+    assertNotSame(other.get(), view);
+    assertEquals(batch.getView(1).getThetaLong(), batch.getSketch(1).getThetaLong());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkSeedMismatch() {
+    CompactSketchBatch.wrap(concatenate(buildSketches(3)), 123L);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkTruncated() {
+    final Memory mem = concatenate(buildSketches(3));
+    final byte[] bytes = new byte[(int) mem.getCapacity() - 8];
+    mem.getByteArray(0, bytes, 0, bytes.length);
+    CompactSketchBatch.wrap(new NativeMemory(bytes));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkNotCompact() {
+    final UpdateSketch sk = UpdateSketch.builder().build(K);
+    sk.update(1);
+    CompactSketchBatch.wrap(new NativeMemory(sk.toByteArray()));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadIndex() {
+    CompactSketchBatch.wrap(concatenate(buildSketches(3))).getView(3);
+  }
+
+  private static CompactSketch[] buildSketches(final int n) {
+    final CompactSketch[] sketches = new CompactSketch[n];
+    for (int i = 0; i < n; i++) {
+      final UpdateSketch sk = UpdateSketch.builder().build(K);
+      final int items = (i % 5 == 0) ? 0 : (i * 37) % 2000;
+      for (int j = 0; j < items; j++) { sk.update(j + i); }
+      sketches[i] = sk.compact((i % 3) != 0, null);
+    }
+    return sketches;
+  }
+
+  private static Memory concatenate(final CompactSketch[] sketches) {
+    byte[] out = new byte[0];
+    for (CompactSketch sk : sketches) {
+      final byte[] bytes = sk.toByteArray();
+      final int len = out.length;
+      out = Arrays.copyOf(out, len + bytes.length);
+      System.arraycopy(bytes, 0, out, len, bytes.length);
+    }
+    return new NativeMemory(out);
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -10,9 +10,15 @@ import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
+
 import org.testng.annotations.Test;
 
+import com.yahoo.memory.MappedMemory;
 import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryMappedFile;
+import com.yahoo.memory.MemoryRegion;
 import com.yahoo.memory.NativeMemory;
 import com.yahoo.sketches.Family;
 import com.yahoo.sketches.SketchesArgumentException;
@@ -199,6 +205,39 @@ public class CompactSketchTest {
     assertEquals(result.length, 0);
   }
   
+  @Test
+  public void checkWrapFromReadOnlyMappedFile() throws Exception {
+    int k = 512;
+    int numSketches = 8;
+    File file = File.createTempFile("compactSketches", ".bin");
+    file.deleteOnExit();
+    int[] offsets = new int[numSketches + 1];
+    double[] estimates = new double[numSketches];
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      for (int i = 0; i < numSketches; i++) {
+        UpdateSketch usk = UpdateSketch.builder().setNominalEntries(k).build();
+        for (int j = 0; j < (i * k); j++) { usk.update(j); }
+        CompactSketch csk = usk.compact(true, null);
+        estimates[i] = csk.getEstimate();
+        byte[] bytes = csk.toByteArray();
+        out.write(bytes);
+        offsets[i + 1] = offsets[i] + bytes.length;
+      }
+    }
+    long fileLen = file.length();
+
+    MappedMemory mmf = MemoryMappedFile.getReadOnlyInstance(file, 0, fileLen);
+    assertTrue(mmf.isReadOnly());
+    for (int i = 0; i < numSketches; i++) {
+      Memory region = new MemoryRegion(mmf, offsets[i], offsets[i + 1] - offsets[i]);
+      Sketch sk = Sketch.wrap(region);
+      assertTrue(sk.isDirect());
+      assertEquals(sk.getEstimate(), estimates[i]);
+    }
+    mmf.freeMemory();
+    assertEquals(file.length(), fileLen);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class ConcurrentThetaSketchTest {
+
+  @Test
+  public void checkExactModeSingleThread() {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(1024);
+    final UpdateSketch shared = bldr.buildShared();
+    final UpdateSketch local = bldr.buildLocal(shared);
+    assertTrue(shared.isEmpty());
+    final int n = 1000;
+    for (int i = 0; i < n; i++) {
+      local.update(i);
+      local.update(i); //duplicates within the buffer are rejected locally
+    }
+    local.rebuild(); //flush and wait
+    assertFalse(shared.isEmpty());
+    assertFalse(shared.isEstimationMode());
+    assertEquals(shared.getEstimate(), n, 0.0);
+    assertEquals(local.getEstimate(), n, 0.0);
+    assertEquals(shared.getRetainedEntries(true), n);
+    assertEquals(shared.compact().getEstimate(), n, 0.0);
+  }
+
+  @Test
+  public void checkMultipleThreads() throws InterruptedException {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(4096)
+        .setLocalNominalEntries(32);
+    final UpdateSketch shared = bldr.buildShared();
+    final int numThreads = 4;
+    final int n = 100000;
+    final Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final UpdateSketch local = bldr.buildLocal(shared);
+      final int offset = t * n;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < n; i++) {
+            local.update(offset + i);
+          }
+          local.rebuild();
+        }
+      });
+      threads[t].start();
+    }
+    for (int t = 0; t < numThreads; t++) { threads[t].join(); }
+
+    final double est = shared.getEstimate();
+    assertTrue(shared.isEstimationMode());
+    assertTrue(shared.getUpperBound(2) >= (numThreads * n));
+    assertTrue(shared.getLowerBound(2) <= (numThreads * n));
+    assertEquals(est, numThreads * n, numThreads * n * 0.05);
+    assertEquals(shared.compact().getEstimate(), est);
+  }
+
+  @Test
+  public void checkManyFlushesOfOneBuffer() {
+    //the two tables of the buffer are swapped on every flush, no hash may be lost
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(1 << 16)
+        .setLocalNominalEntries(16);
+    final UpdateSketch shared = bldr.buildShared();
+    final UpdateSketch local = bldr.buildLocal(shared);
+    final int n = 50000;
+    for (int i = 0; i < n; i++) { local.update(i); }
+    local.rebuild();
+    assertFalse(shared.isEstimationMode());
+    assertEquals(shared.getRetainedEntries(true), n);
+    for (int i = 0; i < n; i++) { local.update(i); }
+    local.rebuild();
+    assertEquals(shared.getRetainedEntries(true), n);
+  }
+
+  @Test
+  public void checkDirectShared() {
+    final int k = 512;
+    final Memory mem = new NativeMemory(new byte[Sketch.getMaxUpdateSketchBytes(k)]);
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k).initMemory(mem);
+    final UpdateSketch shared = bldr.buildShared();
+    assertTrue(shared.isDirect());
+    final UpdateSketch local = bldr.buildLocal(shared);
+    assertFalse(local.isDirect());
+    final int n = 10 * k;
+    for (int i = 0; i < n; i++) { local.update(i); }
+    local.rebuild();
+    assertTrue(shared.isEstimationMode());
+    assertEquals(shared.getEstimate(), n, n * 0.1);
+
+    final Sketch wrapped = Sketch.wrap(mem);
+    assertEquals(wrapped.getEstimate(), shared.getEstimate());
+  }
+
+  @Test
+  public void checkOverThetaRejectedLocally() {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(16).setP(0.5f);
+    final UpdateSketch shared = bldr.buildShared();
+    final UpdateSketch local = bldr.buildLocal(shared);
+    int rejected = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (local.update(i) == UpdateReturnState.RejectedOverTheta) { rejected++; }
+    }
+    assertTrue(rejected > 0);
+    local.rebuild();
+    assertTrue(shared.getTheta() <= 0.5);
+  }
+
+  @Test
+  public void checkResetLocalOnly() {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder();
+    final UpdateSketch shared = bldr.buildShared();
+    final UpdateSketch local = bldr.buildLocal(shared);
+    for (int i = 0; i < 10; i++) { local.update(i); }
+    local.reset();
+    local.rebuild();
+    assertTrue(shared.isEmpty());
+    assertEquals(shared.getEstimate(), 0.0);
+    for (int i = 0; i < 10; i++) { local.update(i); }
+    local.rebuild();
+    assertEquals(shared.getEstimate(), 10.0);
+    shared.reset();
+    assertTrue(shared.isEmpty());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBuildLocalWithNonShared() {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder();
+    bldr.buildLocal(bldr.build());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBuildSharedAlpha() {
+    UpdateSketch.builder().setFamily(com.yahoo.sketches.Family.ALPHA).buildShared();
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBadLocalNominalEntries() {
+    UpdateSketch.builder().setLocalNominalEntries(8);
+  }
+
+  @Test
+  public void checkBuilderToString() {
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setLocalNominalEntries(64);
+    assertEquals(bldr.getLocalLgNominalEntries(), 6);
+    assertTrue(bldr.toString().contains("LgLocalK"));
+    assertTrue(bldr.getNumPoolThreads() >= 1);
+  }
+
+}
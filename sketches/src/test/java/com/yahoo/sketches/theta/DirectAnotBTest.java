@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class DirectAnotBTest {
+  private static final int K = 512;
+
+  @Test
+  public void checkSameAsHeapForAllForms() {
+    final Sketch[] as = forms(buildSketch(0, 5000));
+    final Sketch[] bs = forms(buildSketch(2500, 5000));
+    final AnotB heap = SetOperation.builder().buildANotB();
+    final Memory mem = new NativeMemory(new byte[SetOperation.getMaxAnotBBytes(K)]);
+    final AnotB direct = SetOperation.builder().initMemory(mem).buildANotB();
+    for (Sketch a : as) {
+      for (Sketch b : bs) {
+        heap.update(a, b);
+        final CompactSketch expected = heap.getResult();
+        direct.update(a, b);
+        assertEquals(direct.getEstimate(), expected.getEstimate());
+        final CompactSketch result = direct.getResult();
+        assertEquals(result.getCache(), expected.getCache());
+        assertEquals(result.getThetaLong(), expected.getThetaLong());
+        assertEquals(result.isEmpty(), expected.isEmpty());
+      }
+    }
+  }
+
+  @Test
+  public void checkCornerCases() {
+    final UpdateSketch valid = buildSketch(0, 100);
+    final UpdateSketch empty = UpdateSketch.builder().setP((float) 0.5).build(K);
+    final Sketch[] args = {null, empty, valid};
+    final AnotB heap = SetOperation.builder().buildANotB();
+    final Memory mem = new NativeMemory(new byte[SetOperation.getMaxAnotBBytes(K)]);
+    final AnotB direct = SetOperation.builder().initMemory(mem).buildANotB();
+    for (Sketch a : args) {
+      for (Sketch b : args) {
+        heap.update(a, b);
+        final CompactSketch expected = heap.getResult();
+        direct.update(a, b);
+        final CompactSketch result = direct.getResult();
+        assertEquals(result.getRetainedEntries(true), expected.getRetainedEntries(true));
+        assertEquals(result.getThetaLong(), expected.getThetaLong());
+        assertEquals(result.isEmpty(), expected.isEmpty());
+      }
+    }
+  }
+
+  @Test
+  public void checkStateful() {
+    final UpdateSketch a = buildSketch(0, 20000);
+    final Sketch[] bs = {
+      buildSketch(1000, 2000).compact(true, null),
+      buildSketch(5000, 3000),
+      buildSketch(9000, 1000).compact(false, null),
+      Sketch.wrap(new NativeMemory(buildSketch(12000, 4000).compact(true, null)
+          .toCompressedByteArray()))
+    };
+    //reference: chained stateless operations
+    final AnotB ref = SetOperation.builder().buildANotB();
+    Sketch expected = a;
+    for (Sketch b : bs) {
+      ref.update(expected, b);
+      expected = ref.getResult();
+    }
+
+    final AnotB heap = SetOperation.builder().buildANotB();
+    final Memory mem = new NativeMemory(new byte[SetOperation.getMaxAnotBBytes(K)]);
+    final AnotB direct = SetOperation.builder().initMemory(mem).buildANotB();
+    heap.setA(a);
+    direct.setA(a.compact(true, new NativeMemory(new byte[a.getCurrentBytes(true)])));
+    for (Sketch b : bs) {
+      heap.notB(b);
+      direct.notB(b);
+      assertEquals(direct.getEstimate(), heap.getEstimate());
+    }
+    assertEquals(heap.getEstimate(), expected.getEstimate());
+    assertEquals(heap.getResult().getCache(), ((CompactSketch) expected).getCache());
+
+    final Memory dstMem = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(K * 2)]);
+    final CompactSketch result = direct.getResult(true, dstMem);
+    assertTrue(result.isDirect());
+    assertTrue(result.isOrdered());
+    assertEquals(result.getCache(), ((CompactSketch) expected).getCache());
+    assertEquals(result.getThetaLong(), expected.getThetaLong());
+    assertEquals(Sketch.wrap(dstMem).getEstimate(), expected.getEstimate());
+
+    //getResult resets
+    assertTrue(direct.getResult().isEmpty());
+  }
+
+  @Test
+  public void checkNotBAfterUpdate() {
+    final UpdateSketch a = buildSketch(0, 10000);
+    final UpdateSketch b1 = buildSketch(2000, 1000);
+    final UpdateSketch b2 = buildSketch(6000, 1000);
+    final AnotB heap = SetOperation.builder().buildANotB();
+    heap.update(a, b1);
+    heap.notB(b2);
+    final AnotB ref = SetOperation.builder().buildANotB();
+    ref.setA(a);
+    ref.notB(b1);
+    ref.notB(b2);
+    assertEquals(heap.getResult().getCache(), ref.getResult().getCache());
+  }
+
+  @Test
+  public void checkWrap() {
+    final Memory mem = new NativeMemory(new byte[SetOperation.getMaxAnotBBytes(K)]);
+    final AnotB direct = SetOperation.builder().initMemory(mem).buildANotB();
+    final UpdateSketch a = buildSketch(0, 10000);
+    final UpdateSketch b1 = buildSketch(2000, 1000);
+    final UpdateSketch b2 = buildSketch(6000, 1000);
+    direct.setA(a);
+    direct.notB(b1);
+    final SetOperation wrapped = SetOperation.wrap(mem);
+    assertEquals(wrapped.getFamily(), Family.A_NOT_B);
+    final AnotB aNotB = (AnotB) wrapped;
+    assertEquals(aNotB.getEstimate(), direct.getEstimate());
+    aNotB.notB(b2);
+
+    final AnotB ref = SetOperation.builder().buildANotB();
+    ref.setA(a);
+    ref.notB(b1);
+    ref.notB(b2);
+    assertEquals(aNotB.getResult(false, null).getEstimate(), ref.getResult().getEstimate());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkInsufficientMemory() {
+    final Memory mem = new NativeMemory(new byte[24 + (8 * 100)]);
+    final AnotB direct = SetOperation.builder().initMemory(mem).buildANotB();
+    direct.setA(buildSketch(0, 101));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkWrapSeedMismatch() {
+    final Memory mem = new NativeMemory(new byte[SetOperation.getMaxAnotBBytes(K)]);
+    SetOperation.builder().initMemory(mem).buildANotB();
+    SetOperation.wrap(mem, 123L);
+  }
+
+  private static Sketch[] forms(final UpdateSketch sk) {
+    final Memory mem = new NativeMemory(new byte[Sketch.getMaxUpdateSketchBytes(K)]);
+    final UpdateSketch direct = UpdateSketch.builder().initMemory(mem).build(K);
+    final HashIterator it = sk.iterator();
+    while (it.next()) { direct.hashUpdate(it.get()); }
+    final int bytes = sk.getCurrentBytes(true);
+    return new Sketch[] {
+      sk,
+      direct,
+      sk.compact(true, null),
+      sk.compact(false, null),
+      sk.compact(true, new NativeMemory(new byte[bytes])),
+      sk.compact(false, new NativeMemory(new byte[bytes])),
+      Sketch.wrap(new NativeMemory(sk.compact(true, null).toCompressedByteArray()))
+    };
+  }
+
+  private static UpdateSketch buildSketch(final int start, final int n) {
+    final UpdateSketch sk = UpdateSketch.builder().build(K);
+    for (int i = start; i < (start + n); i++) { sk.update(i); }
+    return sk;
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
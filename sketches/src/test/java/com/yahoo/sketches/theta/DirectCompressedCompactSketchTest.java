@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static com.yahoo.sketches.theta.PreambleUtil.COMPACT_FLAG_MASK;
+import static com.yahoo.sketches.theta.PreambleUtil.FLAGS_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_BYTE;
+import static com.yahoo.sketches.theta.PreambleUtil.SER_VER_COMPRESSED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class DirectCompressedCompactSketchTest {
+
+  @Test
+  public void checkRoundTrips() {
+    final int[] sizes = {0, 1, 127, 128, 129, 1000, 5000};
+    for (int n : sizes) {
+      final UpdateSketch usk = buildSketch(n, 0);
+      checkRoundTrip(usk.compact(true, null));
+      checkRoundTrip(usk.compact(false, null));
+      final int bytes = usk.getCurrentBytes(true);
+      checkRoundTrip(usk.compact(true, new NativeMemory(new byte[bytes])));
+      checkRoundTrip(usk.compact(false, new NativeMemory(new byte[bytes])));
+    }
+  }
+
+  private static void checkRoundTrip(final CompactSketch csk) {
+    final byte[] compressed = csk.toCompressedByteArray();
+    final Memory mem = new NativeMemory(compressed);
+    assertEquals(mem.getByte(SER_VER_BYTE), SER_VER_COMPRESSED);
+    assertEquals(mem.getByte(FLAGS_BYTE) & COMPACT_FLAG_MASK, 0);
+
+    final long[] expected = csk.getCache().clone();
+    Arrays.sort(expected);
+
+    final Sketch wrapped = Sketch.wrap(mem);
+    assertTrue(wrapped instanceof DirectCompressedCompactSketch);
+    assertTrue(wrapped.isDirect());
+    assertTrue(wrapped.isOrdered());
+    assertEquals(wrapped.isEmpty(), csk.isEmpty());
+    assertEquals(wrapped.getThetaLong(), csk.getThetaLong());
+    assertEquals(wrapped.getRetainedEntries(true), csk.getRetainedEntries(true));
+    assertEquals(wrapped.getEstimate(), csk.getEstimate());
+    assertEquals(wrapped.getCache(), expected);
+    assertEquals(((CompactSketch) wrapped).toCompressedByteArray(), compressed);
+
+    final Sketch heapified = Sketch.heapify(mem);
+    assertFalse(heapified.isDirect());
+    assertTrue(heapified.isOrdered());
+    assertEquals(heapified.getCache(), expected);
+    assertEquals(heapified.getThetaLong(), csk.getThetaLong());
+    assertEquals(heapified.isEmpty(), csk.isEmpty());
+
+    //the uncompressed image of the wrapped sketch is an ordinary compact sketch
+    final byte[] uncompressed = wrapped.toByteArray();
+    assertEquals(uncompressed[SER_VER_BYTE], 3);
+    final Sketch reread = Sketch.wrap(new NativeMemory(uncompressed));
+    assertEquals(reread.getCache(), expected);
+    assertEquals(reread.getThetaLong(), csk.getThetaLong());
+    if (csk.getRetainedEntries(true) > 100) {
+      assertTrue(compressed.length < uncompressed.length);
+    }
+  }
+
+  @Test
+  public void checkCompressionInEstimationMode() {
+    final UpdateSketch usk = buildSketch(100000, 0);
+    final CompactSketch csk = usk.compact(true, null);
+    final int compressed = csk.toCompressedByteArray().length;
+    final int uncompressed = csk.toByteArray().length;
+    println("Compressed: " + compressed + ", Uncompressed: " + uncompressed);
+    assertTrue(compressed < (0.9 * uncompressed));
+  }
+
+  @Test
+  public void checkUnion() {
+    final int k = 4096;
+    final CompactSketch a = buildSketch(10000, 0).compact(true, null);
+    final CompactSketch b = buildSketch(10000, 5000).compact(false, null);
+
+    final Union plain = SetOperation.builder().buildUnion(k);
+    plain.update(a);
+    plain.update(b);
+    final CompactSketch expected = plain.getResult();
+
+    final Union fromSketch = SetOperation.builder().buildUnion(k);
+    fromSketch.update(Sketch.wrap(new NativeMemory(a.toCompressedByteArray())));
+    fromSketch.update(Sketch.wrap(new NativeMemory(b.toCompressedByteArray())));
+    assertEquals(fromSketch.getResult().getCache(), expected.getCache());
+
+    final Union fromMemory = SetOperation.builder().buildUnion(k);
+    fromMemory.update(new NativeMemory(a.toCompressedByteArray()));
+    fromMemory.update(new NativeMemory(b.toCompressedByteArray()));
+    final CompactSketch result = fromMemory.getResult();
+    assertEquals(result.getCache(), expected.getCache());
+    assertEquals(result.getThetaLong(), expected.getThetaLong());
+  }
+
+  @Test
+  public void checkMultiWaySetOperations() {
+    final int k = 4096;
+    final CompactSketch[] plain = new CompactSketch[3];
+    final CompactSketch[] compressed = new CompactSketch[3];
+    for (int i = 0; i < 3; i++) {
+      plain[i] = buildSketch(20000, i * 3000).compact(true, null);
+      compressed[i] = (CompactSketch) Sketch.wrap(new NativeMemory(plain[i].toCompressedByteArray()));
+    }
+    final CompactSketch inter1 = PairwiseSetOperations.intersect(plain);
+    final CompactSketch inter2 = PairwiseSetOperations.intersect(compressed);
+    assertEquals(inter2.getCache(), inter1.getCache());
+    assertEquals(inter2.getThetaLong(), inter1.getThetaLong());
+
+    final CompactSketch union1 = PairwiseSetOperations.union(plain, k);
+    final CompactSketch union2 = PairwiseSetOperations.union(compressed, k);
+    assertEquals(union2.getCache(), union1.getCache());
+    assertEquals(union2.getThetaLong(), union1.getThetaLong());
+
+    final CompactSketch notB1 = PairwiseSetOperations.aNotB(plain[0], new CompactSketch[] {plain[1]});
+    final CompactSketch notB2 =
+        PairwiseSetOperations.aNotB(compressed[0], new CompactSketch[] {compressed[1]});
+    assertEquals(notB2.getCache(), notB1.getCache());
+
+    assertEquals(PairwiseSetOperations.getIntersectionEstimate(compressed[0], compressed[1]),
+        PairwiseSetOperations.getIntersectionEstimate(plain[0], plain[1]));
+    assertEquals(PairwiseSetOperations.getUnionEstimate(compressed[0], compressed[1], k),
+        PairwiseSetOperations.getUnionEstimate(plain[0], plain[1], k));
+  }
+
+  @Test
+  public void checkCursorSeekCeiling() {
+    final CompactSketch plain = buildSketch(3000, 0).compact(true, null);
+    final CompactSketch compressed =
+        (CompactSketch) Sketch.wrap(new NativeMemory(plain.toCompressedByteArray()));
+    final long[] hashes = plain.getCache();
+    final Random rand = new Random(7);
+    for (int trial = 0; trial < 50; trial++) {
+      final OrderedHashCursor c1 = new OrderedHashCursor(plain);
+      final OrderedHashCursor c2 = new OrderedHashCursor(compressed);
+      long target = 0;
+      while (true) {
+        target += (long) (rand.nextDouble() * (Long.MAX_VALUE / 100));
+        final boolean found1 = c1.seekCeiling(target);
+        final boolean found2 = c2.seekCeiling(target);
+        assertEquals(found2, found1);
+        if (!found1) { break; }
+        assertEquals(c2.current(), c1.current());
+        if (rand.nextBoolean()) {
+          c1.next();
+          c2.next();
+          if (!c1.hasCurrent()) { break; }
+          assertEquals(c2.current(), c1.current());
+        }
+      }
+    }
+    final OrderedHashCursor c = new OrderedHashCursor(compressed);
+    for (int i = 0; i < hashes.length; i++) {
+      assertEquals(c.get(i), hashes[i]);
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkSeedMismatch() {
+    final byte[] bytes = buildSketch(100, 0).compact(true, null).toCompressedByteArray();
+    Sketch.wrap(new NativeMemory(bytes), 123L);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkTruncatedImage() {
+    final byte[] bytes = buildSketch(1000, 0).compact(true, null).toCompressedByteArray();
+    Sketch.wrap(new NativeMemory(Arrays.copyOf(bytes, bytes.length - 8)));
+  }
+
+  private static UpdateSketch buildSketch(final int n, final int start) {
+    final UpdateSketch usk = UpdateSketch.builder().build(4096);
+    for (int i = start; i < (start + n); i++) { usk.update(i); }
+    return usk;
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
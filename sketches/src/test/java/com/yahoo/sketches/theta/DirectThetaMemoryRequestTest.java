@@ -13,6 +13,7 @@ import org.testng.annotations.Test;
 
 import com.yahoo.memory.AllocMemory;
 import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryPool;
 import com.yahoo.memory.MemoryRequest;
 import com.yahoo.memory.NativeMemory;
 import com.yahoo.sketches.ResizeFactor;
@@ -94,6 +95,33 @@ public class DirectThetaMemoryRequestTest {
     memMgr.free(last);
   }
 
+  @Test
+  public void checkMemoryPool() {
+    int k = 4096;
+    int u = 2 * k;
+    MemoryPool pool = new MemoryPool();
+    UpdateSketch[] sketches = new UpdateSketch[4]; //sharing one pool
+    for (int s = 0; s < sketches.length; s++) {
+      Memory mem = pool.request((k << 3) / 4);
+      sketches[s] = UpdateSketch.builder().initMemory(mem)
+          .setResizeFactor(ResizeFactor.X2).build(k);
+    }
+    for (int i = 0; i < u; i++) {
+      for (UpdateSketch sk : sketches) { sk.update(i); }
+    }
+    long outstanding = 0;
+    for (UpdateSketch sk : sketches) {
+      assertEquals(sk.getEstimate(), u, 0.05 * u);
+      long cap = sk.getMemory().getCapacity();
+      outstanding += Long.highestOneBit(cap - 1) << 1;
+    }
+    assertEquals(pool.getBytesOutstanding(), outstanding); //grown blocks were returned
+    assertEquals(pool.getAllocationFailures(), 0);
+    for (UpdateSketch sk : sketches) { sk.getMemory().freeMemory(); }
+    assertEquals(pool.getBytesOutstanding(), 0);
+    pool.close();
+  }
+
   @Test
   public void checkLimitedMemoryWithP() {
     int k = 4096;
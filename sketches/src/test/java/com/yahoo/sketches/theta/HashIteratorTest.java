@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.Family;
+
+public class HashIteratorTest {
+
+  @Test
+  public void checkAllForms() {
+    final int k = 512;
+    final int[] sizes = {0, 1, 100, 10000};
+    for (int n : sizes) {
+      final UpdateSketch heapQs = UpdateSketch.builder().build(k);
+      final UpdateSketch heapAlpha = UpdateSketch.builder().setFamily(Family.ALPHA).build(k);
+      final Memory mem = new NativeMemory(new byte[Sketch.getMaxUpdateSketchBytes(k)]);
+      final UpdateSketch directQs = UpdateSketch.builder().initMemory(mem).build(k);
+      for (int i = 0; i < n; i++) {
+        heapQs.update(i);
+        heapAlpha.update(i);
+        directQs.update(i);
+      }
+      checkForms(heapQs);
+      checkForms(heapAlpha);
+      checkForms(directQs);
+    }
+  }
+
+  private static void checkForms(final UpdateSketch sk) {
+    final long[] expected = sk.compact(true, null).getCache();
+    checkIterator(sk, expected);
+    final int bytes = sk.getCurrentBytes(true);
+    checkIterator(sk.compact(false, null), expected);
+    checkIterator(sk.compact(true, null), expected);
+    checkIterator(sk.compact(false, new NativeMemory(new byte[bytes])), expected);
+    checkIterator(sk.compact(true, new NativeMemory(new byte[bytes])), expected);
+    final byte[] compressed = sk.compact(true, null).toCompressedByteArray();
+    checkIterator(Sketch.wrap(new NativeMemory(compressed)), expected);
+  }
+
+  private static void checkIterator(final Sketch sk, final long[] expected) {
+    final long[] hashes = new long[expected.length];
+    int count = 0;
+    final HashIterator it = sk.iterator();
+    while (it.next()) {
+      hashes[count++] = it.get();
+    }
+    assertFalse(it.next());
+    assertEquals(count, sk.getRetainedEntries(true));
+    if (sk.isOrdered()) {
+      for (int i = 1; i < count; i++) { assertTrue(hashes[i - 1] < hashes[i]); }
+    } else {
+      Arrays.sort(hashes);
+    }
+    assertEquals(hashes, expected);
+  }
+
+  @Test
+  public void checkSkipsDirtyValues() {
+    final int k = 512;
+    final UpdateSketch sk = UpdateSketch.builder().setFamily(Family.ALPHA).build(k);
+    for (int i = 0; i < 10000; i++) { sk.update(i); }
+    final long thetaLong = sk.getThetaLong();
+    int dirty = 0;
+    for (long hash : sk.getCache()) {
+      if (hash >= thetaLong) { dirty++; }
+    }
+    assertTrue(dirty > 0);
+    int count = 0;
+    final HashIterator it = sk.iterator();
+    while (it.next()) {
+      assertTrue(it.get() < thetaLong);
+      count++;
+    }
+    assertEquals(count, sk.getRetainedEntries(true));
+  }
+
+  @Test
+  public void checkAnotBWithDirectInputs() {
+    final int k = 512;
+    final UpdateSketch heapA = UpdateSketch.builder().build(k);
+    final UpdateSketch heapB = UpdateSketch.builder().build(k);
+    final Memory memA = new NativeMemory(new byte[Sketch.getMaxUpdateSketchBytes(k)]);
+    final Memory memB = new NativeMemory(new byte[Sketch.getMaxUpdateSketchBytes(k)]);
+    final UpdateSketch directA = UpdateSketch.builder().initMemory(memA).build(k);
+    final UpdateSketch directB = UpdateSketch.builder().initMemory(memB).build(k);
+    for (int i = 0; i < 10000; i++) {
+      heapA.update(i);
+      directA.update(i);
+      heapB.update(i + 5000);
+      directB.update(i + 5000);
+    }
+    final AnotB aNotB = SetOperation.builder().buildANotB();
+    aNotB.update(heapA, heapB);
+    final CompactSketch expected = aNotB.getResult();
+    assertTrue(expected.getRetainedEntries(true) > 0);
+
+    aNotB.update(directA, directB);
+    assertEquals(aNotB.getResult().getCache(), expected.getCache());
+    aNotB.update(directA.compact(true, null), directB);
+    assertEquals(aNotB.getResult().getCache(), expected.getCache());
+    aNotB.update(directA, directB.compact(false, new NativeMemory(new byte[directB.getCurrentBytes(true)])));
+    assertEquals(aNotB.getResult().getCache(), expected.getCache());
+
+    final Intersection inter = SetOperation.builder().buildIntersection();
+    inter.update(heapA);
+    inter.update(heapB);
+    final CompactSketch expectedInter = inter.getResult();
+    inter.update(directA);
+    inter.update(directB);
+    assertEquals(inter.getResult().getCache(), expectedInter.getCache());
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
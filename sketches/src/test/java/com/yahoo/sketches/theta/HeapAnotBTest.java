@@ -321,6 +321,26 @@ public class HeapAnotBTest {
     assertEquals(anotb.getFamily(), Family.A_NOT_B);
   }
   
+  @Test
+  public void checkEstimateWithoutResult() {
+    int k = 512;
+    UpdateSketch skA = UpdateSketch.builder().setNominalEntries(k).build();
+    UpdateSketch skB = UpdateSketch.builder().setNominalEntries(k).build();
+    for (int i = 0; i < 4000; i++) skA.update(i);
+    for (int i = 3000; i < 6000; i++) skB.update(i);
+    AnotB aNotB = SetOperation.builder().buildANotB();
+    aNotB.update(skA, skB);
+    double est = aNotB.getEstimate();
+    double lb = aNotB.getLowerBound(2);
+    double ub = aNotB.getUpperBound(2);
+    assertEquals(est, 3000, 3000 * 0.2);
+    assertTrue((lb <= est) && (est <= ub));
+    CompactSketch result = aNotB.getResult(); //resets
+    assertEquals(result.getEstimate(), est);
+    assertEquals(result.getLowerBound(2), lb);
+    assertEquals(result.getUpperBound(2), ub);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
@@ -492,6 +492,32 @@ public class HeapIntersectionTest {
     assertEquals(impl.getFamily(), Family.INTERSECTION);
   }
 
+  @Test
+  public void checkEstimateWithoutResult() {
+    int k = 512;
+    UpdateSketch skA = Sketches.updateSketchBuilder().build(k);
+    UpdateSketch skB = Sketches.updateSketchBuilder().build(k);
+    for (int i = 0; i < 4000; i++) skA.update(i);
+    for (int i = 2000; i < 6000; i++) skB.update(i);
+    Memory mem = new NativeMemory(new byte[SetOperation.getMaxIntersectionBytes(k)]);
+    Intersection[] inters = { Sketches.setOperationBuilder().buildIntersection(),
+        Sketches.setOperationBuilder().initMemory(mem).buildIntersection() };
+    for (Intersection inter : inters) {
+      inter.update(skA);
+      inter.update(skB);
+      CompactSketch result = inter.getResult();
+      assertEquals(inter.getEstimate(), result.getEstimate());
+      assertEquals(inter.getLowerBound(2), result.getLowerBound(2));
+      assertEquals(inter.getUpperBound(2), result.getUpperBound(2));
+      assertEquals(inter.getEstimate(), 2000, 2000 * 0.2);
+    }
+  }
+
+  @Test(expectedExceptions = SketchesStateException.class)
+  public void checkEstimateNoUpdate() {
+    Sketches.setOperationBuilder().buildIntersection().getEstimate();
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
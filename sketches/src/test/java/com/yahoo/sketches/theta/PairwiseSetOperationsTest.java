@@ -6,9 +6,15 @@
 package com.yahoo.sketches.theta;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 import org.testng.annotations.Test;
 
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
 import com.yahoo.sketches.SketchesArgumentException;
 
 public class PairwiseSetOperationsTest {
@@ -331,6 +337,308 @@ public class PairwiseSetOperationsTest {
    assertEquals(cskC.isEmpty(), cskR.isEmpty());
  }
 
+  // Multi-way Union
+
+  @Test
+  public void checkMultiwayUnionEqualsUnion() {
+    int k = 512;
+    int numSketches = 50;
+    CompactSketch[] csks = new CompactSketch[numSketches];
+    Union union = SetOperation.builder().setNominalEntries(k).buildUnion();
+    for (int i = 0; i < numSketches; i++) {
+      UpdateSketch usk = UpdateSketch.builder().setNominalEntries(1024).build();
+      for (int j = 0; j < (i * 100); j++) { usk.update((i * 50) + j); } //overlapping
+      Memory mem = ((i & 1) == 0) ? null
+          : new NativeMemory(new byte[usk.getCurrentBytes(true)]);
+      csks[i] = usk.compact(true, mem); //both heap and direct
+      union.update(csks[i]);
+    }
+    CompactSketch expected = union.getResult();
+    CompactSketch result = PairwiseSetOperations.union(csks, k);
+    assertTrue(result.isOrdered());
+    assertFalse(result.isEmpty());
+    assertEquals(result.getRetainedEntries(true), k);
+    assertEquals(result.getThetaLong(), expected.getThetaLong());
+    assertEquals(result.getCache(), expected.getCache());
+  }
+
+  @Test
+  public void checkMultiwayUnionExactAndCorners() {
+    int k = 4096;
+    CompactSketch[] csks = new CompactSketch[5];
+    for (int i = 0; i < 4; i++) {
+      UpdateSketch usk = UpdateSketch.builder().build(k);
+      for (int j = 0; j < 100; j++) { usk.update(j + (i * 10)); }
+      csks[i] = usk.compact(true, null);
+    }
+    //csks[4] is null and is ignored
+    CompactSketch result = PairwiseSetOperations.union(csks, k);
+    assertEquals(result.getEstimate(), 130.0);
+    assertFalse(result.isEstimationMode());
+
+    assertNull(PairwiseSetOperations.union(new CompactSketch[2], k));
+    assertNull(PairwiseSetOperations.union(null, k));
+
+    CompactSketch empty = UpdateSketch.builder().build(k).compact(true, null);
+    result = PairwiseSetOperations.union(new CompactSketch[] {empty, empty}, k);
+    assertTrue(result.isEmpty());
+    result = PairwiseSetOperations.union(new CompactSketch[] {empty, csks[0]}, k);
+    assertFalse(result.isEmpty());
+    assertEquals(result.getEstimate(), 100.0);
+
+    //sampled empty sketch, theta < 1.0 still applies
+    CompactSketch sampled = UpdateSketch.builder().setP(0.5f).build(k).compact(true, null);
+    result = PairwiseSetOperations.union(new CompactSketch[] {sampled, csks[0]}, k);
+    assertEquals(result.getThetaLong(), sampled.getThetaLong());
+    assertTrue(result.getRetainedEntries(true) < 100);
+  }
+
+  @Test
+  public void checkMultiwayUnionBadArgs() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    usk.update(1);
+    UpdateSketch usk2 = UpdateSketch.builder().setSeed(123).build();
+    usk2.update(1);
+    try {
+      PairwiseSetOperations.union(new CompactSketch[] {usk.compact(false, null)}, 16);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected, not ordered
+    }
+    try {
+      PairwiseSetOperations.union(
+          new CompactSketch[] {usk.compact(true, null), usk2.compact(true, null)}, 16);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected, seed hash mismatch
+    }
+    try {
+      PairwiseSetOperations.union(new CompactSketch[] {usk.compact(true, null)}, 0);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  // Multi-way Intersection
+
+  @Test
+  public void checkMultiwayIntersectEqualsIntersection() {
+    int k = 4096;
+    int numSketches = 8;
+    CompactSketch[] csks = new CompactSketch[numSketches];
+    Intersection inter = SetOperation.builder().buildIntersection();
+    for (int i = 0; i < numSketches; i++) {
+      UpdateSketch usk = UpdateSketch.builder().build(k);
+      int n = 20000 + (i * 5000); //different sizes and thetas
+      for (int j = 0; j < n; j++) { usk.update(j + (i * 500)); }
+      Memory mem = ((i & 1) == 0) ? null
+          : new NativeMemory(new byte[usk.getCurrentBytes(true)]);
+      csks[i] = usk.compact(true, mem);
+      inter.update(csks[i]);
+    }
+    CompactSketch expected = inter.getResult();
+    CompactSketch result = PairwiseSetOperations.intersect(csks);
+    assertTrue(result.isOrdered());
+    assertTrue(result.getRetainedEntries(true) > 0);
+    assertEquals(result.getThetaLong(), expected.getThetaLong());
+    assertEquals(result.getCache(), expected.getCache());
+    assertEquals(result.isEmpty(), expected.isEmpty());
+
+    //pairwise agrees too
+    result = PairwiseSetOperations.intersect(new CompactSketch[] {csks[0], csks[1]});
+    CompactSketch pw = PairwiseSetOperations.intersect(csks[0], csks[1]);
+    assertEquals(result.getCache(), pw.getCache());
+    assertEquals(result.getThetaLong(), pw.getThetaLong());
+  }
+
+  @Test
+  public void checkMultiwayIntersectSparse() {
+    //a small sketch against large ones exercises the galloping skips
+    int k = 1 << 14;
+    UpdateSketch big1 = UpdateSketch.builder().build(k);
+    UpdateSketch big2 = UpdateSketch.builder().build(k);
+    UpdateSketch small = UpdateSketch.builder().build(k);
+    for (int i = 0; i < k; i++) {
+      big1.update(i);
+      big2.update(i + 1);
+    }
+    for (int i = 0; i < 100; i++) { small.update(i * 100); }
+    CompactSketch result = PairwiseSetOperations.intersect(new CompactSketch[] {
+        big1.compact(true, null), small.compact(true, null), big2.compact(true, null)});
+    assertEquals(result.getEstimate(), 99.0); //0 is not in big2
+    assertFalse(result.isEstimationMode());
+
+    CompactSketch single = PairwiseSetOperations.intersect(
+        new CompactSketch[] {small.compact(true, null)});
+    assertEquals(single.getEstimate(), 100.0);
+  }
+
+  @Test
+  public void checkMultiwayIntersectCorners() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    CompactSketch csk = usk.compact(true, null);
+    assertNull(PairwiseSetOperations.intersect(new CompactSketch[3]));
+    assertNull(PairwiseSetOperations.intersect((CompactSketch[]) null));
+
+    CompactSketch result = PairwiseSetOperations.intersect(new CompactSketch[] {csk, null});
+    assertTrue(result.isEmpty());
+    assertEquals(result.getRetainedEntries(true), 0);
+
+    CompactSketch empty = UpdateSketch.builder().build().compact(true, null);
+    result = PairwiseSetOperations.intersect(new CompactSketch[] {csk, empty});
+    assertTrue(result.isEmpty());
+
+    try {
+      PairwiseSetOperations.intersect(new CompactSketch[] {csk, usk.compact(false, null)});
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  // Multi-way into Memory
+
+  @Test
+  public void checkMultiwayIntoMemory() {
+    int k = 512;
+    CompactSketch[] csks = new CompactSketch[6];
+    for (int i = 0; i < csks.length; i++) {
+      UpdateSketch usk = UpdateSketch.builder().build(k);
+      for (int j = 0; j < 5000; j++) { usk.update(j + (i * 200)); }
+      csks[i] = usk.compact(true, null);
+    }
+    Memory scratch = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(2 * k)]);
+
+    //the same scratch Memory is reused for every result
+    CompactSketch heapRes = PairwiseSetOperations.union(csks, k);
+    CompactSketch memRes = PairwiseSetOperations.union(csks, k, scratch);
+    checkSameResult(memRes, heapRes, scratch);
+
+    heapRes = PairwiseSetOperations.intersect(csks);
+    memRes = PairwiseSetOperations.intersect(csks, scratch);
+    checkSameResult(memRes, heapRes, scratch);
+
+    CompactSketch[] bs = {csks[1], null, csks[2]};
+    heapRes = PairwiseSetOperations.aNotB(csks[0], bs);
+    memRes = PairwiseSetOperations.aNotB(csks[0], bs, scratch);
+    checkSameResult(memRes, heapRes, scratch);
+    CompactSketch expected = PairwiseSetOperations.aNotB(
+        PairwiseSetOperations.aNotB(csks[0], csks[1]), csks[2]);
+    assertEquals(heapRes.getCache(), expected.getCache());
+    assertEquals(heapRes.getThetaLong(), expected.getThetaLong());
+  }
+
+  @Test
+  public void checkMultiwayIntoMemoryExactAndEmpty() {
+    UpdateSketch usk1 = UpdateSketch.builder().build();
+    UpdateSketch usk2 = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) {
+      usk1.update(i);
+      usk2.update(i + 50);
+    }
+    CompactSketch[] csks = {usk1.compact(true, null), usk2.compact(true, null)};
+    Memory scratch = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(200)]);
+
+    //exact mode has a 2 long preamble
+    CompactSketch memRes = PairwiseSetOperations.union(csks, 4096, scratch);
+    assertEquals(memRes.getEstimate(), 150.0);
+    assertEquals(memRes.getCurrentBytes(true), (2 + 150) << 3);
+    checkSameResult(memRes, PairwiseSetOperations.union(csks, 4096), scratch);
+    memRes = PairwiseSetOperations.intersect(csks, scratch);
+    assertEquals(memRes.getEstimate(), 50.0);
+    memRes = PairwiseSetOperations.aNotB(csks[0], new CompactSketch[] {csks[1]}, scratch);
+    assertEquals(memRes.getEstimate(), 50.0);
+    checkSameResult(memRes, PairwiseSetOperations.aNotB(csks[0], csks[1]), scratch);
+
+    //empty results
+    memRes = PairwiseSetOperations.intersect(new CompactSketch[] {csks[0], null}, scratch);
+    assertTrue(memRes.isEmpty());
+    assertEquals(memRes.getCurrentBytes(true), 8);
+    assertTrue(Sketch.wrap(scratch).isEmpty());
+    memRes = PairwiseSetOperations.aNotB(null, csks, scratch);
+    assertTrue(memRes.isEmpty());
+    assertNull(PairwiseSetOperations.aNotB(null, new CompactSketch[1], scratch));
+    memRes = PairwiseSetOperations.aNotB(csks[0], null, scratch);
+    assertEquals(memRes.getEstimate(), 100.0);
+  }
+
+  @Test
+  public void checkMultiwayInsufficientMemory() {
+    UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 100; i++) { usk.update(i); }
+    CompactSketch[] csks = {usk.compact(true, null)};
+    Memory small = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(99)]);
+    try {
+      PairwiseSetOperations.union(csks, 4096, small);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      PairwiseSetOperations.intersect(csks, small);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    //k limits the size of the union result
+    assertEquals(PairwiseSetOperations.union(csks, 64, small).getRetainedEntries(true), 64);
+  }
+
+  private static void checkSameResult(CompactSketch memRes, CompactSketch heapRes, Memory mem) {
+    assertTrue(memRes.isDirect());
+    assertTrue(memRes.isOrdered());
+    assertTrue(memRes.getMemory() == mem);
+    assertEquals(memRes.getRetainedEntries(true), heapRes.getRetainedEntries(true));
+    assertEquals(memRes.getThetaLong(), heapRes.getThetaLong());
+    assertEquals(memRes.isEmpty(), heapRes.isEmpty());
+    assertEquals(memRes.getCache(), heapRes.getCache());
+    Sketch wrapped = Sketch.wrap(mem);
+    assertEquals(wrapped.getEstimate(), heapRes.getEstimate());
+    assertEquals(memRes.toByteArray(), heapRes.toByteArray());
+  }
+
+  @Test
+  public void checkEstimatesWithoutResult() {
+    int k = 512;
+    UpdateSketch usk1 = UpdateSketch.builder().setNominalEntries(k).build();
+    UpdateSketch usk2 = UpdateSketch.builder().setNominalEntries(2 * k).build();
+    UpdateSketch usk3 = UpdateSketch.builder().setNominalEntries(k).build();
+    for (int i = 0; i < 5000; i++) usk1.update(i);
+    for (int i = 2500; i < 9000; i++) usk2.update(i);
+    for (int i = 0; i < 100; i++) usk3.update(i); //exact
+    Memory mem = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(4 * k)]);
+    CompactSketch[] sketches = { usk1.compact(true, null), usk2.compact(true, mem),
+        usk3.compact(true, null), UpdateSketch.builder().build().compact(true, null), null };
+    for (CompactSketch a : sketches) {
+      for (CompactSketch b : sketches) {
+        checkSameEstimates(PairwiseSetOperations.intersect(a, b),
+            PairwiseSetOperations.getIntersectionEstimate(a, b),
+            PairwiseSetOperations.getIntersectionLowerBound(2, a, b),
+            PairwiseSetOperations.getIntersectionUpperBound(2, a, b));
+        checkSameEstimates(PairwiseSetOperations.aNotB(a, b),
+            PairwiseSetOperations.getAnotBEstimate(a, b),
+            PairwiseSetOperations.getAnotBLowerBound(2, a, b),
+            PairwiseSetOperations.getAnotBUpperBound(2, a, b));
+        checkSameEstimates(PairwiseSetOperations.union(a, b, k),
+            PairwiseSetOperations.getUnionEstimate(a, b, k),
+            PairwiseSetOperations.getUnionLowerBound(2, a, b, k),
+            PairwiseSetOperations.getUnionUpperBound(2, a, b, k));
+      }
+    }
+  }
+
+  private static void checkSameEstimates(CompactSketch result, double est, double lb, double ub) {
+    if (result == null) { //both inputs null
+      assertEquals(est, 0.0);
+      return;
+    }
+    assertEquals(est, result.getEstimate());
+    assertEquals(lb, result.getLowerBound(2));
+    assertEquals(ub, result.getUpperBound(2));
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
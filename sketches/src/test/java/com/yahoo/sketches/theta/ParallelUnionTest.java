@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class ParallelUnionTest {
+
+  @Test
+  public void checkSketchesEqualSequentialUnion() {
+    final int k = 1024;
+    final int numSketches = 2000;
+    final Sketch[] sketches = new Sketch[numSketches];
+    final Union seq = SetOperation.builder().setNominalEntries(k).buildUnion();
+    for (int i = 0; i < numSketches; i++) {
+      final UpdateSketch usk = UpdateSketch.builder().setNominalEntries(k).build();
+      for (int j = 0; j < 300; j++) { usk.update((i * 100) + j); } //overlapping
+      //mix of the input forms accepted by Union
+      sketches[i] = ((i % 3) == 0) ? usk : usk.compact((i & 1) == 0, null);
+      seq.update(sketches[i]);
+    }
+    final CompactSketch expected = seq.getResult();
+    final ParallelUnion pu = new ParallelUnion(k, 9001L, new ForkJoinPool(4));
+    final CompactSketch result = pu.union(sketches);
+    assertTrue(result.isOrdered());
+    assertEquals(result.getRetainedEntries(true), expected.getRetainedEntries(true));
+    assertEquals(result.getThetaLong(), expected.getThetaLong());
+    assertEquals(result.getEstimate(), expected.getEstimate());
+    assertEquals(result.getCache(), expected.getCache()); //both ordered: identical hashes
+    pu.getPool().shutdown();
+  }
+
+  @Test
+  public void checkMemoryImages() {
+    final int k = 512;
+    final int numSketches = 500;
+    final Memory[] images = new Memory[numSketches];
+    final Union seq = SetOperation.builder().setNominalEntries(k).buildUnion();
+    for (int i = 0; i < numSketches; i++) {
+      final UpdateSketch usk = UpdateSketch.builder().setNominalEntries(k).build();
+      for (int j = 0; j < 1000; j++) { usk.update((i * 1000) + j); } //disjoint
+      final byte[] arr = ((i & 1) == 0) ? usk.compact(true, null).toByteArray() : usk.toByteArray();
+      images[i] = new NativeMemory(arr);
+      seq.update(images[i]);
+    }
+    final ParallelUnion pu = new ParallelUnion(k);
+    assertEquals(pu.getNominalEntries(), k);
+    final Memory dstMem = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(k)]);
+    final CompactSketch result = pu.union(images, true, dstMem);
+    assertTrue(result.isDirect());
+    assertEquals(result.getEstimate(), seq.getResult().getEstimate());
+    assertEquals(result.getEstimate(), numSketches * 1000, numSketches * 1000 * 0.1);
+  }
+
+  @Test
+  public void checkEmptyAndNullInputs() {
+    final ParallelUnion pu = new ParallelUnion(1024);
+    assertTrue(pu.union((Sketch[]) null).isEmpty());
+    assertTrue(pu.union(new Memory[0]).isEmpty());
+    final Sketch[] sketches = new Sketch[200];
+    final UpdateSketch usk = UpdateSketch.builder().build();
+    for (int i = 0; i < 10; i++) { usk.update(i); }
+    sketches[150] = usk;
+    final CompactSketch result = pu.union(sketches, false, null);
+    assertEquals(result.getEstimate(), 10.0);
+    assertTrue(result.getUpperBound(1) >= 10.0);
+  }
+
+  @Test
+  public void checkSeedMismatch() {
+    final Sketch[] sketches = new Sketch[300];
+    for (int i = 0; i < sketches.length; i++) {
+      final UpdateSketch usk = UpdateSketch.builder().setSeed((i == 250) ? 123L : 9001L).build();
+      usk.update(i);
+      sketches[i] = usk;
+    }
+    try {
+      new ParallelUnion(1024).union(sketches);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void checkBadArgs() {
+    try {
+      new ParallelUnion(8);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      new ParallelUnion(1024, 9001L, null);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
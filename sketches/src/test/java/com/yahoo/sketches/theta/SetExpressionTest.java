@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class SetExpressionTest {
+
+  @Test
+  public void checkExpressionEqualsChainedOperations() {
+    final int k = 512;
+    final UpdateSketch a = buildSketch(k, 0, 4000);
+    final UpdateSketch b = buildSketch(k, 3000, 6000);
+    final UpdateSketch c = buildSketch(2 * k, 1000, 5000);
+    final UpdateSketch d = buildSketch(k, 5000, 9000);
+    final UpdateSketch e = buildSketch(4 * k, 2000, 2500);
+
+    //((A u B) n (C u D)) \ E
+    final SetExpression expr = SetExpression.aNotB(
+        SetExpression.intersect(
+            SetExpression.union(SetExpression.sketch(a), SetExpression.sketch(b)),
+            SetExpression.union(SetExpression.sketch(c.compact(true, null)),
+                SetExpression.image(new NativeMemory(d.compact(true, null).toByteArray())))),
+        SetExpression.sketch(e.compact(false, null)));
+    final CompactSketch result = expr.evaluate(k, null);
+
+    final Union u1 = SetOperation.builder().setNominalEntries(k).buildUnion();
+    u1.update(a);
+    u1.update(b);
+    final Union u2 = SetOperation.builder().setNominalEntries(k).buildUnion();
+    u2.update(c);
+    u2.update(d);
+    final Intersection inter = SetOperation.builder().buildIntersection();
+    inter.update(u1.getResult());
+    inter.update(u2.getResult());
+    final AnotB aNotB = SetOperation.builder().buildANotB();
+    aNotB.update(inter.getResult(), e);
+    final CompactSketch expected = aNotB.getResult(true, null);
+
+    assertTrue(result.isOrdered());
+    assertFalse(result.isEmpty());
+    assertEquals(result.getThetaLong(), expected.getThetaLong());
+    assertEquals(result.getCache(), expected.getCache());
+    assertEquals(result.getEstimate(), 5000 - 500, 5000 * 0.15);
+  }
+
+  @Test
+  public void checkGlobalThetaPushdown() {
+    final UpdateSketch small = buildSketch(64, 0, 10000); //lowest theta
+    final UpdateSketch large = buildSketch(4096, 20000, 30000);
+    final SetExpression expr = SetExpression.union(
+        SetExpression.sketch(large), SetExpression.sketch(small));
+    final CompactSketch result = expr.evaluate();
+    assertTrue(result.getThetaLong() <= small.getThetaLong());
+    final long[] cache = result.getCache();
+    for (int i = 0; i < cache.length; i++) {
+      assertTrue(cache[i] < result.getThetaLong());
+    }
+    assertEquals(result.getEstimate(), 20000, 20000 * 0.4);
+  }
+
+  @Test
+  public void checkIntersectionShortCircuit() {
+    final int k = 1024;
+    final UpdateSketch a = buildSketch(k, 0, 100);
+    final UpdateSketch b = buildSketch(k, 1000, 1100);
+    final UpdateSketch c = buildSketch(k, 2000, 20000);
+    //A n B has no entries, so C is never read
+    final SetExpression disjoint = SetExpression.intersect(SetExpression.sketch(c),
+        SetExpression.intersect(SetExpression.sketch(a), SetExpression.sketch(b)));
+    final CompactSketch r1 = disjoint.evaluate();
+    assertEquals(r1.getRetainedEntries(true), 0);
+    assertFalse(r1.isEmpty());
+    assertEquals(r1.getThetaLong(), c.getThetaLong());
+
+    final SetExpression withEmpty = SetExpression.intersect(SetExpression.sketch(c),
+        SetExpression.sketch(UpdateSketch.builder().build()));
+    final CompactSketch r2 = withEmpty.evaluate();
+    assertTrue(r2.isEmpty());
+    assertEquals(r2.getRetainedEntries(true), 0);
+
+    final SetExpression emptyA = SetExpression.aNotB(
+        SetExpression.sketch(UpdateSketch.builder().build()), SetExpression.sketch(c));
+    assertTrue(emptyA.evaluate().isEmpty());
+    final SetExpression emptyUnion = SetExpression.union(
+        SetExpression.sketch(UpdateSketch.builder().build()),
+        SetExpression.sketch(UpdateSketch.builder().build()));
+    assertTrue(emptyUnion.evaluate().isEmpty());
+  }
+
+  @Test
+  public void checkEvaluateIntoMemory() {
+    final int k = 1024;
+    final UpdateSketch a = buildSketch(k, 0, 600);
+    final UpdateSketch b = buildSketch(k, 300, 900);
+    final SetExpression expr = SetExpression.intersect(
+        SetExpression.sketch(a), SetExpression.sketch(b));
+    final Memory dstMem = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(k)]);
+    final CompactSketch direct = expr.evaluate(k, dstMem);
+    assertTrue(direct.isDirect());
+    assertEquals(direct.getEstimate(), 300.0);
+    assertEquals(direct.getCache(), expr.evaluate().getCache());
+    assertEquals(Sketch.wrap(dstMem).getEstimate(), 300.0);
+
+    //a single leaf is compacted into the Memory
+    final Memory dstMem2 = new NativeMemory(new byte[Sketch.getMaxCompactSketchBytes(k)]);
+    final CompactSketch leaf = SetExpression.sketch(a).evaluate(k, dstMem2);
+    assertTrue(leaf.isDirect());
+    assertEquals(leaf.getEstimate(), 600.0);
+  }
+
+  @Test
+  public void checkBadArgs() {
+    final SetExpression leaf = SetExpression.sketch(buildSketch(64, 0, 10));
+    try {
+      SetExpression.sketch(null);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      SetExpression.image(null);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      SetExpression.union();
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      SetExpression.intersect(leaf, null);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      SetExpression.aNotB(null, leaf);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    final UpdateSketch other = UpdateSketch.builder().setSeed(123L).build();
+    other.update(1);
+    try {
+      SetExpression.union(leaf, SetExpression.sketch(other)).evaluate();
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void checkToString() {
+    final SetExpression expr = SetExpression.aNotB(
+        SetExpression.union(SetExpression.sketch(buildSketch(64, 0, 10)),
+            SetExpression.sketch(buildSketch(64, 0, 20))),
+        SetExpression.sketch(buildSketch(64, 0, 5)));
+    assertEquals(expr.toString(), "AnotB(Union(Sketch(10), Sketch(20)), Sketch(5))");
+    println(expr.toString());
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+  private static UpdateSketch buildSketch(final int k, final int lo, final int hi) {
+    final UpdateSketch sketch = UpdateSketch.builder().setNominalEntries(k).build();
+    for (int i = lo; i < hi; i++) { sketch.update(i); }
+    return sketch;
+  }
+
+}
@@ -113,8 +113,8 @@ public class SetOperationTest {
   }
 
   @Test(expectedExceptions = SketchesArgumentException.class)
-  public void checkBuilderAnotB_noMem() {
-    Memory mem = new NativeMemory(new byte[64]);
+  public void checkBuilderAnotB_memTooSmall() {
+    Memory mem = new NativeMemory(new byte[16]);
     SetOperation.builder().initMemory(mem).buildANotB();
   }
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class SlidingWindowSketchTest {
+
+  @Test
+  public void checkWindowsEqualUnionOfTicks() {
+    final int k = 64;
+    final int[] fanouts = {4, 3};
+    final int maxWindow = 30;
+    final SlidingWindowSketch heap = new SlidingWindowSketch(k, fanouts, maxWindow);
+    final long bytes = SlidingWindowSketch.getMaxBytes(k, fanouts, maxWindow);
+    final Memory mem = new NativeMemory(new byte[(int) bytes]);
+    final SlidingWindowSketch direct = new SlidingWindowSketch(k, fanouts, maxWindow, 9001L, mem);
+    final List<CompactSketch> ticks = new ArrayList<>(); //reference, one sketch per tick
+    final Random rand = new Random(1);
+    final int[] windows = {1, 2, 5, 12, 13, 24, 30};
+    long tick = 0;
+    for (int step = 0; step < 150; step++) {
+      tick += (step % 37 == 36) ? 9 : 1; //with gaps
+      final UpdateSketch ref = UpdateSketch.builder().setNominalEntries(k).build();
+      final int n = (step % 5 == 4) ? 0 : rand.nextInt(200);
+      for (int i = 0; i < n; i++) {
+        final long v = rand.nextInt(3000);
+        heap.update(tick, v);
+        direct.update(tick, v);
+        ref.update(v);
+      }
+      heap.advance(tick);
+      direct.advance(tick);
+      while (ticks.size() <= tick) { ticks.add(null); }
+      ticks.set((int) tick, ref.compact(true, null));
+      for (int w : windows) {
+        final int from = (int) Math.max(0, (tick - w) + 1);
+        final CompactSketch expected = PairwiseSetOperations.union(
+            ticks.subList(from, (int) tick + 1).toArray(new CompactSketch[0]), k);
+        final CompactSketch r1 = heap.getResult(w);
+        final CompactSketch r2 = direct.getResult(w);
+        assertEquals(r1.getThetaLong(), expected.getThetaLong());
+        assertEquals(r1.getCache(), expected.getCache());
+        assertEquals(r2.getCache(), expected.getCache());
+        assertEquals(heap.getEstimate(w), expected.getEstimate());
+      }
+    }
+    assertEquals(heap.getCurrentTick(), tick);
+    assertEquals(heap.getMaxWindowTicks(), maxWindow);
+  }
+
+  @Test
+  public void checkPanesPerQuery() {
+    final int[] fanouts = {60, 24}; //minute, hour and day panes
+    final int week = 7 * 1440;
+    final SlidingWindowSketch sketch = new SlidingWindowSketch(16, fanouts, week);
+    for (long minute = 0; minute < (week + 1000); minute++) {
+      sketch.update(minute, minute);
+    }
+    final int maxPanes = (2 * 59) + (2 * 23) + 7;
+    assertTrue(sketch.windowPanes(week).size() <= maxPanes);
+    assertTrue(sketch.windowPanes(60).size() <= (2 * 59));
+    assertEquals(sketch.getEstimate(week), week, week * 0.5);
+    assertEquals(sketch.getEstimate(1), 1.0);
+    final UpdateSketch current = sketch.getCurrentSketch();
+    current.update("x");
+    assertEquals(sketch.getEstimate(1), 2.0);
+    sketch.advance(sketch.getCurrentTick() + (2 * week)); //everything expires
+    assertEquals(sketch.windowPanes(week).size(), 0);
+    assertTrue(sketch.getResult(week).isEmpty());
+    assertTrue(current.isEmpty());
+  }
+
+  @Test
+  public void checkBadArgs() {
+    try {
+      new SlidingWindowSketch(64, new int[] {4, 1}, 100);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      new SlidingWindowSketch(64, new int[] {60, 24}, 1000); //day panes longer than the window
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      new SlidingWindowSketch(64, new int[0], 0);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      new SlidingWindowSketch(64, new int[] {4}, 16, 9001L, new NativeMemory(new byte[1024]));
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    final SlidingWindowSketch sketch = new SlidingWindowSketch(64, new int[] {4}, 16);
+    sketch.update(10, 1L);
+    sketch.update(10, "a");
+    try {
+      sketch.advance(9);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      sketch.getResult(17);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.theta;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.AllocMemory;
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.MemoryMappedFile;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.Family;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class SpinLockDirectQuickSelectSketchTest {
+
+  @Test
+  public void checkExactModeWithDuplicatesAcrossThreads() throws InterruptedException {
+    final int k = 4096;
+    final Memory mem = new NativeMemory(new byte[Sketch.getMaxConcurrentDirectSketchBytes(k)]);
+    final UpdateSketch sketch =
+        UpdateSketch.builder().setNominalEntries(k).initMemory(mem).buildConcurrentDirect();
+    assertTrue(sketch.isEmpty());
+    assertTrue(sketch.isDirect());
+    final int n = 3000; //every thread updates the same values
+    final UpdateSketch[] sketches = {sketch, sketch, sketch, sketch};
+    runThreads(sketches, n, 0);
+    assertFalse(sketch.isEmpty());
+    assertFalse(sketch.isEstimationMode());
+    assertEquals(sketch.getRetainedEntries(true), n);
+    assertEquals(sketch.getEstimate(), n, 0.0);
+    assertEquals(sketch.compact().getEstimate(), n, 0.0);
+  }
+
+  @Test
+  public void checkEstimationModeMultipleThreads() throws InterruptedException {
+    final int k = 4096;
+    final Memory mem = new AllocMemory(Sketch.getMaxConcurrentDirectSketchBytes(k));
+    final UpdateSketch sketch =
+        UpdateSketch.builder().setNominalEntries(k).initMemory(mem).buildConcurrentDirect();
+    final int numThreads = 4;
+    final int n = 100000;
+    final UpdateSketch[] sketches = new UpdateSketch[numThreads];
+    for (int t = 0; t < numThreads; t++) { sketches[t] = sketch; }
+    runThreads(sketches, n, n);
+
+    final UpdateSketch seq = UpdateSketch.builder().setNominalEntries(k).build();
+    for (int i = 0; i < (numThreads * n); i++) { seq.update(i); }
+
+    final double est = sketch.getEstimate();
+    assertTrue(sketch.isEstimationMode());
+    assertTrue(sketch.getRetainedEntries(true) >= k);
+    assertTrue(sketch.getUpperBound(2) >= (numThreads * n));
+    assertTrue(sketch.getLowerBound(2) <= (numThreads * n));
+    assertEquals(est, seq.getEstimate(), numThreads * n * 0.05);
+    final CompactSketch csk = sketch.compact(true, null);
+    assertEquals(csk.getEstimate(), est);
+    assertEquals(Sketch.wrap(mem).getEstimate(), est); //still a valid QuickSelect image
+
+    sketch.rebuild();
+    assertTrue(sketch.getRetainedEntries(true) <= k);
+    sketch.reset();
+    assertTrue(sketch.isEmpty());
+    assertEquals(sketch.getRetainedEntries(true), 0);
+    assertEquals(sketch.getEstimate(), 0.0);
+    mem.freeMemory();
+  }
+
+  @Test
+  public void checkSharedMemoryMappedFile() throws Exception {
+    final int k = 1024;
+    final int bytes = Sketches.getMaxConcurrentDirectSketchBytes(k);
+    final File file = File.createTempFile("concurrentSketch", ".bin");
+    file.deleteOnExit();
+    final MemoryMappedFile mmf1 = MemoryMappedFile.getInstance(file, 0, bytes);
+    final MemoryMappedFile mmf2 = MemoryMappedFile.getInstance(file, 0, bytes);
+    final UpdateSketch sketch1 =
+        UpdateSketch.builder().setNominalEntries(k).initMemory(mmf1).buildConcurrentDirect();
+    //a second mapping of the same file stands in for another process
+    final UpdateSketch sketch2 = Sketches.wrapConcurrentDirectSketch(mmf2);
+    final int n = 50000;
+    runThreads(new UpdateSketch[] {sketch1, sketch2, sketch1, sketch2}, n, n);
+    final int total = 4 * n;
+    assertEquals(sketch1.getEstimate(), sketch2.getEstimate());
+    assertEquals(sketch1.getEstimate(), total, total * 0.1);
+    assertTrue(sketch2.compact().getRetainedEntries(true) <= sketch1.getRetainedEntries(true));
+    mmf1.force();
+    mmf1.freeMemory();
+    mmf2.freeMemory();
+
+    final MemoryMappedFile mmf3 = MemoryMappedFile.getInstance(file, 0, bytes);
+    final UpdateSketch sketch3 = UpdateSketch.wrapConcurrentDirect(mmf3);
+    assertEquals(sketch3.getEstimate(), total, total * 0.1);
+    mmf3.freeMemory();
+  }
+
+  @Test
+  public void checkSamplingProbability() {
+    final int k = 512;
+    final Memory mem = new NativeMemory(new byte[Sketch.getMaxConcurrentDirectSketchBytes(k)]);
+    final UpdateSketch sketch = UpdateSketch.builder().setNominalEntries(k).setP(0.5f)
+        .initMemory(mem).buildConcurrentDirect();
+    for (int i = 0; i < 200; i++) { sketch.update(i); }
+    assertTrue(sketch.isEstimationMode());
+    assertTrue(sketch.getRetainedEntries(true) < 200);
+    assertEquals(sketch.getEstimate(), 200, 60);
+  }
+
+  @Test
+  public void checkBadBuildsAndWraps() {
+    final int k = 512;
+    final UpdateSketchBuilder bldr = UpdateSketch.builder().setNominalEntries(k);
+    try {
+      bldr.buildConcurrentDirect(); //no Memory
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      bldr.initMemory(new NativeMemory(new byte[Sketch.getMaxUpdateSketchBytes(k)]))
+        .buildConcurrentDirect(); //no space for the lock word
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    try {
+      bldr.setFamily(Family.ALPHA).initMemory(
+          new NativeMemory(new byte[Sketch.getMaxConcurrentDirectSketchBytes(k)]))
+        .buildConcurrentDirect();
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+
+    //a resizing direct sketch does not start with a full size hash table
+    final Memory mem = new NativeMemory(new byte[Sketch.getMaxConcurrentDirectSketchBytes(k)]);
+    UpdateSketch.builder().setNominalEntries(k).initMemory(mem).build();
+    try {
+      UpdateSketch.wrapConcurrentDirect(mem);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    //a full size direct sketch without room for the lock word
+    final Memory mem2 = new NativeMemory(new byte[Sketch.getMaxUpdateSketchBytes(k)]);
+    UpdateSketch.builder().setNominalEntries(k).setResizeFactor(ResizeFactor.X1)
+      .initMemory(mem2).build();
+    try {
+      UpdateSketch.wrapConcurrentDirect(mem2);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+    //a union gadget
+    final Memory mem3 = new NativeMemory(new byte[Sketch.getMaxConcurrentDirectSketchBytes(k) + 8]);
+    SetOperation.builder().setResizeFactor(ResizeFactor.X1)
+      .initMemory(mem3).buildUnion(k);
+    try {
+      UpdateSketch.wrapConcurrentDirect(mem3);
+      fail();
+    } catch (SketchesArgumentException e) {
+      //expected
+    }
+  }
+
+  @Test
+  public void printlnTest() {
+    println("PRINTING: " + this.getClass().getName());
+  }
+
+  /**
+   * @param s value to print
+   */
+  static void println(String s) {
+    //System.out.println(s); //disable here
+  }
+
+  /**
+   * Runs one thread per given sketch, each updating n values starting at its index times stride.
+   */
+  private static void runThreads(final UpdateSketch[] sketches, final int n, final int stride)
+      throws InterruptedException {
+    final Thread[] threads = new Thread[sketches.length];
+    for (int t = 0; t < sketches.length; t++) {
+      final UpdateSketch sketch = sketches[t];
+      final int offset = t * stride;
+      threads[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = 0; i < n; i++) {
+            sketch.update(offset + i);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (int t = 0; t < threads.length; t++) { threads[t].join(); }
+  }
+
+}
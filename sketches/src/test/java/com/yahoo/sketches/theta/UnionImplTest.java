@@ -64,6 +64,20 @@ public class UnionImplTest {
     union.update(mem);
   }
 
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkCorruptCurCountException() {
+    int k = 16;
+    Memory mem = new NativeMemory(new byte[k*8 + 24]);
+    UpdateSketch sketch = Sketches.updateSketchBuilder().build(k);
+    for (int i=0; i<k; i++) sketch.update(i);
+    sketch.compact(true, mem);
+
+    mem.putInt(PreambleUtil.RETAINED_ENTRIES_INT, 4 * k); //corrupt count, past the end
+
+    Union union = Sketches.setOperationBuilder().buildUnion(k);
+    union.update(Sketches.wrapSketch(mem));
+  }
+
   @Test(expectedExceptions = SketchesArgumentException.class)
   public void checkVer1FamilyException() {
     int k = 16;
@@ -94,6 +108,34 @@ public class UnionImplTest {
     union.update(v2mem);
   }
 
+  @Test
+  public void checkEstimateWithoutResult() {
+    int k = 512;
+    Memory mem = new NativeMemory(new byte[SetOperation.getMaxUnionBytes(k)]);
+    Union[] unions = { Sketches.setOperationBuilder().buildUnion(k),
+        Sketches.setOperationBuilder().initMemory(mem).buildUnion(k) };
+    for (Union union : unions) {
+      assertEquals(union.getEstimate(), 0.0);
+      UpdateSketch sk1 = Sketches.updateSketchBuilder().build(4 * k);
+      for (int i = 0; i < 3000; i++) sk1.update(i);
+      union.update(sk1); //gadget must be pulled back to k
+      checkEstimates(union);
+      UpdateSketch sk2 = Sketches.updateSketchBuilder().build(64);
+      for (int i = 2000; i < 10000; i++) sk2.update(i);
+      union.update(sk2.compact()); //union theta below gadget theta
+      checkEstimates(union);
+      union.update(-1L);
+      checkEstimates(union);
+    }
+  }
+
+  private static void checkEstimates(Union union) {
+    CompactSketch result = union.getResult();
+    assertEquals(union.getEstimate(), result.getEstimate());
+    assertEquals(union.getLowerBound(2), result.getLowerBound(2));
+    assertEquals(union.getUpperBound(2), result.getUpperBound(2));
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
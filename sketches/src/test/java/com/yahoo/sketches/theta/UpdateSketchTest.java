@@ -129,6 +129,64 @@ public class UpdateSketchTest {
     assertEquals(csk.getCurrentBytes(true), 8);
   }
 
+  @Test
+  public void checkBatchUpdateHeap() {
+    final int k = 512;
+    final long[] values = new long[20 * k];
+    for (int i = 0; i < values.length; i++) { values[i] = i; }
+    for (Family fam : new Family[] {Family.QUICKSELECT, Family.ALPHA}) {
+      UpdateSketch seq = UpdateSketch.builder().setFamily(fam).build(k);
+      UpdateSketch batch = UpdateSketch.builder().setFamily(fam).build(k);
+      for (int i = 10; i < (values.length - 10); i++) { seq.update(values[i]); }
+      batch.update(values, 10, 3);
+      batch.update(values, 13, values.length - 23);
+      assertEquals(batch.getEstimate(), seq.getEstimate());
+      assertEquals(batch.getThetaLong(), seq.getThetaLong());
+      assertEquals(batch.toByteArray(), seq.toByteArray());
+    }
+  }
+
+  @Test
+  public void checkBatchUpdateDirect() {
+    final int k = 512;
+    final long[] values = new long[20 * k];
+    for (int i = 0; i < values.length; i++) { values[i] = i; }
+    final int bytes = Sketch.getMaxUpdateSketchBytes(k);
+    UpdateSketch seq = UpdateSketch.builder().setResizeFactor(ResizeFactor.X2)
+        .initMemory(new NativeMemory(new byte[bytes])).build(k);
+    UpdateSketch batch = UpdateSketch.builder().setResizeFactor(ResizeFactor.X2)
+        .initMemory(new NativeMemory(new byte[bytes])).build(k);
+    for (int i = 0; i < values.length; i++) { seq.update(values[i]); }
+    batch.update(values, 0, 100); //exact mode, with resizing
+    batch.update(values, 100, values.length - 100);
+    assertEquals(batch.getRetainedEntries(true), seq.getRetainedEntries(true));
+    assertEquals(batch.getEstimate(), seq.getEstimate());
+    assertEquals(batch.toByteArray(), seq.toByteArray());
+  }
+
+  @Test
+  public void checkBatchUpdateUnion() {
+    final long[] values = { 1, 2, 3, 4, 5, 5, 4 };
+    Union union = SetOperation.builder().buildUnion();
+    union.update(values, 1, 6);
+    assertEquals(union.getResult().getEstimate(), 4.0);
+    union.update(values, 0, 0);
+    union.update(null, 0, 1);
+    assertEquals(union.getResult().getEstimate(), 4.0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBatchUpdateBadRegion() {
+    UpdateSketch sk = UpdateSketch.builder().build();
+    sk.update(new long[4], 2, 3);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void checkBatchUpdateNegativeOffset() {
+    UpdateSketch sk = UpdateSketch.builder().build();
+    sk.update(new long[4], -1, 2);
+  }
+
   @Test
   public void printlnTest() {
     println("PRINTING: "+this.getClass().getName());
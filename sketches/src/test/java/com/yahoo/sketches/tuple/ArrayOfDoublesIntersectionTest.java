@@ -258,6 +258,34 @@ public class ArrayOfDoublesIntersectionTest {
     for (int i = 0; i < values.length; i++) Assert.assertEquals(values[i][0], 4.0);
   }
 
+  @Test
+  public void modes() {
+    ArrayOfDoublesUpdatableSketch sketch1 = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    sketch1.update(1, new double[] {3});
+    sketch1.update(2, new double[] {1});
+    ArrayOfDoublesUpdatableSketch sketch2 = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    sketch2.update(1, new double[] {2});
+    sketch2.update(2, new double[] {5});
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      ArrayOfDoublesIntersection heap = new ArrayOfDoublesSetOperationBuilder().setMode(mode)
+          .buildIntersection();
+      ArrayOfDoublesIntersection direct = new ArrayOfDoublesSetOperationBuilder().setMode(mode)
+          .setMemory(new NativeMemory(new byte[1000000])).buildIntersection();
+      for (ArrayOfDoublesIntersection intersection: new ArrayOfDoublesIntersection[] {heap, direct}) {
+        Assert.assertEquals(intersection.getMode(), mode);
+        intersection.update(sketch1);
+        intersection.update(sketch2);
+        ArrayOfDoublesCompactSketch result = intersection.getResult();
+        Assert.assertEquals(result.getRetainedEntries(), 2);
+        double sum = 0;
+        ArrayOfDoublesSketchIterator it = result.iterator();
+        while (it.next()) { sum += it.getValues()[0]; }
+        Assert.assertEquals(sum,
+            mode == DoubleSummary.Mode.Sum ? 11.0 : mode == DoubleSummary.Mode.Min ? 3.0 : 8.0);
+      }
+    }
+  }
+
   @Test(expectedExceptions = SketchesArgumentException.class)
   public void incompatibleSeeds() {
     ArrayOfDoublesUpdatableSketch sketch = new ArrayOfDoublesUpdatableSketchBuilder().setSeed(1).build();
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+
+package com.yahoo.sketches.tuple;
+
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.SketchesArgumentException;
+
+public class ArrayOfDoublesParallelUnionTest {
+
+  @Test
+  public void sumModeEqualsSequentialUnion() {
+    final int k = 1024;
+    final int numSketches = 2000;
+    final ArrayOfDoublesSketch[] sketches = new ArrayOfDoublesSketch[numSketches];
+    final ArrayOfDoublesUnion seq = new ArrayOfDoublesSetOperationBuilder().setNominalEntries(k)
+        .setNumberOfValues(2).buildUnion();
+    for (int i = 0; i < numSketches; i++) {
+      final ArrayOfDoublesUpdatableSketchBuilder builder = new ArrayOfDoublesUpdatableSketchBuilder()
+          .setNominalEntries(k).setNumberOfValues(2);
+      if ((i % 5) == 0) {
+        builder.setMemory(new NativeMemory(new byte[ArrayOfDoublesUnion.getMaxBytes(k, 2)]));
+      }
+      final ArrayOfDoublesUpdatableSketch usk = builder.build();
+      for (int j = 0; j < 300; j++) { usk.update((i * 100) + j, new double[] {1.0, j}); }
+      sketches[i] = ((i % 3) == 0) ? usk : usk.compact(); //mix of input forms
+      seq.update(sketches[i]);
+    }
+    final ArrayOfDoublesParallelUnion pu = new ArrayOfDoublesParallelUnion(k, 2, 9001L,
+        DoubleSummary.Mode.Sum, new ForkJoinPool(4));
+    Assert.assertEquals(pu.getNominalEntries(), k);
+    Assert.assertEquals(pu.getNumValues(), 2);
+    assertSameSketch(pu.union(sketches), seq.getResult());
+    pu.getPool().shutdown();
+  }
+
+  @Test
+  public void sumModeSeedMatchesSketches() {
+    final ArrayOfDoublesSketch[] sketches = new ArrayOfDoublesSketch[300];
+    for (int i = 0; i < sketches.length; i++) {
+      final ArrayOfDoublesUpdatableSketch usk =
+          new ArrayOfDoublesUpdatableSketchBuilder().setSeed(9001L).build();
+      usk.update(i, new double[] {1.0});
+      sketches[i] = usk;
+    }
+    final ArrayOfDoublesParallelUnion pu = new ArrayOfDoublesParallelUnion(4096, 1, 9001L,
+        DoubleSummary.Mode.Sum, ForkJoinPool.commonPool());
+    final ArrayOfDoublesCompactSketch result = pu.union(sketches);
+    Assert.assertFalse(result.isEstimationMode());
+    Assert.assertEquals(result.getEstimate(), 300.0);
+  }
+
+  @Test
+  public void exactModeFewInputs() {
+    final ArrayOfDoublesSketch[] sketches = new ArrayOfDoublesSketch[10];
+    final ArrayOfDoublesUnion seq = new ArrayOfDoublesSetOperationBuilder().buildUnion();
+    for (int i = 0; i < sketches.length; i++) {
+      final ArrayOfDoublesUpdatableSketch usk = new ArrayOfDoublesUpdatableSketchBuilder().build();
+      for (int j = 0; j < 20; j++) { usk.update(i + j, new double[] {1.0}); }
+      sketches[i] = usk;
+      seq.update(usk);
+    }
+    final ArrayOfDoublesCompactSketch result = new ArrayOfDoublesParallelUnion(4096, 1)
+        .union(sketches);
+    Assert.assertEquals(result.getEstimate(), 29.0);
+    assertSameSketch(result, seq.getResult());
+  }
+
+  @Test
+  public void minModeMemoryImagesDirectResult() {
+    final int k = 512;
+    final int numSketches = 500;
+    final Memory[] images = new Memory[numSketches];
+    final ArrayOfDoublesUnion seq = new ArrayOfDoublesSetOperationBuilder().setNominalEntries(k)
+        .setMode(DoubleSummary.Mode.Min).buildUnion();
+    for (int i = 0; i < numSketches; i++) {
+      final ArrayOfDoublesUpdatableSketch usk =
+          new ArrayOfDoublesUpdatableSketchBuilder().setNominalEntries(k).build();
+      for (int j = 0; j < 1000; j++) { usk.update((i * 500) + j, new double[] {i}); }
+      final byte[] bytes = ((i & 1) == 0) ? usk.compact().toByteArray() : usk.toByteArray();
+      images[i] = new NativeMemory(bytes);
+      seq.update(ArrayOfDoublesSketches.wrapSketch(images[i]));
+    }
+    final ArrayOfDoublesParallelUnion pu = new ArrayOfDoublesParallelUnion(k, 1,
+        DEFAULT_UPDATE_SEED, DoubleSummary.Mode.Min, new ForkJoinPool(3));
+    final Memory dstMem = new NativeMemory(new byte[ArrayOfDoublesUnion.getMaxBytes(k, 1)]);
+    final ArrayOfDoublesCompactSketch result = pu.union(images, dstMem);
+    Assert.assertTrue(result instanceof DirectArrayOfDoublesCompactSketch);
+    assertSameSketch(result, seq.getResult());
+    Assert.assertEquals(result.getEstimate(), (numSketches * 500) + 500, numSketches * 500 * 0.1);
+    pu.getPool().shutdown();
+  }
+
+  @Test
+  public void maxModeSampledInputs() {
+    final int k = 256;
+    final int numSketches = 400;
+    final ArrayOfDoublesSketch[] sketches = new ArrayOfDoublesSketch[numSketches];
+    final ArrayOfDoublesUnion seq = new ArrayOfDoublesSetOperationBuilder().setNominalEntries(k)
+        .setMode(DoubleSummary.Mode.Max).buildUnion();
+    for (int i = 0; i < numSketches; i++) {
+      //inputs with a smaller theta than the union would reach on its own
+      final ArrayOfDoublesUpdatableSketch usk = new ArrayOfDoublesUpdatableSketchBuilder()
+          .setNominalEntries(k).setSamplingProbability((i == 377) ? 0.001f : 1f).build();
+      for (int j = 0; j < 50; j++) { usk.update((i * 10) + j, new double[] {j}); }
+      sketches[i] = usk;
+      seq.update(usk);
+    }
+    final ArrayOfDoublesParallelUnion pu = new ArrayOfDoublesParallelUnion(k, 1,
+        DEFAULT_UPDATE_SEED, DoubleSummary.Mode.Max, new ForkJoinPool(2));
+    Assert.assertEquals(pu.getMode(), DoubleSummary.Mode.Max);
+    final ArrayOfDoublesCompactSketch result = pu.union(sketches);
+    Assert.assertTrue(result.isEstimationMode());
+    assertSameSketch(result, seq.getResult());
+    pu.getPool().shutdown();
+  }
+
+  @Test
+  public void emptyAndNullInputs() {
+    final ArrayOfDoublesParallelUnion pu = new ArrayOfDoublesParallelUnion(1024, 1);
+    Assert.assertTrue(pu.union((ArrayOfDoublesSketch[]) null).isEmpty());
+    Assert.assertTrue(pu.union(new Memory[0]).isEmpty());
+    final ArrayOfDoublesSketch[] sketches = new ArrayOfDoublesSketch[200];
+    for (int i = 0; i < sketches.length; i++) {
+      if ((i % 2) == 0) { sketches[i] = new ArrayOfDoublesUpdatableSketchBuilder().build(); }
+    }
+    ArrayOfDoublesCompactSketch result = pu.union(sketches);
+    Assert.assertTrue(result.isEmpty());
+    Assert.assertEquals(result.getRetainedEntries(), 0);
+    Assert.assertEquals(result.getThetaLong(), Long.MAX_VALUE);
+
+    final ArrayOfDoublesUpdatableSketch usk = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    for (int i = 0; i < 10; i++) { usk.update(i, new double[] {1.0}); }
+    sketches[151] = usk;
+    result = pu.union(sketches);
+    Assert.assertFalse(result.isEmpty());
+    Assert.assertEquals(result.getEstimate(), 10.0);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void seedMismatch() {
+    final ArrayOfDoublesSketch[] sketches = new ArrayOfDoublesSketch[200];
+    for (int i = 0; i < sketches.length; i++) {
+      sketches[i] = new ArrayOfDoublesUpdatableSketchBuilder().setSeed(i).build();
+    }
+    new ArrayOfDoublesParallelUnion(1024, 1).union(sketches);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void nullPool() {
+    new ArrayOfDoublesParallelUnion(1024, 1, 1L, DoubleSummary.Mode.Sum, null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void nullMode() {
+    new ArrayOfDoublesParallelUnion(1024, 1, 1L, null, ForkJoinPool.commonPool());
+  }
+
+  private static void assertSameSketch(final ArrayOfDoublesSketch result,
+      final ArrayOfDoublesSketch expected) {
+    Assert.assertEquals(result.isEmpty(), expected.isEmpty());
+    Assert.assertEquals(result.getThetaLong(), expected.getThetaLong());
+    Assert.assertEquals(result.getRetainedEntries(), expected.getRetainedEntries());
+    Assert.assertEquals(result.getEstimate(), expected.getEstimate());
+    final Map<Long, double[]> expectedEntries = new HashMap<Long, double[]>();
+    final ArrayOfDoublesSketchIterator it = expected.iterator();
+    while (it.next()) { expectedEntries.put(it.getKey(), it.getValues()); }
+    final ArrayOfDoublesSketchIterator resultIt = result.iterator();
+    while (resultIt.next()) {
+      final double[] values = expectedEntries.get(resultIt.getKey());
+      Assert.assertNotNull(values);
+      final double[] resultValues = resultIt.getValues();
+      Assert.assertEquals(resultValues.length, values.length);
+      for (int i = 0; i < values.length; i++) {
+        Assert.assertEquals(resultValues[i], values[i], 1e-9);
+      }
+    }
+  }
+
+}
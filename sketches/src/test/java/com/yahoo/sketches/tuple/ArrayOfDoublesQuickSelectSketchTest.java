@@ -5,6 +5,8 @@
 
 package com.yahoo.sketches.tuple;
 
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -131,6 +133,139 @@ public class ArrayOfDoublesQuickSelectSketchTest {
     Assert.assertEquals(sketch2.getEstimate(), 4.0);
   }
   
+  @Test
+  public void singleValueUpdatesWithModes() {
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      ArrayOfDoublesUpdatableSketch heap = new ArrayOfDoublesUpdatableSketchBuilder().setMode(mode).build();
+      ArrayOfDoublesUpdatableSketch direct = new ArrayOfDoublesUpdatableSketchBuilder().setMode(mode)
+          .setMemory(new NativeMemory(new byte[1000000])).build();
+      Assert.assertEquals(heap.getMode(), mode);
+      Assert.assertEquals(direct.getMode(), mode);
+      for (ArrayOfDoublesUpdatableSketch sketch: new ArrayOfDoublesUpdatableSketch[] {heap, direct}) {
+        sketch.update(1L, 3.0);
+        sketch.update(1L, 1.0);
+        sketch.update(1L, new double[] {2.0});
+        sketch.update("a", 5.0);
+        sketch.update(2.5, 1.0);
+        sketch.update(new byte[] {1}, 1.0);
+        sketch.update(new int[] {1}, 1.0);
+        sketch.update(new long[] {7}, 1.0);
+        sketch.update("", 1.0);
+        sketch.update((long[]) null, 1.0);
+        Assert.assertEquals(sketch.getEstimate(), 6.0);
+        final long hash = sketch.getHashFunction().hash64(1L, DEFAULT_UPDATE_SEED) >>> 1;
+        final ArrayOfDoublesSketchIterator it = sketch.iterator();
+        double value = Double.NaN;
+        while (it.next()) {
+          if (it.getKey() == hash) { value = it.getValues()[0]; }
+        }
+        Assert.assertEquals(value,
+            mode == DoubleSummary.Mode.Sum ? 6.0 : mode == DoubleSummary.Mode.Min ? 1.0 : 3.0);
+        // the mode is kept in the serialized form
+        ArrayOfDoublesUpdatableSketch heapified = (ArrayOfDoublesUpdatableSketch)
+            ArrayOfDoublesSketches.heapifySketch(new NativeMemory(sketch.toByteArray()));
+        ArrayOfDoublesUpdatableSketch wrapped = (ArrayOfDoublesUpdatableSketch)
+            ArrayOfDoublesSketches.wrapSketch(new NativeMemory(sketch.toByteArray()));
+        Assert.assertEquals(heapified.getMode(), mode);
+        Assert.assertEquals(wrapped.getMode(), mode);
+      }
+    }
+  }
+
+  @Test
+  public void modeSerialVersion() {
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      ArrayOfDoublesUpdatableSketch heap = new ArrayOfDoublesUpdatableSketchBuilder().setMode(mode).build();
+      ArrayOfDoublesUpdatableSketch direct = new ArrayOfDoublesUpdatableSketchBuilder().setMode(mode)
+          .setMemory(new NativeMemory(new byte[1000000])).build();
+      final byte expected = (byte) (mode == DoubleSummary.Mode.Sum ? 1 : 2);
+      Assert.assertEquals(heap.toByteArray()[ArrayOfDoublesSketch.SERIAL_VERSION_BYTE], expected);
+      Assert.assertEquals(direct.toByteArray()[ArrayOfDoublesSketch.SERIAL_VERSION_BYTE], expected);
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void modeFlagsWithOldSerialVersion() {
+    final byte[] bytes = new ArrayOfDoublesUpdatableSketchBuilder().setMode(DoubleSummary.Mode.Max)
+        .build().toByteArray();
+    bytes[ArrayOfDoublesSketch.SERIAL_VERSION_BYTE] = 1;
+    ArrayOfDoublesSketches.heapifySketch(new NativeMemory(bytes));
+  }
+
+  @Test
+  public void singleValueUpdatesEstimationMode() {
+    ArrayOfDoublesUpdatableSketch heap = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    ArrayOfDoublesUpdatableSketch direct = new ArrayOfDoublesUpdatableSketchBuilder()
+        .setMemory(new NativeMemory(new byte[1000000])).build();
+    ArrayOfDoublesUpdatableSketch arrays = new ArrayOfDoublesUpdatableSketchBuilder().build();
+    for (int i = 0; i < 20000; i++) {
+      heap.update(i, 1.0);
+      direct.update(i, 1.0);
+      arrays.update(i, new double[] {1.0});
+    }
+    Assert.assertTrue(heap.isEstimationMode());
+    Assert.assertEquals(heap.getEstimate(), arrays.getEstimate());
+    Assert.assertEquals(direct.getEstimate(), arrays.getEstimate());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void singleValueUpdateRequiresOneValue() {
+    new ArrayOfDoublesUpdatableSketchBuilder().setNumberOfValues(2).build().update(1L, 1.0);
+  }
+
+  @Test
+  public void batchUpdateOfColumns() {
+    final int n = 20000;
+    final int offset = 7;
+    for (int numValues: new int[] {1, 3}) {
+      final long[] keys = new long[offset + n];
+      final double[][] columns = new double[numValues][offset + n];
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = i % 15000; // with duplicates
+        for (int j = 0; j < numValues; j++) { columns[j][i] = i * (j + 1); }
+      }
+      for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+        ArrayOfDoublesUpdatableSketch expected = new ArrayOfDoublesUpdatableSketchBuilder()
+            .setNumberOfValues(numValues).setMode(mode).build();
+        for (int i = offset; i < keys.length; i++) {
+          final double[] values = new double[numValues];
+          for (int j = 0; j < numValues; j++) { values[j] = columns[j][i]; }
+          expected.update(keys[i], values);
+        }
+        ArrayOfDoublesUpdatableSketch heap = new ArrayOfDoublesUpdatableSketchBuilder()
+            .setNumberOfValues(numValues).setMode(mode).build();
+        ArrayOfDoublesUpdatableSketch direct = new ArrayOfDoublesUpdatableSketchBuilder()
+            .setNumberOfValues(numValues).setMode(mode)
+            .setMemory(new NativeMemory(new byte[1000000])).build();
+        heap.update(keys, columns, offset, n);
+        direct.update(keys, columns, offset, n);
+        heap.update((long[]) null, columns, 0, 1);
+        direct.update(keys, columns, 0, 0);
+        Assert.assertTrue(heap.isEstimationMode());
+        Assert.assertEquals(heap.compact().toByteArray(), expected.compact().toByteArray());
+        Assert.assertEquals(direct.compact().toByteArray(), expected.compact().toByteArray());
+      }
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void batchUpdateOutOfBounds() {
+    new ArrayOfDoublesUpdatableSketchBuilder().build()
+        .update(new long[4], new double[][] {new double[4]}, 2, 3);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void batchUpdateWrongNumberOfColumns() {
+    new ArrayOfDoublesUpdatableSketchBuilder().setNumberOfValues(2).build()
+        .update(new long[4], new double[][] {new double[4]}, 0, 4);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void batchUpdateShortColumn() {
+    new ArrayOfDoublesUpdatableSketchBuilder().setNumberOfValues(2).build()
+        .update(new long[4], new double[][] {new double[4], new double[3]}, 0, 4);
+  }
+
   private static void noopUpdates(ArrayOfDoublesUpdatableSketch sketch, double[] valuesArr) {
     byte[] byteArr = null;
     sketch.update(byteArr, valuesArr);
@@ -5,11 +5,14 @@
 
 package com.yahoo.sketches.tuple;
 
+import static com.yahoo.sketches.Util.DEFAULT_UPDATE_SEED;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.yahoo.memory.NativeMemory;
 import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.MurmurHash3;
 
 public class ArrayOfDoublesUnionTest {
 
@@ -360,4 +363,49 @@ public class ArrayOfDoublesUnionTest {
     union.update(sketch);
   }
 
+  @Test
+  public void unionWithModes() {
+    ArrayOfDoublesUpdatableSketch sketch1 =
+        new ArrayOfDoublesUpdatableSketchBuilder().setMode(DoubleSummary.Mode.Max).build();
+    sketch1.update(1, 1.0);
+    sketch1.update(2, 5.0);
+    ArrayOfDoublesUpdatableSketch sketch2 =
+        new ArrayOfDoublesUpdatableSketchBuilder().setMode(DoubleSummary.Mode.Max).build();
+    sketch2.update(2, 3.0);
+    sketch2.update(3, 4.0);
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      ArrayOfDoublesUnion heap = new ArrayOfDoublesSetOperationBuilder().setMode(mode).buildUnion();
+      ArrayOfDoublesUnion direct = new ArrayOfDoublesSetOperationBuilder().setMode(mode)
+          .setMemory(new NativeMemory(new byte[1000000])).buildUnion();
+      for (ArrayOfDoublesUnion union: new ArrayOfDoublesUnion[] {heap, direct}) {
+        Assert.assertEquals(union.getMode(), mode);
+        union.update(sketch1);
+        union.update(sketch2);
+        double expected = mode == DoubleSummary.Mode.Sum ? 8.0 : mode == DoubleSummary.Mode.Min ? 3.0 : 5.0;
+        Assert.assertEquals(getValue(union.getResult(), 2), expected);
+
+        // the mode survives serialization and reset
+        ArrayOfDoublesUnion heapified = ArrayOfDoublesSketches.heapifyUnion(new NativeMemory(union.toByteArray()));
+        Assert.assertEquals(heapified.getMode(), mode);
+        heapified.update(sketch1);
+        double expected2 = mode == DoubleSummary.Mode.Sum ? 13.0 : expected;
+        Assert.assertEquals(getValue(heapified.getResult(), 2), expected2);
+        union.reset();
+        Assert.assertEquals(union.getMode(), mode);
+        union.update(sketch1);
+        union.update(sketch1);
+        Assert.assertEquals(getValue(union.getResult(), 2), mode == DoubleSummary.Mode.Sum ? 10.0 : 5.0);
+      }
+    }
+  }
+
+  private static double getValue(ArrayOfDoublesSketch sketch, long key) {
+    ArrayOfDoublesSketchIterator it = sketch.iterator();
+    long hash = MurmurHash3.hash64(key, DEFAULT_UPDATE_SEED) >>> 1;
+    while (it.next()) {
+      if (it.getKey() == hash) { return it.getValues()[0]; }
+    }
+    throw new AssertionError("key not found: " + key);
+  }
+
 }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+package com.yahoo.sketches.tuple;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+import com.yahoo.sketches.ResizeFactor;
+import com.yahoo.sketches.SketchesArgumentException;
+import com.yahoo.sketches.hash.HashFunction;
+
+public class DirectUpdatableSketchWithDoubleSummaryTest {
+  private static final int K = 1024;
+
+  private static UpdatableSketchBuilder<Double, DoubleSummary> builder(final DoubleSummary.Mode mode) {
+    return new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory(mode))
+        .setNominalEntries(K);
+  }
+
+  private static Memory newMemory() {
+    return new NativeMemory(new byte[(int) DirectUpdatableSketch.getMaxBytes(K, Double.BYTES)]);
+  }
+
+  @Test
+  public void isEmpty() {
+    DirectUpdatableSketch<Double, DoubleSummary> sketch =
+        builder(DoubleSummary.Mode.Sum).buildDirect(newMemory());
+    Assert.assertTrue(sketch.isEmpty());
+    Assert.assertFalse(sketch.isEstimationMode());
+    Assert.assertEquals(sketch.getEstimate(), 0.0);
+    Assert.assertEquals(sketch.getRetainedEntries(), 0);
+    Assert.assertEquals(sketch.getThetaLong(), Long.MAX_VALUE);
+    Assert.assertEquals(sketch.getSummaries().length, 0);
+    Assert.assertFalse(sketch.iterator().next());
+    Assert.assertEquals(sketch.compact().getRetainedEntries(), 0);
+  }
+
+  @Test
+  public void sameAsHeap() {
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      for (ResizeFactor rf: ResizeFactor.values()) {
+        for (int n: new int[] {1, 100, K, 10000}) {
+          UpdatableSketch<Double, DoubleSummary> heap = builder(mode).setResizeFactor(rf).build();
+          DirectUpdatableSketch<Double, DoubleSummary> direct =
+              builder(mode).setResizeFactor(rf).buildDirect(newMemory());
+          for (int i = 0; i < n; i++) {
+            heap.update(i, (double) i);
+            direct.update(i, (double) i);
+            heap.update(i, 1.0);
+            direct.update(i, 1.0);
+          }
+          Assert.assertFalse(direct.isEmpty());
+          Assert.assertEquals(direct.getRetainedEntries(), heap.getRetainedEntries());
+          Assert.assertEquals(direct.getThetaLong(), heap.getThetaLong());
+          Assert.assertEquals(direct.getEstimate(), heap.getEstimate());
+          assertSameEntries(direct, heap);
+          heap.trim();
+          direct.trim();
+          Assert.assertEquals(direct.getRetainedEntries(), heap.getRetainedEntries());
+          assertSameEntries(direct.compact(), heap.compact());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void sampling() {
+    float samplingProbability = 0.001f;
+    DirectUpdatableSketch<Double, DoubleSummary> sketch = builder(DoubleSummary.Mode.Sum)
+        .setSamplingProbability(samplingProbability).buildDirect(newMemory());
+    sketch.update("a", 1.0);
+    Assert.assertFalse(sketch.isEmpty());
+    Assert.assertTrue(sketch.isEstimationMode());
+    Assert.assertEquals(sketch.getEstimate(), 0.0);
+    Assert.assertEquals(sketch.getTheta(), (double) samplingProbability);
+    UpdatableSketch<Double, DoubleSummary> heapified =
+        Sketches.heapifyUpdatableSketch(new NativeMemory(sketch.toByteArray()));
+    Assert.assertFalse(heapified.isEmpty());
+    Assert.assertEquals(heapified.getTheta(), (double) samplingProbability);
+  }
+
+  @Test
+  public void updatesOfAllKeyTypes() {
+    DirectUpdatableSketch<Double, DoubleSummary> sketch =
+        builder(DoubleSummary.Mode.Sum).buildDirect(newMemory());
+    sketch.update(1L, 1.0);
+    sketch.update(2.0, 1.0);
+    sketch.update(new byte[] {3}, 1.0);
+    sketch.update(new int[] {4}, 1.0);
+    sketch.update(new long[] {5L}, 1.0);
+    sketch.update("a", 1.0);
+    sketch.update("", 1.0);
+    sketch.update((String) null, 1.0);
+    sketch.update((byte[]) null, 1.0);
+    sketch.update(new int[0], 1.0);
+    sketch.update((long[]) null, 1.0);
+    Assert.assertEquals(sketch.getEstimate(), 6.0);
+  }
+
+  @Test
+  public void wrapAndContinue() {
+    Memory mem = newMemory();
+    UpdatableSketch<Double, DoubleSummary> heap = builder(DoubleSummary.Mode.Max).build();
+    DirectUpdatableSketch<Double, DoubleSummary> direct =
+        builder(DoubleSummary.Mode.Max).buildDirect(mem);
+    for (int i = 0; i < 5000; i++) {
+      heap.update(i, (double) i);
+      direct.update(i, (double) i);
+    }
+    DirectUpdatableSketch<Double, DoubleSummary> wrapped =
+        Sketches.wrapUpdatableSketch(mem, new DoubleSummaryFactory(DoubleSummary.Mode.Max));
+    Assert.assertEquals(wrapped.getRetainedEntries(), heap.getRetainedEntries());
+    Assert.assertEquals(wrapped.getThetaLong(), heap.getThetaLong());
+    for (int i = 0; i < 10000; i++) {
+      heap.update(i, -1.0);
+      wrapped.update(i, -1.0);
+    }
+    assertSameEntries(wrapped, heap);
+
+    // the serialized form is the one of the heap sketch
+    UpdatableSketch<Double, DoubleSummary> heapified =
+        Sketches.heapifyUpdatableSketch(new NativeMemory(wrapped.toByteArray()));
+    Assert.assertEquals(heapified.getThetaLong(), heap.getThetaLong());
+    assertSameEntries(heapified, heap);
+    Sketch<DoubleSummary> sketch = Sketches.heapifySketch(new NativeMemory(wrapped.toByteArray()));
+    Assert.assertEquals(sketch.getEstimate(), heap.getEstimate());
+  }
+
+  @Test
+  public void wrapWithHashFunction() {
+    Memory mem = newMemory();
+    DirectUpdatableSketch<Double, DoubleSummary> direct = builder(DoubleSummary.Mode.Sum)
+        .setHashFunction(HashFunction.LONG_MIX).buildDirect(mem);
+    UpdatableSketch<Double, DoubleSummary> heap = builder(DoubleSummary.Mode.Sum)
+        .setHashFunction(HashFunction.LONG_MIX).build();
+    for (int i = 0; i < 100; i++) {
+      direct.update(i, 1.0);
+      heap.update(i, 1.0);
+    }
+    Assert.assertEquals(direct.getHashFunction(), HashFunction.LONG_MIX);
+    DirectUpdatableSketch<Double, DoubleSummary> wrapped = Sketches.wrapUpdatableSketch(mem,
+        new DoubleSummaryFactory(), HashFunction.LONG_MIX);
+    Assert.assertEquals(wrapped.getHashFunction(), HashFunction.LONG_MIX);
+    for (int i = 0; i < 100; i++) {
+      wrapped.update(i, 1.0);
+      heap.update(i, 1.0);
+    }
+    Assert.assertEquals(wrapped.getRetainedEntries(), 100);
+    assertSameEntries(wrapped, heap);
+  }
+
+  @Test
+  public void setOperations() {
+    UpdatableSketch<Double, DoubleSummary> heapA = builder(DoubleSummary.Mode.Sum).build();
+    UpdatableSketch<Double, DoubleSummary> heapB = builder(DoubleSummary.Mode.Sum).build();
+    DirectUpdatableSketch<Double, DoubleSummary> directA =
+        builder(DoubleSummary.Mode.Sum).buildDirect(newMemory());
+    DirectUpdatableSketch<Double, DoubleSummary> directB =
+        builder(DoubleSummary.Mode.Sum).buildDirect(newMemory());
+    for (int i = 0; i < 8000; i++) {
+      heapA.update(i, 1.0);
+      directA.update(i, 1.0);
+      heapB.update(i + 4000, 2.0);
+      directB.update(i + 4000, 2.0);
+    }
+
+    Union<DoubleSummary> union = new Union<DoubleSummary>(K, new DoubleSummaryFactory());
+    union.update(heapA);
+    union.update(heapB);
+    CompactSketch<DoubleSummary> expected = union.getResult();
+    union.reset();
+    union.update(directA);
+    union.update(directB);
+    assertSameEntries(union.getResult(), expected);
+
+    Intersection<DoubleSummary> intersection = new Intersection<DoubleSummary>(new DoubleSummaryFactory());
+    intersection.update(heapA);
+    intersection.update(heapB);
+    expected = intersection.getResult();
+    intersection.reset();
+    intersection.update(directA);
+    intersection.update(directB);
+    assertSameEntries(intersection.getResult(), expected);
+
+    AnotB<DoubleSummary> aNotB = new AnotB<DoubleSummary>();
+    aNotB.update(heapA, heapB);
+    expected = aNotB.getResult();
+    Assert.assertTrue(expected.getRetainedEntries() > 0);
+    aNotB.update(directA, directB);
+    assertSameEntries(aNotB.getResult(), expected);
+    aNotB.update(heapA, directB);
+    assertSameEntries(aNotB.getResult(), expected);
+    aNotB.update(directA, heapB);
+    assertSameEntries(aNotB.getResult(), expected);
+    aNotB.update(directA, null);
+    assertSameEntries(aNotB.getResult(), heapA);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void notFixedSizeSummaryFactory() {
+    final DoubleSummaryFactory factory = new DoubleSummaryFactory();
+    new UpdatableSketchBuilder<Double, DoubleSummary>(new SummaryFactory<DoubleSummary>() {
+      @Override
+      public DoubleSummary newSummary() {
+        return factory.newSummary();
+      }
+
+      @Override
+      public SummarySetOperations<DoubleSummary> getSummarySetOperations() {
+        return factory.getSummarySetOperations();
+      }
+
+      @Override
+      public DeserializeResult<DoubleSummary> summaryFromMemory(final Memory mem) {
+        return factory.summaryFromMemory(mem);
+      }
+
+      @Override
+      public byte[] toByteArray() {
+        return factory.toByteArray();
+      }
+    }).buildDirect(newMemory());
+  }
+
+  @Test
+  public void maxBytesBeyondInt() {
+    Assert.assertEquals(DirectUpdatableSketch.getMaxBytes(1 << 26, 64),
+        DirectUpdatableSketch.ENTRIES_START + 72L * (1L << 27));
+  }
+
+  @Test
+  public void updateSummaryInPlace() {
+    Memory mem = new NativeMemory(new byte[Double.BYTES]);
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      DoubleSummaryFactory factory = new DoubleSummaryFactory(mode);
+      DoubleSummary summary = factory.newSummary();
+      mem.putDouble(0, 42.0); // stale bytes of a new record
+      final double[] values = {3.0, -1.0, 2.0};
+      for (int i = 0; i < values.length; i++) {
+        factory.updateSummary(values[i], i == 0, mem, 0);
+        summary.update(values[i]);
+        Assert.assertEquals(mem.getDouble(0), summary.getValue());
+      }
+    }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void notEnoughMemory() {
+    builder(DoubleSummary.Mode.Sum).setResizeFactor(ResizeFactor.X1)
+        .buildDirect(new NativeMemory(
+            new byte[(int) DirectUpdatableSketch.getMaxBytes(K, Double.BYTES) - 1]));
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void notEnoughMemoryToResize() {
+    DirectUpdatableSketch<Double, DoubleSummary> sketch = builder(DoubleSummary.Mode.Sum)
+        .buildDirect(new NativeMemory(
+            new byte[(int) DirectUpdatableSketch.getMaxBytes(K, Double.BYTES) / 2]));
+    for (int i = 0; i < 10000; i++) { sketch.update(i, 1.0); }
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void wrapWithWrongSummarySize() {
+    Memory mem = newMemory();
+    builder(DoubleSummary.Mode.Sum).buildDirect(mem);
+    mem.putInt(DirectUpdatableSketch.SUMMARY_SIZE_INT, 16);
+    Sketches.wrapUpdatableSketch(mem, new DoubleSummaryFactory());
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void wrapHeapSketch() {
+    UpdatableSketch<Double, DoubleSummary> sketch = builder(DoubleSummary.Mode.Sum).build();
+    sketch.update(1, 1.0);
+    Sketches.wrapUpdatableSketch(new NativeMemory(sketch.toByteArray()), new DoubleSummaryFactory());
+  }
+
+  private static void assertSameEntries(final Sketch<DoubleSummary> actual,
+      final Sketch<DoubleSummary> expected) {
+    Assert.assertEquals(actual.getRetainedEntries(), expected.getRetainedEntries());
+    Assert.assertEquals(actual.getThetaLong(), expected.getThetaLong());
+    Assert.assertEquals(actual.isEmpty(), expected.isEmpty());
+    Assert.assertEquals(entries(actual), entries(expected));
+  }
+
+  // pairs of key and value, sorted by key
+  private static double[] entries(final Sketch<DoubleSummary> sketch) {
+    final long[] keys = new long[sketch.getRetainedEntries()];
+    int i = 0;
+    SketchIterator<DoubleSummary> it = sketch.iterator();
+    while (it.next()) { keys[i++] = it.getKey(); }
+    Arrays.sort(keys);
+    final double[] entries = new double[2 * keys.length];
+    it = sketch.iterator();
+    while (it.next()) {
+      final int index = Arrays.binarySearch(keys, it.getKey());
+      entries[2 * index] = it.getKey();
+      entries[2 * index + 1] = it.getSummary().getValue();
+    }
+    return entries;
+  }
+
+}
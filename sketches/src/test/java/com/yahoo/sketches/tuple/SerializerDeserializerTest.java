@@ -5,9 +5,14 @@
 
 package com.yahoo.sketches.tuple;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.yahoo.memory.Memory;
 import com.yahoo.memory.NativeMemory;
 import com.yahoo.sketches.Family;
 import com.yahoo.sketches.SketchesArgumentException;
@@ -48,4 +53,163 @@ public class SerializerDeserializerTest {
   public void validateFamilyWrongPreambleLength() {
     SerializerDeserializer.validateFamily((byte) Family.TUPLE.getID(), (byte) 0); 
   }
+
+  @Test
+  public void registeredTypeIsSerializedWithTypeId() {
+    final DoubleSummaryFactory factory = new DoubleSummaryFactory(DoubleSummary.Mode.Max);
+    final byte[] bytes = SerializerDeserializer.toByteArray(factory);
+    Assert.assertEquals(bytes.length, SerializerDeserializer.REGISTERED_TYPE_HEADER_BYTES
+        + factory.toByteArray().length);
+    Assert.assertEquals(bytes[0], SerializerDeserializer.REGISTERED_TYPE);
+    Assert.assertEquals(bytes[1], SummaryTypeRegistry.getTypeId(DoubleSummaryFactory.class));
+    final DeserializeResult<DoubleSummaryFactory> result =
+        SerializerDeserializer.deserializeFromMemory(new NativeMemory(bytes), 0);
+    Assert.assertEquals(result.getSize(), bytes.length);
+    Assert.assertEquals(result.getObject().newSummary().getValue(), Double.NEGATIVE_INFINITY);
+  }
+
+  @Test
+  public void readClassNameFormat() {
+    final byte[] objectBytes = new DoubleSummaryFactory(DoubleSummary.Mode.Min).toByteArray();
+    final byte[] bytes = concat(classNameHeader(DoubleSummaryFactory.class), objectBytes);
+    final DeserializeResult<DoubleSummaryFactory> result =
+        SerializerDeserializer.deserializeFromMemory(new NativeMemory(bytes), 0);
+    Assert.assertEquals(result.getSize(), bytes.length);
+    Assert.assertEquals(result.getObject().newSummary().getValue(), Double.POSITIVE_INFINITY);
+  }
+
+  @Test
+  public void readQuickSelectSketchWithClassName() {
+    UpdatableSketch<Double, DoubleSummary> sketch =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory()).build();
+    sketch.update(1, 1.0);
+    sketch.update(2, 2.0);
+    final byte[] bytes = sketch.toByteArray();
+    // the summary factory follows the first 8 bytes and the count
+    final int offset = 12;
+    Assert.assertEquals(bytes[offset], SerializerDeserializer.REGISTERED_TYPE);
+    final byte[] oldBytes = concat(Arrays.copyOfRange(bytes, 0, offset),
+        classNameHeader(DoubleSummaryFactory.class),
+        Arrays.copyOfRange(bytes, offset + SerializerDeserializer.REGISTERED_TYPE_HEADER_BYTES,
+            bytes.length));
+    final UpdatableSketch<Double, DoubleSummary> heapified =
+        Sketches.heapifyUpdatableSketch(new NativeMemory(oldBytes));
+    Assert.assertEquals(heapified.getRetainedEntries(), 2);
+    Assert.assertEquals(heapified.toByteArray(), bytes);
+  }
+
+  @Test
+  public void readCompactSketchWithClassName() {
+    UpdatableSketch<Double, DoubleSummary> sketch =
+        new UpdatableSketchBuilder<Double, DoubleSummary>(new DoubleSummaryFactory()).build();
+    sketch.update(1, 1.0);
+    sketch.update(2, 2.0);
+    final byte[] bytes = sketch.compact().toByteArray();
+    // the class name length byte follows the first 5 bytes, and the class name the count
+    final int offset = 5;
+    Assert.assertEquals(bytes[offset], SerializerDeserializer.REGISTERED_TYPE);
+    final byte[] header = classNameHeader(DoubleSummary.class);
+    final byte[] oldBytes = concat(Arrays.copyOfRange(bytes, 0, offset),
+        new byte[] {header[0]}, Arrays.copyOfRange(bytes, offset + 1, offset + 1 + Integer.BYTES),
+        Arrays.copyOfRange(header, 1, header.length),
+        Arrays.copyOfRange(bytes, offset + 2 + Integer.BYTES, bytes.length));
+    final Sketch<DoubleSummary> heapified = Sketches.heapifySketch(new NativeMemory(oldBytes));
+    Assert.assertEquals(heapified.getRetainedEntries(), 2);
+    Assert.assertEquals(heapified.toByteArray(), bytes);
+    double sum = 0;
+    for (DoubleSummary summary: heapified.getSummaries()) { sum += summary.getValue(); }
+    Assert.assertEquals(sum, 3.0);
+  }
+
+  @Test
+  public void userDefinedType() {
+    SummaryTypeRegistry.register(SummaryTypeRegistry.MAX_TYPE_ID, UserSummary.class,
+        new SummaryTypeRegistry.Deserializer<UserSummary>() {
+          @Override
+          public DeserializeResult<UserSummary> fromMemory(final Memory mem) {
+            return new DeserializeResult<UserSummary>(new UserSummary(mem.getByte(0)), 1);
+          }
+        });
+    // registering the same type again is allowed
+    SummaryTypeRegistry.register(SummaryTypeRegistry.MAX_TYPE_ID, UserSummary.class,
+        new SummaryTypeRegistry.Deserializer<UserSummary>() {
+          @Override
+          public DeserializeResult<UserSummary> fromMemory(final Memory mem) {
+            return null;
+          }
+        });
+    Assert.assertEquals(SummaryTypeRegistry.getTypeId(UserSummary.class),
+        SummaryTypeRegistry.MAX_TYPE_ID);
+    final byte[] bytes = SerializerDeserializer.toByteArray(new UserSummary((byte) 42));
+    Assert.assertEquals(bytes.length, 3);
+    final DeserializeResult<UserSummary> result =
+        SerializerDeserializer.deserializeFromMemory(new NativeMemory(bytes), 0);
+    Assert.assertEquals(result.getSize(), 3);
+    Assert.assertEquals(result.getObject().value_, 42);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void registerReservedTypeId() {
+    SummaryTypeRegistry.register(SummaryTypeRegistry.MIN_USER_TYPE_ID - 1, UserSummary.class, null);
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void registerTypeIdInUse() {
+    SummaryTypeRegistry.register(SummaryTypeRegistry.MIN_USER_TYPE_ID, Object.class,
+        new SummaryTypeRegistry.Deserializer<Object>() {
+          @Override
+          public DeserializeResult<Object> fromMemory(final Memory mem) {
+            return null;
+          }
+        });
+    SummaryTypeRegistry.register(SummaryTypeRegistry.MIN_USER_TYPE_ID, String.class,
+        new SummaryTypeRegistry.Deserializer<String>() {
+          @Override
+          public DeserializeResult<String> fromMemory(final Memory mem) {
+            return null;
+          }
+        });
+  }
+
+  @Test(expectedExceptions = SketchesArgumentException.class)
+  public void unregisteredTypeId() {
+    SerializerDeserializer.deserializeFromMemory(new NativeMemory(new byte[] {0, 100, 0}), 0);
+  }
+
+  private static byte[] classNameHeader(final Class<?> type) {
+    final byte[] className = type.getName().getBytes(UTF_8);
+    return concat(new byte[] {(byte) className.length}, className);
+  }
+
+  private static byte[] concat(final byte[]... arrays) {
+    int length = 0;
+    for (byte[] array: arrays) { length += array.length; }
+    final byte[] result = new byte[length];
+    int offset = 0;
+    for (byte[] array: arrays) {
+      System.arraycopy(array, 0, result, offset, array.length);
+      offset += array.length;
+    }
+    return result;
+  }
+
+  static final class UserSummary implements Summary {
+    final byte value_;
+
+    UserSummary(final byte value) {
+      value_ = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public UserSummary copy() {
+      return this;
+    }
+
+    @Override
+    public byte[] toByteArray() {
+      return new byte[] {value_};
+    }
+  }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017, Yahoo! Inc.
+ * Licensed under the terms of the Apache License 2.0. See LICENSE file at the project root for terms.
+ */
+package com.yahoo.sketches.tuple;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.yahoo.memory.Memory;
+import com.yahoo.memory.NativeMemory;
+
+public class UpdatableSketchWithLongSummaryTest {
+  private static final int K = 1024;
+  private static final long BIG = (1L << 53) + 1; // not representable as a double
+
+  private static UpdatableSketchBuilder<Long, LongSummary> builder(final DoubleSummary.Mode mode) {
+    return new UpdatableSketchBuilder<Long, LongSummary>(new LongSummaryFactory(mode))
+        .setNominalEntries(K);
+  }
+
+  private static Memory newMemory() {
+    return new NativeMemory(new byte[(int) DirectUpdatableSketch.getMaxBytes(K, Long.BYTES)]);
+  }
+
+  @Test
+  public void exactAboveDoublePrecision() {
+    UpdatableSketch<Long, LongSummary> heap = builder(DoubleSummary.Mode.Sum).build();
+    DirectUpdatableSketch<Long, LongSummary> direct =
+        builder(DoubleSummary.Mode.Sum).buildDirect(newMemory());
+    heap.update("a", BIG);
+    heap.update("a", 1L);
+    direct.update("a", BIG);
+    direct.update("a", 1L);
+    Assert.assertEquals(heap.getRetainedEntries(), 1);
+    Assert.assertEquals(heap.getSummaries()[0].getValue(), BIG + 1);
+    Assert.assertEquals(direct.getRetainedEntries(), 1);
+    Assert.assertEquals(direct.getSummaries()[0].getValue(), BIG + 1);
+  }
+
+  @Test
+  public void modes() {
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      UpdatableSketch<Long, LongSummary> heap = builder(mode).build();
+      DirectUpdatableSketch<Long, LongSummary> direct = builder(mode).buildDirect(newMemory());
+      for (long value: new long[] {BIG, -3L, 2L}) {
+        heap.update(1, value);
+        direct.update(1, value);
+      }
+      final long expected = mode == DoubleSummary.Mode.Sum ? BIG - 1
+          : mode == DoubleSummary.Mode.Min ? -3L : BIG;
+      Assert.assertEquals(heap.getSummaries()[0].getValue(), expected);
+      Assert.assertEquals(direct.getSummaries()[0].getValue(), expected);
+    }
+  }
+
+  @Test
+  public void serializeDeserialize() {
+    for (DoubleSummary.Mode mode: DoubleSummary.Mode.values()) {
+      Memory mem = newMemory();
+      DirectUpdatableSketch<Long, LongSummary> direct = builder(mode).buildDirect(mem);
+      UpdatableSketch<Long, LongSummary> heap = builder(mode).build();
+      for (int i = 0; i < 5000; i++) {
+        direct.update(i, BIG + i);
+        heap.update(i, BIG + i);
+      }
+      UpdatableSketch<Long, LongSummary> heapified =
+          Sketches.heapifyUpdatableSketch(new NativeMemory(heap.toByteArray()));
+      DirectUpdatableSketch<Long, LongSummary> wrapped =
+          Sketches.wrapUpdatableSketch(mem, new LongSummaryFactory(mode));
+      Assert.assertEquals(heapified.getThetaLong(), heap.getThetaLong());
+      Assert.assertEquals(wrapped.getThetaLong(), heap.getThetaLong());
+      heapified.update(0, 1L);
+      wrapped.update(0, 1L);
+      heap.update(0, 1L);
+      assertSameEntries(heapified, heap);
+      assertSameEntries(wrapped, heap);
+      Sketch<LongSummary> compact = Sketches.heapifySketch(new NativeMemory(heap.compact().toByteArray()));
+      assertSameEntries(compact, heap);
+    }
+  }
+
+  @Test
+  public void setOperations() {
+    UpdatableSketch<Long, LongSummary> sketchA = builder(DoubleSummary.Mode.Sum).build();
+    DirectUpdatableSketch<Long, LongSummary> sketchB =
+        builder(DoubleSummary.Mode.Sum).buildDirect(newMemory());
+    sketchA.update(1, BIG);
+    sketchA.update(2, 1L);
+    sketchB.update(1, 1L);
+    sketchB.update(3, 1L);
+
+    Union<LongSummary> union = new Union<LongSummary>(K, new LongSummaryFactory());
+    union.update(sketchA);
+    union.update(sketchB);
+    CompactSketch<LongSummary> result = union.getResult();
+    Assert.assertEquals(result.getRetainedEntries(), 3);
+    long sum = 0;
+    for (LongSummary summary: result.getSummaries()) { sum += summary.getValue(); }
+    Assert.assertEquals(sum, BIG + 3);
+
+    Intersection<LongSummary> intersection =
+        new Intersection<LongSummary>(new LongSummaryFactory(DoubleSummary.Mode.Max));
+    intersection.update(sketchA);
+    intersection.update(sketchB);
+    result = intersection.getResult();
+    Assert.assertEquals(result.getRetainedEntries(), 1);
+    Assert.assertEquals(result.getSummaries()[0].getValue(), BIG);
+  }
+
+  private static void assertSameEntries(final Sketch<LongSummary> actual,
+      final Sketch<LongSummary> expected) {
+    Assert.assertEquals(actual.getRetainedEntries(), expected.getRetainedEntries());
+    SketchIterator<LongSummary> it = expected.iterator();
+    Map<Long, Long> values = new HashMap<Long, Long>();
+    while (it.next()) { values.put(it.getKey(), it.getSummary().getValue()); }
+    it = actual.iterator();
+    while (it.next()) {
+      Assert.assertEquals(it.getSummary().getValue(), (long) values.get(it.getKey()));
+    }
+  }
+
+}